@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.application.cache;
+
+import com.clicktravel.cheddar.infrastructure.persistence.cache.TieredItemCache;
+import com.clicktravel.cheddar.system.event.AbstractSystemEvent;
+
+/**
+ * System event indicating an entry has been written to a {@link TieredItemCache}, so that other application instances
+ * drop their near cache copy of it
+ */
+public class ItemCacheInvalidatedEvent extends AbstractSystemEvent {
+
+    private String cacheId;
+    private String key;
+
+    public String getCacheId() {
+        return cacheId;
+    }
+
+    public void setCacheId(final String cacheId) {
+        this.cacheId = cacheId;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(final String key) {
+        this.key = key;
+    }
+
+    @Override
+    public String toString() {
+        return "ItemCacheInvalidatedEvent [cacheId=" + cacheId + ", key=" + key + "]";
+    }
+
+}
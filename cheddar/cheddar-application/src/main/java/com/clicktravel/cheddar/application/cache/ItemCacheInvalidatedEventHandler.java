@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.application.cache;
+
+import com.clicktravel.cheddar.infrastructure.persistence.cache.TieredItemCache;
+import com.clicktravel.cheddar.system.event.SystemEvent;
+import com.clicktravel.cheddar.system.event.handler.AbstractSystemEventHandler;
+
+/**
+ * Handles an {@link ItemCacheInvalidatedEvent} by dropping the near cache copy of the written entry from a
+ * {@link TieredItemCache}. Applications using cross-instance invalidation declare one of these as a bean for each such
+ * cache.
+ */
+public class ItemCacheInvalidatedEventHandler extends AbstractSystemEventHandler {
+
+    private final TieredItemCache tieredItemCache;
+
+    public ItemCacheInvalidatedEventHandler(final String applicationName, final String applicationVersion,
+            final TieredItemCache tieredItemCache) {
+        super(applicationName, applicationVersion);
+        this.tieredItemCache = tieredItemCache;
+    }
+
+    @Override
+    protected void handleSystemEvent(final SystemEvent systemEvent) {
+        final ItemCacheInvalidatedEvent event = (ItemCacheInvalidatedEvent) systemEvent;
+        tieredItemCache.invalidateLocal(event.getCacheId(), event.getKey());
+    }
+
+    @Override
+    public Class<? extends SystemEvent> getEventClass() {
+        return ItemCacheInvalidatedEvent.class;
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.application.cache;
+
+import com.clicktravel.cheddar.infrastructure.persistence.cache.ItemCacheInvalidationPublisher;
+import com.clicktravel.cheddar.system.event.publisher.SystemEventPublisher;
+
+/**
+ * Publishes cache invalidations as {@link ItemCacheInvalidatedEvent}s to the instances of this application
+ */
+public class SystemEventItemCacheInvalidationPublisher implements ItemCacheInvalidationPublisher {
+
+    private final String applicationName;
+
+    public SystemEventItemCacheInvalidationPublisher(final String applicationName) {
+        this.applicationName = applicationName;
+    }
+
+    @Override
+    public void publishInvalidation(final String cacheId, final String key) {
+        final ItemCacheInvalidatedEvent event = new ItemCacheInvalidatedEvent();
+        event.setTargetApplicationName(applicationName);
+        event.setCacheId(cacheId);
+        event.setKey(key);
+        SystemEventPublisher.instance().publishEvent(event);
+    }
+
+}
@@ -23,6 +23,7 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormatter;
@@ -35,8 +36,8 @@ import com.amazonaws.util.DateUtils;
 
 public class DynamoDBReflectorUtil {
 
-    private final Map<Method, ArgumentUnmarshaller> argumentUnmarshallerCache = new HashMap<Method, ArgumentUnmarshaller>();
-    private final Map<Method, ArgumentMarshaller> argumentMarshallerCache = new HashMap<Method, ArgumentMarshaller>();
+    private final Map<Method, ArgumentUnmarshaller> argumentUnmarshallerCache = new ConcurrentHashMap<Method, ArgumentUnmarshaller>();
+    private final Map<Method, ArgumentMarshaller> argumentMarshallerCache = new ConcurrentHashMap<Method, ArgumentMarshaller>();
 
     /**
      * Marshalls the custom value given into the proper return type.
@@ -72,6 +73,10 @@ public class DynamoDBReflectorUtil {
      */
     <T> ArgumentUnmarshaller getArgumentUnmarshaller(final T toReturn, final Method getter, final Method setter,
             final S3ClientCache s3cc) {
+        final ArgumentUnmarshaller cachedUnmarshaller = argumentUnmarshallerCache.get(getter);
+        if (cachedUnmarshaller != null) {
+            return cachedUnmarshaller;
+        }
         synchronized (argumentUnmarshallerCache) {
             ArgumentUnmarshaller unmarshaller = argumentUnmarshallerCache.get(getter);
             if (unmarshaller != null) {
@@ -244,6 +249,10 @@ public class DynamoDBReflectorUtil {
      * Returns a marshaller that knows how to provide an AttributeValue for the result of the getter given.
      */
     ArgumentMarshaller getArgumentMarshaller(final Method getter) {
+        final ArgumentMarshaller cachedMarshaller = argumentMarshallerCache.get(getter);
+        if (cachedMarshaller != null) {
+            return cachedMarshaller;
+        }
         synchronized (argumentMarshallerCache) {
             ArgumentMarshaller marshaller = argumentMarshallerCache.get(getter);
             if (marshaller != null) {
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.beans.PropertyDescriptor;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.clicktravel.cheddar.infrastructure.persistence.database.Item;
+import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.ItemConfiguration;
+
+/**
+ * The compiled set of {@link DynamoDbPropertyCodec}s for one item class, in a fixed order derived from its
+ * {@link ItemConfiguration}. Instances are immutable and are shared between threads through
+ * {@link DynamoDbItemCodecRegistry}.
+ */
+public class DynamoDbItemCodec {
+
+    private final Class<? extends Item> itemClass;
+    private final DynamoDbPropertyCodec[] propertyCodecs;
+    private final List<DynamoDbPropertyCodec> propertyCodecList;
+
+    DynamoDbItemCodec(final ItemConfiguration itemConfiguration, final DynamoDBReflectorUtil reflector) {
+        itemClass = itemConfiguration.itemClass();
+        final Collection<PropertyDescriptor> propertyDescriptors = itemConfiguration.propertyDescriptors();
+        propertyCodecs = new DynamoDbPropertyCodec[propertyDescriptors.size()];
+        int i = 0;
+        for (final PropertyDescriptor propertyDescriptor : propertyDescriptors) {
+            propertyCodecs[i++] = new DynamoDbPropertyCodec(propertyDescriptor,
+                    itemConfiguration.propertyAccessor(propertyDescriptor.getName()), reflector);
+        }
+        propertyCodecList = Collections.unmodifiableList(Arrays.asList(propertyCodecs));
+    }
+
+    public Class<? extends Item> itemClass() {
+        return itemClass;
+    }
+
+    public List<DynamoDbPropertyCodec> propertyCodecs() {
+        return propertyCodecList;
+    }
+
+    public DynamoDbPropertyCodec propertyCodec(final String propertyName) {
+        for (final DynamoDbPropertyCodec propertyCodec : propertyCodecs) {
+            if (propertyCodec.propertyName().equals(propertyName)) {
+                return propertyCodec;
+            }
+        }
+        throw new IllegalStateException("No property found '" + propertyName + "' for item :" + itemClass);
+    }
+}
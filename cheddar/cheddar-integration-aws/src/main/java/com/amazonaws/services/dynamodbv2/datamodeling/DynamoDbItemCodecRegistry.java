@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.clicktravel.cheddar.infrastructure.persistence.database.Item;
+import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.ItemConfiguration;
+
+/**
+ * Process-wide registry of {@link DynamoDbItemCodec}s. A codec is compiled the first time an item class is seen and
+ * reused for every subsequent read and write of that class. Codecs depend only on the bean properties of the item
+ * class, so they can be shared between all templates and schemas.
+ */
+public final class DynamoDbItemCodecRegistry {
+
+    private static final DynamoDBReflectorUtil REFLECTOR = new DynamoDBReflectorUtil();
+    private static final Map<Class<? extends Item>, DynamoDbItemCodec> ITEM_CODECS = new ConcurrentHashMap<>();
+
+    private DynamoDbItemCodecRegistry() {
+    }
+
+    public static DynamoDbItemCodec codecFor(final ItemConfiguration itemConfiguration) {
+        final DynamoDbItemCodec itemCodec = ITEM_CODECS.get(itemConfiguration.itemClass());
+        if (itemCodec != null) {
+            return itemCodec;
+        }
+        return ITEM_CODECS.computeIfAbsent(itemConfiguration.itemClass(),
+                itemClass -> new DynamoDbItemCodec(itemConfiguration, REFLECTOR));
+    }
+
+    static DynamoDBReflectorUtil reflector() {
+        return REFLECTOR;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.text.ParseException;
+import java.util.Collection;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.clicktravel.cheddar.infrastructure.persistence.accessor.PropertyAccessor;
+import com.clicktravel.cheddar.infrastructure.persistence.database.Item;
+
+/**
+ * Converts a single item property to and from its DynamoDB {@link AttributeValue}. The argument marshaller and
+ * unmarshaller for the property are resolved once, when the codec is created, rather than on every conversion, and
+ * the property is read and written through its {@link PropertyAccessor}. Where DynamoDB has no native representation
+ * for the property type, the value is held as a JSON string.
+ */
+public class DynamoDbPropertyCodec {
+
+    private final PropertyDescriptor propertyDescriptor;
+    private final PropertyAccessor propertyAccessor;
+    private final Class<?> writeType;
+    private final ArgumentMarshaller marshaller;
+    private final ArgumentUnmarshaller unmarshaller;
+
+    DynamoDbPropertyCodec(final PropertyDescriptor propertyDescriptor, final PropertyAccessor propertyAccessor,
+            final DynamoDBReflectorUtil reflector) {
+        this.propertyDescriptor = propertyDescriptor;
+        this.propertyAccessor = propertyAccessor;
+        final Method readMethod = propertyDescriptor.getReadMethod();
+        final Method writeMethod = propertyDescriptor.getWriteMethod();
+        writeType = writeMethod == null ? null : writeMethod.getParameterTypes()[0];
+        marshaller = readMethod == null ? null : resolveMarshaller(reflector, readMethod);
+        unmarshaller = readMethod == null || writeMethod == null ? null
+                : resolveUnmarshaller(reflector, readMethod, writeMethod);
+    }
+
+    private static ArgumentMarshaller resolveMarshaller(final DynamoDBReflectorUtil reflector,
+            final Method readMethod) {
+        try {
+            return reflector.getArgumentMarshaller(readMethod);
+        } catch (final DynamoDBMappingException e) {
+            return null;
+        }
+    }
+
+    private static ArgumentUnmarshaller resolveUnmarshaller(final DynamoDBReflectorUtil reflector,
+            final Method readMethod, final Method writeMethod) {
+        try {
+            return reflector.getArgumentUnmarshaller(null, readMethod, writeMethod, null);
+        } catch (final DynamoDBMappingException e) {
+            return null;
+        }
+    }
+
+    public String propertyName() {
+        return propertyDescriptor.getName();
+    }
+
+    public PropertyDescriptor propertyDescriptor() {
+        return propertyDescriptor;
+    }
+
+    public boolean isWritable() {
+        return propertyAccessor.isWritable();
+    }
+
+    public AttributeValue getValue(final Item item) {
+        return getAttributeValue(propertyAccessor.getValue(item));
+    }
+
+    public AttributeValue getAttributeValue(final Object propertyValue) {
+        if (propertyValue == null) {
+            return null;
+        }
+        if (propertyValue instanceof Collection && ((Collection<?>) propertyValue).isEmpty()) {
+            return null;
+        }
+        if (marshaller != null) {
+            try {
+                return marshaller.marshall(propertyValue);
+            } catch (final DynamoDBMappingException e) {
+                // Fall through to JSON representation
+            }
+        }
+        return DynamoDbPropertyMarshaller.jsonAttributeValue(propertyValue);
+    }
+
+    public void setValue(final Item item, final AttributeValue attributeValue) {
+        if (attributeValue == null || !propertyAccessor.isWritable()) {
+            return;
+        }
+        Object argument = null;
+        if (unmarshaller != null) {
+            try {
+                argument = unmarshaller.unmarshall(attributeValue);
+            } catch (final DynamoDBMappingException | ParseException e) {
+                argument = DynamoDbPropertyMarshaller.jsonArgument(attributeValue, writeType);
+            }
+        } else {
+            argument = DynamoDbPropertyMarshaller.jsonArgument(attributeValue, writeType);
+        }
+        propertyAccessor.setValue(item, argument);
+    }
+}
@@ -43,22 +43,17 @@ public class DynamoDbPropertyMarshaller {
     public static <T extends Item> void setValue(final T item, final PropertyDescriptor propertyDescriptor,
             final AttributeValue attributeValue) {
         if (attributeValue != null) {
-            final DynamoDBReflectorUtil reflector = new DynamoDBReflectorUtil();
+            final DynamoDBReflectorUtil reflector = DynamoDbItemCodecRegistry.reflector();
 
             final Method writeMethod = propertyDescriptor.getWriteMethod();
             Object argument = null;
             if (writeMethod != null) {
                 try {
-                    final ArgumentUnmarshaller unmarshaller = reflector.getArgumentUnmarshaller(item,
+                    final ArgumentUnmarshaller unmarshaller = reflector.getArgumentUnmarshaller(null,
                             propertyDescriptor.getReadMethod(), writeMethod, null);
                     argument = unmarshaller.unmarshall(attributeValue);
                 } catch (final DynamoDBMappingException | ParseException mappingException) {
-                    try {
-                        final JsonParser jsonParser = jsonFactory.createParser(new StringReader(attributeValue.getS()));
-                        argument = jsonParser.readValueAs(writeMethod.getParameterTypes()[0]);
-                    } catch (final Exception e) {
-                        throw new IllegalStateException("Could not parse attribute value: " + attributeValue, e);
-                    }
+                    argument = jsonArgument(attributeValue, writeMethod.getParameterTypes()[0]);
                 }
                 try {
                     writeMethod.invoke(item, argument);
@@ -77,26 +72,7 @@ public class DynamoDbPropertyMarshaller {
         } catch (final Exception e) {
             throw new IllegalStateException(e);
         }
-        if (propertyValue == null) {
-            return null;
-        }
-        if (propertyValue instanceof Collection && ((Collection<?>) propertyValue).isEmpty()) {
-            return null;
-        }
-        final DynamoDBReflectorUtil reflector = new DynamoDBReflectorUtil();
-        try {
-            final ArgumentMarshaller marshaller = reflector.getArgumentMarshaller(readMethod);
-            return marshaller.marshall(propertyValue);
-        } catch (final DynamoDBMappingException e) {
-            try {
-                final StringWriter output = new StringWriter();
-                final JsonGenerator jsonGenerator = jsonFactory.createGenerator(output);
-                jsonGenerator.writeObject(propertyValue);
-                return new AttributeValue(output.toString());
-            } catch (final IOException ioException) {
-                throw new IllegalStateException(ioException);
-            }
-        }
+        return getAttributeValue(propertyValue, propertyDescriptor);
     }
 
     public static ScalarAttributeType getAttributeType(final Class<?> propertyClass) {
@@ -121,19 +97,32 @@ public class DynamoDbPropertyMarshaller {
         if (propertyValue instanceof Collection && ((Collection<?>) propertyValue).isEmpty()) {
             return null;
         }
-        final DynamoDBReflectorUtil reflector = new DynamoDBReflectorUtil();
+        final DynamoDBReflectorUtil reflector = DynamoDbItemCodecRegistry.reflector();
         try {
             final ArgumentMarshaller marshaller = reflector.getArgumentMarshaller(readMethod);
             return marshaller.marshall(propertyValue);
         } catch (final DynamoDBMappingException e) {
-            try {
-                final StringWriter output = new StringWriter();
-                final JsonGenerator jsonGenerator = jsonFactory.createGenerator(output);
-                jsonGenerator.writeObject(propertyValue);
-                return new AttributeValue(output.toString());
-            } catch (final IOException ioException) {
-                throw new IllegalStateException(ioException);
-            }
+            return jsonAttributeValue(propertyValue);
+        }
+    }
+
+    static AttributeValue jsonAttributeValue(final Object propertyValue) {
+        try {
+            final StringWriter output = new StringWriter();
+            final JsonGenerator jsonGenerator = jsonFactory.createGenerator(output);
+            jsonGenerator.writeObject(propertyValue);
+            return new AttributeValue(output.toString());
+        } catch (final IOException ioException) {
+            throw new IllegalStateException(ioException);
+        }
+    }
+
+    static Object jsonArgument(final AttributeValue attributeValue, final Class<?> argumentType) {
+        try {
+            final JsonParser jsonParser = jsonFactory.createParser(new StringReader(attributeValue.getS()));
+            return jsonParser.readValueAs(argumentType);
+        } catch (final Exception e) {
+            throw new IllegalStateException("Could not parse attribute value: " + attributeValue, e);
         }
     }
 }
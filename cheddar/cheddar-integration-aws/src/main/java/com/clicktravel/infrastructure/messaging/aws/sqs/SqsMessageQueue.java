@@ -16,8 +16,12 @@
  */
 package com.clicktravel.infrastructure.messaging.aws.sqs;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.amazonaws.AmazonClientException;
 import com.clicktravel.cheddar.infrastructure.messaging.Message;
@@ -25,6 +29,7 @@ import com.clicktravel.cheddar.infrastructure.messaging.MessageQueue;
 import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageDeleteException;
 import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageReceiveException;
 import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageSendException;
+import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageVisibilityException;
 
 /**
  * Abstract AWS SQS implementation for a {@link MessageQueue}. This class is implemented as an adapter for a
@@ -35,6 +40,16 @@ import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageSendExc
  */
 public abstract class SqsMessageQueue<T extends Message> implements MessageQueue<T> {
 
+    /**
+     * Maximum number of entries in a single SQS batch request
+     */
+    private static final int MAX_BATCH_SIZE = 10;
+
+    /**
+     * Maximum total size (in bytes) of message bodies in a single SQS batch send request
+     */
+    private static final int MAX_BATCH_PAYLOAD_BYTES = 256 * 1024;
+
     private final SqsQueueResource sqsQueueResource;
 
     public SqsMessageQueue(final SqsQueueResource sqsQueueResource) {
@@ -70,6 +85,68 @@ public abstract class SqsMessageQueue<T extends Message> implements MessageQueue
         }
     }
 
+    /**
+     * Sends the messages with SQS batch requests, each packed with as many messages as allowed by both the SQS limit
+     * on entries and the SQS limit on total payload size per request. A message too large to fit in any batch request
+     * is sent on its own, so that if it cannot be sent only that message is reported as failed. If a batch request
+     * fails, the {@link MessageSendException} holds every message not yet sent, so they may be retried without
+     * duplicating those already sent.
+     */
+    @Override
+    public List<T> sendBatch(final Collection<T> messages) throws MessageSendException {
+        final List<T> pendingMessages = new ArrayList<>(messages);
+        final List<T> failedMessages = new ArrayList<>();
+        final List<T> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        final List<String> batchBodies = new ArrayList<>(MAX_BATCH_SIZE);
+        int batchPayloadBytes = 0;
+        int next = 0;
+        try {
+            for (; next < pendingMessages.size(); next++) {
+                final T message = pendingMessages.get(next);
+                final String messageBody = toSqsMessageBody(message);
+                final int payloadBytes = messageBody.getBytes(StandardCharsets.UTF_8).length;
+                if (payloadBytes > MAX_BATCH_PAYLOAD_BYTES) {
+                    sendOversizeMessage(message, messageBody, failedMessages);
+                    continue;
+                }
+                if (batch.size() == MAX_BATCH_SIZE
+                        || (!batch.isEmpty() && batchPayloadBytes + payloadBytes > MAX_BATCH_PAYLOAD_BYTES)) {
+                    sendPackedBatch(batch, batchBodies, failedMessages);
+                    batchPayloadBytes = 0;
+                }
+                batch.add(message);
+                batchBodies.add(messageBody);
+                batchPayloadBytes += payloadBytes;
+            }
+            if (!batch.isEmpty()) {
+                sendPackedBatch(batch, batchBodies, failedMessages);
+            }
+        } catch (final AmazonClientException e) {
+            final List<T> unsentMessages = new ArrayList<>(failedMessages);
+            unsentMessages.addAll(batch);
+            unsentMessages.addAll(pendingMessages.subList(next, pendingMessages.size()));
+            throw new MessageSendException("Unable to send messages on SQS queue:[" + sqsQueueResource.getQueueName()
+                    + "]", e, unsentMessages);
+        }
+        return failedMessages;
+    }
+
+    private void sendOversizeMessage(final T message, final String messageBody, final List<T> failedMessages) {
+        try {
+            sqsQueueResource.sendMessage(messageBody);
+        } catch (final AmazonClientException e) {
+            failedMessages.add(message);
+        }
+    }
+
+    private void sendPackedBatch(final List<T> batch, final List<String> batchBodies, final List<T> failedMessages) {
+        for (final Integer failedIndex : sqsQueueResource.sendMessages(new ArrayList<>(batchBodies))) {
+            failedMessages.add(batch.get(failedIndex));
+        }
+        batch.clear();
+        batchBodies.clear();
+    }
+
     @Override
     public List<T> receive() throws MessageReceiveException {
         try {
@@ -98,6 +175,17 @@ public abstract class SqsMessageQueue<T extends Message> implements MessageQueue
         return messages;
     }
 
+    @Override
+    public void changeVisibility(final T message, final int visibilityTimeoutSeconds)
+            throws MessageVisibilityException {
+        try {
+            sqsQueueResource.changeMessageVisibility(message.getReceiptHandle(), visibilityTimeoutSeconds);
+        } catch (final AmazonClientException e) {
+            throw new MessageVisibilityException("Unable to change message visibility on SQS queue:["
+                    + sqsQueueResource.getQueueName() + "]", e);
+        }
+    }
+
     @Override
     public void delete(final T message) throws MessageDeleteException {
         try {
@@ -108,6 +196,35 @@ public abstract class SqsMessageQueue<T extends Message> implements MessageQueue
         }
     }
 
+    @Override
+    public List<T> deleteBatch(final List<T> messages) throws MessageDeleteException {
+        final List<T> failedMessages = new ArrayList<>();
+        for (int start = 0; start < messages.size(); start += MAX_BATCH_SIZE) {
+            final List<T> batch = messages.subList(start, Math.min(start + MAX_BATCH_SIZE, messages.size()));
+            final Map<String, T> messagesByReceiptHandle = new HashMap<>();
+            for (final T message : batch) {
+                messagesByReceiptHandle.put(message.getReceiptHandle(), message);
+            }
+            final List<String> failedReceiptHandles;
+            try {
+                failedReceiptHandles = sqsQueueResource
+                        .deleteMessages(new ArrayList<>(messagesByReceiptHandle.keySet()));
+            } catch (final AmazonClientException e) {
+                if (start == 0) {
+                    throw new MessageDeleteException("Unable to delete messages on SQS queue:["
+                            + sqsQueueResource.getQueueName() + "]", e);
+                }
+                // Earlier batches were deleted, so report this and all later messages as failed
+                failedMessages.addAll(messages.subList(start, messages.size()));
+                break;
+            }
+            for (final String receiptHandle : failedReceiptHandles) {
+                failedMessages.add(messagesByReceiptHandle.get(receiptHandle));
+            }
+        }
+        return failedMessages;
+    }
+
     public SqsQueueResource getSqsQueue() {
         return sqsQueueResource;
     }
@@ -16,6 +16,7 @@
  */
 package com.clicktravel.infrastructure.messaging.aws.sqs;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -69,6 +70,30 @@ public class SqsQueueResource {
         doSendRequest(sendMessageRequest);
     }
 
+    /**
+     * Sends up to 10 messages to the AWS SQS queue with a single SQS {@link SendMessageBatchRequest}. The total size of
+     * the message bodies must not exceed the SQS limit for a single request.
+     * @param messageBodies Bodies of the messages to send
+     * @return Indexes into {@code messageBodies} of messages which could not be sent
+     */
+    public List<Integer> sendMessages(final List<String> messageBodies) throws AmazonClientException {
+        final List<SendMessageBatchRequestEntry> entries = new ArrayList<>(messageBodies.size());
+        for (int i = 0; i < messageBodies.size(); i++) {
+            entries.add(new SendMessageBatchRequestEntry(String.valueOf(i), messageBodies.get(i)));
+        }
+        final SendMessageBatchResult sendMessageBatchResult = amazonSqsClient
+                .sendMessageBatch(new SendMessageBatchRequest(queueUrl, entries));
+        final List<Integer> failedIndexes = new ArrayList<>();
+        for (final BatchResultErrorEntry errorEntry : sendMessageBatchResult.getFailed()) {
+            logger.debug("Failed to send message to SQS queue: [" + queueName + "] code: [" + errorEntry.getCode()
+                    + "] " + errorEntry.getMessage());
+            failedIndexes.add(Integer.valueOf(errorEntry.getId()));
+        }
+        logger.trace("Sent " + (messageBodies.size() - failedIndexes.size()) + " messages to SQS queue: ["
+                + queueName + "]");
+        return failedIndexes;
+    }
+
     private void doSendRequest(final SendMessageRequest sendMessageRequest) throws AmazonClientException {
         amazonSqsClient.sendMessage(sendMessageRequest);
         logger.trace("Successfully sent message: Payload=" + sendMessageRequest.getMessageBody() + "] to SQS queue: ["
@@ -114,6 +139,39 @@ public class SqsQueueResource {
         amazonSqsClient.deleteMessage(deleteMessageRequest);
     }
 
+    /**
+     * Changes the visibility timeout of a previously received message in the AWS SQS queue
+     * @param receiptHandle Identifier of message, given with receipt of the message
+     * @param visibilityTimeoutSeconds Duration (in seconds) from now for which the message is invisible to receivers
+     */
+    public void changeMessageVisibility(final String receiptHandle, final int visibilityTimeoutSeconds)
+            throws AmazonClientException {
+        amazonSqsClient.changeMessageVisibility(
+                new ChangeMessageVisibilityRequest(queueUrl, receiptHandle, visibilityTimeoutSeconds));
+    }
+
+    /**
+     * Delete up to 10 previously received messages from the AWS SQS queue with a single SQS
+     * {@link DeleteMessageBatchRequest}.
+     * @param receiptHandles Identifiers of messages to delete, given with receipt of the messages
+     * @return Receipt handles of messages which could not be deleted
+     */
+    public List<String> deleteMessages(final List<String> receiptHandles) throws AmazonClientException {
+        final List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>(receiptHandles.size());
+        for (int i = 0; i < receiptHandles.size(); i++) {
+            entries.add(new DeleteMessageBatchRequestEntry(String.valueOf(i), receiptHandles.get(i)));
+        }
+        final DeleteMessageBatchResult deleteMessageBatchResult = amazonSqsClient
+                .deleteMessageBatch(new DeleteMessageBatchRequest(queueUrl, entries));
+        final List<String> failedReceiptHandles = new ArrayList<>();
+        for (final BatchResultErrorEntry errorEntry : deleteMessageBatchResult.getFailed()) {
+            logger.debug("Failed to delete message from SQS queue: [" + queueName + "] code: ["
+                    + errorEntry.getCode() + "] " + errorEntry.getMessage());
+            failedReceiptHandles.add(receiptHandles.get(Integer.parseInt(errorEntry.getId())));
+        }
+        return failedReceiptHandles;
+    }
+
     /**
      * Sets the {@link Policy} of the AWS SQS queue
      * @param policy {@link Policy} to set
@@ -34,6 +34,7 @@ import com.amazonaws.services.cloudsearchv2.AmazonCloudSearch;
 import com.amazonaws.services.cloudsearchv2.model.DescribeDomainsRequest;
 import com.amazonaws.services.cloudsearchv2.model.DescribeDomainsResult;
 import com.amazonaws.services.cloudsearchv2.model.DomainStatus;
+import com.clicktravel.cheddar.infrastructure.persistence.accessor.PropertyAccessor;
 import com.clicktravel.cheddar.infrastructure.persistence.document.search.Document;
 import com.clicktravel.cheddar.infrastructure.persistence.document.search.DocumentSearchEngine;
 import com.clicktravel.cheddar.infrastructure.persistence.document.search.DocumentSearchResponse;
@@ -162,11 +163,8 @@ public class CloudSearchEngine implements DocumentSearchEngine {
             final Collection<Field> fields = new ArrayList<>();
             for (final IndexDefinition indexDefinition : documentConfiguration.indexDefinitions()) {
                 final String indexName = indexDefinition.getName();
-                final PropertyDescriptor propertyDescriptor = documentConfiguration.properties().get(indexName);
-                if (propertyDescriptor == null) {
-                    throw new IllegalStateException("No property found for index: " + indexName);
-                }
-                final Field field = new Field(indexName, getPropertyValue(document, propertyDescriptor));
+                final PropertyAccessor propertyAccessor = documentConfiguration.propertyAccessor(indexName);
+                final Field field = new Field(indexName, getPropertyValue(document, propertyAccessor));
                 fields.add(field);
             }
             documentUpdate.withFields(fields);
@@ -215,20 +213,15 @@ public class CloudSearchEngine implements DocumentSearchEngine {
         return uploadDocumentsRequest;
     }
 
-    private Object getPropertyValue(final Document document, final PropertyDescriptor propertyDescriptor) {
-        try {
-            final Object value = propertyDescriptor.getReadMethod().invoke(document);
-            if (value != null && value instanceof String) {
-                final String valueStr = ((String) value).trim();
-                if (valueStr.isEmpty()) {
-                    return null;
-                }
+    private Object getPropertyValue(final Document document, final PropertyAccessor propertyAccessor) {
+        final Object value = propertyAccessor.getValue(document);
+        if (value != null && value instanceof String) {
+            final String valueStr = ((String) value).trim();
+            if (valueStr.isEmpty()) {
+                return null;
             }
-            return value;
-        } catch (final Exception e) {
-            throw new IllegalStateException(e);
         }
-
+        return value;
     }
 
     @Override
@@ -16,24 +16,29 @@
  */
 package com.clicktravel.infrastructure.persistence.aws.dynamodb;
 
+import static com.amazonaws.services.dynamodbv2.datamodeling.DynamoDbPropertyMarshaller.getAttributeType;
+
 import java.beans.PropertyDescriptor;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
-import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDbPropertyMarshaller;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDbItemCodecRegistry;
 import com.amazonaws.services.dynamodbv2.model.*;
 import com.clicktravel.cheddar.infrastructure.persistence.database.AbstractDatabaseTemplate;
 import com.clicktravel.cheddar.infrastructure.persistence.database.GeneratedKeyHolder;
 import com.clicktravel.cheddar.infrastructure.persistence.database.Item;
+import com.clicktravel.cheddar.infrastructure.persistence.database.ItemId;
 import com.clicktravel.cheddar.infrastructure.persistence.database.SequenceKeyGenerator;
-import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.DatabaseSchemaHolder;
-import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.ItemConfiguration;
-import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.SequenceConfiguration;
-import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.UniqueConstraint;
+import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.*;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.ItemConstraintViolationException;
 import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceResourceFailureException;
 
@@ -44,6 +49,7 @@ public abstract class AbstractDynamoDbTemplate extends AbstractDatabaseTemplate
     protected final DatabaseSchemaHolder databaseSchemaHolder;
     protected final HashMap<Class<? extends Item>, ItemConfiguration> itemConfigurationMap;
     protected final Set<String> sequenceConfigurations;
+    private final Map<String, SequenceBlockAllocator> sequenceBlockAllocators;
 
     private static final String SEQUENCE_TABLE_NAME = "sequences";
     private static final String SEQUENCE_NAME_ATTRIBUTE = "name";
@@ -51,6 +57,13 @@ public abstract class AbstractDynamoDbTemplate extends AbstractDatabaseTemplate
 
     protected static final String VERSION_ATTRIBUTE = "version";
 
+    private static final int MAX_SCAN_SEGMENTS = 1000000;
+
+    private volatile ParallelScan parallelScan;
+    private volatile BoundedParallelExecutor batchReadParallelExecutor;
+    private volatile BoundedParallelExecutor batchWriteParallelExecutor;
+    private volatile BoundedParallelExecutor uniqueConstraintParallelExecutor;
+
     public AbstractDynamoDbTemplate(final DatabaseSchemaHolder databaseSchemaHolder) {
         this.databaseSchemaHolder = databaseSchemaHolder;
         itemConfigurationMap = new HashMap<>();
@@ -58,8 +71,16 @@ public abstract class AbstractDynamoDbTemplate extends AbstractDatabaseTemplate
             itemConfigurationMap.put(itemConfiguration.itemClass(), itemConfiguration);
         }
         sequenceConfigurations = new HashSet<>();
+        sequenceBlockAllocators = new HashMap<>();
         for (final SequenceConfiguration sequenceConfiguration : databaseSchemaHolder.sequenceConfigurations()) {
-            sequenceConfigurations.add(sequenceConfiguration.sequenceName());
+            final String sequenceName = sequenceConfiguration.sequenceName();
+            sequenceConfigurations.add(sequenceName);
+            if (sequenceConfiguration.blockSize() > 1) {
+                sequenceBlockAllocators.put(sequenceName,
+                        new SequenceBlockAllocator(sequenceConfiguration.blockSize(),
+                                sequenceConfiguration.refillWatermark(),
+                                keyCount -> reserveSequenceKeys(sequenceName, keyCount)));
+            }
         }
     }
 
@@ -72,16 +93,178 @@ public abstract class AbstractDynamoDbTemplate extends AbstractDatabaseTemplate
         return databaseSchemaHolder;
     }
 
+    /**
+     * Enables parallel scans for queries which cannot be served by a table or index query. Each scan is divided into
+     * the given number of segments, which are scanned on the supplied executor and merged in segment order. At most
+     * {@code maxConcurrentScanSegments} segments are scanned at once across all scans performed by this template.
+     * @param scanExecutor - executor on which segments are scanned
+     * @param scanSegments - number of segments each scan is divided into
+     * @param maxConcurrentScanSegments - maximum number of segments scanned concurrently by this template
+     */
+    public void configureParallelScan(final ExecutorService scanExecutor, final int scanSegments,
+            final int maxConcurrentScanSegments) {
+        if (scanSegments < 1 || scanSegments > MAX_SCAN_SEGMENTS) {
+            throw new IllegalArgumentException("Scan segments must be between 1 and " + MAX_SCAN_SEGMENTS);
+        }
+        parallelScan = new ParallelScan(new BoundedParallelExecutor(scanExecutor, maxConcurrentScanSegments),
+                scanSegments);
+    }
+
+    /**
+     * Enables concurrent reads of key set queries which span more than one {@code BatchGetItem} request. At most
+     * {@code maxConcurrentBatches} batches are read at once across all key set queries performed by this template.
+     * @param batchReadExecutor - executor on which batches are read
+     * @param maxConcurrentBatches - maximum number of batches read concurrently by this template
+     */
+    public void configureParallelBatchRead(final ExecutorService batchReadExecutor, final int maxConcurrentBatches) {
+        batchReadParallelExecutor = new BoundedParallelExecutor(batchReadExecutor, maxConcurrentBatches);
+    }
+
+    /**
+     * Enables concurrent writes of batch operations which span more than one {@code BatchWriteItem} request. At most
+     * {@code maxConcurrentBatches} batches are written at once across all batch operations performed by this template.
+     * @param batchWriteExecutor - executor on which batches are written
+     * @param maxConcurrentBatches - maximum number of batches written concurrently by this template
+     */
+    public void configureParallelBatchWrite(final ExecutorService batchWriteExecutor, final int maxConcurrentBatches) {
+        batchWriteParallelExecutor = new BoundedParallelExecutor(batchWriteExecutor, maxConcurrentBatches);
+    }
+
+    /**
+     * Enables concurrent maintenance of unique constraint index entries, so that the entries for an item with several
+     * unique constraints are created, and on failure deleted again, in a single round of requests. At most
+     * {@code maxConcurrentRequests} index requests are made at once across all items written by this template.
+     * @param uniqueConstraintExecutor - executor on which index requests are made
+     * @param maxConcurrentRequests - maximum number of index requests made concurrently by this template
+     */
+    public void configureParallelUniqueConstraints(final ExecutorService uniqueConstraintExecutor,
+            final int maxConcurrentRequests) {
+        uniqueConstraintParallelExecutor = new BoundedParallelExecutor(uniqueConstraintExecutor,
+                maxConcurrentRequests);
+    }
+
+    /**
+     * Reserves the next block of keys in the background, for sequences configured with a block size greater than one,
+     * once fewer keys than the sequence's refill watermark remain in the current block.
+     * @param sequenceRefillExecutor - executor on which blocks of keys are reserved
+     */
+    public void configureAsyncSequenceRefill(final ExecutorService sequenceRefillExecutor) {
+        if (sequenceRefillExecutor == null) {
+            throw new IllegalArgumentException("Executor must not be null");
+        }
+        for (final SequenceBlockAllocator sequenceBlockAllocator : sequenceBlockAllocators.values()) {
+            sequenceBlockAllocator.configureRefillExecutor(sequenceRefillExecutor);
+        }
+    }
+
+    /**
+     * Performs a scan, in parallel segments if configured. The segment scan is given the segment number and total
+     * number of segments, both {@code null} for a single sequential scan of the whole table.
+     */
+    protected final <R> List<R> scan(final BiFunction<Integer, Integer, List<R>> segmentScan) {
+        final ParallelScan parallelScan = this.parallelScan;
+        if (parallelScan == null || parallelScan.segments == 1) {
+            return segmentScan.apply(null, null);
+        }
+        final BoundedParallelExecutor parallelExecutor = parallelScan.executor;
+        final int totalSegments = parallelScan.segments;
+        final List<Supplier<List<R>>> segmentScans = new ArrayList<>();
+        for (int segment = 0; segment < totalSegments; segment++) {
+            final Integer thisSegment = segment;
+            segmentScans.add(() -> segmentScan.apply(thisSegment, totalSegments));
+        }
+        final List<R> results = new ArrayList<>();
+        for (final List<R> segmentResults : parallelExecutor.invokeAll(segmentScans, "parallel DynamoDb Scan")) {
+            results.addAll(segmentResults);
+        }
+        return results;
+    }
+
+    /**
+     * Reads the items with the given keys using {@code BatchGetItem}, in the order of the keys. Keys with no item are
+     * omitted from the result.
+     */
+    protected final List<Map<String, AttributeValue>> batchGet(final String tableName,
+            final List<Map<String, AttributeValue>> keys) {
+        return new DynamoDbBatchReader(amazonDynamoDbClient, batchReadParallelExecutor, ExponentialBackoff.DEFAULT)
+                .batchGet(tableName, keys);
+    }
+
+    /**
+     * Applies the write requests to the table using {@code BatchWriteItem}
+     * @return For each write request in turn, {@code null} if it was applied, otherwise the reason it was not
+     */
+    protected final List<PersistenceResourceFailureException> batchWriteRequests(final String tableName,
+            final List<WriteRequest> writeRequests, final boolean failFast) {
+        return new DynamoDbBatchWriter(amazonDynamoDbClient, batchWriteParallelExecutor, ExponentialBackoff.DEFAULT)
+                .batchWrite(tableName, writeRequests, failFast);
+    }
+
+    protected final Map<String, AttributeValue> generateKey(final ItemId itemId,
+            final ItemConfiguration itemConfiguration) {
+        final PrimaryKeyDefinition primaryKeyDefinition = itemConfiguration.primaryKeyDefinition();
+        final AttributeValue keyValue = new AttributeValue();
+        final ScalarAttributeType keyAttributeType = getAttributeType(primaryKeyDefinition.propertyType());
+        switch (keyAttributeType) {
+            case N:
+                keyValue.withN(itemId.value());
+                break;
+            default:
+                keyValue.withS(itemId.value());
+                break;
+        }
+        final Map<String, AttributeValue> key = new HashMap<>();
+        key.put(primaryKeyDefinition.propertyName(), keyValue);
+
+        final AttributeValue supportingKeyValue = new AttributeValue();
+        if (CompoundPrimaryKeyDefinition.class.isAssignableFrom(primaryKeyDefinition.getClass())) {
+            final CompoundPrimaryKeyDefinition compoundPrimaryKeyDefinition = (CompoundPrimaryKeyDefinition) primaryKeyDefinition;
+            final ScalarAttributeType supportingKeyAttributeType = getAttributeType(
+                    compoundPrimaryKeyDefinition.propertyType());
+            switch (supportingKeyAttributeType) {
+                case N:
+                    supportingKeyValue.withN(itemId.supportingValue());
+                    break;
+                default:
+                    supportingKeyValue.withS(itemId.supportingValue());
+                    break;
+            }
+            key.put(compoundPrimaryKeyDefinition.supportingPropertyName(), supportingKeyValue);
+        }
+        return key;
+    }
+
+    /**
+     * Generates keys by atomically adding to the current value of the sequence. Sequences configured with a block size
+     * greater than one serve requests for fewer keys than the block size from a locally reserved block.
+     */
     @Override
     public GeneratedKeyHolder generateKeys(final SequenceKeyGenerator sequenceKeyGenerator) {
         final String sequenceName = sequenceKeyGenerator.sequenceName();
         if (!sequenceConfigurations.contains(sequenceName)) {
             throw new IllegalStateException("Unsupported sequence: " + sequenceName);
         }
+        final int keyCount = sequenceKeyGenerator.keyCount();
+        final SequenceBlockAllocator sequenceBlockAllocator = sequenceBlockAllocators.get(sequenceName);
+        if (sequenceBlockAllocator != null && keyCount < sequenceBlockAllocator.blockSize()) {
+            return new GeneratedKeyHolder(sequenceBlockAllocator.allocate(keyCount));
+        }
+        final long lastKey = reserveSequenceKeys(sequenceName, keyCount);
+        final Collection<Long> keys = new ArrayList<>();
+        for (long i = lastKey - keyCount; i < lastKey; i++) {
+            keys.add(i + 1);
+        }
+        return new GeneratedKeyHolder(keys);
+    }
+
+    /**
+     * @return the last of the reserved keys, which run consecutively
+     */
+    private long reserveSequenceKeys(final String sequenceName, final long keyCount) {
         final Map<String, AttributeValue> key = new HashMap<>();
         key.put(SEQUENCE_NAME_ATTRIBUTE, new AttributeValue(sequenceName));
         final AttributeValueUpdate attributeValueUpdate = new AttributeValueUpdate().withAction("ADD").withValue(
-                new AttributeValue().withN(String.valueOf(sequenceKeyGenerator.keyCount())));
+                new AttributeValue().withN(String.valueOf(keyCount)));
         final Map<String, AttributeValueUpdate> attributeUpdates = new HashMap<>();
         attributeUpdates.put(SEQUENCE_CURRENT_VALUE_ATTRIBUTE, attributeValueUpdate);
         final String tableName = databaseSchemaHolder.schemaName() + "-" + SEQUENCE_TABLE_NAME;
@@ -95,12 +278,7 @@ public abstract class AbstractDynamoDbTemplate extends AbstractDatabaseTemplate
         }
         final Map<String, AttributeValue> attributes = updateItemResult.getAttributes();
         final AttributeValue currentAttributeValue = attributes.get(SEQUENCE_CURRENT_VALUE_ATTRIBUTE);
-        final Long currentValue = Long.valueOf(currentAttributeValue.getN());
-        final Collection<Long> keys = new ArrayList<>();
-        for (long i = currentValue - sequenceKeyGenerator.keyCount(); i < currentValue; i++) {
-            keys.add(i + 1);
-        }
-        return new GeneratedKeyHolder(keys);
+        return Long.parseLong(currentAttributeValue.getN());
     }
 
     protected final ItemConfiguration getItemConfiguration(final Class<? extends Item> itemClass) {
@@ -128,56 +306,69 @@ public abstract class AbstractDynamoDbTemplate extends AbstractDatabaseTemplate
         return createUniqueConstraintIndexes(item, itemConfiguration, constraintPropertyDescriptors(itemConfiguration));
     }
 
+    /**
+     * Creates the index entries for the given unique constraints of an item, concurrently if configured. If any entry
+     * cannot be created, the entries which were created are deleted again before the failure is thrown.
+     * @return Property descriptors of the constraints for which an index entry was created
+     */
     protected final <T extends Item> Collection<PropertyDescriptor> createUniqueConstraintIndexes(final T item,
             final ItemConfiguration itemConfiguration,
             final Collection<PropertyDescriptor> constraintPropertyDescriptors) {
-        final Set<PropertyDescriptor> createdConstraintPropertyDescriptors = new HashSet<>();
-        ItemConstraintViolationException itemConstraintViolationException = null;
+        final Set<PropertyDescriptor> createdConstraintPropertyDescriptors = ConcurrentHashMap.newKeySet();
+        final AtomicBoolean failed = new AtomicBoolean();
+        final String indexTableName = indexTableName(itemConfiguration);
+        final List<Supplier<RuntimeException>> indexCreations = new ArrayList<>();
         for (final UniqueConstraint uniqueConstraint : itemConfiguration.uniqueConstraints()) {
             final String uniqueConstraintPropertyName = uniqueConstraint.propertyName();
             final PropertyDescriptor uniqueConstraintPropertyDescriptor = uniqueConstraint.propertyDescriptor();
             if (constraintPropertyDescriptors.contains(uniqueConstraintPropertyDescriptor)) {
-                final AttributeValue uniqueConstraintAttributeValue = DynamoDbPropertyMarshaller.getValue(item,
-                        uniqueConstraintPropertyDescriptor);
-                if (uniqueConstraintAttributeValue == null) {
+                final Map<String, AttributeValue> attributeMap = uniqueConstraintIndexKey(item, itemConfiguration,
+                        uniqueConstraint);
+                if (attributeMap == null) {
                     continue;
                 }
-                if (uniqueConstraintAttributeValue.getS() != null) {
-                    uniqueConstraintAttributeValue.setS(uniqueConstraintAttributeValue.getS().toUpperCase());
-                }
-                final Map<String, AttributeValue> attributeMap = new HashMap<>();
-                attributeMap.put("property", new AttributeValue(uniqueConstraintPropertyName));
-                attributeMap.put("value", uniqueConstraintAttributeValue);
                 final Map<String, ExpectedAttributeValue> expectedResults = new HashMap<>();
                 expectedResults.put("value", new ExpectedAttributeValue(false));
-                final String indexTableName = databaseSchemaHolder.schemaName() + "-indexes."
-                        + itemConfiguration.tableName();
                 final PutItemRequest itemRequest = new PutItemRequest().withTableName(indexTableName)
                         .withItem(attributeMap).withExpected(expectedResults);
-                try {
-                    amazonDynamoDbClient.putItem(itemRequest);
-                    createdConstraintPropertyDescriptors.add(uniqueConstraintPropertyDescriptor);
-                } catch (final ConditionalCheckFailedException e) {
-                    itemConstraintViolationException = new ItemConstraintViolationException(
-                            uniqueConstraintPropertyName, "Unique constraint violation on property '"
-                                    + uniqueConstraintPropertyName + "' ('" + uniqueConstraintAttributeValue
-                                    + "') of item " + item.getClass());
-                    break;
-                } catch (final AmazonServiceException e) {
-                    throw new PersistenceResourceFailureException(
-                            "Failure while attempting DynamoDb put (creating unique constraint index entry)", e);
-                }
+                indexCreations.add(() -> {
+                    if (failed.get()) {
+                        return null;
+                    }
+                    try {
+                        amazonDynamoDbClient.putItem(itemRequest);
+                        createdConstraintPropertyDescriptors.add(uniqueConstraintPropertyDescriptor);
+                        return null;
+                    } catch (final ConditionalCheckFailedException e) {
+                        failed.set(true);
+                        return new ItemConstraintViolationException(uniqueConstraintPropertyName,
+                                "Unique constraint violation on property '" + uniqueConstraintPropertyName + "' ('"
+                                        + attributeMap.get("value") + "') of item " + item.getClass());
+                    } catch (final AmazonServiceException e) {
+                        failed.set(true);
+                        return new PersistenceResourceFailureException(
+                                "Failure while attempting DynamoDb put (creating unique constraint index entry)", e);
+                    }
+                });
+            }
+        }
+        RuntimeException indexCreationException = null;
+        for (final RuntimeException exception : invokeUniqueConstraintRequests(indexCreations,
+                "DynamoDb put (creating unique constraint index entries)")) {
+            if (exception != null) {
+                indexCreationException = exception;
+                break;
             }
         }
-        if (itemConstraintViolationException != null) {
+        if (indexCreationException != null) {
             try {
                 deleteUniqueConstraintIndexes(item, itemConfiguration, createdConstraintPropertyDescriptors);
             } catch (final Exception e) {
                 logger.error(e.getMessage(), e);
             }
-            throw itemConstraintViolationException;
+            throw indexCreationException;
         }
-        return createdConstraintPropertyDescriptors;
+        return new HashSet<>(createdConstraintPropertyDescriptors);
     }
 
     protected final <T extends Item> void deleteUniqueConstraintIndexes(final T item,
@@ -192,31 +383,82 @@ public abstract class AbstractDynamoDbTemplate extends AbstractDatabaseTemplate
         if (constraintPropertyDescriptors.isEmpty()) {
             return;
         }
+        final String indexTableName = indexTableName(itemConfiguration);
+        final List<Supplier<Void>> indexDeletions = new ArrayList<>();
         for (final UniqueConstraint uniqueConstraint : itemConfiguration.uniqueConstraints()) {
-            final String uniqueConstraintPropertyName = uniqueConstraint.propertyName();
-            final PropertyDescriptor uniqueConstraintPropertyDescriptor = uniqueConstraint.propertyDescriptor();
-            if (constraintPropertyDescriptors.contains(uniqueConstraintPropertyDescriptor)) {
-                final AttributeValue uniqueConstraintAttributeValue = DynamoDbPropertyMarshaller.getValue(item,
-                        uniqueConstraintPropertyDescriptor);
-                if (uniqueConstraintAttributeValue != null) {
-                    if (uniqueConstraintAttributeValue.getS() != null) {
-                        uniqueConstraintAttributeValue.setS(uniqueConstraintAttributeValue.getS().toUpperCase());
-                    }
-                    final Map<String, AttributeValue> key = new HashMap<>();
-                    key.put("property", new AttributeValue(uniqueConstraintPropertyName));
-                    key.put("value", uniqueConstraintAttributeValue);
-                    final String indexTableName = databaseSchemaHolder.schemaName() + "-indexes."
-                            + itemConfiguration.tableName();
+            if (constraintPropertyDescriptors.contains(uniqueConstraint.propertyDescriptor())) {
+                final Map<String, AttributeValue> key = uniqueConstraintIndexKey(item, itemConfiguration,
+                        uniqueConstraint);
+                if (key != null) {
                     final DeleteItemRequest itemRequest = new DeleteItemRequest().withTableName(indexTableName)
                             .withKey(key);
-                    try {
-                        amazonDynamoDbClient.deleteItem(itemRequest);
-                    } catch (final AmazonServiceException e) {
-                        throw new PersistenceResourceFailureException(
-                                "Failed while attempting to perform DynamoDb Delete (for unique constraints)", e);
-                    }
+                    indexDeletions.add(() -> {
+                        try {
+                            amazonDynamoDbClient.deleteItem(itemRequest);
+                        } catch (final AmazonServiceException e) {
+                            throw new PersistenceResourceFailureException(
+                                    "Failed while attempting to perform DynamoDb Delete (for unique constraints)", e);
+                        }
+                        return null;
+                    });
                 }
             }
         }
+        invokeUniqueConstraintRequests(indexDeletions, "DynamoDb Delete (for unique constraints)");
+    }
+
+    private String indexTableName(final ItemConfiguration itemConfiguration) {
+        return databaseSchemaHolder.schemaName() + "-indexes." + itemConfiguration.tableName();
+    }
+
+    /**
+     * @return Key of the index entry for the unique constraint of the item, or {@code null} if the item has no value
+     *         for the constrained property
+     */
+    private <T extends Item> Map<String, AttributeValue> uniqueConstraintIndexKey(final T item,
+            final ItemConfiguration itemConfiguration, final UniqueConstraint uniqueConstraint) {
+        final String uniqueConstraintPropertyName = uniqueConstraint.propertyName();
+        final AttributeValue uniqueConstraintAttributeValue = DynamoDbItemCodecRegistry.codecFor(itemConfiguration)
+                .propertyCodec(uniqueConstraintPropertyName).getValue(item);
+        if (uniqueConstraintAttributeValue == null) {
+            return null;
+        }
+        if (uniqueConstraintAttributeValue.getS() != null) {
+            uniqueConstraintAttributeValue.setS(uniqueConstraintAttributeValue.getS().toUpperCase());
+        }
+        final Map<String, AttributeValue> key = new HashMap<>();
+        key.put("property", new AttributeValue(uniqueConstraintPropertyName));
+        key.put("value", uniqueConstraintAttributeValue);
+        return key;
+    }
+
+    /**
+     * Runs unique constraint index requests concurrently if configured, otherwise one after another in order
+     */
+    private <R> List<R> invokeUniqueConstraintRequests(final List<Supplier<R>> requests, final String description) {
+        final BoundedParallelExecutor parallelExecutor = uniqueConstraintParallelExecutor;
+        if (parallelExecutor == null || requests.size() < 2) {
+            final List<R> results = new ArrayList<>();
+            for (final Supplier<R> request : requests) {
+                results.add(request.get());
+            }
+            return results;
+        }
+        return parallelExecutor.invokeAll(requests, description);
+    }
+
+    /**
+     * Executor and segment count of a parallel scan, replaced together so that a scan never sees a mix of two
+     * configurations
+     */
+    private static final class ParallelScan {
+
+        private final BoundedParallelExecutor executor;
+        private final int segments;
+
+        private ParallelScan(final BoundedParallelExecutor executor, final int segments) {
+            this.executor = executor;
+            this.segments = segments;
+        }
     }
 }
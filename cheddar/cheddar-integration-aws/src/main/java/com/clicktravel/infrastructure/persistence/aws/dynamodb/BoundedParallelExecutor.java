@@ -0,0 +1,197 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.dynamodb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceResourceFailureException;
+
+/**
+ * Runs groups of DynamoDB requests on an executor, with a cap on how many run at once across all groups. Results are
+ * returned in task order. Once a task fails, or the caller is interrupted, tasks which have not yet started are
+ * cancelled, running tasks are interrupted and awaited, and only then is the failure rethrown to the caller.
+ */
+final class BoundedParallelExecutor {
+
+    private final ExecutorService executorService;
+    private final Semaphore permits;
+
+    BoundedParallelExecutor(final ExecutorService executorService, final int maxConcurrentTasks) {
+        if (executorService == null) {
+            throw new IllegalArgumentException("Executor must not be null");
+        }
+        if (maxConcurrentTasks < 1) {
+            throw new IllegalArgumentException("Maximum concurrent tasks must be positive");
+        }
+        this.executorService = executorService;
+        permits = new Semaphore(maxConcurrentTasks);
+    }
+
+    <R> List<R> invokeAll(final List<Supplier<R>> tasks, final String description) {
+        final Invocation invocation = new Invocation();
+        final CompletionService<R> completionService = new ExecutorCompletionService<>(executorService);
+        final List<BoundedTask<R>> boundedTasks = new ArrayList<>();
+        boolean completed = false;
+        try {
+            for (final Supplier<R> task : tasks) {
+                permits.acquire();
+                if (invocation.hasFailed()) {
+                    permits.release();
+                    break;
+                }
+                final BoundedTask<R> boundedTask = new BoundedTask<>(task, invocation);
+                try {
+                    boundedTask.future = completionService.submit(boundedTask);
+                } catch (final RejectedExecutionException e) {
+                    permits.release();
+                    throw e;
+                }
+                boundedTasks.add(boundedTask);
+            }
+            // Wait in completion order, so a failure is seen as soon as it happens
+            for (int completions = 0; completions < boundedTasks.size(); completions++) {
+                completionService.take().get();
+            }
+            final List<R> results = new ArrayList<>();
+            for (final BoundedTask<R> boundedTask : boundedTasks) {
+                results.add(boundedTask.future.get());
+            }
+            completed = true;
+            return results;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceResourceFailureException("Interrupted during " + description, e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new PersistenceResourceFailureException("Failure during " + description, e.getCause());
+        } finally {
+            if (!completed) {
+                cancelAndAwait(boundedTasks, invocation);
+            }
+        }
+    }
+
+    /**
+     * @return number of tasks which may currently start, across all invocations
+     */
+    int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    private <R> void cancelAndAwait(final List<BoundedTask<R>> boundedTasks, final Invocation invocation) {
+        for (final BoundedTask<R> boundedTask : boundedTasks) {
+            if (boundedTask.claim()) {
+                // Task will never run, so release its permit here
+                boundedTask.future.cancel(false);
+                permits.release();
+            } else {
+                boundedTask.future.cancel(true);
+            }
+        }
+        invocation.awaitNoneRunning();
+    }
+
+    /**
+     * A task which is claimed exactly once, either by the worker thread which runs it or by the caller cancelling it
+     * before it has started
+     */
+    private final class BoundedTask<R> implements Callable<R> {
+
+        private final Supplier<R> task;
+        private final Invocation invocation;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private Future<R> future;
+
+        private BoundedTask(final Supplier<R> task, final Invocation invocation) {
+            this.task = task;
+            this.invocation = invocation;
+        }
+
+        private boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        @Override
+        public R call() {
+            // Counted as running before claiming, so a caller which fails to claim this task waits for it
+            invocation.started();
+            try {
+                if (!claim()) {
+                    return null;
+                }
+                try {
+                    // A claimed task holds a permit, which is released even if the task is skipped
+                    if (invocation.hasFailed()) {
+                        return null;
+                    }
+                    return task.get();
+                } catch (final RuntimeException | Error e) {
+                    // Recorded before the permit is released, so the caller submits no further tasks
+                    invocation.failed();
+                    throw e;
+                } finally {
+                    permits.release();
+                }
+            } finally {
+                invocation.finished();
+            }
+        }
+    }
+
+    private static final class Invocation {
+
+        private volatile boolean failed;
+        private int runningTasks;
+
+        private boolean hasFailed() {
+            return failed;
+        }
+
+        private void failed() {
+            failed = true;
+        }
+
+        private synchronized void started() {
+            runningTasks++;
+        }
+
+        private synchronized void finished() {
+            runningTasks--;
+            notifyAll();
+        }
+
+        private synchronized void awaitNoneRunning() {
+            boolean interrupted = false;
+            while (runningTasks > 0) {
+                try {
+                    wait();
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.dynamodb;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.Map.Entry;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceResourceFailureException;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Converts between application items and DynamoDB document API items using the given Jackson mapper, without printing
+ * or parsing JSON text. Items are serialised into a Jackson token buffer, whose tokens are read straight into the
+ * attribute map of a document item. Document items are read back by writing their attributes as tokens and
+ * deserialising from those tokens. The mapper's configuration, including default typing, applies exactly as it would
+ * to JSON text, and the stored attributes are the same as those produced via {@link Item#fromJSON(String)}.
+ */
+final class DocumentItemConverter {
+
+    private final ObjectMapper mapper;
+
+    DocumentItemConverter(final ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    @SuppressWarnings("unchecked")
+    Item toDocument(final Object item) {
+        final TokenBuffer tokenBuffer = new TokenBuffer(mapper, false);
+        try {
+            mapper.writeValue(tokenBuffer, item);
+            try (final JsonParser parser = tokenBuffer.asParser()) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new PersistenceResourceFailureException("Item does not serialise to an object", null);
+                }
+                return Item.fromMap((Map<String, Object>) readValue(parser));
+            }
+        } catch (final IOException e) {
+            throw new PersistenceResourceFailureException("Failure converting item to document", e);
+        }
+    }
+
+    <T> T fromDocument(final Item document, final Class<T> valueType) {
+        final TokenBuffer tokenBuffer = new TokenBuffer(mapper, false);
+        try {
+            writeValue(tokenBuffer, document.asMap());
+            try (final JsonParser parser = tokenBuffer.asParser()) {
+                return mapper.readValue(parser, valueType);
+            }
+        } catch (final IOException e) {
+            throw new PersistenceResourceFailureException("Failure converting document to item", e);
+        }
+    }
+
+    private Object readValue(final JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case START_OBJECT:
+                final Map<String, Object> map = new LinkedHashMap<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String fieldName = parser.getCurrentName();
+                    parser.nextToken();
+                    map.put(fieldName, readValue(parser));
+                }
+                return map;
+            case START_ARRAY:
+                final List<Object> list = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    list.add(readValue(parser));
+                }
+                return list;
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            case VALUE_EMBEDDED_OBJECT:
+                // JSON text would carry binary values as base64 strings
+                final Object embeddedObject = parser.getEmbeddedObject();
+                if (embeddedObject instanceof byte[]) {
+                    return Base64Variants.getDefaultVariant().encode((byte[]) embeddedObject);
+                }
+                return embeddedObject == null ? null : embeddedObject.toString();
+            default:
+                throw new IllegalStateException("Unexpected token: " + parser.getCurrentToken());
+        }
+    }
+
+    private void writeValue(final JsonGenerator generator, final Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof Map) {
+            generator.writeStartObject();
+            for (final Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                generator.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+        } else if (value instanceof Collection) {
+            generator.writeStartArray();
+            for (final Object element : (Collection<?>) value) {
+                writeValue(generator, element);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof BigDecimal) {
+            writeNumber(generator, (BigDecimal) value);
+        } else if (value instanceof Number) {
+            writeNumber(generator, new BigDecimal(value.toString()));
+        } else if (value instanceof byte[]) {
+            generator.writeBinary((byte[]) value);
+        } else {
+            throw new IllegalStateException("Unsupported document attribute value: " + value.getClass());
+        }
+    }
+
+    /**
+     * Writes whole numbers as integers, as they would be read from JSON text
+     */
+    private void writeNumber(final JsonGenerator generator, final BigDecimal value) throws IOException {
+        if (value.scale() > 0) {
+            generator.writeNumber(value);
+            return;
+        }
+        final BigInteger integerValue = value.toBigInteger();
+        if (integerValue.bitLength() < 32) {
+            generator.writeNumber(integerValue.intValue());
+        } else if (integerValue.bitLength() < 64) {
+            generator.writeNumber(integerValue.longValue());
+        } else {
+            generator.writeNumber(integerValue);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.dynamodb;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.Supplier;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceResourceFailureException;
+
+/**
+ * Reads items by key using {@code BatchGetItem}. Keys are de-duplicated and split into batches of at most 100, which
+ * are read concurrently when a parallel executor is supplied. Keys left unprocessed by DynamoDB are retried with
+ * exponential backoff. Items are returned in the order of their keys; keys with no item are omitted.
+ */
+final class DynamoDbBatchReader {
+
+    static final int MAX_BATCH_GET_KEYS = 100;
+
+    private final AmazonDynamoDB amazonDynamoDbClient;
+    private final BoundedParallelExecutor parallelExecutor;
+    private final ExponentialBackoff backoff;
+
+    /**
+     * @param parallelExecutor - executor for concurrent batches, or {@code null} to read batches one at a time
+     */
+    DynamoDbBatchReader(final AmazonDynamoDB amazonDynamoDbClient, final BoundedParallelExecutor parallelExecutor,
+            final ExponentialBackoff backoff) {
+        this.amazonDynamoDbClient = amazonDynamoDbClient;
+        this.parallelExecutor = parallelExecutor;
+        this.backoff = backoff;
+    }
+
+    List<Map<String, AttributeValue>> batchGet(final String tableName, final List<Map<String, AttributeValue>> keys) {
+        final Map<List<String>, Map<String, AttributeValue>> uniqueKeys = new LinkedHashMap<>();
+        for (final Map<String, AttributeValue> key : keys) {
+            uniqueKeys.putIfAbsent(keyIdentity(key, key.keySet()), key);
+        }
+        if (uniqueKeys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final List<Map<String, AttributeValue>> orderedKeys = new ArrayList<>(uniqueKeys.values());
+        final List<Supplier<List<Map<String, AttributeValue>>>> batches = new ArrayList<>();
+        for (int offset = 0; offset < orderedKeys.size(); offset += MAX_BATCH_GET_KEYS) {
+            final List<Map<String, AttributeValue>> batchKeys = orderedKeys.subList(offset,
+                    Math.min(orderedKeys.size(), offset + MAX_BATCH_GET_KEYS));
+            batches.add(() -> batchGetWithRetry(tableName, batchKeys));
+        }
+        final List<List<Map<String, AttributeValue>>> batchResults;
+        if (parallelExecutor == null || batches.size() == 1) {
+            batchResults = new ArrayList<>();
+            for (final Supplier<List<Map<String, AttributeValue>>> batch : batches) {
+                batchResults.add(batch.get());
+            }
+        } else {
+            batchResults = parallelExecutor.invokeAll(batches, "parallel DynamoDb Batch Get Item (" + tableName + ")");
+        }
+
+        final Set<String> keyAttributeNames = orderedKeys.get(0).keySet();
+        final Map<List<String>, Map<String, AttributeValue>> itemsByKey = new HashMap<>();
+        for (final List<Map<String, AttributeValue>> batchResult : batchResults) {
+            for (final Map<String, AttributeValue> itemAttributeMap : batchResult) {
+                itemsByKey.put(keyIdentity(itemAttributeMap, keyAttributeNames), itemAttributeMap);
+            }
+        }
+        final List<Map<String, AttributeValue>> itemAttributeMaps = new ArrayList<>();
+        for (final List<String> keyIdentity : uniqueKeys.keySet()) {
+            final Map<String, AttributeValue> itemAttributeMap = itemsByKey.get(keyIdentity);
+            if (itemAttributeMap != null) {
+                itemAttributeMaps.add(itemAttributeMap);
+            }
+        }
+        return itemAttributeMaps;
+    }
+
+    private List<Map<String, AttributeValue>> batchGetWithRetry(final String tableName,
+            final List<Map<String, AttributeValue>> keys) {
+        final List<Map<String, AttributeValue>> itemAttributeMaps = new ArrayList<>();
+        Map<String, KeysAndAttributes> requestItems = Collections.singletonMap(tableName,
+                new KeysAndAttributes().withKeys(keys));
+        int attempt = 0;
+        while (true) {
+            final BatchGetItemResult batchGetItemResult;
+            try {
+                batchGetItemResult = amazonDynamoDbClient
+                        .batchGetItem(new BatchGetItemRequest().withRequestItems(requestItems));
+            } catch (final AmazonServiceException e) {
+                throw new PersistenceResourceFailureException(
+                        "Failure while attempting DynamoDb Batch Get Item (" + tableName + ")", e);
+            }
+            final List<Map<String, AttributeValue>> responses = batchGetItemResult.getResponses() == null ? null
+                    : batchGetItemResult.getResponses().get(tableName);
+            if (responses != null) {
+                itemAttributeMaps.addAll(responses);
+            }
+            final Map<String, KeysAndAttributes> unprocessedKeys = batchGetItemResult.getUnprocessedKeys();
+            if (unprocessedKeys == null || unprocessedKeys.isEmpty()) {
+                return itemAttributeMaps;
+            }
+            attempt++;
+            if (attempt >= backoff.maxAttempts()) {
+                throw new PersistenceResourceFailureException("Keys still unprocessed after " + attempt
+                        + " attempts of DynamoDb Batch Get Item (" + tableName + ")", null);
+            }
+            backoff.pause(attempt);
+            requestItems = unprocessedKeys;
+        }
+    }
+
+    /**
+     * Identity of a key, independent of the formatting of numeric values, for matching returned items to their keys
+     */
+    private static List<String> keyIdentity(final Map<String, AttributeValue> attributeMap,
+            final Set<String> keyAttributeNames) {
+        final List<String> keyIdentity = new ArrayList<>();
+        for (final String keyAttributeName : new TreeSet<>(keyAttributeNames)) {
+            final AttributeValue attributeValue = attributeMap.get(keyAttributeName);
+            keyIdentity.add(keyAttributeName);
+            if (attributeValue == null) {
+                keyIdentity.add(null);
+            } else if (attributeValue.getN() != null) {
+                keyIdentity.add("N" + new BigDecimal(attributeValue.getN()).stripTrailingZeros().toPlainString());
+            } else if (attributeValue.getB() != null) {
+                keyIdentity.add("B" + Base64.getEncoder().encodeToString(bytes(attributeValue)));
+            } else {
+                keyIdentity.add("S" + attributeValue.getS());
+            }
+        }
+        return keyIdentity;
+    }
+
+    private static byte[] bytes(final AttributeValue attributeValue) {
+        final ByteBuffer byteBuffer = attributeValue.getB().duplicate();
+        final byte[] bytes = new byte[byteBuffer.remaining()];
+        byteBuffer.get(bytes);
+        return bytes;
+    }
+}
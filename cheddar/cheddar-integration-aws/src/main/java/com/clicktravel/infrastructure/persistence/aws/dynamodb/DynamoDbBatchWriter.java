@@ -0,0 +1,190 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.dynamodb;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceResourceFailureException;
+
+/**
+ * Applies write requests to a single table using {@code BatchWriteItem}. Requests are split into batches of at most 25,
+ * which are written concurrently when a parallel executor is supplied. Requests left unprocessed by DynamoDB are
+ * retried with exponential backoff, and any still unprocessed when the attempts run out are reported as failed.
+ */
+final class DynamoDbBatchWriter {
+
+    static final int MAX_BATCH_WRITE_ITEMS = 25;
+
+    private final AmazonDynamoDB amazonDynamoDbClient;
+    private final BoundedParallelExecutor parallelExecutor;
+    private final ExponentialBackoff backoff;
+
+    /**
+     * @param parallelExecutor - executor for concurrent batches, or {@code null} to write batches one at a time
+     */
+    DynamoDbBatchWriter(final AmazonDynamoDB amazonDynamoDbClient, final BoundedParallelExecutor parallelExecutor,
+            final ExponentialBackoff backoff) {
+        this.amazonDynamoDbClient = amazonDynamoDbClient;
+        this.parallelExecutor = parallelExecutor;
+        this.backoff = backoff;
+    }
+
+    /**
+     * @param tableName - table to which all write requests apply
+     * @param writeRequests - write requests, each for a different item
+     * @param failFast - if {@code true}, once a request is rejected by DynamoDB no further requests are made, and the
+     *            requests not yet applied are reported as failed. Requests applied before the rejection are still
+     *            reported as applied. The rejection is given by {@link #rejection(List)}.
+     * @return For each write request in turn, {@code null} if it was applied, otherwise the reason it was not
+     */
+    List<PersistenceResourceFailureException> batchWrite(final String tableName,
+            final List<WriteRequest> writeRequests, final boolean failFast) {
+        final AtomicReference<PersistenceResourceFailureException> rejection = failFast ? new AtomicReference<>()
+                : null;
+        final List<Supplier<List<PersistenceResourceFailureException>>> batches = new ArrayList<>();
+        for (int offset = 0; offset < writeRequests.size(); offset += MAX_BATCH_WRITE_ITEMS) {
+            final List<WriteRequest> batchWriteRequests = writeRequests.subList(offset,
+                    Math.min(writeRequests.size(), offset + MAX_BATCH_WRITE_ITEMS));
+            batches.add(() -> batchWriteWithRetry(tableName, batchWriteRequests, rejection));
+        }
+        final List<List<PersistenceResourceFailureException>> batchResults;
+        if (parallelExecutor == null || batches.size() <= 1) {
+            batchResults = new ArrayList<>();
+            for (final Supplier<List<PersistenceResourceFailureException>> batch : batches) {
+                batchResults.add(batch.get());
+            }
+        } else {
+            batchResults = parallelExecutor.invokeAll(batches,
+                    "parallel DynamoDb Batch Write Item (" + tableName + ")");
+        }
+        final List<PersistenceResourceFailureException> failures = new ArrayList<>();
+        for (final List<PersistenceResourceFailureException> batchResult : batchResults) {
+            failures.addAll(batchResult);
+        }
+        return failures;
+    }
+
+    /**
+     * @param failures - failures reported by {@link #batchWrite(String, List, boolean)}
+     * @return The first failure caused by DynamoDB rejecting a request, or {@code null} if there is none
+     */
+    static PersistenceResourceFailureException rejection(final List<PersistenceResourceFailureException> failures) {
+        for (final PersistenceResourceFailureException failure : failures) {
+            if (failure != null && failure.getCause() instanceof AmazonServiceException) {
+                return failure;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param rejection - holds the first rejection of any batch when failing fast, otherwise {@code null}
+     */
+    private List<PersistenceResourceFailureException> batchWriteWithRetry(final String tableName,
+            final List<WriteRequest> writeRequests,
+            final AtomicReference<PersistenceResourceFailureException> rejection) {
+        final PersistenceResourceFailureException[] failures = new PersistenceResourceFailureException[writeRequests
+                .size()];
+        List<WriteRequest> pendingWriteRequests = writeRequests;
+        List<Integer> pendingPositions = new ArrayList<>();
+        for (int position = 0; position < writeRequests.size(); position++) {
+            pendingPositions.add(position);
+        }
+        int attempt = 0;
+        while (true) {
+            if (rejection != null && rejection.get() != null) {
+                fail(pendingPositions, new PersistenceResourceFailureException(
+                        "Not written as Dynamo DB batch write was rejected (" + tableName + ")", rejection.get()),
+                        failures);
+                break;
+            }
+            final BatchWriteItemResult batchWriteItemResult;
+            try {
+                batchWriteItemResult = amazonDynamoDbClient.batchWriteItem(new BatchWriteItemRequest()
+                        .withRequestItems(Collections.singletonMap(tableName, pendingWriteRequests)));
+            } catch (final AmazonServiceException e) {
+                final PersistenceResourceFailureException failure = new PersistenceResourceFailureException(
+                        "Failed to do Dynamo DB batch write (" + tableName + ")", e);
+                if (rejection != null) {
+                    rejection.compareAndSet(null, failure);
+                }
+                fail(pendingPositions, failure, failures);
+                break;
+            }
+            if (batchWriteItemResult == null) {
+                fail(pendingPositions, new PersistenceResourceFailureException(
+                        "No result from Dynamo DB batch write (" + tableName + ")", null), failures);
+                break;
+            }
+            final List<WriteRequest> unprocessedWriteRequests = batchWriteItemResult.getUnprocessedItems() == null
+                    ? null : batchWriteItemResult.getUnprocessedItems().get(tableName);
+            if (unprocessedWriteRequests == null || unprocessedWriteRequests.isEmpty()) {
+                break;
+            }
+            final List<WriteRequest> matchedWriteRequests = new ArrayList<>();
+            final List<Integer> matchedPositions = new ArrayList<>();
+            matchPositions(unprocessedWriteRequests, pendingWriteRequests, pendingPositions, matchedWriteRequests,
+                    matchedPositions);
+            attempt++;
+            if (attempt >= backoff.maxAttempts()) {
+                fail(matchedPositions, new PersistenceResourceFailureException("Item still unprocessed after "
+                        + attempt + " attempts of Dynamo DB batch write (" + tableName + ")", null), failures);
+                break;
+            }
+            backoff.pause(attempt);
+            pendingWriteRequests = matchedWriteRequests;
+            pendingPositions = matchedPositions;
+        }
+        return Arrays.asList(failures);
+    }
+
+    /**
+     * Finds the position of each unprocessed write request among the pending write requests. DynamoDB returns
+     * unprocessed requests as equal but not identical objects, so equal pending requests are matched to unprocessed
+     * requests one position at a time, keeping duplicate requests distinct.
+     */
+    private void matchPositions(final List<WriteRequest> unprocessedWriteRequests,
+            final List<WriteRequest> pendingWriteRequests, final List<Integer> pendingPositions,
+            final List<WriteRequest> matchedWriteRequests, final List<Integer> matchedPositions) {
+        final Map<WriteRequest, Deque<Integer>> positionsByWriteRequest = new HashMap<>();
+        for (int index = 0; index < pendingWriteRequests.size(); index++) {
+            positionsByWriteRequest.computeIfAbsent(pendingWriteRequests.get(index), k -> new ArrayDeque<>())
+                    .add(pendingPositions.get(index));
+        }
+        for (final WriteRequest unprocessedWriteRequest : unprocessedWriteRequests) {
+            final Deque<Integer> positions = positionsByWriteRequest.get(unprocessedWriteRequest);
+            if (positions != null && !positions.isEmpty()) {
+                matchedWriteRequests.add(unprocessedWriteRequest);
+                matchedPositions.add(positions.poll());
+            }
+        }
+    }
+
+    private void fail(final List<Integer> positions, final PersistenceResourceFailureException failure,
+            final PersistenceResourceFailureException[] failures) {
+        for (final Integer position : positions) {
+            failures[position] = failure;
+        }
+    }
+}
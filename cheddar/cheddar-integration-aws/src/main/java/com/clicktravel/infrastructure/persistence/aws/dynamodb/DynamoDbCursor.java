@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.dynamodb;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Converts between a DynamoDB last evaluated key and the opaque cursor handed to callers of a paged fetch. Key
+ * attributes are always scalar, so only string, number and binary values are supported.
+ */
+final class DynamoDbCursor {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Map<String, String>>> CURSOR_TYPE = new CursorType();
+
+    private DynamoDbCursor() {
+    }
+
+    static String encode(final Map<String, AttributeValue> lastEvaluatedKey) {
+        if (lastEvaluatedKey == null || lastEvaluatedKey.isEmpty()) {
+            return null;
+        }
+        final Map<String, Map<String, String>> cursorKey = new HashMap<>();
+        for (final Entry<String, AttributeValue> entry : lastEvaluatedKey.entrySet()) {
+            final AttributeValue attributeValue = entry.getValue();
+            final Map<String, String> typedValue = new HashMap<>();
+            if (attributeValue.getS() != null) {
+                typedValue.put("S", attributeValue.getS());
+            } else if (attributeValue.getN() != null) {
+                typedValue.put("N", attributeValue.getN());
+            } else if (attributeValue.getB() != null) {
+                final ByteBuffer bytes = attributeValue.getB().duplicate();
+                final byte[] byteArray = new byte[bytes.remaining()];
+                bytes.get(byteArray);
+                typedValue.put("B", Base64.getEncoder().encodeToString(byteArray));
+            } else {
+                throw new IllegalStateException("Unsupported key attribute: " + entry.getKey());
+            }
+            cursorKey.put(entry.getKey(), typedValue);
+        }
+        try {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(MAPPER.writeValueAsString(cursorKey).getBytes(StandardCharsets.UTF_8));
+        } catch (final Exception e) {
+            throw new IllegalStateException("Could not encode cursor", e);
+        }
+    }
+
+    static Map<String, AttributeValue> decode(final String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        final Map<String, Map<String, String>> cursorKey;
+        try {
+            cursorKey = MAPPER.readValue(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8),
+                    CURSOR_TYPE);
+        } catch (final Exception e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+        final Map<String, AttributeValue> lastEvaluatedKey = new HashMap<>();
+        for (final Entry<String, Map<String, String>> entry : cursorKey.entrySet()) {
+            final Map<String, String> typedValue = entry.getValue();
+            final AttributeValue attributeValue = new AttributeValue();
+            if (typedValue.containsKey("S")) {
+                attributeValue.setS(typedValue.get("S"));
+            } else if (typedValue.containsKey("N")) {
+                attributeValue.setN(typedValue.get("N"));
+            } else if (typedValue.containsKey("B")) {
+                attributeValue.setB(ByteBuffer.wrap(Base64.getDecoder().decode(typedValue.get("B"))));
+            } else {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            lastEvaluatedKey.put(entry.getKey(), attributeValue);
+        }
+        return lastEvaluatedKey;
+    }
+
+    private static class CursorType extends TypeReference<Map<String, Map<String, String>>> {
+    }
+}
@@ -16,8 +16,6 @@
  */
 package com.clicktravel.infrastructure.persistence.aws.dynamodb;
 
-import static com.amazonaws.services.dynamodbv2.datamodeling.DynamoDbPropertyMarshaller.getAttributeType;
-
 import java.beans.PropertyDescriptor;
 import java.util.*;
 import java.util.Map.Entry;
@@ -26,16 +24,25 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDbItemCodec;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDbItemCodecRegistry;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDbPropertyCodec;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDbPropertyMarshaller;
 import com.amazonaws.services.dynamodbv2.model.*;
 import com.clicktravel.cheddar.infrastructure.persistence.database.BatchDatabaseTemplate;
+import com.clicktravel.cheddar.infrastructure.persistence.database.BatchItemFailure;
+import com.clicktravel.cheddar.infrastructure.persistence.database.BatchWriteResult;
+import com.clicktravel.cheddar.infrastructure.persistence.database.FetchResult;
 import com.clicktravel.cheddar.infrastructure.persistence.database.Item;
 import com.clicktravel.cheddar.infrastructure.persistence.database.ItemId;
+import com.clicktravel.cheddar.infrastructure.persistence.database.ItemPage;
+import com.clicktravel.cheddar.infrastructure.persistence.database.KeyOffsetItemPageLoader;
 import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.*;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.ItemConstraintViolationException;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.NonExistentItemException;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.OptimisticLockException;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.handler.PersistenceExceptionHandler;
+import com.clicktravel.cheddar.infrastructure.persistence.database.options.FetchOptions;
 import com.clicktravel.cheddar.infrastructure.persistence.database.query.*;
 import com.clicktravel.cheddar.infrastructure.persistence.database.query.Condition;
 import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceResourceFailureException;
@@ -44,6 +51,7 @@ import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceR
 public class DynamoDbTemplate extends AbstractDynamoDbTemplate implements BatchDatabaseTemplate {
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final ItemAttributeSnapshots itemAttributeSnapshots = new ItemAttributeSnapshots();
 
     public DynamoDbTemplate(final DatabaseSchemaHolder databaseSchemaHolder) {
         super(databaseSchemaHolder);
@@ -54,6 +62,7 @@ public class DynamoDbTemplate extends AbstractDynamoDbTemplate implements BatchD
         final Map<String, AttributeValue> attributeMap = readRaw(itemId, itemClass);
         try {
             final T item = marshallIntoObject(itemClass, attributeMap);
+            itemAttributeSnapshots.put(item, attributeMap);
             return item;
         } catch (final ItemClassDiscriminatorMismatchException e) {
             throw new NonExistentItemException(
@@ -92,39 +101,6 @@ public class DynamoDbTemplate extends AbstractDynamoDbTemplate implements BatchD
         }
     }
 
-    private Map<String, AttributeValue> generateKey(final ItemId itemId, final ItemConfiguration itemConfiguration) {
-        final PrimaryKeyDefinition primaryKeyDefinition = itemConfiguration.primaryKeyDefinition();
-        final AttributeValue keyValue = new AttributeValue();
-        final ScalarAttributeType keyAttributeType = getAttributeType(primaryKeyDefinition.propertyType());
-        switch (keyAttributeType) {
-            case N:
-                keyValue.withN(itemId.value());
-                break;
-            default:
-                keyValue.withS(itemId.value());
-                break;
-        }
-        final Map<String, AttributeValue> key = new HashMap<>();
-        key.put(primaryKeyDefinition.propertyName(), keyValue);
-
-        final AttributeValue supportingKeyValue = new AttributeValue();
-        if (CompoundPrimaryKeyDefinition.class.isAssignableFrom(primaryKeyDefinition.getClass())) {
-            final CompoundPrimaryKeyDefinition compoundPrimaryKeyDefinition = (CompoundPrimaryKeyDefinition) primaryKeyDefinition;
-            final ScalarAttributeType supportingKeyAttributeType = getAttributeType(
-                    compoundPrimaryKeyDefinition.propertyType());
-            switch (supportingKeyAttributeType) {
-                case N:
-                    supportingKeyValue.withN(itemId.supportingValue());
-                    break;
-                default:
-                    supportingKeyValue.withS(itemId.supportingValue());
-                    break;
-            }
-            key.put(compoundPrimaryKeyDefinition.supportingPropertyName(), supportingKeyValue);
-        }
-        return key;
-    }
-
     private <T extends Item> T marshallIntoObject(final Class<T> itemClass,
             final Map<String, AttributeValue> itemAttributeMap) throws ItemClassDiscriminatorMismatchException {
         ItemConfiguration itemConfiguration = getItemConfiguration(itemClass);
@@ -147,9 +123,10 @@ public class DynamoDbTemplate extends AbstractDynamoDbTemplate implements BatchD
         }
         try {
             final T item = actualItemClass.newInstance();
-            for (final PropertyDescriptor propertyDescriptor : itemConfiguration.propertyDescriptors()) {
-                final AttributeValue attributeValue = itemAttributeMap.get(propertyDescriptor.getName());
-                DynamoDbPropertyMarshaller.setValue(item, propertyDescriptor, attributeValue);
+            final DynamoDbItemCodec itemCodec = DynamoDbItemCodecRegistry.codecFor(itemConfiguration);
+            for (final DynamoDbPropertyCodec propertyCodec : itemCodec.propertyCodecs()) {
+                final AttributeValue attributeValue = itemAttributeMap.get(propertyCodec.propertyName());
+                propertyCodec.setValue(item, attributeValue);
             }
             return item;
         } catch (final Exception e) {
@@ -163,6 +140,7 @@ public class DynamoDbTemplate extends AbstractDynamoDbTemplate implements BatchD
         for (final Map<String, AttributeValue> itemAttributeMap : itemAttributeMaps) {
             try {
                 final T item = marshallIntoObject(itemClass, itemAttributeMap);
+                itemAttributeSnapshots.put(item, itemAttributeMap);
                 items.add(item);
             } catch (final ItemClassDiscriminatorMismatchException e) {
                 logger.debug("Rejecting item due to incorrect child class type");
@@ -204,18 +182,20 @@ public class DynamoDbTemplate extends AbstractDynamoDbTemplate implements BatchD
             }
         }
         item.setVersion(1l);
+        itemAttributeSnapshots.put(item, attributeMap);
         return item;
     }
 
     private Map<String, AttributeValue> getAttributeMap(final Item item, final ItemConfiguration itemConfiguration,
             final Long version) {
         final Map<String, AttributeValue> attributeMap = new HashMap<>();
-        for (final PropertyDescriptor propertyDescriptor : itemConfiguration.propertyDescriptors()) {
-            final String propertyName = propertyDescriptor.getName();
+        final DynamoDbItemCodec itemCodec = DynamoDbItemCodecRegistry.codecFor(itemConfiguration);
+        for (final DynamoDbPropertyCodec propertyCodec : itemCodec.propertyCodecs()) {
+            final String propertyName = propertyCodec.propertyName();
             if (propertyName.equals(VERSION_ATTRIBUTE)) {
                 attributeMap.put(propertyName, new AttributeValue().withN(String.valueOf(version)));
-            } else if (propertyDescriptor.getWriteMethod() != null) {
-                final AttributeValue attributeValue = DynamoDbPropertyMarshaller.getValue(item, propertyDescriptor);
+            } else if (propertyCodec.isWritable()) {
+                final AttributeValue attributeValue = propertyCodec.getValue(item);
                 if (attributeMap != null) {
                     attributeMap.put(propertyName, attributeValue);
                 }
@@ -229,34 +209,46 @@ public class DynamoDbTemplate extends AbstractDynamoDbTemplate implements BatchD
         return attributeMap;
     }
 
-    private Map<String, AttributeValueUpdate> getAttributeUpdateMap(final Item item,
-            final ItemConfiguration itemConfiguration, final Long version) {
-        final Map<String, AttributeValueUpdate> attributeMap = new HashMap<>();
-        for (final PropertyDescriptor propertyDescriptor : itemConfiguration.propertyDescriptors()) {
-            final String propertyName = propertyDescriptor.getName();
-            if (propertyName.equals(VERSION_ATTRIBUTE)) {
-                attributeMap.put(propertyName, new AttributeValueUpdate().withAction(AttributeAction.PUT)
-                        .withValue(new AttributeValue().withN(String.valueOf(version))));
-            } else if (propertyDescriptor.getWriteMethod() != null) {
-                final AttributeValue attributeValue = DynamoDbPropertyMarshaller.getValue(item, propertyDescriptor);
-                if (attributeMap != null) {
-                    // TODO Only add to attribute map if there is a difference
-                    if (attributeValue != null) {
-                        attributeMap.put(propertyName,
-                                new AttributeValueUpdate().withAction(AttributeAction.PUT).withValue(attributeValue));
-                    } else {
-                        attributeMap.put(propertyName, new AttributeValueUpdate().withAction(AttributeAction.DELETE));
-                    }
-                }
+    /**
+     * Creates the attribute updates which bring the stored item to the given attributes. If the previously stored
+     * attributes are known, only those attributes which have changed are included, along with the version.
+     * @param attributeMap - all attributes of the updated item
+     * @param previousAttributeMap - the attributes of the item as stored, or {@code null} if not known
+     */
+    private Map<String, AttributeValueUpdate> getAttributeUpdateMap(final Map<String, AttributeValue> attributeMap,
+            final Map<String, AttributeValue> previousAttributeMap) {
+        final Map<String, AttributeValueUpdate> attributeUpdateMap = new HashMap<>();
+        for (final Entry<String, AttributeValue> entry : attributeMap.entrySet()) {
+            final String attributeName = entry.getKey();
+            final AttributeValue attributeValue = entry.getValue();
+            if (previousAttributeMap != null && !attributeName.equals(VERSION_ATTRIBUTE)
+                    && Objects.equals(attributeValue, previousAttributeMap.get(attributeName))) {
+                continue;
+            }
+            if (attributeValue != null) {
+                attributeUpdateMap.put(attributeName,
+                        new AttributeValueUpdate().withAction(AttributeAction.PUT).withValue(attributeValue));
+            } else {
+                attributeUpdateMap.put(attributeName, new AttributeValueUpdate().withAction(AttributeAction.DELETE));
             }
         }
-        if (VariantItemConfiguration.class.isAssignableFrom(itemConfiguration.getClass())) {
-            final VariantItemConfiguration variantItemConfiguration = (VariantItemConfiguration) itemConfiguration;
-            attributeMap.put(variantItemConfiguration.parentItemConfiguration().discriminator(),
-                    new AttributeValueUpdate().withAction(AttributeAction.PUT)
-                            .withValue(new AttributeValue(variantItemConfiguration.discriminatorValue())));
+        return attributeUpdateMap;
+    }
+
+    /**
+     * @return The attributes of the item as last read or written by this template, or {@code null} if they are not
+     *         known for the item's current version
+     */
+    private Map<String, AttributeValue> previousAttributeMap(final Item item) {
+        final Map<String, AttributeValue> previousAttributeMap = itemAttributeSnapshots.get(item);
+        if (previousAttributeMap == null) {
+            return null;
         }
-        return attributeMap;
+        final AttributeValue previousVersion = previousAttributeMap.get(VERSION_ATTRIBUTE);
+        if (previousVersion == null || !String.valueOf(item.getVersion()).equals(previousVersion.getN())) {
+            return null;
+        }
+        return previousAttributeMap;
     }
 
     @Override
@@ -266,21 +258,36 @@ public class DynamoDbTemplate extends AbstractDynamoDbTemplate implements BatchD
         if (item.getVersion() == null) {
             return create(item);
         }
+        final long newVersion = item.getVersion() + 1;
+        final Map<String, AttributeValue> itemAttributeMap = getAttributeMap(item, itemConfiguration, newVersion);
+        final Map<String, AttributeValue> previousAttributeMap = previousAttributeMap(item);
         final Collection<PropertyDescriptor> updatedUniqueConstraintPropertyDescriptors = new HashSet<>();
         T previousItem = null;
         if (!itemConfiguration.uniqueConstraints().isEmpty()) {
-            final ItemId itemId = itemConfiguration.getItemId(item);
-            previousItem = readWithOnlyUniqueConstraintProperties(itemId, itemConfiguration);
-            final Collection<UniqueConstraint> updatedUniqueConstraints = getUpdatedUniqueConstraints(item,
-                    previousItem, itemConfiguration);
-            for (final UniqueConstraint uniqueConstraint : updatedUniqueConstraints) {
-                updatedUniqueConstraintPropertyDescriptors.add(uniqueConstraint.propertyDescriptor());
+            if (previousAttributeMap == null) {
+                final ItemId itemId = itemConfiguration.getItemId(item);
+                previousItem = readWithOnlyUniqueConstraintProperties(itemId, itemConfiguration);
+                final Collection<UniqueConstraint> updatedUniqueConstraints = getUpdatedUniqueConstraints(item,
+                        previousItem, itemConfiguration);
+                for (final UniqueConstraint uniqueConstraint : updatedUniqueConstraints) {
+                    updatedUniqueConstraintPropertyDescriptors.add(uniqueConstraint.propertyDescriptor());
+                }
+            } else {
+                for (final UniqueConstraint uniqueConstraint : itemConfiguration.uniqueConstraints()) {
+                    final String propertyName = uniqueConstraint.propertyName();
+                    if (isUniqueConstraintValueChanged(previousAttributeMap.get(propertyName),
+                            itemAttributeMap.get(propertyName))) {
+                        updatedUniqueConstraintPropertyDescriptors.add(uniqueConstraint.propertyDescriptor());
+                    }
+                }
+                if (!updatedUniqueConstraintPropertyDescriptors.isEmpty()) {
+                    previousItem = previousItem(item, previousAttributeMap);
+                }
             }
             createUniqueConstraintIndexes(item, itemConfiguration, updatedUniqueConstraintPropertyDescriptors);
         }
-        final long newVersion = item.getVersion() + 1;
-        final Map<String, AttributeValueUpdate> attributeMap = getAttributeUpdateMap(item, itemConfiguration,
-                newVersion);
+        final Map<String, AttributeValueUpdate> attributeMap = getAttributeUpdateMap(itemAttributeMap,
+                previousAttributeMap);
         final Map<String, ExpectedAttributeValue> expectedResults = new HashMap<>();
         expectedResults.put(VERSION_ATTRIBUTE,
                 new ExpectedAttributeValue(new AttributeValue().withN(String.valueOf(item.getVersion()))));
@@ -312,9 +319,19 @@ public class DynamoDbTemplate extends AbstractDynamoDbTemplate implements BatchD
         }
         deleteUniqueConstraintIndexes(previousItem, itemConfiguration, updatedUniqueConstraintPropertyDescriptors);
         item.setVersion(newVersion);
+        itemAttributeSnapshots.put(item, itemAttributeMap);
         return item;
     }
 
+    @SuppressWarnings("unchecked")
+    private <T extends Item> T previousItem(final T item, final Map<String, AttributeValue> previousAttributeMap) {
+        try {
+            return marshallIntoObject((Class<T>) item.getClass(), previousAttributeMap);
+        } catch (final ItemClassDiscriminatorMismatchException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private <T extends Item> T readWithOnlyUniqueConstraintProperties(final ItemId itemId,
             final ItemConfiguration itemConfiguration) {
@@ -357,7 +374,7 @@ public class DynamoDbTemplate extends AbstractDynamoDbTemplate implements BatchD
                 final AttributeValue previousAttributeValue = previousItemAttributeMap.get(propertyName);
                 final AttributeValue updatedAttributeValue = updateItemAttributeMap.get(propertyName);
                 if (previousAttributeValue == null || updatedAttributeValue == null
-                        || !previousAttributeValue.getS().equalsIgnoreCase(updatedAttributeValue.getS())) {
+                        || isUniqueConstraintValueChanged(previousAttributeValue, updatedAttributeValue)) {
                     updatedUniqueConstraints.add(uniqueConstraint);
                 }
             }
@@ -365,6 +382,20 @@ public class DynamoDbTemplate extends AbstractDynamoDbTemplate implements BatchD
         return updatedUniqueConstraints;
     }
 
+    /**
+     * Unique constraint index values are stored uppercased, so a change of case alone does not change the index entry
+     */
+    private boolean isUniqueConstraintValueChanged(final AttributeValue previousAttributeValue,
+            final AttributeValue updatedAttributeValue) {
+        if (previousAttributeValue == null || updatedAttributeValue == null) {
+            return previousAttributeValue != updatedAttributeValue;
+        }
+        if (previousAttributeValue.getS() != null && updatedAttributeValue.getS() != null) {
+            return !previousAttributeValue.getS().equalsIgnoreCase(updatedAttributeValue.getS());
+        }
+        return !previousAttributeValue.equals(updatedAttributeValue);
+    }
+
     private Collection<String> getUpdateProperties(final Map<String, AttributeValue> previousItemAttributeMap,
             final Map<String, AttributeValue> newItemAttributeMap) {
         final Collection<String> updatedProperties = new ArrayList<>();
@@ -412,6 +443,7 @@ public class DynamoDbTemplate extends AbstractDynamoDbTemplate implements BatchD
                     "Failure while attempting DynamoDb Delete (" + tableName + "):", e);
         }
 
+        itemAttributeSnapshots.remove(item);
         deleteUniqueConstraintIndexes(item, itemConfiguration);
     }
 
@@ -431,6 +463,23 @@ public class DynamoDbTemplate extends AbstractDynamoDbTemplate implements BatchD
         return result;
     }
 
+    @Override
+    public <T extends Item> FetchResult<T> fetch(final Query query, final Class<T> itemClass,
+            final FetchOptions fetchOptions) {
+        if (query instanceof AttributeQuery) {
+            final AttributeQuery attributeQuery = (AttributeQuery) query;
+            return new FetchResult<>((cursor, maxItems) -> executeQuery(attributeQuery, itemClass, cursor, maxItems),
+                    fetchOptions);
+        } else if (query instanceof KeySetQuery) {
+            final List<ItemId> itemIds = new ArrayList<>(((KeySetQuery) query).itemIds());
+            return new FetchResult<>(new KeyOffsetItemPageLoader<>(itemIds,
+                    pageItemIds -> executeQuery(new KeySetQuery(pageItemIds), itemClass),
+                    DynamoDbBatchReader.MAX_BATCH_GET_KEYS), fetchOptions);
+        } else {
+            throw new UnsupportedQueryException(query.getClass());
+        }
+    }
+
     private <T extends Item> Collection<T> executeQuery(final AttributeQuery query, final Class<T> itemClass) {
         final ItemConfiguration itemConfiguration = getItemConfiguration(itemClass);
 
@@ -438,188 +487,183 @@ public class DynamoDbTemplate extends AbstractDynamoDbTemplate implements BatchD
             return new ArrayList<>();
         }
 
-        final Map<String, com.amazonaws.services.dynamodbv2.model.Condition> conditions;
-        try {
-            conditions = createDynamoDbConditionsMap(query, itemConfiguration);
-        } catch (final Exception e) {
-            throw new PersistenceResourceFailureException("Failure while attempting DynamoDb Query (" + query + ")", e);
+        final Map<String, com.amazonaws.services.dynamodbv2.model.Condition> conditions = dynamoDbConditions(query,
+                itemConfiguration);
+        if (itemConfiguration.hasIndexForQuery(query)) {
+            return executeQuerySegment(query, itemClass, itemConfiguration, conditions, null, null);
         }
+        return scan((segment, totalSegments) -> executeQuerySegment(query, itemClass, itemConfiguration, conditions,
+                segment, totalSegments));
+    }
 
+    private <T extends Item> List<T> executeQuerySegment(final AttributeQuery query, final Class<T> itemClass,
+            final ItemConfiguration itemConfiguration,
+            final Map<String, com.amazonaws.services.dynamodbv2.model.Condition> conditions, final Integer segment,
+            final Integer totalSegments) {
         final List<T> totalItems = new ArrayList<>();
         Map<String, AttributeValue> lastEvaluatedKey = null;
+        do {
+            final AttributeMapPage attributeMapPage = executeQueryPage(query, itemConfiguration, conditions,
+                    lastEvaluatedKey, null, segment, totalSegments);
+            totalItems.addAll(marshallIntoObjects(itemClass, attributeMapPage.itemAttributeMaps));
+            lastEvaluatedKey = attributeMapPage.lastEvaluatedKey;
+        } while (lastEvaluatedKey != null);
+
+        return totalItems;
+    }
+
+    private <T extends Item> ItemPage<T> executeQuery(final AttributeQuery query, final Class<T> itemClass,
+            final String cursor, final Integer maxItems) {
+        final ItemConfiguration itemConfiguration = getItemConfiguration(itemClass);
+
+        if (query.getCondition().hasMissingComparisonValues()) {
+            return new ItemPage<>(new ArrayList<T>(), null);
+        }
+
+        final AttributeMapPage attributeMapPage = executeQueryPage(query, itemConfiguration,
+                dynamoDbConditions(query, itemConfiguration), DynamoDbCursor.decode(cursor), maxItems, null, null);
+        return new ItemPage<>(new ArrayList<>(marshallIntoObjects(itemClass, attributeMapPage.itemAttributeMaps)),
+                DynamoDbCursor.encode(attributeMapPage.lastEvaluatedKey));
+    }
+
+    private AttributeMapPage executeQueryPage(final AttributeQuery query, final ItemConfiguration itemConfiguration,
+            final Map<String, com.amazonaws.services.dynamodbv2.model.Condition> conditions,
+            final Map<String, AttributeValue> exclusiveStartKey, final Integer maxItems, final Integer segment,
+            final Integer totalSegments) {
         final String tableName = databaseSchemaHolder.schemaName() + "." + itemConfiguration.tableName();
         if (itemConfiguration.hasIndexForQuery(query)) {
-            do {
-                final String queryAttributeName = query.getAttributeName();
-                final QueryRequest queryRequest = new QueryRequest().withTableName(tableName)
-                        .withKeyConditions(conditions).withExclusiveStartKey(lastEvaluatedKey);
-                if (isQueryOnIndex(query, itemConfiguration, queryAttributeName)) {
-                    final String indexName = itemConfiguration.indexNameForQuery(query);
-                    queryRequest.withIndexName(indexName);
-                }
-
-                final QueryResult queryResult;
-                try {
-                    queryResult = amazonDynamoDbClient.query(queryRequest);
-                } catch (final AmazonServiceException e) {
-                    throw new PersistenceResourceFailureException(
-                            "Failure while attempting DynamoDb Query (" + tableName + ")", e);
-                }
-                totalItems.addAll(marshallIntoObjects(itemClass, queryResult.getItems()));
-                lastEvaluatedKey = queryResult.getLastEvaluatedKey();
-            } while (lastEvaluatedKey != null);
+            final String queryAttributeName = query.getAttributeName();
+            final QueryRequest queryRequest = new QueryRequest().withTableName(tableName)
+                    .withKeyConditions(conditions).withExclusiveStartKey(exclusiveStartKey).withLimit(maxItems);
+            if (isQueryOnIndex(query, itemConfiguration, queryAttributeName)) {
+                final String indexName = itemConfiguration.indexNameForQuery(query);
+                queryRequest.withIndexName(indexName);
+            }
 
+            final QueryResult queryResult;
+            try {
+                queryResult = amazonDynamoDbClient.query(queryRequest);
+            } catch (final AmazonServiceException e) {
+                throw new PersistenceResourceFailureException(
+                        "Failure while attempting DynamoDb Query (" + tableName + ")", e);
+            }
+            return new AttributeMapPage(queryResult.getItems(), queryResult.getLastEvaluatedKey());
         } else {
-            logger.debug("Performing table scan with query: " + query);
-            do {
-                final ScanRequest scanRequest = new ScanRequest().withTableName(tableName).withScanFilter(conditions)
-                        .withExclusiveStartKey(lastEvaluatedKey);
-                final ScanResult scanResult;
-                try {
-                    scanResult = amazonDynamoDbClient.scan(scanRequest);
-                } catch (final AmazonServiceException e) {
-                    throw new PersistenceResourceFailureException(
-                            "Failure while attempting DynamoDb Scan (" + tableName + ")", e);
-                }
-                totalItems.addAll(marshallIntoObjects(itemClass, scanResult.getItems()));
-                lastEvaluatedKey = scanResult.getLastEvaluatedKey();
-            } while (lastEvaluatedKey != null);
+            if (exclusiveStartKey == null) {
+                logger.debug("Performing table scan with query: " + query);
+            }
+            final ScanRequest scanRequest = new ScanRequest().withTableName(tableName).withScanFilter(conditions)
+                    .withExclusiveStartKey(exclusiveStartKey).withLimit(maxItems).withSegment(segment)
+                    .withTotalSegments(totalSegments);
+            final ScanResult scanResult;
+            try {
+                scanResult = amazonDynamoDbClient.scan(scanRequest);
+            } catch (final AmazonServiceException e) {
+                throw new PersistenceResourceFailureException(
+                        "Failure while attempting DynamoDb Scan (" + tableName + ")", e);
+            }
+            return new AttributeMapPage(scanResult.getItems(), scanResult.getLastEvaluatedKey());
         }
-
-        return totalItems;
     }
 
     public <T extends Item> Collection<T> executeQuery(final KeySetQuery query, final Class<T> itemClass) {
         final ItemConfiguration itemConfiguration = getItemConfiguration(itemClass);
-        final Collection<Map<String, AttributeValue>> keys = new ArrayList<>();
-        if (query.itemIds().size() == 0) {
-            return new ArrayList<>();
-        }
-        final PrimaryKeyDefinition primaryKeyDefinition = itemConfiguration.primaryKeyDefinition();
+        final List<Map<String, AttributeValue>> keys = new ArrayList<>();
         for (final ItemId itemId : query.itemIds()) {
-            final Map<String, AttributeValue> key = new HashMap<>();
-            key.put(primaryKeyDefinition.propertyName(), new AttributeValue(itemId.value()));
-            if (CompoundPrimaryKeyDefinition.class.isAssignableFrom(primaryKeyDefinition.getClass())) {
-                final CompoundPrimaryKeyDefinition compoundPrimaryKeyDefinition = (CompoundPrimaryKeyDefinition) primaryKeyDefinition;
-                key.put(compoundPrimaryKeyDefinition.supportingPropertyName(),
-                        new AttributeValue(itemId.supportingValue()));
-            }
-            keys.add(key);
+            keys.add(generateKey(itemId, itemConfiguration));
         }
-        final Map<String, KeysAndAttributes> requestItems = new HashMap<>();
-        final KeysAndAttributes keysAndAttributes = new KeysAndAttributes();
-        keysAndAttributes.setKeys(keys);
         final String tableName = databaseSchemaHolder.schemaName() + "." + itemConfiguration.tableName();
-        requestItems.put(tableName, keysAndAttributes);
-        final BatchGetItemRequest batchGetItemRequest = new BatchGetItemRequest().withRequestItems(requestItems);
-        final BatchGetItemResult batchGetItemResult;
-        try {
-            batchGetItemResult = amazonDynamoDbClient.batchGetItem(batchGetItemRequest);
-        } catch (final AmazonServiceException e) {
-            throw new PersistenceResourceFailureException(
-                    "Failure while attempting DynamoDb Batch Get Item (" + tableName + ")", e);
-        }
-        final List<Map<String, AttributeValue>> itemAttributeMaps = batchGetItemResult.getResponses().get(tableName);
-        return marshallIntoObjects(itemClass, itemAttributeMaps);
+        return marshallIntoObjects(itemClass, batchGet(tableName, keys));
     }
 
     /**
-     * Turns the items into DynamoDb PutRequests to allow them to be batch written. These are then bound inside a
-     * BatchWriteItemRequest which allows us to batch write them into DynamoDB. Any requests in the batch that fail to
-     * write are removed from the results, then each successfully written Property has it's version set accordingly.
-     * Maps are used to keep track of which versions belong to which items, and also a map to keep track of which
-     * PutRequest object relates to which Item, so we can remove unsuccessful writes. This will throw an
-     * IllegalArgumentException if the item being batch written has unique constraints. This method does not implement
-     * row-level locking, you will need to implement your own locking to ensure consistency is achieved.
+     * Batch writes the items using {@code BatchWriteItem} requests of up to 25 items, retrying any items which DynamoDB
+     * leaves unprocessed. Items still unprocessed once the retries are exhausted are removed from the results, and each
+     * successfully written item has its version set accordingly. A request rejected by DynamoDB fails the whole
+     * operation with a PersistenceResourceFailureException, and no further requests are made. The operation is not
+     * atomic, so items in batches written before the rejection remain written, and have their versions set, even
+     * though the exception is thrown. This will throw an IllegalArgumentException if the item being batch written has
+     * unique constraints. This method does not implement row-level locking, you will need to implement your own
+     * locking to ensure consistency is achieved.
      */
     @Override
     public <T extends Item> List<T> batchWrite(final List<T> items, final Class<T> itemClass)
             throws IllegalArgumentException, PersistenceResourceFailureException {
-        final ItemConfiguration itemConfiguration = getItemConfiguration(itemClass);
-        final List<T> itemsWritten = new ArrayList<>();
-        final Map<T, Long> itemVersions = new HashMap<>();
-        final Map<String, List<WriteRequest>> requestItems = new HashMap<>();
-        final Map<PutRequest, T> itemPutRequests = new HashMap<>();
+        return batchPut(items, itemClass, true).getSucceededItems();
+    }
 
+    @Override
+    public <T extends Item> BatchWriteResult<T> batchPut(final List<T> items, final Class<T> itemClass) {
+        return batchPut(items, itemClass, false);
+    }
+
+    private <T extends Item> BatchWriteResult<T> batchPut(final List<T> items, final Class<T> itemClass,
+            final boolean failFast) {
+        final ItemConfiguration itemConfiguration = getItemConfiguration(itemClass);
         if (!itemConfiguration.uniqueConstraints().isEmpty()) {
             throw new IllegalArgumentException("Cannot perform batch write for item of type" + itemClass);
         }
-
-        createRequestItems(itemConfiguration, itemVersions, requestItems, items, itemPutRequests);
-
-        final BatchWriteItemRequest itemRequest = new BatchWriteItemRequest().withRequestItems(requestItems);
-
-        try {
-            final BatchWriteItemResult itemResult = amazonDynamoDbClient.batchWriteItem(itemRequest);
-            removeUnprocessedItems(itemsWritten, itemVersions, itemPutRequests, itemResult);
-        } catch (final AmazonServiceException amazonServiceException) {
-            throw new PersistenceResourceFailureException(
-                    "Failed to do Dynamo DB batch write (" + itemConfiguration.tableName() + ")",
-                    amazonServiceException);
+        final List<Long> itemVersions = new ArrayList<>();
+        final List<Map<String, AttributeValue>> attributeMaps = new ArrayList<>();
+        final List<WriteRequest> writeRequests = new ArrayList<>();
+        for (final T item : items) {
+            final long newVersion = item.getVersion() != null ? item.getVersion() + 1 : 1l;
+            final Map<String, AttributeValue> attributeMap = getAttributeMap(item, itemConfiguration, newVersion);
+            itemVersions.add(newVersion);
+            attributeMaps.add(attributeMap);
+            writeRequests.add(new WriteRequest().withPutRequest(new PutRequest().withItem(attributeMap)));
         }
-
-        // any items that were successfully processed will need their versions setting.
-        for (final T item : itemsWritten) {
-            item.setVersion(itemVersions.get(item));
+        final String tableName = databaseSchemaHolder.schemaName() + "." + itemConfiguration.tableName();
+        final List<PersistenceResourceFailureException> itemFailures = batchWriteRequests(tableName, writeRequests,
+                failFast);
+        for (int position = 0; position < items.size(); position++) {
+            if (itemFailures.get(position) == null) {
+                items.get(position).setVersion(itemVersions.get(position));
+                itemAttributeSnapshots.put(items.get(position), attributeMaps.get(position));
+            }
         }
-
-        return itemsWritten;
+        if (failFast) {
+            final PersistenceResourceFailureException rejection = DynamoDbBatchWriter.rejection(itemFailures);
+            if (rejection != null) {
+                throw rejection;
+            }
+        }
+        return batchWriteResult(items, itemFailures);
     }
 
     /**
-     * This method removes items which did not process in the batch write. The results of the batch write tell us which
-     * PutRequests were not processed, and from this we can use our maps to find out which items these belonged to.
-     * These items can then be removed from the results and their versions won't be updated.
-     * @param itemsWritten - the successfully written items
-     * @param itemVersions - the map of version to items, so we know which versions belong to which items
-     * @param itemPutRequests - the map of put requests to items, so we know which put request relates to which item
-     * @param itemResult - the result of the batch write, we use this to get the unprocessed items
+     * Batch deletes the items using {@code BatchWriteItem} requests of up to 25 items, retrying any items which
+     * DynamoDB leaves unprocessed. This will throw an IllegalArgumentException if the item being batch deleted has
+     * unique constraints. This method does not implement optimistic locking.
      */
-    private <T extends Item> void removeUnprocessedItems(final List<T> itemsWritten, final Map<T, Long> itemVersions,
-            final Map<PutRequest, T> itemPutRequests, final BatchWriteItemResult itemResult) {
-        if (itemResult != null && itemResult.getUnprocessedItems() != null) {
-            for (final String tableName : itemResult.getUnprocessedItems().keySet()) {
-                for (final WriteRequest writeRequest : itemResult.getUnprocessedItems().get(tableName)) {
-                    itemVersions.remove(itemPutRequests.get(writeRequest.getPutRequest()));
-                    itemPutRequests.remove(writeRequest.getPutRequest());
-                }
-            }
-
-            itemsWritten.addAll(itemPutRequests.values());
+    @Override
+    public <T extends Item> BatchWriteResult<T> batchDelete(final List<T> items, final Class<T> itemClass) {
+        final ItemConfiguration itemConfiguration = getItemConfiguration(itemClass);
+        if (!itemConfiguration.uniqueConstraints().isEmpty()) {
+            throw new IllegalArgumentException("Cannot perform batch delete for item of type" + itemClass);
         }
-
+        final List<WriteRequest> writeRequests = new ArrayList<>();
+        for (final T item : items) {
+            final Map<String, AttributeValue> key = generateKey(itemConfiguration.getItemId(item), itemConfiguration);
+            writeRequests.add(new WriteRequest().withDeleteRequest(new DeleteRequest().withKey(key)));
+        }
+        final String tableName = databaseSchemaHolder.schemaName() + "." + itemConfiguration.tableName();
+        return batchWriteResult(items, batchWriteRequests(tableName, writeRequests, false));
     }
 
-    /**
-     * Creates the PutRequests to allow us to perform the batch write. Takes a batch of items and creates a bunch of
-     * WriteRequests for the DynamoDB table we're writing to, then attaches PutRequests to these WriteRequests. We keep
-     * a track of the versions and PutRequests for each item so we can process the results afterwards.
-     * @param itemConfiguration - allows us to know which table we're writing to
-     * @param itemVersions - keeps track of which version belongs to which item
-     * @param requestItems - the requests to be written to DynamoDB, map of table name as the key and the WriteRequest
-     *            as the value.
-     * @param batch - the batch of items to be converted into WriteRequests with PutRequests.
-     * @param itemPutRequests - a map to keep track of which PutRequest belongs to which item to allow us to process the
-     *            results.
-     */
-    private <T extends Item> void createRequestItems(final ItemConfiguration itemConfiguration,
-            final Map<T, Long> itemVersions, final Map<String, List<WriteRequest>> requestItems, final List<T> batch,
-            final Map<PutRequest, T> itemPutRequests) {
-        for (final T item : batch) {
-            final long newVersion = item.getVersion() != null ? item.getVersion() + 1 : 1l;
-            final Map<String, AttributeValue> attributeMap = getAttributeMap(item, itemConfiguration, newVersion);
-            final String tableName = databaseSchemaHolder.schemaName() + "." + itemConfiguration.tableName();
-            List<WriteRequest> writeRequestsForTable = requestItems.get(tableName);
-            if (writeRequestsForTable == null) {
-                writeRequestsForTable = new ArrayList<>();
-                requestItems.put(tableName, writeRequestsForTable);
+    private <T extends Item> BatchWriteResult<T> batchWriteResult(final List<T> items,
+            final List<PersistenceResourceFailureException> itemFailures) {
+        final List<T> succeededItems = new ArrayList<>();
+        final List<BatchItemFailure<T>> failures = new ArrayList<>();
+        for (int position = 0; position < items.size(); position++) {
+            final PersistenceResourceFailureException itemFailure = itemFailures.get(position);
+            if (itemFailure == null) {
+                succeededItems.add(items.get(position));
+            } else {
+                failures.add(new BatchItemFailure<>(items.get(position), itemFailure));
             }
-
-            final PutRequest putRequest = new PutRequest().withItem(attributeMap);
-            itemPutRequests.put(putRequest, item);
-            itemVersions.put(item, newVersion);
-            writeRequestsForTable.add(new WriteRequest().withPutRequest(putRequest));
         }
+        return new BatchWriteResult<>(succeededItems, failures);
     }
 
     private boolean isQueryOnIndex(final AttributeQuery query, final ItemConfiguration itemConfiguration,
@@ -628,6 +672,15 @@ public class DynamoDbTemplate extends AbstractDynamoDbTemplate implements BatchD
                 && !(query instanceof CompoundAttributeQuery));
     }
 
+    private Map<String, com.amazonaws.services.dynamodbv2.model.Condition> dynamoDbConditions(
+            final AttributeQuery query, final ItemConfiguration itemConfiguration) {
+        try {
+            return createDynamoDbConditionsMap(query, itemConfiguration);
+        } catch (final Exception e) {
+            throw new PersistenceResourceFailureException("Failure while attempting DynamoDb Query (" + query + ")", e);
+        }
+    }
+
     private <T extends Item> Map<String, com.amazonaws.services.dynamodbv2.model.Condition> createDynamoDbConditionsMap(
             final AttributeQuery query, final ItemConfiguration itemConfiguration) throws Exception {
         final Map<String, com.amazonaws.services.dynamodbv2.model.Condition> conditions = new HashMap<>();
@@ -681,4 +734,16 @@ public class DynamoDbTemplate extends AbstractDynamoDbTemplate implements BatchD
 
         return dynamoDbCondition;
     }
+
+    private static class AttributeMapPage {
+
+        private final List<Map<String, AttributeValue>> itemAttributeMaps;
+        private final Map<String, AttributeValue> lastEvaluatedKey;
+
+        private AttributeMapPage(final List<Map<String, AttributeValue>> itemAttributeMaps,
+                final Map<String, AttributeValue> lastEvaluatedKey) {
+            this.itemAttributeMaps = itemAttributeMaps;
+            this.lastEvaluatedKey = lastEvaluatedKey;
+        }
+    }
 }
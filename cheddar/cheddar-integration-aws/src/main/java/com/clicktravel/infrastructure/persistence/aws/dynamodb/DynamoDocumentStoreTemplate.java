@@ -17,7 +17,6 @@
 package com.clicktravel.infrastructure.persistence.aws.dynamodb;
 
 import java.beans.PropertyDescriptor;
-import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
 
@@ -27,10 +26,15 @@ import org.slf4j.LoggerFactory;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.document.*;
 import com.amazonaws.services.dynamodbv2.document.spec.*;
+import com.amazonaws.services.dynamodbv2.document.utils.NameMap;
 import com.amazonaws.services.dynamodbv2.document.utils.ValueMap;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.clicktravel.cheddar.infrastructure.persistence.database.FetchResult;
 import com.clicktravel.cheddar.infrastructure.persistence.database.Item;
 import com.clicktravel.cheddar.infrastructure.persistence.database.ItemId;
+import com.clicktravel.cheddar.infrastructure.persistence.database.ItemPage;
+import com.clicktravel.cheddar.infrastructure.persistence.database.KeyOffsetItemPageLoader;
 import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.CompoundPrimaryKeyDefinition;
 import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.DatabaseSchemaHolder;
 import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.ItemConfiguration;
@@ -38,15 +42,14 @@ import com.clicktravel.cheddar.infrastructure.persistence.database.configuration
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.NonExistentItemException;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.OptimisticLockException;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.handler.PersistenceExceptionHandler;
+import com.clicktravel.cheddar.infrastructure.persistence.database.options.FetchOptions;
 import com.clicktravel.cheddar.infrastructure.persistence.database.query.*;
 import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceResourceFailureException;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.datatype.joda.JodaModule;
 
 public class DynamoDocumentStoreTemplate extends AbstractDynamoDbTemplate {
@@ -54,6 +57,7 @@ public class DynamoDocumentStoreTemplate extends AbstractDynamoDbTemplate {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     private DynamoDB dynamoDBClient = null;
     private final ObjectMapper mapper;
+    private final DocumentItemConverter documentItemConverter;
 
     public DynamoDocumentStoreTemplate(final DatabaseSchemaHolder databaseSchemaHolder) {
         super(databaseSchemaHolder);
@@ -63,6 +67,7 @@ public class DynamoDocumentStoreTemplate extends AbstractDynamoDbTemplate {
         mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
         mapper.setSerializationInclusion(Include.NON_NULL);
         mapper.registerModule(new JodaModule());
+        documentItemConverter = new DocumentItemConverter(mapper);
     }
 
     @Override
@@ -71,53 +76,20 @@ public class DynamoDocumentStoreTemplate extends AbstractDynamoDbTemplate {
         dynamoDBClient = new DynamoDB(amazonDynamoDbClient);
     }
 
-    /**
-     * Simple method for splitting a list into a list of smaller lists of the supplied length
-     *
-     * @param list
-     * @param length
-     * @return
-     */
-    private <T> List<List<T>> split(final List<T> list, final int length) {
-        final List<List<T>> parts = new ArrayList<>();
-        final int size = list.size();
-        for (int i = 0; i < size; i += length) {
-            parts.add(new ArrayList<>(list.subList(i, Math.min(size, i + length))));
-        }
-        return parts;
-    }
-
     private <T extends Item> List<T> executeQuery(final KeySetQuery query, final Class<T> itemClass) {
         final ItemConfiguration itemConfiguration = getItemConfiguration(itemClass);
         final String tableName = databaseSchemaHolder.schemaName() + "." + itemConfiguration.tableName();
-        // max 100 keys per fetch
-        final List<List<ItemId>> split_ids = split(new ArrayList<>(query.itemIds()), 100);
+        final List<Map<String, AttributeValue>> keys = new ArrayList<>();
+        for (final ItemId itemId : query.itemIds()) {
+            keys.add(generateKey(itemId, itemConfiguration));
+        }
         final List<T> fetchedItems = new ArrayList<>();
-        for (final List<ItemId> ids : split_ids) {
-            final TableKeysAndAttributes keys = new TableKeysAndAttributes(tableName);
-            for (final ItemId id : ids) {
-                keys.addPrimaryKey(getPrimaryKey(id, itemConfiguration));
-            }
-            processBatchRead(dynamoDBClient.batchGetItem(keys), fetchedItems, tableName, itemClass);
+        for (final Map<String, AttributeValue> itemAttributeMap : batchGet(tableName, keys)) {
+            fetchedItems.add(documentItemConverter.fromDocument(ItemUtils.toItem(itemAttributeMap), itemClass));
         }
         return fetchedItems;
     }
 
-    private <T extends Item> void processBatchRead(final BatchGetItemOutcome outcome, final List<T> fetchedItems,
-            final String tableName, final Class<T> itemClass) {
-        final List<com.amazonaws.services.dynamodbv2.document.Item> items = outcome.getTableItems().get(tableName);
-        for (final com.amazonaws.services.dynamodbv2.document.Item item : items) {
-            fetchedItems.add(stringToItem(item.toJSON(), itemClass));
-        }
-        if (outcome.getUnprocessedKeys().size() == 0) {
-            logger.debug("All items fetched");
-        } else {
-            logger.debug("Still " + outcome.getUnprocessedKeys().size() + " to fetch");
-            processBatchRead(dynamoDBClient.batchGetItemUnprocessed(outcome.getUnprocessedKeys()), fetchedItems,
-                    tableName, itemClass);
-        }
-    }
-
     @Override
     public <T extends Item> T create(final T item,
             final PersistenceExceptionHandler<?>... persistenceExceptionHandlers) {
@@ -126,8 +98,7 @@ public class DynamoDocumentStoreTemplate extends AbstractDynamoDbTemplate {
         final Collection<PropertyDescriptor> createdConstraintPropertyDescriptors = createUniqueConstraintIndexes(item,
                 itemConfiguration);
         final String tableName = databaseSchemaHolder.schemaName() + "." + itemConfiguration.tableName();
-        final com.amazonaws.services.dynamodbv2.document.Item awsItem = com.amazonaws.services.dynamodbv2.document.Item
-                .fromJSON(itemToString(item));
+        final com.amazonaws.services.dynamodbv2.document.Item awsItem = documentItemConverter.toDocument(item);
         final PutItemSpec putItemSpec = new PutItemSpec().withItem(awsItem);
 
         final Table table = dynamoDBClient.getTable(tableName);
@@ -161,12 +132,11 @@ public class DynamoDocumentStoreTemplate extends AbstractDynamoDbTemplate {
 
         final com.amazonaws.services.dynamodbv2.document.Item tableItem = table.getItem(itemSpec);
         if (tableItem != null) {
-            final String tableText = tableItem.toJSON();
-            if (tableText.isEmpty()) {
+            if (tableItem.numberOfAttributes() == 0) {
                 throw new NonExistentItemException(String
                         .format("The document of type [%s] with id [%s] does not exist", itemClass.getName(), itemId));
             }
-            item = stringToItem(tableText, itemClass);
+            item = documentItemConverter.fromDocument(tableItem, itemClass);
         } else {
             throw new NonExistentItemException(String.format("The document of type [%s] with id [%s] does not exist",
                     itemClass.getName(), itemId));
@@ -182,36 +152,59 @@ public class DynamoDocumentStoreTemplate extends AbstractDynamoDbTemplate {
             return create(item);
         }
 
-        final Expected expectedCondition = new Expected(VERSION_ATTRIBUTE).eq(item.getVersion());
-        final Long newVersion = item.getVersion() + 1l;
-        item.setVersion(newVersion);
+        final Long previousVersion = item.getVersion();
+        item.setVersion(previousVersion + 1l);
 
         final String tableName = databaseSchemaHolder.schemaName() + "." + itemConfiguration.tableName();
-        final String itemJson = itemToString(item);
-        final PrimaryKey primaryKey = new PrimaryKey();
         final ItemId itemId = itemConfiguration.getItemId(item);
-        final PrimaryKeyDefinition primaryKeyDefinition = itemConfiguration.primaryKeyDefinition();
-        primaryKey.addComponent(primaryKeyDefinition.propertyName(), itemId.value());
-        if (primaryKeyDefinition instanceof CompoundPrimaryKeyDefinition) {
-            primaryKey.addComponent(((CompoundPrimaryKeyDefinition) primaryKeyDefinition).supportingPropertyName(),
-                    itemId.supportingValue());
-        }
         final Table table = dynamoDBClient.getTable(tableName);
-        final com.amazonaws.services.dynamodbv2.document.Item previousAwsItem = table.getItem(primaryKey);
-        final String previousItemJson = previousAwsItem.toJSON();
-
-        final String mergedJson = mergeJSONObjects(itemJson, previousItemJson);
-        final com.amazonaws.services.dynamodbv2.document.Item awsItem = com.amazonaws.services.dynamodbv2.document.Item
-                .fromJSON(mergedJson);
-        final PutItemSpec putItemSpec = new PutItemSpec().withItem(awsItem).withExpected(expectedCondition);
+        final UpdateItemSpec updateItemSpec = updateItemSpec(documentItemConverter.toDocument(item),
+                getPrimaryKey(itemId, itemConfiguration), previousVersion);
         try {
-            table.putItem(putItemSpec);
+            table.updateItem(updateItemSpec);
         } catch (final ConditionalCheckFailedException e) {
             throw new OptimisticLockException("Conflicting write detected while updating item");
         }
         return item;
     }
 
+    /**
+     * Creates a conditional update which sets each top-level attribute of the item, other than its key, in a single
+     * request. Attributes which are absent from the item are left as stored, as are any stored attributes unknown to
+     * the item class. The update applies only if the stored item is still at the expected version.
+     */
+    private UpdateItemSpec updateItemSpec(final com.amazonaws.services.dynamodbv2.document.Item awsItem,
+            final PrimaryKey primaryKey, final Long expectedVersion) {
+        final Set<String> keyAttributeNames = new HashSet<>();
+        for (final KeyAttribute keyAttribute : primaryKey.getComponents()) {
+            keyAttributeNames.add(keyAttribute.getName());
+        }
+        final NameMap nameMap = new NameMap().with("#version", VERSION_ATTRIBUTE);
+        final ValueMap valueMap = new ValueMap().with(":expectedVersion", expectedVersion);
+        final StringBuilder updateExpression = new StringBuilder();
+        int attributeCount = 0;
+        for (final Map.Entry<String, Object> attribute : awsItem.attributes()) {
+            final String attributeName = attribute.getKey();
+            if (keyAttributeNames.contains(attributeName)) {
+                continue;
+            }
+            final String namePlaceholder;
+            if (VERSION_ATTRIBUTE.equals(attributeName)) {
+                namePlaceholder = "#version";
+            } else {
+                namePlaceholder = "#a" + attributeCount;
+                nameMap.with(namePlaceholder, attributeName);
+            }
+            final String valuePlaceholder = ":a" + attributeCount;
+            valueMap.with(valuePlaceholder, attribute.getValue());
+            updateExpression.append(attributeCount == 0 ? "SET " : ", ").append(namePlaceholder).append(" = ")
+                    .append(valuePlaceholder);
+            attributeCount++;
+        }
+        return new UpdateItemSpec().withPrimaryKey(primaryKey).withUpdateExpression(updateExpression.toString())
+                .withConditionExpression("#version = :expectedVersion").withNameMap(nameMap).withValueMap(valueMap);
+    }
+
     @Override
     public void delete(final Item item, final PersistenceExceptionHandler<?>... persistenceExceptionHandlers) {
         final ItemConfiguration itemConfiguration = getItemConfiguration(item.getClass());
@@ -242,6 +235,23 @@ public class DynamoDocumentStoreTemplate extends AbstractDynamoDbTemplate {
         return result;
     }
 
+    @Override
+    public <T extends Item> FetchResult<T> fetch(final Query query, final Class<T> itemClass,
+            final FetchOptions fetchOptions) {
+        if (query instanceof AttributeQuery) {
+            final AttributeQuery attributeQuery = (AttributeQuery) query;
+            return new FetchResult<>((cursor, maxItems) -> executeQuery(attributeQuery, itemClass, cursor, maxItems),
+                    fetchOptions);
+        } else if (query instanceof KeySetQuery) {
+            final List<ItemId> itemIds = new ArrayList<>(((KeySetQuery) query).itemIds());
+            return new FetchResult<>(new KeyOffsetItemPageLoader<>(itemIds,
+                    pageItemIds -> executeQuery(new KeySetQuery(pageItemIds), itemClass),
+                    DynamoDbBatchReader.MAX_BATCH_GET_KEYS), fetchOptions);
+        } else {
+            throw new UnsupportedQueryException(query.getClass());
+        }
+    }
+
     private <T extends Item> Collection<T> executeQuery(final AttributeQuery query, final Class<T> itemClass) {
         final ItemConfiguration itemConfiguration = getItemConfiguration(itemClass);
         final String tableName = databaseSchemaHolder.schemaName() + "." + itemConfiguration.tableName();
@@ -250,47 +260,117 @@ public class DynamoDocumentStoreTemplate extends AbstractDynamoDbTemplate {
 
         final List<T> totalItems = new ArrayList<>();
 
-        if (itemConfiguration.hasIndexForQuery(query)
-                && query.getCondition().getComparisonOperator() == Operators.EQUALS) {
-
+        if (isQueryable(query, itemConfiguration)) {
             final QuerySpec querySpec = QuerySpecBuilder.build(query, itemClass);
-            final ItemCollection<QueryOutcome> queryOutcome;
-
-            if (itemConfiguration.primaryKeyDefinition().propertyName().equals(query.getAttributeName())
-                    && !(query instanceof CompoundAttributeQuery)) {
-                // if the query is for the hash then call query on table
-                queryOutcome = table.query(querySpec);
-            } else {
-                final String indexName = itemConfiguration.indexNameForQuery(query);
-                final Index index = table.getIndex(indexName);
-                queryOutcome = index.query(querySpec);
-            }
+            final ItemCollection<QueryOutcome> queryOutcome = query(table, querySpec, query, itemConfiguration);
 
             final Iterator<com.amazonaws.services.dynamodbv2.document.Item> iterator = queryOutcome.iterator();
             while (iterator != null && iterator.hasNext()) {
                 final com.amazonaws.services.dynamodbv2.document.Item item = iterator.next();
-                totalItems.add(stringToItem(item.toJSON(), itemClass));
+                totalItems.add(documentItemConverter.fromDocument(item, itemClass));
             }
         } else {
             logger.debug("Performing table scan with query: " + query);
-            ScanSpec scanSpec = null;
-            try {
-                scanSpec = generateScanSpec(query, itemClass);
-            } catch (InstantiationException | IllegalAccessException | IllegalArgumentException
-                    | InvocationTargetException | NoSuchMethodException | SecurityException e) {
-                throw new PersistenceResourceFailureException(
-                        "Could not create ScanSpec on table " + tableName + " for query: " + query, e);
-            }
-            final ItemCollection<ScanOutcome> scanOutcome = table.scan(scanSpec);
+            totalItems.addAll(scan((segment, totalSegments) -> executeScanSegment(table, query, itemClass, tableName,
+                    segment, totalSegments)));
+        }
 
-            final Iterator<com.amazonaws.services.dynamodbv2.document.Item> iterator = scanOutcome.iterator();
-            while (iterator.hasNext()) {
-                final com.amazonaws.services.dynamodbv2.document.Item item = iterator.next();
-                totalItems.add(stringToItem(item.toJSON(), itemClass));
+        return totalItems;
+    }
+
+    private <T extends Item> List<T> executeScanSegment(final Table table, final AttributeQuery query,
+            final Class<T> itemClass, final String tableName, final Integer segment, final Integer totalSegments) {
+        final ScanSpec scanSpec = scanSpec(query, itemClass, tableName);
+        if (segment != null) {
+            scanSpec.withSegment(segment).withTotalSegments(totalSegments);
+        }
+        final ItemCollection<ScanOutcome> scanOutcome = table.scan(scanSpec);
+
+        final List<T> items = new ArrayList<>();
+        final Iterator<com.amazonaws.services.dynamodbv2.document.Item> iterator = scanOutcome.iterator();
+        while (iterator.hasNext()) {
+            final com.amazonaws.services.dynamodbv2.document.Item item = iterator.next();
+            items.add(documentItemConverter.fromDocument(item, itemClass));
+        }
+        return items;
+    }
+
+    private <T extends Item> ItemPage<T> executeQuery(final AttributeQuery query, final Class<T> itemClass,
+            final String cursor, final Integer maxItems) {
+        final ItemConfiguration itemConfiguration = getItemConfiguration(itemClass);
+        final String tableName = databaseSchemaHolder.schemaName() + "." + itemConfiguration.tableName();
+
+        final Table table = dynamoDBClient.getTable(tableName);
+        final KeyAttribute[] exclusiveStartKey = keyAttributes(DynamoDbCursor.decode(cursor));
+
+        final List<T> items = new ArrayList<>();
+        final Map<String, AttributeValue> lastEvaluatedKey;
+
+        if (isQueryable(query, itemConfiguration)) {
+            final QuerySpec querySpec = QuerySpecBuilder.build(query, itemClass).withMaxPageSize(maxItems);
+            if (exclusiveStartKey != null) {
+                querySpec.withExclusiveStartKey(exclusiveStartKey);
             }
+            final Page<com.amazonaws.services.dynamodbv2.document.Item, QueryOutcome> page = query(table, querySpec,
+                    query, itemConfiguration).firstPage();
+            for (final com.amazonaws.services.dynamodbv2.document.Item item : page) {
+                items.add(documentItemConverter.fromDocument(item, itemClass));
+            }
+            lastEvaluatedKey = page.getLowLevelResult().getQueryResult().getLastEvaluatedKey();
+        } else {
+            logger.debug("Performing table scan with query: " + query);
+            final ScanSpec scanSpec = scanSpec(query, itemClass, tableName).withMaxPageSize(maxItems);
+            if (exclusiveStartKey != null) {
+                scanSpec.withExclusiveStartKey(exclusiveStartKey);
+            }
+            final Page<com.amazonaws.services.dynamodbv2.document.Item, ScanOutcome> page = table.scan(scanSpec)
+                    .firstPage();
+            for (final com.amazonaws.services.dynamodbv2.document.Item item : page) {
+                items.add(documentItemConverter.fromDocument(item, itemClass));
+            }
+            lastEvaluatedKey = page.getLowLevelResult().getScanResult().getLastEvaluatedKey();
         }
 
-        return totalItems;
+        return new ItemPage<>(items, DynamoDbCursor.encode(lastEvaluatedKey));
+    }
+
+    private boolean isQueryable(final AttributeQuery query, final ItemConfiguration itemConfiguration) {
+        return itemConfiguration.hasIndexForQuery(query)
+                && query.getCondition().getComparisonOperator() == Operators.EQUALS;
+    }
+
+    private ItemCollection<QueryOutcome> query(final Table table, final QuerySpec querySpec,
+            final AttributeQuery query, final ItemConfiguration itemConfiguration) {
+        if (itemConfiguration.primaryKeyDefinition().propertyName().equals(query.getAttributeName())
+                && !(query instanceof CompoundAttributeQuery)) {
+            // if the query is for the hash then call query on table
+            return table.query(querySpec);
+        }
+        final String indexName = itemConfiguration.indexNameForQuery(query);
+        final Index index = table.getIndex(indexName);
+        return index.query(querySpec);
+    }
+
+    private <T extends Item> ScanSpec scanSpec(final AttributeQuery query, final Class<T> itemClass,
+            final String tableName) {
+        try {
+            return generateScanSpec(query, itemClass);
+        } catch (InstantiationException | IllegalAccessException | IllegalArgumentException
+                | InvocationTargetException | NoSuchMethodException | SecurityException e) {
+            throw new PersistenceResourceFailureException(
+                    "Could not create ScanSpec on table " + tableName + " for query: " + query, e);
+        }
+    }
+
+    private KeyAttribute[] keyAttributes(final Map<String, AttributeValue> key) {
+        if (key == null) {
+            return null;
+        }
+        final List<KeyAttribute> keyAttributes = new ArrayList<>();
+        for (final Map.Entry<String, AttributeValue> entry : key.entrySet()) {
+            keyAttributes.add(new KeyAttribute(entry.getKey(), ItemUtils.toSimpleValue(entry.getValue())));
+        }
+        return keyAttributes.toArray(new KeyAttribute[keyAttributes.size()]);
     }
 
     private <T extends Item> ScanSpec generateScanSpec(final AttributeQuery query, final Class<T> tableItemType)
@@ -373,59 +453,4 @@ public class DynamoDocumentStoreTemplate extends AbstractDynamoDbTemplate {
         }
         return value.toString();
     }
-
-    private String mergeJSONObjects(final String itemJsonString, final String previousJsonString) {
-        try {
-            final JsonNode itemJson = mapper.readTree(itemJsonString);
-            final JsonNode previousItemJson = mapper.readTree(previousJsonString);
-            final JsonNode mergedItemJson = merge(itemJson, previousItemJson);
-            return mapper.writeValueAsString(mergedItemJson);
-        } catch (final IOException e) {
-            throw new RuntimeException("JSON Exception" + e);
-        }
-    }
-
-    public JsonNode merge(final JsonNode newNode, final JsonNode oldNode) {
-        final Set<String> allFieldNames = new HashSet<>();
-        final Iterator<String> newNodeFieldNames = oldNode.fieldNames();
-        while (newNodeFieldNames.hasNext()) {
-            allFieldNames.add(newNodeFieldNames.next());
-        }
-        final Iterator<String> oldNodeFieldNames = oldNode.fieldNames();
-        while (oldNodeFieldNames.hasNext()) {
-            allFieldNames.add(oldNodeFieldNames.next());
-        }
-        final JsonNode mergedNode = newNode.deepCopy();
-        for (final String fieldName : allFieldNames) {
-            final JsonNode newNodeValue = newNode.get(fieldName);
-            final JsonNode oldNodeValue = oldNode.get(fieldName);
-            if (newNodeValue == null && oldNodeValue == null) {
-                logger.trace("Skipping (both null): " + fieldName);
-            } else if (newNodeValue == null && oldNodeValue != null) {
-                logger.trace("Using old (new is null): " + fieldName);
-                ((ObjectNode) mergedNode).set(fieldName, oldNodeValue);
-            } else if (newNodeValue != null && oldNodeValue == null) {
-                logger.trace("Using new (old is null): " + fieldName);
-                ((ObjectNode) mergedNode).set(fieldName, newNodeValue);
-            } else {
-                logger.trace("Using new: " + fieldName);
-                if (oldNodeValue.isObject()) {
-                    ((ObjectNode) mergedNode).set(fieldName, merge(newNodeValue, oldNodeValue));
-                } else {
-                    ((ObjectNode) mergedNode).set(fieldName, newNodeValue);
-                }
-            }
-        }
-        return mergedNode;
-    }
-
-    private <T extends Item> T stringToItem(final String item, final Class<T> valueType) {
-        T value = null;
-        try {
-            value = mapper.readValue(item, valueType);
-        } catch (final IOException e) {
-            throw new PersistenceResourceFailureException("Failure converting String to item", e);
-        }
-        return value;
-    }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.dynamodb;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceResourceFailureException;
+
+/**
+ * Exponential backoff with full jitter, used between retries of requests which DynamoDB has only partly processed
+ */
+final class ExponentialBackoff {
+
+    static final ExponentialBackoff DEFAULT = new ExponentialBackoff(50, 5000, 10);
+
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final int maxAttempts;
+
+    ExponentialBackoff(final long baseDelayMillis, final long maxDelayMillis, final int maxAttempts) {
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxAttempts = maxAttempts;
+    }
+
+    int maxAttempts() {
+        return maxAttempts;
+    }
+
+    long delayMillis(final int attempt) {
+        final long ceilingMillis = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt, 30));
+        return ThreadLocalRandom.current().nextLong(ceilingMillis + 1);
+    }
+
+    void pause(final int attempt) {
+        try {
+            Thread.sleep(delayMillis(attempt));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceResourceFailureException("Interrupted while waiting to retry DynamoDb request", e);
+        }
+    }
+}
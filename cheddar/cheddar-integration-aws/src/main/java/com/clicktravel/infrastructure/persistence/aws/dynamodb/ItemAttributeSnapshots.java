@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.dynamodb;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.clicktravel.cheddar.infrastructure.persistence.database.Item;
+
+/**
+ * The stored attributes of items most recently read or written by a template, so that a later update of the same item
+ * instance need only send the attributes which have changed. Snapshots are keyed by item identity and held weakly, so
+ * they are discarded once the application no longer references the item.
+ */
+final class ItemAttributeSnapshots {
+
+    private final Map<IdentityWeakReference, Map<String, AttributeValue>> snapshots = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Item> collectedItems = new ReferenceQueue<>();
+
+    void put(final Item item, final Map<String, AttributeValue> attributeMap) {
+        expungeCollectedItems();
+        snapshots.put(new IdentityWeakReference(item, collectedItems),
+                Collections.unmodifiableMap(new HashMap<>(attributeMap)));
+    }
+
+    /**
+     * @return The snapshot of the item's attributes, or {@code null} if there is none
+     */
+    Map<String, AttributeValue> get(final Item item) {
+        expungeCollectedItems();
+        return snapshots.get(new IdentityWeakReference(item, null));
+    }
+
+    void remove(final Item item) {
+        snapshots.remove(new IdentityWeakReference(item, null));
+    }
+
+    private void expungeCollectedItems() {
+        Reference<? extends Item> collectedItem;
+        while ((collectedItem = collectedItems.poll()) != null) {
+            snapshots.remove(collectedItem);
+        }
+    }
+
+    private static final class IdentityWeakReference extends WeakReference<Item> {
+
+        private final int hashCode;
+
+        private IdentityWeakReference(final Item item, final ReferenceQueue<Item> referenceQueue) {
+            super(item, referenceQueue);
+            hashCode = System.identityHashCode(item);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof IdentityWeakReference)) {
+                return false;
+            }
+            final Item item = get();
+            return item != null && item == ((IdentityWeakReference) obj).get();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.dynamodb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongUnaryOperator;
+
+import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceResourceFailureException;
+
+/**
+ * Hands out the keys of one sequence from blocks reserved in a single request each. Once fewer than the refill
+ * watermark keys remain in the current block, the next block is reserved on the refill executor, if any, so that
+ * callers rarely wait for a reservation. Without an executor, or if a caller drains the block before the refill
+ * completes, the next block is reserved on the calling thread. Reservations are made without holding the lock, and
+ * callers needing keys while a reservation is outstanding wait for that reservation rather than making another. A
+ * failed reservation is reported to the callers waiting for it, and the next caller makes a new reservation.
+ */
+final class SequenceBlockAllocator {
+
+    private final int blockSize;
+    private final int refillWatermark;
+    private final LongUnaryOperator blockReserver;
+    private volatile ExecutorService refillExecutor;
+
+    private long nextKey = 1;
+    private long lastKey = 0;
+    private CompletableFuture<Long> refill;
+
+    /**
+     * @param blockSize - number of keys reserved at once
+     * @param refillWatermark - number of remaining keys below which the next block is reserved in advance
+     * @param blockReserver - reserves the given number of keys, returning the last key reserved
+     */
+    SequenceBlockAllocator(final int blockSize, final int refillWatermark, final LongUnaryOperator blockReserver) {
+        this.blockSize = blockSize;
+        this.refillWatermark = refillWatermark;
+        this.blockReserver = blockReserver;
+    }
+
+    int blockSize() {
+        return blockSize;
+    }
+
+    void configureRefillExecutor(final ExecutorService refillExecutor) {
+        this.refillExecutor = refillExecutor;
+    }
+
+    List<Long> allocate(final int keyCount) {
+        final List<Long> keys = new ArrayList<>(keyCount);
+        while (true) {
+            final CompletableFuture<Long> pendingRefill;
+            boolean reserveOnCallingThread = false;
+            synchronized (this) {
+                while (keys.size() < keyCount && nextKey <= lastKey) {
+                    keys.add(nextKey++);
+                }
+                if (keys.size() == keyCount) {
+                    startRefillIfDue();
+                    return keys;
+                }
+                if (refill == null) {
+                    refill = new CompletableFuture<>();
+                    reserveOnCallingThread = true;
+                }
+                pendingRefill = refill;
+            }
+            if (reserveOnCallingThread) {
+                reserve(pendingRefill);
+            }
+            final long blockLastKey;
+            try {
+                blockLastKey = pendingRefill.join();
+            } catch (final CompletionException e) {
+                synchronized (this) {
+                    if (refill == pendingRefill) {
+                        refill = null;
+                    }
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new PersistenceResourceFailureException("Failure while reserving sequence keys", e.getCause());
+            }
+            synchronized (this) {
+                // Only the first caller to see the reserved block installs it; the others take keys from it
+                if (refill == pendingRefill) {
+                    refill = null;
+                    lastKey = blockLastKey;
+                    nextKey = blockLastKey - blockSize + 1;
+                }
+            }
+        }
+    }
+
+    private void startRefillIfDue() {
+        if (lastKey - nextKey + 1 < refillWatermark && refill == null && refillExecutor != null) {
+            final CompletableFuture<Long> advanceRefill = new CompletableFuture<>();
+            try {
+                refillExecutor.execute(() -> reserve(advanceRefill));
+                refill = advanceRefill;
+            } catch (final RejectedExecutionException e) {
+                // The next block is reserved on the calling thread once this block is exhausted
+            }
+        }
+    }
+
+    private void reserve(final CompletableFuture<Long> pendingRefill) {
+        try {
+            pendingRefill.complete(blockReserver.applyAsLong(blockSize));
+        } catch (final Throwable e) {
+            pendingRefill.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.elasticache;
+
+import com.clicktravel.cheddar.infrastructure.persistence.cache.ItemCacheCodec;
+
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.Transcoder;
+
+/**
+ * Adapts an {@link ItemCacheCodec} to the transcoder interface of the memcached client
+ */
+final class CodecTranscoder implements Transcoder<Object> {
+
+    private final ItemCacheCodec codec;
+
+    CodecTranscoder(final ItemCacheCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public boolean asyncDecode(final CachedData cachedData) {
+        return false;
+    }
+
+    @Override
+    public CachedData encode(final Object item) {
+        return new CachedData(0, codec.encode(item), getMaxSize());
+    }
+
+    @Override
+    public Object decode(final CachedData cachedData) {
+        return codec.decode(cachedData.getData());
+    }
+
+    @Override
+    public int getMaxSize() {
+        return CachedData.MAX_SIZE;
+    }
+}
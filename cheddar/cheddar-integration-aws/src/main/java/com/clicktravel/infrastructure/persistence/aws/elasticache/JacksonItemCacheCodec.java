@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.elasticache;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import com.clicktravel.cheddar.infrastructure.persistence.cache.CachedItem;
+import com.clicktravel.cheddar.infrastructure.persistence.cache.ItemCacheCodec;
+import com.clicktravel.cheddar.infrastructure.persistence.database.Item;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DatabindContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.impl.ClassNameIdResolver;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+
+/**
+ * Encodes items as JSON, which is faster and more compact than Java serialisation. Fields are written directly,
+ * whatever their visibility and whether or not they have accessors, and the class of every non-final value is
+ * recorded, so items are decoded as the same classes without needing to be {@link java.io.Serializable}. Decoding
+ * requires a no-argument constructor, which may be private.
+ * <p>
+ * As the cache is shared, a recorded class is only instantiated if it is an {@link Item}, a {@link CachedItem}, a JDK
+ * collection, map or value type, a Joda-Time type or in one of the packages given to the constructor, which should
+ * contain the item property classes. Data naming any other class fails to decode.
+ */
+public class JacksonItemCacheCodec implements ItemCacheCodec {
+
+    private static final Set<String> VALUE_PACKAGES = new HashSet<>(
+            Arrays.asList("java.math", "java.time", "org.joda.time"));
+    private static final Map<String, List<Class<?>>> VALUE_TYPES_BY_PACKAGE = new HashMap<>();
+
+    static {
+        VALUE_TYPES_BY_PACKAGE.put("java.lang",
+                Arrays.asList(Number.class, Boolean.class, Character.class, CharSequence.class));
+        VALUE_TYPES_BY_PACKAGE.put("java.util", Arrays.asList(Collection.class, Map.class, Date.class, UUID.class,
+                Locale.class, Currency.class, TimeZone.class));
+        VALUE_TYPES_BY_PACKAGE.put("java.util.concurrent", Arrays.asList(Collection.class, Map.class));
+    }
+
+    private final Set<String> allowedPackages = new HashSet<>();
+    private final ObjectWriter writer;
+    private final ObjectMapper mapper;
+
+    /**
+     * @param allowedPackages Packages, including their sub-packages, of classes which may be decoded as item property
+     *            values in addition to the JDK and Joda-Time value types
+     */
+    public JacksonItemCacheCodec(final String... allowedPackages) {
+        for (final String allowedPackage : allowedPackages) {
+            this.allowedPackages.add(allowedPackage.endsWith(".") ? allowedPackage : allowedPackage + ".");
+        }
+        mapper = new ObjectMapper();
+        mapper.setVisibility(PropertyAccessor.ALL, Visibility.NONE);
+        mapper.setVisibility(PropertyAccessor.FIELD, Visibility.ANY);
+        mapper.setDefaultTyping(new ObjectMapper.DefaultTypeResolverBuilder(ObjectMapper.DefaultTyping.NON_FINAL)
+                .init(JsonTypeInfo.Id.CLASS, new AllowListClassNameIdResolver(mapper.getTypeFactory()))
+                .inclusion(JsonTypeInfo.As.PROPERTY));
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+        mapper.registerModule(new JodaModule());
+        // Writing as Object records the class of the item itself, even if that class is final
+        writer = mapper.writerFor(Object.class);
+    }
+
+    @Override
+    public byte[] encode(final Object item) {
+        try {
+            return writer.writeValueAsBytes(item);
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Unable to encode cache item", e);
+        }
+    }
+
+    @Override
+    public Object decode(final byte[] data) {
+        try {
+            return mapper.readValue(data, Object.class);
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Unable to decode cache item", e);
+        }
+    }
+
+    private boolean isAllowed(final Class<?> type) {
+        if (type.isArray()) {
+            return isAllowed(type.getComponentType());
+        }
+        if (type.isPrimitive() || Enum.class.isAssignableFrom(type) || Item.class.isAssignableFrom(type)
+                || type == CachedItem.class) {
+            return true;
+        }
+        final String packageName = type.getPackage() == null ? "" : type.getPackage().getName();
+        if (VALUE_PACKAGES.contains(packageName)) {
+            return true;
+        }
+        if (VALUE_TYPES_BY_PACKAGE.containsKey(packageName)) {
+            for (final Class<?> valueType : VALUE_TYPES_BY_PACKAGE.get(packageName)) {
+                if (valueType.isAssignableFrom(type)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (final String allowedPackage : allowedPackages) {
+            if (type.getName().startsWith(allowedPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks a recorded class name against the allowed types before the class is initialised or instantiated
+     */
+    private class AllowListClassNameIdResolver extends ClassNameIdResolver {
+
+        AllowListClassNameIdResolver(final TypeFactory typeFactory) {
+            super(typeFactory.constructType(Object.class), typeFactory);
+        }
+
+        @Override
+        public JavaType typeFromId(final DatabindContext context, final String id) throws IOException {
+            final Class<?> type;
+            try {
+                type = Class.forName(id, false, Thread.currentThread().getContextClassLoader());
+            } catch (final ClassNotFoundException | LinkageError e) {
+                throw new IOException("Unknown cache item class: " + id, e);
+            }
+            if (!isAllowed(type)) {
+                throw new IOException("Cache item class is not allowed: " + id);
+            }
+            return super.typeFromId(context, id);
+        }
+    }
+}
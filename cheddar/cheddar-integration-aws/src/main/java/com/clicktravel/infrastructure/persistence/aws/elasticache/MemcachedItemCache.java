@@ -16,39 +16,69 @@
  */
 package com.clicktravel.infrastructure.persistence.aws.elasticache;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.clicktravel.cheddar.infrastructure.persistence.cache.ItemCache;
+import com.clicktravel.cheddar.infrastructure.persistence.cache.ItemCacheCodec;
 
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.CASValue;
 import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.internal.BulkFuture;
+import net.spy.memcached.internal.GetFuture;
+import net.spy.memcached.internal.OperationFuture;
+import net.spy.memcached.transcoders.Transcoder;
 
+/**
+ * {@link ItemCache} backed by memcached. Bulk gets are sent as a single multi-key request and puts are pipelined by
+ * the client, and asynchronous operations complete from the client's listeners rather than occupying a thread while
+ * waiting. Items are encoded by the client's default transcoder unless an {@link ItemCacheCodec} is given.
+ */
 public class MemcachedItemCache implements ItemCache {
 
+    private static final int MAX_CONDITIONAL_PUT_ATTEMPTS = 5;
+
     private final MemcachedClient memcachedClient;
+    private final Transcoder<Object> transcoder;
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     public MemcachedItemCache(final MemcachedClient memcachedClient) {
         this.memcachedClient = memcachedClient;
+        transcoder = null;
+    }
+
+    public MemcachedItemCache(final MemcachedClient memcachedClient, final ItemCacheCodec codec) {
+        this.memcachedClient = memcachedClient;
+        transcoder = new CodecTranscoder(codec);
     }
 
     @Override
     public Object getItem(final String key, final long timeout) {
         Object item = null;
-        final Future<Object> f = memcachedClient.asyncGet(key);
+        final Future<Object> f = asyncGet(key);
         try {
             item = f.get(timeout, TimeUnit.SECONDS);
         } catch (final TimeoutException e) {
             f.cancel(false);
             logger.trace("Unable to get cache item within given time", e);
             return null;
-        } catch (final InterruptedException | ExecutionException e) {
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.debug("Interrupted getting cache item", e);
+        } catch (final ExecutionException e) {
             logger.debug("Unable to get cache item", e);
         }
         return item;
@@ -56,9 +86,165 @@ public class MemcachedItemCache implements ItemCache {
 
     @Override
     public void putItem(final String key, final Object item, final long expire) {
+        set(key, item, expire);
+    }
+
+    /**
+     * Adds the item if the key is absent, or otherwise replaces the current item by check-and-set, so that the item is
+     * not saved if another writer changes the entry after it was read. A lost race is retried against the newly
+     * written entry, up to {@value #MAX_CONDITIONAL_PUT_ATTEMPTS} times.
+     */
+    @Override
+    public boolean putItemIf(final String key, final Object item, final long expire, final long timeout,
+            final Predicate<Object> condition) {
+        final int exp = checkedExpire(expire);
+        try {
+            for (int attempt = 0; attempt < MAX_CONDITIONAL_PUT_ATTEMPTS; attempt++) {
+                final CASValue<Object> currentItem = asyncGets(key).get(timeout, TimeUnit.SECONDS);
+                if (currentItem == null) {
+                    if (add(key, exp, item).get(timeout, TimeUnit.SECONDS)) {
+                        return true;
+                    }
+                } else if (!condition.test(currentItem.getValue())) {
+                    return false;
+                } else if (asyncCas(key, currentItem.getCas(), exp, item)
+                        .get(timeout, TimeUnit.SECONDS) == CASResponse.OK) {
+                    return true;
+                }
+            }
+            logger.debug("Unable to put cache item after concurrent writes: " + key);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.debug("Interrupted putting cache item", e);
+        } catch (final ExecutionException | TimeoutException e) {
+            logger.debug("Unable to put cache item", e);
+        }
+        return false;
+    }
+
+    @Override
+    public Map<String, Object> getItems(final Collection<String> keys, final long timeout) {
+        final Map<String, Object> items = new HashMap<>();
+        if (keys.isEmpty()) {
+            return items;
+        }
+        try {
+            // Items which arrived within the timeout are kept, even if others did not
+            final Map<String, Object> someItems = asyncGetBulk(keys).getSome(timeout, TimeUnit.SECONDS);
+            for (final Entry<String, Object> entry : someItems.entrySet()) {
+                if (entry.getValue() != null) {
+                    items.put(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.debug("Interrupted getting cache items", e);
+        } catch (final ExecutionException e) {
+            logger.debug("Unable to get cache items", e);
+        }
+        return items;
+    }
+
+    @Override
+    public void putItems(final Map<String, ?> items, final long expire) {
+        for (final Entry<String, ?> entry : items.entrySet()) {
+            set(entry.getKey(), entry.getValue(), expire);
+        }
+    }
+
+    @Override
+    public void deleteItem(final String key) {
+        memcachedClient.delete(key);
+    }
+
+    @Override
+    public CompletableFuture<Object> getItemAsync(final String key) {
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        final GetFuture<Object> getFuture = asyncGet(key);
+        getFuture.addListener(completed -> {
+            try {
+                future.complete(getFuture.get());
+            } catch (final ExecutionException e) {
+                future.completeExceptionally(e.getCause());
+            } catch (final Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> getItemsAsync(final Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return CompletableFuture.completedFuture(new HashMap<>());
+        }
+        final CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        final BulkFuture<Map<String, Object>> bulkFuture = asyncGetBulk(keys);
+        bulkFuture.addListener(completed -> {
+            try {
+                final Map<String, Object> items = new HashMap<>();
+                for (final Entry<String, Object> entry : bulkFuture.get().entrySet()) {
+                    if (entry.getValue() != null) {
+                        items.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                future.complete(items);
+            } catch (final ExecutionException e) {
+                future.completeExceptionally(e.getCause());
+            } catch (final Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Void> putItemAsync(final String key, final Object item, final long expire) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        final OperationFuture<Boolean> setFuture = set(key, item, expire);
+        setFuture.addListener(completed -> {
+            if (setFuture.getStatus().isSuccess()) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(new IllegalStateException("Unable to put cache item: "
+                        + setFuture.getStatus().getMessage()));
+            }
+        });
+        return future;
+    }
+
+    private GetFuture<Object> asyncGet(final String key) {
+        return transcoder == null ? memcachedClient.asyncGet(key) : memcachedClient.asyncGet(key, transcoder);
+    }
+
+    private BulkFuture<Map<String, Object>> asyncGetBulk(final Collection<String> keys) {
+        return transcoder == null ? memcachedClient.asyncGetBulk(keys) : memcachedClient.asyncGetBulk(keys, transcoder);
+    }
+
+    private Future<CASValue<Object>> asyncGets(final String key) {
+        return transcoder == null ? memcachedClient.asyncGets(key) : memcachedClient.asyncGets(key, transcoder);
+    }
+
+    private OperationFuture<Boolean> set(final String key, final Object item, final long expire) {
+        final int exp = checkedExpire(expire);
+        return transcoder == null ? memcachedClient.set(key, exp, item)
+                : memcachedClient.set(key, exp, item, transcoder);
+    }
+
+    private Future<Boolean> add(final String key, final int exp, final Object item) {
+        return transcoder == null ? memcachedClient.add(key, exp, item)
+                : memcachedClient.add(key, exp, item, transcoder);
+    }
+
+    private Future<CASResponse> asyncCas(final String key, final long cas, final int exp, final Object item) {
+        return memcachedClient.asyncCAS(key, cas, exp, item,
+                transcoder == null ? memcachedClient.getTranscoder() : transcoder);
+    }
+
+    private static int checkedExpire(final long expire) {
         if (expire < Integer.MIN_VALUE || expire > Integer.MAX_VALUE) {
             throw new IllegalArgumentException(expire + " cannot be cast to int without changing its value.");
         }
-        memcachedClient.set(key, (int) expire, item);
+        return (int) expire;
     }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import static com.clicktravel.common.random.Randoms.randomBoolean;
+import static com.clicktravel.common.random.Randoms.randomString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.ItemConfiguration;
+import com.clicktravel.infrastructure.persistence.aws.dynamodb.StubItem;
+
+public class DynamoDbItemCodecTest {
+
+    @Test
+    public void shouldReturnSameCodec_forSameItemClass() {
+        // Given
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, randomString());
+        final ItemConfiguration otherItemConfiguration = new ItemConfiguration(StubItem.class, randomString());
+
+        // When
+        final DynamoDbItemCodec itemCodec = DynamoDbItemCodecRegistry.codecFor(itemConfiguration);
+        final DynamoDbItemCodec otherItemCodec = DynamoDbItemCodecRegistry.codecFor(otherItemConfiguration);
+
+        // Then
+        assertSame(itemCodec, otherItemCodec);
+        assertEquals(itemConfiguration.propertyDescriptors().size(), itemCodec.propertyCodecs().size());
+    }
+
+    @Test
+    public void shouldRoundTripPropertyValues_withItemCodec() {
+        // Given
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, randomString());
+        final DynamoDbItemCodec itemCodec = DynamoDbItemCodecRegistry.codecFor(itemConfiguration);
+        final StubItem stubItem = new StubItem();
+        stubItem.setId(randomString());
+        stubItem.setStringProperty(randomString());
+        stubItem.setBooleanProperty(randomBoolean());
+        final Set<String> stringSetProperty = new HashSet<>();
+        stringSetProperty.add(randomString());
+        stringSetProperty.add(randomString());
+        stubItem.setStringSetProperty(stringSetProperty);
+        final StubItem unmarshalledItem = new StubItem();
+
+        // When
+        for (final DynamoDbPropertyCodec propertyCodec : itemCodec.propertyCodecs()) {
+            if (propertyCodec.isWritable()) {
+                propertyCodec.setValue(unmarshalledItem, propertyCodec.getValue(stubItem));
+            }
+        }
+
+        // Then
+        assertEquals(stubItem, unmarshalledItem);
+    }
+
+    @Test
+    public void shouldGetNullAttributeValue_withNullPropertyValue() {
+        // Given
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, randomString());
+        final DynamoDbPropertyCodec propertyCodec = DynamoDbItemCodecRegistry.codecFor(itemConfiguration)
+                .propertyCodec("stringProperty");
+        final StubItem stubItem = new StubItem();
+
+        // When
+        final AttributeValue attributeValue = propertyCodec.getValue(stubItem);
+
+        // Then
+        assertNull(attributeValue);
+    }
+
+    @Test
+    public void shouldNotBeWritable_withReadOnlyProperty() {
+        // Given
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, randomString());
+        final DynamoDbItemCodec itemCodec = DynamoDbItemCodecRegistry.codecFor(itemConfiguration);
+
+        // When
+        final DynamoDbPropertyCodec classPropertyCodec = itemCodec.propertyCodec("class");
+        final DynamoDbPropertyCodec stringPropertyCodec = itemCodec.propertyCodec("stringProperty");
+
+        // Then
+        assertFalse(classPropertyCodec.isWritable());
+        assertTrue(stringPropertyCodec.isWritable());
+    }
+}
@@ -241,6 +241,73 @@ public class SqsQueueResourceTest {
         assertNotNull(thrownException);
     }
 
+    @Test
+    public void shouldChangeMessageVisibility_withReceiptHandleAndVisibilityTimeout() {
+        // Given
+        final String receiptHandle = randomString();
+        final int visibilityTimeoutSeconds = randomInt(1000);
+
+        // When
+        sqsQueueResource.changeMessageVisibility(receiptHandle, visibilityTimeoutSeconds);
+
+        // Then
+        final ArgumentCaptor<ChangeMessageVisibilityRequest> captor = ArgumentCaptor
+                .forClass(ChangeMessageVisibilityRequest.class);
+        verify(amazonSqsClient).changeMessageVisibility(captor.capture());
+        final ChangeMessageVisibilityRequest changeMessageVisibilityRequest = captor.getValue();
+        assertEquals(queueUrl, changeMessageVisibilityRequest.getQueueUrl());
+        assertEquals(receiptHandle, changeMessageVisibilityRequest.getReceiptHandle());
+        assertEquals(Integer.valueOf(visibilityTimeoutSeconds), changeMessageVisibilityRequest.getVisibilityTimeout());
+    }
+
+    @Test
+    public void shouldSendMessages_withMessageBodies() {
+        // Given
+        final List<String> messageBodies = Arrays.asList(randomString(), randomString(), randomString());
+        final SendMessageBatchResult sendMessageBatchResult = new SendMessageBatchResult()
+                .withFailed(new BatchResultErrorEntry().withId("2").withCode(randomString()));
+        when(amazonSqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).thenReturn(sendMessageBatchResult);
+
+        // When
+        final List<Integer> failedIndexes = sqsQueueResource.sendMessages(messageBodies);
+
+        // Then
+        final ArgumentCaptor<SendMessageBatchRequest> captor = ArgumentCaptor.forClass(SendMessageBatchRequest.class);
+        verify(amazonSqsClient).sendMessageBatch(captor.capture());
+        final SendMessageBatchRequest sendMessageBatchRequest = captor.getValue();
+        assertEquals(queueUrl, sendMessageBatchRequest.getQueueUrl());
+        assertEquals(messageBodies.size(), sendMessageBatchRequest.getEntries().size());
+        for (int i = 0; i < messageBodies.size(); i++) {
+            assertEquals(messageBodies.get(i), sendMessageBatchRequest.getEntries().get(i).getMessageBody());
+        }
+        assertEquals(Collections.singletonList(2), failedIndexes);
+    }
+
+    @Test
+    public void shouldDeleteMessages_withReceiptHandles() {
+        // Given
+        final List<String> receiptHandles = Arrays.asList(randomString(), randomString(), randomString());
+        final DeleteMessageBatchResult deleteMessageBatchResult = new DeleteMessageBatchResult()
+                .withFailed(new BatchResultErrorEntry().withId("1").withCode(randomString()));
+        when(amazonSqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class)))
+                .thenReturn(deleteMessageBatchResult);
+
+        // When
+        final List<String> failedReceiptHandles = sqsQueueResource.deleteMessages(receiptHandles);
+
+        // Then
+        final ArgumentCaptor<DeleteMessageBatchRequest> captor = ArgumentCaptor
+                .forClass(DeleteMessageBatchRequest.class);
+        verify(amazonSqsClient).deleteMessageBatch(captor.capture());
+        final DeleteMessageBatchRequest deleteMessageBatchRequest = captor.getValue();
+        assertEquals(queueUrl, deleteMessageBatchRequest.getQueueUrl());
+        assertEquals(receiptHandles.size(), deleteMessageBatchRequest.getEntries().size());
+        for (int i = 0; i < receiptHandles.size(); i++) {
+            assertEquals(receiptHandles.get(i), deleteMessageBatchRequest.getEntries().get(i).getReceiptHandle());
+        }
+        assertEquals(Collections.singletonList(receiptHandles.get(1)), failedReceiptHandles);
+    }
+
     @Test
     public void shouldSetQueueAttributes_withPolicy() {
         // Given
@@ -23,13 +23,16 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -42,6 +45,7 @@ import com.clicktravel.cheddar.infrastructure.messaging.TypedMessage;
 import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageDeleteException;
 import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageReceiveException;
 import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageSendException;
+import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageVisibilityException;
 import com.clicktravel.cheddar.infrastructure.messaging.exception.MessagingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -93,6 +97,109 @@ public class SqsTypedMessageQueueTest {
         assertEquals(messagePayload, root.get("Message").textValue());
     }
 
+    @Test
+    public void shouldSendMessagesInBatches_withMessages() throws Exception {
+        // Given
+        final List<TypedMessage> messages = new LinkedList<>();
+        for (int i = 0; i < 13; i++) {
+            final TypedMessage mockTypedMessage = mock(TypedMessage.class);
+            when(mockTypedMessage.getType()).thenReturn(randomString(10));
+            when(mockTypedMessage.getPayload()).thenReturn(randomString());
+            messages.add(mockTypedMessage);
+        }
+        when(mockSqsQueueResource.sendMessages(anyList())).thenReturn(Collections.singletonList(1))
+                .thenReturn(Collections.emptyList());
+
+        // When
+        final List<TypedMessage> failedMessages = sqsTypedMessageQueue.sendBatch(messages);
+
+        // Then
+        final ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(mockSqsQueueResource, times(2)).sendMessages(captor.capture());
+        assertEquals(10, captor.getAllValues().get(0).size());
+        assertEquals(3, captor.getAllValues().get(1).size());
+        final JsonNode root = new ObjectMapper().readTree((String) captor.getAllValues().get(1).get(2));
+        assertEquals(messages.get(12).getType(), root.get("Subject").textValue());
+        assertEquals(Collections.singletonList(messages.get(1)), failedMessages);
+    }
+
+    @Test
+    public void shouldSendMessagesInBatches_withMessagesExceedingBatchPayloadSize() {
+        // Given
+        final List<TypedMessage> messages = new LinkedList<>();
+        for (int i = 0; i < 5; i++) {
+            final TypedMessage mockTypedMessage = mock(TypedMessage.class);
+            when(mockTypedMessage.getType()).thenReturn(randomString(10));
+            when(mockTypedMessage.getPayload()).thenReturn(randomString(100 * 1024));
+            messages.add(mockTypedMessage);
+        }
+        when(mockSqsQueueResource.sendMessages(anyList())).thenReturn(Collections.emptyList());
+
+        // When
+        sqsTypedMessageQueue.sendBatch(messages);
+
+        // Then
+        final ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(mockSqsQueueResource, times(3)).sendMessages(captor.capture());
+        assertEquals(2, captor.getAllValues().get(0).size());
+        assertEquals(2, captor.getAllValues().get(1).size());
+        assertEquals(1, captor.getAllValues().get(2).size());
+    }
+
+    @Test
+    public void shouldSendOversizeMessageAlone_withMessageExceedingBatchPayloadSize() {
+        // Given
+        final List<TypedMessage> messages = new LinkedList<>();
+        for (int i = 0; i < 4; i++) {
+            final TypedMessage mockTypedMessage = mock(TypedMessage.class);
+            when(mockTypedMessage.getType()).thenReturn(randomString(10));
+            when(mockTypedMessage.getPayload()).thenReturn(randomString(i == 1 ? 300 * 1024 : 100));
+            messages.add(mockTypedMessage);
+        }
+        when(mockSqsQueueResource.sendMessages(anyList())).thenReturn(Collections.emptyList());
+        doThrow(AmazonClientException.class).when(mockSqsQueueResource).sendMessage(anyString());
+
+        // When
+        final List<TypedMessage> failedMessages = sqsTypedMessageQueue.sendBatch(messages);
+
+        // Then
+        final ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(mockSqsQueueResource).sendMessages(captor.capture());
+        assertEquals(3, captor.getValue().size());
+        verify(mockSqsQueueResource).sendMessage(anyString());
+        assertEquals(Collections.singletonList(messages.get(1)), failedMessages);
+    }
+
+    @Test
+    public void shouldThrowMessageSendExceptionWithUnsentMessages_onAmazonClientExceptionForLaterSendBatch() {
+        // Given
+        final List<TypedMessage> messages = new LinkedList<>();
+        for (int i = 0; i < 25; i++) {
+            final TypedMessage mockTypedMessage = mock(TypedMessage.class);
+            when(mockTypedMessage.getType()).thenReturn(randomString(10));
+            when(mockTypedMessage.getPayload()).thenReturn(randomString());
+            messages.add(mockTypedMessage);
+        }
+        when(mockSqsQueueResource.sendMessages(anyList())).thenReturn(Collections.singletonList(1))
+                .thenThrow(AmazonClientException.class);
+
+        // When
+        MessageSendException thrownException = null;
+        try {
+            sqsTypedMessageQueue.sendBatch(messages);
+        } catch (final MessageSendException e) {
+            thrownException = e;
+        }
+
+        // Then
+        assertNotNull(thrownException);
+        final List<TypedMessage> expectedUnsentMessages = new LinkedList<>();
+        expectedUnsentMessages.add(messages.get(1));
+        expectedUnsentMessages.addAll(messages.subList(10, 25));
+        assertEquals(expectedUnsentMessages, thrownException.getFailedMessages());
+        verify(mockSqsQueueResource, times(2)).sendMessages(anyList());
+    }
+
     @Test
     public void shouldThrowMessageSendException_onAmazonClientExceptionForSend() {
         final TypedMessage mockTypedMessage = mock(TypedMessage.class);
@@ -314,6 +421,41 @@ public class SqsTypedMessageQueueTest {
         assertNotNull(thrownException);
     }
 
+    @Test
+    public void shouldChangeVisibility_withMessageAndVisibilityTimeout() {
+        // Given
+        final String receiptHandle = randomString();
+        final int visibilityTimeoutSeconds = randomInt(1000);
+        final TypedMessage mockTypedMessage = mock(TypedMessage.class);
+        when(mockTypedMessage.getReceiptHandle()).thenReturn(receiptHandle);
+
+        // When
+        sqsTypedMessageQueue.changeVisibility(mockTypedMessage, visibilityTimeoutSeconds);
+
+        // Then
+        verify(mockSqsQueueResource).changeMessageVisibility(receiptHandle, visibilityTimeoutSeconds);
+    }
+
+    @Test
+    public void shouldThrowMessageVisibilityException_onAmazonClientExceptionForChangeVisibility() {
+        // Given
+        final TypedMessage mockTypedMessage = mock(TypedMessage.class);
+        when(mockTypedMessage.getReceiptHandle()).thenReturn(randomString());
+        doThrow(AmazonClientException.class).when(mockSqsQueueResource).changeMessageVisibility(anyString(),
+                anyInt());
+
+        // When
+        MessageVisibilityException thrownException = null;
+        try {
+            sqsTypedMessageQueue.changeVisibility(mockTypedMessage, randomInt(1000));
+        } catch (final MessageVisibilityException e) {
+            thrownException = e;
+        }
+
+        // Then
+        assertNotNull(thrownException);
+    }
+
     @Test
     public void shouldDeleteMessage_withMessage() {
         // Given
@@ -348,6 +490,75 @@ public class SqsTypedMessageQueueTest {
         assertNotNull(thrownException);
     }
 
+    @Test
+    public void shouldDeleteMessagesInBatches_withMessages() {
+        // Given
+        final List<TypedMessage> messages = new LinkedList<>();
+        final List<String> receiptHandles = new LinkedList<>();
+        for (int i = 0; i < 15; i++) {
+            final String receiptHandle = randomId();
+            final TypedMessage mockTypedMessage = mock(TypedMessage.class);
+            when(mockTypedMessage.getReceiptHandle()).thenReturn(receiptHandle);
+            messages.add(mockTypedMessage);
+            receiptHandles.add(receiptHandle);
+        }
+        final String failedReceiptHandle = receiptHandles.get(12);
+        when(mockSqsQueueResource.deleteMessages(anyList())).thenAnswer(invocation -> {
+            final List<String> batch = invocation.getArgument(0);
+            return batch.contains(failedReceiptHandle) ? Collections.singletonList(failedReceiptHandle)
+                    : Collections.emptyList();
+        });
+
+        // When
+        final List<TypedMessage> failedMessages = sqsTypedMessageQueue.deleteBatch(messages);
+
+        // Then
+        final ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(mockSqsQueueResource, times(2)).deleteMessages(captor.capture());
+        assertEquals(10, captor.getAllValues().get(0).size());
+        assertEquals(5, captor.getAllValues().get(1).size());
+        assertEquals(Collections.singletonList(messages.get(12)), failedMessages);
+    }
+
+    @Test
+    public void shouldThrowMessageDeleteException_onAmazonClientExceptionForDeleteBatch() {
+        // Given
+        final TypedMessage mockTypedMessage = mock(TypedMessage.class);
+        when(mockTypedMessage.getReceiptHandle()).thenReturn(randomString());
+        doThrow(AmazonClientException.class).when(mockSqsQueueResource).deleteMessages(anyList());
+
+        // When
+        MessageDeleteException thrownException = null;
+        try {
+            sqsTypedMessageQueue.deleteBatch(Collections.singletonList(mockTypedMessage));
+        } catch (final MessageDeleteException e) {
+            thrownException = e;
+        }
+
+        // Then
+        assertNotNull(thrownException);
+    }
+
+    @Test
+    public void shouldReturnRemainingMessages_onAmazonClientExceptionForLaterDeleteBatch() {
+        // Given
+        final List<TypedMessage> messages = new LinkedList<>();
+        for (int i = 0; i < 25; i++) {
+            final TypedMessage mockTypedMessage = mock(TypedMessage.class);
+            when(mockTypedMessage.getReceiptHandle()).thenReturn(randomId());
+            messages.add(mockTypedMessage);
+        }
+        when(mockSqsQueueResource.deleteMessages(anyList())).thenReturn(Collections.emptyList())
+                .thenThrow(AmazonClientException.class);
+
+        // When
+        final List<TypedMessage> failedMessages = sqsTypedMessageQueue.deleteBatch(messages);
+
+        // Then
+        verify(mockSqsQueueResource, times(2)).deleteMessages(anyList());
+        assertEquals(messages.subList(10, 25), failedMessages);
+    }
+
     @Test
     public void shouldReturnSqsQueueResource() {
         // When
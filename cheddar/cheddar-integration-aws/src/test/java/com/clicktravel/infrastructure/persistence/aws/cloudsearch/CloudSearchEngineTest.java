@@ -50,10 +50,13 @@ import com.amazonaws.services.cloudsearchv2.model.DescribeDomainsRequest;
 import com.amazonaws.services.cloudsearchv2.model.DescribeDomainsResult;
 import com.amazonaws.services.cloudsearchv2.model.DomainStatus;
 import com.amazonaws.services.cloudsearchv2.model.ServiceEndpoint;
+import com.clicktravel.cheddar.infrastructure.persistence.accessor.PropertyAccessor;
 import com.clicktravel.cheddar.infrastructure.persistence.document.search.Document;
 import com.clicktravel.cheddar.infrastructure.persistence.document.search.DocumentSearchResponse;
 import com.clicktravel.cheddar.infrastructure.persistence.document.search.configuration.DocumentConfiguration;
 import com.clicktravel.cheddar.infrastructure.persistence.document.search.configuration.DocumentConfigurationHolder;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.configuration.IndexDefinition;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.configuration.IndexFieldType;
 import com.clicktravel.cheddar.infrastructure.persistence.document.search.options.SearchOptions;
 import com.clicktravel.cheddar.infrastructure.persistence.document.search.query.Query;
 import com.clicktravel.cheddar.infrastructure.persistence.document.search.query.QueryType;
@@ -238,6 +241,59 @@ public class CloudSearchEngineTest {
         assertInputStreamEquals(jsonBytes, uploadDocumentsRequest.getDocuments());
     }
 
+    @Test
+    public void shouldUpdate_withDocumentUsingConfiguredPropertyAccessor() throws Exception {
+        // Given
+        final StubDocument document = randomStubDocument();
+        final String accessedValue = randomString(10);
+        final String namespace = randomString(10);
+        final DocumentConfiguration mockStubDocumentConfiguration = mock(DocumentConfiguration.class);
+        final Map<String, PropertyDescriptor> properties = getStubDocumentPropertyDescriptors();
+        final Collection<DocumentConfiguration> documentConfigurations = Arrays.asList(mockStubDocumentConfiguration);
+        final String schemaName = randomString(10);
+        final DocumentConfigurationHolder documentConfigurationHolder = new DocumentConfigurationHolder(schemaName,
+                documentConfigurations);
+        final AmazonCloudSearch mockAmazonCloudSearch = mock(AmazonCloudSearch.class);
+        final byte[] jsonBytes = randomString().getBytes(Charset.forName("UTF-8"));
+        final String domainName = schemaName + "-" + namespace;
+        final DescribeDomainsRequest describeDomainsRequest = new DescribeDomainsRequest()
+                .withDomainNames(Arrays.asList(domainName));
+        final String documentServiceEndpoint = randomString();
+        final DescribeDomainsResult describeDomainsResult = getDescribeDomainsResult(domainName,
+                documentServiceEndpoint, randomString());
+        final AmazonCloudSearchDomain mockDocumentServiceClient = mock(AmazonCloudSearchDomain.class);
+        final PropertyAccessor mockPropertyAccessor = mock(PropertyAccessor.class);
+        mockStatic(JsonDocumentUpdateMarshaller.class);
+        when(JsonDocumentUpdateMarshaller.marshall(anyCollection())).thenReturn(new String(jsonBytes));
+        doReturn(StubDocument.class).when(mockStubDocumentConfiguration).documentClass();
+        when(mockStubDocumentConfiguration.namespace()).thenReturn(namespace);
+        when(mockStubDocumentConfiguration.properties()).thenReturn(properties);
+        when(mockStubDocumentConfiguration.indexDefinitions())
+                .thenReturn(Arrays.asList(new IndexDefinition("stringProperty", IndexFieldType.LITERAL)));
+        when(mockStubDocumentConfiguration.propertyAccessor("stringProperty")).thenReturn(mockPropertyAccessor);
+        when(mockPropertyAccessor.getValue(document)).thenReturn(accessedValue);
+        when(mockAmazonCloudSearch.describeDomains(describeDomainsRequest)).thenReturn(describeDomainsResult);
+        mockStatic(AmazonCloudSearchDomainClientBuilder.class);
+        when(AmazonCloudSearchDomainClientBuilder.build(documentServiceEndpoint)).thenReturn(mockDocumentServiceClient);
+
+        final CloudSearchEngine cloudSearchEngine = new CloudSearchEngine(documentConfigurationHolder,
+                mockAmazonCloudSearch);
+
+        // When
+        cloudSearchEngine.update(document);
+
+        // Then
+        final ArgumentCaptor<Collection> documentUpdateCollectionCaptor = ArgumentCaptor.forClass(Collection.class);
+        verifyStatic(JsonDocumentUpdateMarshaller.class);
+        JsonDocumentUpdateMarshaller.marshall(documentUpdateCollectionCaptor.capture());
+        final DocumentUpdate documentUpdate = (DocumentUpdate) documentUpdateCollectionCaptor.getValue().iterator()
+                .next();
+        assertEquals(1, documentUpdate.getFields().size());
+        final Field field = documentUpdate.getFields().iterator().next();
+        assertEquals("stringProperty", field.getName());
+        assertEquals(accessedValue, field.getValue());
+    }
+
     @Test
     public void shouldUpdate_withDocuments() throws Exception {
         // Given
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.dynamodb;
+
+import static com.clicktravel.common.random.Randoms.randomString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceResourceFailureException;
+
+public class BoundedParallelExecutorTest {
+
+    private ExecutorService executorService;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void shouldReturnResultsInTaskOrder_withTasks() {
+        // Given
+        final BoundedParallelExecutor boundedParallelExecutor = new BoundedParallelExecutor(executorService, 2);
+        final List<Supplier<String>> tasks = new ArrayList<>();
+        final List<String> expectedResults = new ArrayList<>();
+        for (int n = 0; n < 10; n++) {
+            final String result = randomString(10);
+            expectedResults.add(result);
+            tasks.add(() -> result);
+        }
+
+        // When
+        final List<String> results = boundedParallelExecutor.invokeAll(tasks, randomString());
+
+        // Then
+        assertEquals(expectedResults, results);
+    }
+
+    @Test
+    public void shouldInterruptAndAwaitRunningTaskAndSkipPendingTasks_withFailingTask() throws Exception {
+        // Given
+        final BoundedParallelExecutor boundedParallelExecutor = new BoundedParallelExecutor(executorService, 2);
+        final CountDownLatch runningTaskStarted = new CountDownLatch(1);
+        final AtomicBoolean runningTaskInterrupted = new AtomicBoolean();
+        final AtomicBoolean runningTaskFinished = new AtomicBoolean();
+        final AtomicBoolean pendingTaskRun = new AtomicBoolean();
+        final RuntimeException failure = new IllegalStateException(randomString());
+        final Supplier<String> runningTask = () -> {
+            runningTaskStarted.countDown();
+            try {
+                Thread.sleep(10000);
+            } catch (final InterruptedException e) {
+                runningTaskInterrupted.set(true);
+            }
+            runningTaskFinished.set(true);
+            return null;
+        };
+        final Supplier<String> failingTask = () -> {
+            try {
+                runningTaskStarted.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw failure;
+        };
+        final Supplier<String> pendingTask = () -> {
+            pendingTaskRun.set(true);
+            return null;
+        };
+
+        // When
+        RuntimeException actualException = null;
+        try {
+            boundedParallelExecutor.invokeAll(Arrays.asList(runningTask, failingTask, pendingTask), randomString());
+        } catch (final RuntimeException e) {
+            actualException = e;
+        }
+
+        // Then
+        assertSame(failure, actualException);
+        assertTrue(runningTaskInterrupted.get());
+        assertTrue(runningTaskFinished.get());
+        Thread.sleep(100);
+        assertFalse(pendingTaskRun.get());
+    }
+
+    @Test
+    public void shouldReleaseAllPermits_withFailedInvocation() {
+        // Given
+        final BoundedParallelExecutor boundedParallelExecutor = new BoundedParallelExecutor(executorService, 1);
+        final List<Supplier<String>> failingTasks = new ArrayList<>();
+        failingTasks.add(() -> {
+            throw new IllegalStateException();
+        });
+        for (int n = 0; n < 5; n++) {
+            failingTasks.add(() -> randomString());
+        }
+        try {
+            boundedParallelExecutor.invokeAll(failingTasks, randomString());
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+        final List<Supplier<String>> tasks = new ArrayList<>();
+        for (int n = 0; n < 5; n++) {
+            tasks.add(() -> randomString());
+        }
+
+        // When
+        final List<String> results = boundedParallelExecutor.invokeAll(tasks, randomString());
+
+        // Then
+        assertEquals(5, results.size());
+    }
+
+    @Test
+    public void shouldRestorePermitCount_withTasksSkippedAfterFailure() {
+        // Given a single worker, which claims the second task after running the failing first task
+        final ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
+        final int maxConcurrentTasks = 2;
+        final BoundedParallelExecutor boundedParallelExecutor = new BoundedParallelExecutor(singleThreadExecutor,
+                maxConcurrentTasks);
+        final List<Supplier<String>> failingTasks = Arrays.asList(() -> {
+            throw new IllegalStateException();
+        }, () -> randomString());
+
+        try {
+            for (int n = 0; n < 20; n++) {
+                // When
+                try {
+                    boundedParallelExecutor.invokeAll(failingTasks, randomString());
+                } catch (final IllegalStateException e) {
+                    // expected
+                }
+
+                // Then
+                assertEquals(maxConcurrentTasks, boundedParallelExecutor.availablePermits());
+            }
+        } finally {
+            singleThreadExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldAwaitRunningTaskAndReassertInterrupt_withInterruptedCaller() throws Exception {
+        // Given
+        final BoundedParallelExecutor boundedParallelExecutor = new BoundedParallelExecutor(executorService, 1);
+        final CountDownLatch taskStarted = new CountDownLatch(1);
+        final AtomicBoolean taskFinished = new AtomicBoolean();
+        final Supplier<String> task = () -> {
+            taskStarted.countDown();
+            try {
+                Thread.sleep(10000);
+            } catch (final InterruptedException e) {
+                // interrupted by cancellation
+            }
+            taskFinished.set(true);
+            return null;
+        };
+        final Thread callerThread = Thread.currentThread();
+        new Thread(() -> {
+            try {
+                taskStarted.await(5, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            callerThread.interrupt();
+        }).start();
+
+        // When
+        PersistenceResourceFailureException actualException = null;
+        try {
+            boundedParallelExecutor.invokeAll(Arrays.asList(task, task), randomString());
+        } catch (final PersistenceResourceFailureException e) {
+            actualException = e;
+        }
+
+        // Then
+        final boolean callerInterrupted = Thread.interrupted();
+        assertNotNull(actualException);
+        assertTrue(callerInterrupted);
+        assertTrue(taskFinished.get());
+    }
+}
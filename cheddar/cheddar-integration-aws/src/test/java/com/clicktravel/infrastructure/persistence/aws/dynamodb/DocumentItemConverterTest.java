@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.dynamodb;
+
+import static com.clicktravel.common.random.Randoms.*;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class DocumentItemConverterTest {
+
+    private ObjectMapper mapper;
+    private DocumentItemConverter documentItemConverter;
+
+    @Before
+    public void setUp() {
+        mapper = new ObjectMapper();
+        mapper.enableDefaultTyping(ObjectMapper.DefaultTyping.JAVA_LANG_OBJECT);
+        documentItemConverter = new DocumentItemConverter(mapper);
+    }
+
+    private StubItem randomStubItem() {
+        final StubItem stubItem = new StubItem();
+        stubItem.setId(randomId());
+        stubItem.setStringProperty(randomString());
+        stubItem.setStringProperty2(randomString());
+        stubItem.setBooleanProperty(randomBoolean());
+        stubItem.setVersion(randomLong());
+        final Set<String> stringSet = new HashSet<>();
+        for (int i = 0; i < 1 + randomInt(5); i++) {
+            stringSet.add(randomString());
+        }
+        stubItem.setStringSetProperty(stringSet);
+        return stubItem;
+    }
+
+    @Test
+    public void shouldConvertToDocument_withItem() throws Exception {
+        // Given
+        final StubItem stubItem = randomStubItem();
+
+        // When
+        final Item document = documentItemConverter.toDocument(stubItem);
+
+        // Then
+        assertEquals(Item.fromJSON(mapper.writeValueAsString(stubItem)).asMap(), document.asMap());
+    }
+
+    @Test
+    public void shouldConvertFromDocument_withDocument() throws Exception {
+        // Given
+        final StubItem stubItem = randomStubItem();
+        final Item document = Item.fromJSON(mapper.writeValueAsString(stubItem));
+
+        // When
+        final StubItem convertedItem = documentItemConverter.fromDocument(document, StubItem.class);
+
+        // Then
+        assertEquals(stubItem, convertedItem);
+    }
+}
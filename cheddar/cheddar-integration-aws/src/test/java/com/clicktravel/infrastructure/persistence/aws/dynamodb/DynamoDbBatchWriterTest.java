@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.dynamodb;
+
+import static com.clicktravel.common.random.Randoms.randomId;
+import static com.clicktravel.common.random.Randoms.randomString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.*;
+import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceResourceFailureException;
+
+public class DynamoDbBatchWriterTest {
+
+    private static final ExponentialBackoff NO_BACKOFF = new ExponentialBackoff(0, 0, 3);
+
+    private AmazonDynamoDB mockAmazonDynamoDbClient;
+    private String tableName;
+    private DynamoDbBatchWriter dynamoDbBatchWriter;
+
+    @Before
+    public void setUp() {
+        mockAmazonDynamoDbClient = mock(AmazonDynamoDB.class);
+        tableName = randomString(10);
+        dynamoDbBatchWriter = new DynamoDbBatchWriter(mockAmazonDynamoDbClient, null, NO_BACKOFF);
+    }
+
+    @Test
+    public void shouldReportFailureOfEachDuplicateRequestSeparately_withDuplicateUnprocessedRequest() {
+        // Given
+        final WriteRequest duplicatedWriteRequest = putRequest(randomId());
+        final WriteRequest otherWriteRequest = putRequest(randomId());
+        final List<WriteRequest> writeRequests = new ArrayList<>();
+        writeRequests.add(duplicatedWriteRequest);
+        writeRequests.add(otherWriteRequest);
+        writeRequests.add(putRequest(duplicatedWriteRequest));
+        when(mockAmazonDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenReturn(unprocessed(putRequest(duplicatedWriteRequest)));
+
+        // When
+        final List<PersistenceResourceFailureException> failures = dynamoDbBatchWriter.batchWrite(tableName,
+                writeRequests, false);
+
+        // Then
+        verify(mockAmazonDynamoDbClient, times(NO_BACKOFF.maxAttempts())).batchWriteItem(
+                any(BatchWriteItemRequest.class));
+        assertEquals(3, failures.size());
+        assertNotNull(failures.get(0));
+        assertNull(failures.get(1));
+        assertNull(failures.get(2));
+    }
+
+    @Test
+    public void shouldReportWrittenBatchesAndRejection_withFailFastAndRejectedBatch() {
+        // Given
+        final List<WriteRequest> writeRequests = new ArrayList<>();
+        for (int n = 0; n < 3 * DynamoDbBatchWriter.MAX_BATCH_WRITE_ITEMS; n++) {
+            writeRequests.add(putRequest(randomId()));
+        }
+        final AmazonServiceException amazonServiceException = new AmazonServiceException(randomString());
+        when(mockAmazonDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenReturn(new BatchWriteItemResult()).thenThrow(amazonServiceException);
+
+        // When
+        final List<PersistenceResourceFailureException> failures = dynamoDbBatchWriter.batchWrite(tableName,
+                writeRequests, true);
+
+        // Then
+        verify(mockAmazonDynamoDbClient, times(2)).batchWriteItem(any(BatchWriteItemRequest.class));
+        final PersistenceResourceFailureException rejection = DynamoDbBatchWriter.rejection(failures);
+        assertNotNull(rejection);
+        assertSame(amazonServiceException, rejection.getCause());
+        for (int position = 0; position < failures.size(); position++) {
+            final PersistenceResourceFailureException failure = failures.get(position);
+            if (position < DynamoDbBatchWriter.MAX_BATCH_WRITE_ITEMS) {
+                assertNull(failure);
+            } else if (position < 2 * DynamoDbBatchWriter.MAX_BATCH_WRITE_ITEMS) {
+                assertSame(rejection, failure);
+            } else {
+                assertSame(rejection, failure.getCause());
+            }
+        }
+    }
+
+    @Test
+    public void shouldReportRejectionAndContinue_withoutFailFastAndRejectedBatch() {
+        // Given
+        final List<WriteRequest> writeRequests = new ArrayList<>();
+        for (int n = 0; n < 2 * DynamoDbBatchWriter.MAX_BATCH_WRITE_ITEMS; n++) {
+            writeRequests.add(putRequest(randomId()));
+        }
+        when(mockAmazonDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenThrow(new AmazonServiceException(randomString())).thenReturn(new BatchWriteItemResult());
+
+        // When
+        final List<PersistenceResourceFailureException> failures = dynamoDbBatchWriter.batchWrite(tableName,
+                writeRequests, false);
+
+        // Then
+        verify(mockAmazonDynamoDbClient, times(2)).batchWriteItem(any(BatchWriteItemRequest.class));
+        for (int position = 0; position < failures.size(); position++) {
+            if (position < DynamoDbBatchWriter.MAX_BATCH_WRITE_ITEMS) {
+                assertTrue(failures.get(position).getCause() instanceof AmazonServiceException);
+            } else {
+                assertNull(failures.get(position));
+            }
+        }
+    }
+
+    private WriteRequest putRequest(final String id) {
+        return new WriteRequest()
+                .withPutRequest(new PutRequest().withItem(Collections.singletonMap("id", new AttributeValue(id))));
+    }
+
+    private WriteRequest putRequest(final WriteRequest writeRequest) {
+        return putRequest(writeRequest.getPutRequest().getItem().get("id").getS());
+    }
+
+    private BatchWriteItemResult unprocessed(final WriteRequest writeRequest) {
+        return new BatchWriteItemResult().withUnprocessedItems(
+                Collections.singletonMap(tableName, Collections.singletonList(writeRequest)));
+    }
+}
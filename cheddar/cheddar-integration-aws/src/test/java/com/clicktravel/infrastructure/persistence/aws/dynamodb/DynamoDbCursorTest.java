@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.dynamodb;
+
+import static com.clicktravel.common.random.Randoms.randomId;
+import static com.clicktravel.common.random.Randoms.randomLong;
+import static com.clicktravel.common.random.Randoms.randomString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+public class DynamoDbCursorTest {
+
+    @Test
+    public void shouldDecodeEncodedCursor_withStringNumberAndBinaryKeyAttributes() {
+        // Given
+        final Map<String, AttributeValue> lastEvaluatedKey = new HashMap<>();
+        lastEvaluatedKey.put("id", new AttributeValue(randomId()));
+        lastEvaluatedKey.put("sequence", new AttributeValue().withN(String.valueOf(randomLong())));
+        lastEvaluatedKey.put("hash",
+                new AttributeValue().withB(ByteBuffer.wrap(randomString().getBytes(StandardCharsets.UTF_8))));
+
+        // When
+        final String cursor = DynamoDbCursor.encode(lastEvaluatedKey);
+
+        // Then
+        assertNotNull(cursor);
+        assertEquals(lastEvaluatedKey, DynamoDbCursor.decode(cursor));
+    }
+
+    @Test
+    public void shouldNotEncodeCursor_withNoLastEvaluatedKey() {
+        // When
+        final String nullKeyCursor = DynamoDbCursor.encode(null);
+        final String emptyKeyCursor = DynamoDbCursor.encode(Collections.<String, AttributeValue> emptyMap());
+
+        // Then
+        assertNull(nullKeyCursor);
+        assertNull(emptyKeyCursor);
+    }
+
+    @Test
+    public void shouldNotDecodeCursor_withNullCursor() {
+        // When
+        final Map<String, AttributeValue> lastEvaluatedKey = DynamoDbCursor.decode(null);
+
+        // Then
+        assertNull(lastEvaluatedKey);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotDecodeCursor_withInvalidCursor() {
+        // When
+        DynamoDbCursor.decode(randomString(10) + "!");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotEncodeCursor_withNonScalarKeyAttribute() {
+        // Given
+        final Map<String, AttributeValue> lastEvaluatedKey = Collections.singletonMap("id",
+                new AttributeValue().withSS(randomString()));
+
+        // When
+        DynamoDbCursor.encode(lastEvaluatedKey);
+    }
+}
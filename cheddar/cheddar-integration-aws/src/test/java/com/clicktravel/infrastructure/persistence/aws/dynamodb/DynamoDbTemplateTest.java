@@ -26,6 +26,8 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -35,15 +37,19 @@ import org.mockito.internal.util.collections.Sets;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.model.*;
+import com.clicktravel.cheddar.infrastructure.persistence.database.BatchWriteResult;
+import com.clicktravel.cheddar.infrastructure.persistence.database.FetchResult;
 import com.clicktravel.cheddar.infrastructure.persistence.database.GeneratedKeyHolder;
 import com.clicktravel.cheddar.infrastructure.persistence.database.ItemId;
 import com.clicktravel.cheddar.infrastructure.persistence.database.SequenceKeyGenerator;
 import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.*;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.ItemConstraintViolationException;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.OptimisticLockException;
+import com.clicktravel.cheddar.infrastructure.persistence.database.options.FetchOptions;
 import com.clicktravel.cheddar.infrastructure.persistence.database.query.AttributeQuery;
 import com.clicktravel.cheddar.infrastructure.persistence.database.query.CompoundAttributeQuery;
 import com.clicktravel.cheddar.infrastructure.persistence.database.query.Condition;
+import com.clicktravel.cheddar.infrastructure.persistence.database.query.KeySetQuery;
 import com.clicktravel.cheddar.infrastructure.persistence.database.query.Operators;
 import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceResourceFailureException;
 import com.clicktravel.common.random.Randoms;
@@ -413,6 +419,281 @@ public class DynamoDbTemplateTest {
                 queryRequest.getKeyConditions().get("id").getAttributeValueList().get(0));
     }
 
+    @Test
+    public void shouldFetch_withAttributeQueryOnNonIndexedPropertyAndParallelScan() throws Exception {
+        // Given
+        final AttributeQuery query = mock(AttributeQuery.class);
+        final Condition mockCondition = mock(Condition.class);
+        when(mockCondition.getComparisonOperator()).thenReturn(Operators.EQUALS);
+        when(mockCondition.hasMissingComparisonValues()).thenReturn(false);
+        final String stringProperty = randomString(10);
+        when(mockCondition.getValues()).thenReturn(new HashSet<>(Arrays.asList(stringProperty)));
+        when(query.getAttributeName()).thenReturn("stringProperty");
+        when(query.getCondition()).thenReturn(mockCondition);
+
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
+        final Collection<ItemConfiguration> itemConfigurations = Arrays.asList(itemConfiguration);
+        when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(itemConfigurations);
+        when(mockAmazonDynamoDbClient.scan(any(ScanRequest.class))).thenAnswer(invocation -> {
+            final ScanRequest scanRequest = invocation.getArgument(0);
+            final Map<String, AttributeValue> item = new HashMap<>();
+            item.put("id", new AttributeValue(String.valueOf(scanRequest.getSegment())));
+            item.put("stringProperty", new AttributeValue(stringProperty));
+            return new ScanResult().withItems(Arrays.asList(item));
+        });
+        final int scanSegments = 2 + randomInt(5);
+        final ExecutorService scanExecutor = Executors.newFixedThreadPool(2);
+
+        final DynamoDbTemplate dynamoDbTemplate = new DynamoDbTemplate(mockDatabaseSchemaHolder);
+        dynamoDbTemplate.initialize(mockAmazonDynamoDbClient);
+        dynamoDbTemplate.configureParallelScan(scanExecutor, scanSegments, 2);
+
+        // When
+        final Collection<StubItem> returnedItems;
+        try {
+            returnedItems = dynamoDbTemplate.fetch(query, StubItem.class);
+        } finally {
+            scanExecutor.shutdown();
+        }
+
+        // Then
+        final ArgumentCaptor<ScanRequest> scanRequestArgumentCaptor = ArgumentCaptor.forClass(ScanRequest.class);
+        verify(mockAmazonDynamoDbClient, times(scanSegments)).scan(scanRequestArgumentCaptor.capture());
+        final Set<Integer> scannedSegments = new HashSet<>();
+        for (final ScanRequest scanRequest : scanRequestArgumentCaptor.getAllValues()) {
+            assertEquals(schemaName + "." + tableName, scanRequest.getTableName());
+            assertEquals(Integer.valueOf(scanSegments), scanRequest.getTotalSegments());
+            scannedSegments.add(scanRequest.getSegment());
+        }
+        assertEquals(scanSegments, scannedSegments.size());
+        final List<String> returnedItemIds = new ArrayList<>();
+        for (final StubItem returnedItem : returnedItems) {
+            returnedItemIds.add(returnedItem.getId());
+        }
+        final List<String> expectedItemIds = new ArrayList<>();
+        for (int segment = 0; segment < scanSegments; segment++) {
+            expectedItemIds.add(String.valueOf(segment));
+        }
+        assertEquals(expectedItemIds, returnedItemIds);
+    }
+
+    @Test
+    public void shouldFetch_withKeySetQueryAndUnprocessedKeys() throws Exception {
+        // Given
+        final ItemId firstItemId = new ItemId(randomId());
+        final ItemId secondItemId = new ItemId(randomId());
+        final KeySetQuery query = new KeySetQuery(Arrays.asList(firstItemId, secondItemId, firstItemId));
+
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
+        final Collection<ItemConfiguration> itemConfigurations = Arrays.asList(itemConfiguration);
+        when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(itemConfigurations);
+        final String batchTableName = schemaName + "." + tableName;
+        final Map<String, AttributeValue> firstItem = new HashMap<>();
+        firstItem.put("id", new AttributeValue(firstItemId.value()));
+        final Map<String, AttributeValue> secondItem = new HashMap<>();
+        secondItem.put("id", new AttributeValue(secondItemId.value()));
+        final Map<String, AttributeValue> firstKey = new HashMap<>(firstItem);
+        final BatchGetItemResult firstBatchGetItemResult = new BatchGetItemResult()
+                .withResponses(Collections.singletonMap(batchTableName, Arrays.asList(secondItem)))
+                .withUnprocessedKeys(Collections.singletonMap(batchTableName,
+                        new KeysAndAttributes().withKeys(Arrays.asList(firstKey))));
+        final BatchGetItemResult secondBatchGetItemResult = new BatchGetItemResult()
+                .withResponses(Collections.singletonMap(batchTableName, Arrays.asList(firstItem)));
+        when(mockAmazonDynamoDbClient.batchGetItem(any(BatchGetItemRequest.class)))
+                .thenReturn(firstBatchGetItemResult, secondBatchGetItemResult);
+
+        final DynamoDbTemplate dynamoDbTemplate = new DynamoDbTemplate(mockDatabaseSchemaHolder);
+        dynamoDbTemplate.initialize(mockAmazonDynamoDbClient);
+
+        // When
+        final Collection<StubItem> returnedItems = dynamoDbTemplate.fetch(query, StubItem.class);
+
+        // Then
+        final ArgumentCaptor<BatchGetItemRequest> batchGetItemRequestCaptor = ArgumentCaptor
+                .forClass(BatchGetItemRequest.class);
+        verify(mockAmazonDynamoDbClient, times(2)).batchGetItem(batchGetItemRequestCaptor.capture());
+        final List<BatchGetItemRequest> batchGetItemRequests = batchGetItemRequestCaptor.getAllValues();
+        assertEquals(2, batchGetItemRequests.get(0).getRequestItems().get(batchTableName).getKeys().size());
+        assertEquals(Arrays.asList(firstKey),
+                batchGetItemRequests.get(1).getRequestItems().get(batchTableName).getKeys());
+        final List<String> returnedItemIds = new ArrayList<>();
+        for (final StubItem returnedItem : returnedItems) {
+            returnedItemIds.add(returnedItem.getId());
+        }
+        assertEquals(Arrays.asList(firstItemId.value(), secondItemId.value()), returnedItemIds);
+    }
+
+    @Test
+    public void shouldFetchPages_withAttributeQueryAndFetchOptions() throws Exception {
+        // Given
+        final AttributeQuery query = new AttributeQuery("id", new Condition(Operators.EQUALS, randomId()));
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
+        when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(Arrays.asList(itemConfiguration));
+        final String firstItemId = randomId();
+        final String secondItemId = randomId();
+        final Map<String, AttributeValue> lastEvaluatedKey = Collections.singletonMap("id",
+                new AttributeValue(firstItemId));
+        final QueryResult firstQueryResult = new QueryResult()
+                .withItems(Arrays.asList(Collections.singletonMap("id", new AttributeValue(firstItemId))))
+                .withLastEvaluatedKey(lastEvaluatedKey);
+        final QueryResult secondQueryResult = new QueryResult()
+                .withItems(Arrays.asList(Collections.singletonMap("id", new AttributeValue(secondItemId))));
+        when(mockAmazonDynamoDbClient.query(any(QueryRequest.class))).thenReturn(firstQueryResult,
+                secondQueryResult);
+        final int pageSize = 1 + randomInt(10);
+
+        final DynamoDbTemplate dynamoDbTemplate = new DynamoDbTemplate(mockDatabaseSchemaHolder);
+        dynamoDbTemplate.initialize(mockAmazonDynamoDbClient);
+
+        // When
+        final FetchResult<StubItem> fetchResult = dynamoDbTemplate.fetch(query, StubItem.class,
+                new FetchOptions().withPageSize(pageSize));
+        final List<StubItem> returnedItems = fetchResult.getItems();
+
+        // Then
+        final ArgumentCaptor<QueryRequest> queryRequestCaptor = ArgumentCaptor.forClass(QueryRequest.class);
+        verify(mockAmazonDynamoDbClient, times(2)).query(queryRequestCaptor.capture());
+        final List<QueryRequest> queryRequests = queryRequestCaptor.getAllValues();
+        assertNull(queryRequests.get(0).getExclusiveStartKey());
+        assertEquals(Integer.valueOf(pageSize), queryRequests.get(0).getLimit());
+        assertEquals(lastEvaluatedKey, queryRequests.get(1).getExclusiveStartKey());
+        assertEquals(Integer.valueOf(pageSize), queryRequests.get(1).getLimit());
+        assertEquals(2, returnedItems.size());
+        assertEquals(firstItemId, returnedItems.get(0).getId());
+        assertEquals(secondItemId, returnedItems.get(1).getId());
+        assertNull(fetchResult.getCursor());
+    }
+
+    @Test
+    public void shouldFetchUpToLimitAndResumeFromCursor_withAttributeQueryOnNonIndexedProperty() throws Exception {
+        // Given
+        final AttributeQuery query = new AttributeQuery("stringProperty",
+                new Condition(Operators.EQUALS, randomString(10)));
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
+        when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(Arrays.asList(itemConfiguration));
+        final String firstItemId = randomId();
+        final String secondItemId = randomId();
+        final String thirdItemId = randomId();
+        final Map<String, AttributeValue> lastEvaluatedKey = Collections.singletonMap("id",
+                new AttributeValue(secondItemId));
+        final ScanResult firstScanResult = new ScanResult()
+                .withItems(Arrays.asList(Collections.singletonMap("id", new AttributeValue(firstItemId)),
+                        Collections.singletonMap("id", new AttributeValue(secondItemId))))
+                .withLastEvaluatedKey(lastEvaluatedKey);
+        final ScanResult secondScanResult = new ScanResult()
+                .withItems(Arrays.asList(Collections.singletonMap("id", new AttributeValue(thirdItemId))));
+        when(mockAmazonDynamoDbClient.scan(any(ScanRequest.class))).thenReturn(firstScanResult, secondScanResult);
+
+        final DynamoDbTemplate dynamoDbTemplate = new DynamoDbTemplate(mockDatabaseSchemaHolder);
+        dynamoDbTemplate.initialize(mockAmazonDynamoDbClient);
+
+        // When
+        final FetchResult<StubItem> firstFetchResult = dynamoDbTemplate.fetch(query, StubItem.class,
+                new FetchOptions().withLimit(2));
+        final List<StubItem> firstItems = firstFetchResult.getItems();
+        final String cursor = firstFetchResult.getCursor();
+        final FetchResult<StubItem> secondFetchResult = dynamoDbTemplate.fetch(query, StubItem.class,
+                new FetchOptions().withLimit(2).withCursor(cursor));
+        final List<StubItem> secondItems = secondFetchResult.getItems();
+
+        // Then
+        final ArgumentCaptor<ScanRequest> scanRequestCaptor = ArgumentCaptor.forClass(ScanRequest.class);
+        verify(mockAmazonDynamoDbClient, times(2)).scan(scanRequestCaptor.capture());
+        final List<ScanRequest> scanRequests = scanRequestCaptor.getAllValues();
+        assertEquals(Integer.valueOf(2), scanRequests.get(0).getLimit());
+        assertNull(scanRequests.get(0).getExclusiveStartKey());
+        assertEquals(lastEvaluatedKey, scanRequests.get(1).getExclusiveStartKey());
+        assertEquals(2, firstItems.size());
+        assertNotNull(cursor);
+        assertEquals(1, secondItems.size());
+        assertEquals(thirdItemId, secondItems.get(0).getId());
+        assertNull(secondFetchResult.getCursor());
+    }
+
+    @Test
+    public void shouldFetchEmptyLastPage_withAttributeQueryAndLastEvaluatedKeyOnFinalPage() throws Exception {
+        // Given
+        final AttributeQuery query = new AttributeQuery("id", new Condition(Operators.EQUALS, randomId()));
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
+        when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(Arrays.asList(itemConfiguration));
+        final String itemId = randomId();
+        final QueryResult firstQueryResult = new QueryResult()
+                .withItems(Arrays.asList(Collections.singletonMap("id", new AttributeValue(itemId))))
+                .withLastEvaluatedKey(Collections.singletonMap("id", new AttributeValue(itemId)));
+        final QueryResult emptyQueryResult = new QueryResult()
+                .withItems(new ArrayList<Map<String, AttributeValue>>());
+        when(mockAmazonDynamoDbClient.query(any(QueryRequest.class))).thenReturn(firstQueryResult,
+                emptyQueryResult);
+
+        final DynamoDbTemplate dynamoDbTemplate = new DynamoDbTemplate(mockDatabaseSchemaHolder);
+        dynamoDbTemplate.initialize(mockAmazonDynamoDbClient);
+
+        // When
+        final FetchResult<StubItem> fetchResult = dynamoDbTemplate.fetch(query, StubItem.class, new FetchOptions());
+        final List<StubItem> returnedItems = fetchResult.getItems();
+
+        // Then
+        verify(mockAmazonDynamoDbClient, times(2)).query(any(QueryRequest.class));
+        assertEquals(1, returnedItems.size());
+        assertNull(fetchResult.getCursor());
+    }
+
+    @Test
+    public void shouldFetchUpToLimitAndResumeFromCursor_withKeySetQuery() throws Exception {
+        // Given
+        final ItemId firstItemId = new ItemId(randomId());
+        final ItemId secondItemId = new ItemId(randomId());
+        final ItemId thirdItemId = new ItemId(randomId());
+        final KeySetQuery query = new KeySetQuery(Arrays.asList(firstItemId, secondItemId, thirdItemId));
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
+        when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(Arrays.asList(itemConfiguration));
+        final String batchTableName = schemaName + "." + tableName;
+        when(mockAmazonDynamoDbClient.batchGetItem(any(BatchGetItemRequest.class))).thenAnswer(invocation -> {
+            final BatchGetItemRequest batchGetItemRequest = invocation.getArgument(0);
+            return new BatchGetItemResult().withResponses(Collections.singletonMap(batchTableName,
+                    batchGetItemRequest.getRequestItems().get(batchTableName).getKeys()));
+        });
+
+        final DynamoDbTemplate dynamoDbTemplate = new DynamoDbTemplate(mockDatabaseSchemaHolder);
+        dynamoDbTemplate.initialize(mockAmazonDynamoDbClient);
+
+        // When
+        final FetchResult<StubItem> firstFetchResult = dynamoDbTemplate.fetch(query, StubItem.class,
+                new FetchOptions().withLimit(2));
+        final List<StubItem> firstItems = firstFetchResult.getItems();
+        final String cursor = firstFetchResult.getCursor();
+        final FetchResult<StubItem> secondFetchResult = dynamoDbTemplate.fetch(query, StubItem.class,
+                new FetchOptions().withCursor(cursor));
+        final List<StubItem> secondItems = secondFetchResult.getItems();
+
+        // Then
+        final ArgumentCaptor<BatchGetItemRequest> batchGetItemRequestCaptor = ArgumentCaptor
+                .forClass(BatchGetItemRequest.class);
+        verify(mockAmazonDynamoDbClient, times(2)).batchGetItem(batchGetItemRequestCaptor.capture());
+        final List<BatchGetItemRequest> batchGetItemRequests = batchGetItemRequestCaptor.getAllValues();
+        assertEquals(2, batchGetItemRequests.get(0).getRequestItems().get(batchTableName).getKeys().size());
+        assertEquals(1, batchGetItemRequests.get(1).getRequestItems().get(batchTableName).getKeys().size());
+        assertEquals(2, firstItems.size());
+        assertNotNull(cursor);
+        assertEquals(1, secondItems.size());
+        assertEquals(thirdItemId.value(), secondItems.get(0).getId());
+        assertNull(secondFetchResult.getCursor());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotFetch_withInvalidCursor() throws Exception {
+        // Given
+        final AttributeQuery query = new AttributeQuery("id", new Condition(Operators.EQUALS, randomId()));
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
+        when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(Arrays.asList(itemConfiguration));
+        final DynamoDbTemplate dynamoDbTemplate = new DynamoDbTemplate(mockDatabaseSchemaHolder);
+        dynamoDbTemplate.initialize(mockAmazonDynamoDbClient);
+
+        // When
+        dynamoDbTemplate.fetch(query, StubItem.class, new FetchOptions().withCursor(randomString(10) + "!"))
+                .getItems();
+    }
+
     @Test
     public void shouldCreateItem_withStubItem() throws Exception {
         // Given
@@ -675,6 +956,64 @@ public class DynamoDbTemplateTest {
         verify(mockAmazonDynamoDbClient, never()).deleteItem(any(DeleteItemRequest.class));
     }
 
+    @Test
+    public void shouldNotCreateItem_withParallelUniqueConstraintsAndDuplicate() throws Exception {
+        // Given
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
+        itemConfiguration.registerUniqueConstraints(
+                Arrays.asList(new UniqueConstraint("stringProperty"), new UniqueConstraint("stringProperty2")));
+        final Collection<ItemConfiguration> itemConfigurations = Arrays.asList(itemConfiguration);
+        when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(itemConfigurations);
+        final DynamoDbTemplate dynamoDbTemplate = new DynamoDbTemplate(mockDatabaseSchemaHolder);
+        final AmazonDynamoDB mockAmazonDynamoDbClient = mock(AmazonDynamoDB.class);
+        dynamoDbTemplate.initialize(mockAmazonDynamoDbClient);
+        final ExecutorService uniqueConstraintExecutor = Executors.newFixedThreadPool(2);
+        dynamoDbTemplate.configureParallelUniqueConstraints(uniqueConstraintExecutor, 2);
+        when(mockAmazonDynamoDbClient.putItem(any(PutItemRequest.class))).thenAnswer(invocation -> {
+            final PutItemRequest putItemRequest = invocation.getArgument(0);
+            if (new AttributeValue("stringProperty2").equals(putItemRequest.getItem().get("property"))) {
+                throw new ConditionalCheckFailedException(randomString());
+            }
+            return new PutItemResult();
+        });
+        final StubItem stubItem = new StubItem();
+        stubItem.setId(randomId());
+        stubItem.setStringProperty(randomString(10));
+        stubItem.setStringProperty2(randomString(10));
+
+        // When
+        ItemConstraintViolationException actualException = null;
+        try {
+            dynamoDbTemplate.create(stubItem);
+        } catch (final ItemConstraintViolationException e) {
+            actualException = e;
+        } finally {
+            uniqueConstraintExecutor.shutdown();
+        }
+
+        // Then
+        assertNotNull(actualException);
+        final ArgumentCaptor<PutItemRequest> putItemRequestArgumentCaptor = ArgumentCaptor
+                .forClass(PutItemRequest.class);
+        verify(mockAmazonDynamoDbClient, atLeastOnce()).putItem(putItemRequestArgumentCaptor.capture());
+        int createdIndexEntryCount = 0;
+        for (final PutItemRequest putItemRequest : putItemRequestArgumentCaptor.getAllValues()) {
+            assertEquals(schemaName + "-indexes." + tableName, putItemRequest.getTableName());
+            if (new AttributeValue("stringProperty").equals(putItemRequest.getItem().get("property"))) {
+                createdIndexEntryCount++;
+            }
+        }
+        final ArgumentCaptor<DeleteItemRequest> deleteItemRequestArgumentCaptor = ArgumentCaptor
+                .forClass(DeleteItemRequest.class);
+        verify(mockAmazonDynamoDbClient, times(createdIndexEntryCount))
+                .deleteItem(deleteItemRequestArgumentCaptor.capture());
+        for (final DeleteItemRequest deleteItemRequest : deleteItemRequestArgumentCaptor.getAllValues()) {
+            assertEquals(new AttributeValue("stringProperty"), deleteItemRequest.getKey().get("property"));
+            assertEquals(new AttributeValue(stubItem.getStringProperty().toUpperCase()),
+                    deleteItemRequest.getKey().get("value"));
+        }
+    }
+
     @Test
     public void shouldNotCreateItem_withUniqueConstraintAndFailedIndexCreation() throws Exception {
         // Given
@@ -733,6 +1072,92 @@ public class DynamoDbTemplateTest {
                 deleteItemRequest.getKey().get("value"));
     }
 
+    @Test
+    public void shouldUpdateOnlyChangedAttributes_withStubItemPreviouslyRead() throws Exception {
+        // Given
+        final ItemId itemId = new ItemId(randomId());
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
+        itemConfiguration.registerUniqueConstraints(Arrays.asList(new UniqueConstraint("stringProperty")));
+        final Collection<ItemConfiguration> itemConfigurations = Arrays.asList(itemConfiguration);
+        when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(itemConfigurations);
+        final Long oldVersion = randomLong();
+        final Map<String, AttributeValue> itemAttributeMap = new HashMap<>();
+        itemAttributeMap.put("id", new AttributeValue(itemId.value()));
+        itemAttributeMap.put("stringProperty", new AttributeValue(randomString(10)));
+        itemAttributeMap.put("stringProperty2", new AttributeValue(randomString(10)));
+        itemAttributeMap.put("booleanProperty", new AttributeValue().withN("0"));
+        itemAttributeMap.put("version", new AttributeValue().withN(String.valueOf(oldVersion)));
+        when(mockAmazonDynamoDbClient.getItem(any(GetItemRequest.class)))
+                .thenReturn(new GetItemResult().withItem(itemAttributeMap));
+        final DynamoDbTemplate dynamoDbTemplate = new DynamoDbTemplate(mockDatabaseSchemaHolder);
+        dynamoDbTemplate.initialize(mockAmazonDynamoDbClient);
+        final StubItem stubItem = dynamoDbTemplate.read(itemId, StubItem.class);
+        final String stringProperty2 = randomString(10);
+        stubItem.setStringProperty2(stringProperty2);
+
+        // When
+        dynamoDbTemplate.update(stubItem);
+
+        // Then
+        verify(mockAmazonDynamoDbClient, times(1)).getItem(any(GetItemRequest.class));
+        verify(mockAmazonDynamoDbClient, never()).putItem(any(PutItemRequest.class));
+        verify(mockAmazonDynamoDbClient, never()).deleteItem(any(DeleteItemRequest.class));
+        final ArgumentCaptor<UpdateItemRequest> updateItemRequestArgumentCaptor = ArgumentCaptor
+                .forClass(UpdateItemRequest.class);
+        verify(mockAmazonDynamoDbClient).updateItem(updateItemRequestArgumentCaptor.capture());
+        final UpdateItemRequest updateItemRequest = updateItemRequestArgumentCaptor.getValue();
+        assertEquals(2, updateItemRequest.getAttributeUpdates().size());
+        assertEquals(
+                new AttributeValueUpdate().withAction(AttributeAction.PUT)
+                        .withValue(new AttributeValue(stringProperty2)),
+                updateItemRequest.getAttributeUpdates().get("stringProperty2"));
+        assertEquals(
+                new AttributeValueUpdate().withAction(AttributeAction.PUT)
+                        .withValue(new AttributeValue().withN(String.valueOf(oldVersion + 1))),
+                updateItemRequest.getAttributeUpdates().get("version"));
+        assertEquals(new ExpectedAttributeValue(new AttributeValue().withN(String.valueOf(oldVersion))),
+                updateItemRequest.getExpected().get("version"));
+        assertEquals(Long.valueOf(oldVersion + 1), stubItem.getVersion());
+    }
+
+    @Test
+    public void shouldNotChangeUniqueConstraintIndex_withStubItemPreviouslyReadAndUniqueConstraintCaseChanged()
+            throws Exception {
+        // Given
+        final ItemId itemId = new ItemId(randomId());
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
+        itemConfiguration.registerUniqueConstraints(Arrays.asList(new UniqueConstraint("stringProperty")));
+        final Collection<ItemConfiguration> itemConfigurations = Arrays.asList(itemConfiguration);
+        when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(itemConfigurations);
+        final Long oldVersion = randomLong();
+        final String stringProperty = randomString(10);
+        final Map<String, AttributeValue> itemAttributeMap = new HashMap<>();
+        itemAttributeMap.put("id", new AttributeValue(itemId.value()));
+        itemAttributeMap.put("stringProperty", new AttributeValue(stringProperty.toUpperCase()));
+        itemAttributeMap.put("version", new AttributeValue().withN(String.valueOf(oldVersion)));
+        when(mockAmazonDynamoDbClient.getItem(any(GetItemRequest.class)))
+                .thenReturn(new GetItemResult().withItem(itemAttributeMap));
+        final DynamoDbTemplate dynamoDbTemplate = new DynamoDbTemplate(mockDatabaseSchemaHolder);
+        dynamoDbTemplate.initialize(mockAmazonDynamoDbClient);
+        final StubItem stubItem = dynamoDbTemplate.read(itemId, StubItem.class);
+        stubItem.setStringProperty(stringProperty.toLowerCase());
+
+        // When
+        dynamoDbTemplate.update(stubItem);
+
+        // Then
+        verify(mockAmazonDynamoDbClient, never()).putItem(any(PutItemRequest.class));
+        verify(mockAmazonDynamoDbClient, never()).deleteItem(any(DeleteItemRequest.class));
+        final ArgumentCaptor<UpdateItemRequest> updateItemRequestArgumentCaptor = ArgumentCaptor
+                .forClass(UpdateItemRequest.class);
+        verify(mockAmazonDynamoDbClient).updateItem(updateItemRequestArgumentCaptor.capture());
+        assertEquals(
+                new AttributeValueUpdate().withAction(AttributeAction.PUT)
+                        .withValue(new AttributeValue(stringProperty.toLowerCase())),
+                updateItemRequestArgumentCaptor.getValue().getAttributeUpdates().get("stringProperty"));
+        assertEquals(Long.valueOf(oldVersion + 1), stubItem.getVersion());
+    }
+
     @Test
     public void shouldUpdateItem_withStubItem() throws Exception {
         // Given
@@ -1729,6 +2154,40 @@ public class DynamoDbTemplateTest {
         assertEquals(generatedKeyHolder.keys().size(), 5);
     }
 
+    @Test
+    public void shouldGenerateKeysFromReservedBlock_withSequenceBlockSize() throws Exception {
+        // Given
+        final String sequenceName = randomString(10);
+        final SequenceConfiguration sequenceConfiguration = new SequenceConfiguration(sequenceName, 1, 10, 0);
+        final Collection<SequenceConfiguration> sequenceConfigurations = new ArrayList<>();
+        sequenceConfigurations.add(sequenceConfiguration);
+        when(mockDatabaseSchemaHolder.sequenceConfigurations()).thenReturn(sequenceConfigurations);
+        final AmazonDynamoDB mockAmazonDynamoDbClient = mock(AmazonDynamoDB.class);
+        final SequenceKeyGenerator sequenceKeyGenerator = new SequenceKeyGenerator(sequenceName, 3);
+        final DynamoDbTemplate dynamoDbTemplate = new DynamoDbTemplate(mockDatabaseSchemaHolder);
+        dynamoDbTemplate.initialize(mockAmazonDynamoDbClient);
+        final UpdateItemResult mockUpdateItemResult = mock(UpdateItemResult.class);
+        final Map<String, AttributeValue> mockUpdateItemResultAttributes = mock(Map.class);
+        final AttributeValue mockCurrentValueAttributeValue = mock(AttributeValue.class);
+        when(mockUpdateItemResultAttributes.get("currentValue")).thenReturn(mockCurrentValueAttributeValue);
+        when(mockUpdateItemResult.getAttributes()).thenReturn(mockUpdateItemResultAttributes);
+        when(mockAmazonDynamoDbClient.updateItem(any(UpdateItemRequest.class))).thenReturn(mockUpdateItemResult);
+        when(mockCurrentValueAttributeValue.getN()).thenReturn("10");
+
+        // When
+        final GeneratedKeyHolder generatedKeyHolder1 = dynamoDbTemplate.generateKeys(sequenceKeyGenerator);
+        final GeneratedKeyHolder generatedKeyHolder2 = dynamoDbTemplate.generateKeys(sequenceKeyGenerator);
+
+        // Then
+        final ArgumentCaptor<UpdateItemRequest> updateItemRequestArgumentCaptor = ArgumentCaptor
+                .forClass(UpdateItemRequest.class);
+        verify(mockAmazonDynamoDbClient).updateItem(updateItemRequestArgumentCaptor.capture());
+        assertEquals("10", updateItemRequestArgumentCaptor.getValue().getAttributeUpdates().get("currentValue")
+                .getValue().getN());
+        assertEquals(Arrays.asList(1l, 2l, 3l), generatedKeyHolder1.keys());
+        assertEquals(Arrays.asList(4l, 5l, 6l), generatedKeyHolder2.keys());
+    }
+
     @Test
     public void shouldNotGenerateKeys_withNoSequenceConfigurations() throws Exception {
         // Given
@@ -1978,6 +2437,148 @@ public class DynamoDbTemplateTest {
 
     }
 
+    @Test
+    public void shouldBatchPutItems_withMoreItemsThanOneBatchAndUnprocessedItems() throws Exception {
+        // Given
+        final int numberOfItems = 26 + randomInt(24);
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
+        final Collection<ItemConfiguration> itemConfigurations = Arrays.asList(itemConfiguration);
+        when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(itemConfigurations);
+        final DynamoDbTemplate dynamoDbTemplate = new DynamoDbTemplate(mockDatabaseSchemaHolder);
+        dynamoDbTemplate.initialize(mockAmazonDynamoDbClient);
+
+        final List<StubItem> stubItems = new ArrayList<StubItem>();
+        for (int i = 0; i < numberOfItems; i++) {
+            final StubItem stubItem = new StubItem();
+            stubItem.setId(randomId());
+            stubItem.setStringProperty(randomString(10));
+            stubItems.add(stubItem);
+        }
+        final String batchTableName = schemaName + "." + tableName;
+        final List<WriteRequest> unprocessedWriteRequests = new ArrayList<>();
+        when(mockAmazonDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class))).thenAnswer(invocation -> {
+            final BatchWriteItemRequest batchWriteItemRequest = invocation.getArgument(0);
+            final BatchWriteItemResult batchWriteItemResult = new BatchWriteItemResult();
+            if (unprocessedWriteRequests.isEmpty()) {
+                unprocessedWriteRequests.add(batchWriteItemRequest.getRequestItems().get(batchTableName).get(0));
+                batchWriteItemResult.setUnprocessedItems(
+                        Collections.singletonMap(batchTableName, new ArrayList<>(unprocessedWriteRequests)));
+            }
+            return batchWriteItemResult;
+        });
+
+        // When
+        final BatchWriteResult<StubItem> batchWriteResult = dynamoDbTemplate.batchPut(stubItems, StubItem.class);
+
+        // Then
+        final ArgumentCaptor<BatchWriteItemRequest> batchWriteItemRequestArgumentCaptor = ArgumentCaptor
+                .forClass(BatchWriteItemRequest.class);
+        verify(mockAmazonDynamoDbClient, times(3)).batchWriteItem(batchWriteItemRequestArgumentCaptor.capture());
+        final List<BatchWriteItemRequest> batchWriteItemRequests = batchWriteItemRequestArgumentCaptor.getAllValues();
+        assertEquals(25, batchWriteItemRequests.get(0).getRequestItems().get(batchTableName).size());
+        assertEquals(unprocessedWriteRequests, batchWriteItemRequests.get(1).getRequestItems().get(batchTableName));
+        assertEquals(numberOfItems - 25, batchWriteItemRequests.get(2).getRequestItems().get(batchTableName).size());
+        assertEquals(stubItems, batchWriteResult.getSucceededItems());
+        assertFalse(batchWriteResult.hasFailures());
+        for (final StubItem stubItem : stubItems) {
+            assertEquals(Long.valueOf(1), stubItem.getVersion());
+        }
+    }
+
+    @Test
+    public void shouldReportFailedItems_withBatchPutAndAmazonServiceException() throws Exception {
+        // Given
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
+        final Collection<ItemConfiguration> itemConfigurations = Arrays.asList(itemConfiguration);
+        when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(itemConfigurations);
+        final DynamoDbTemplate dynamoDbTemplate = new DynamoDbTemplate(mockDatabaseSchemaHolder);
+        dynamoDbTemplate.initialize(mockAmazonDynamoDbClient);
+        final StubItem stubItem = new StubItem();
+        stubItem.setId(randomId());
+        when(mockAmazonDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenThrow(AmazonServiceException.class);
+
+        // When
+        final BatchWriteResult<StubItem> batchWriteResult = dynamoDbTemplate.batchPut(Arrays.asList(stubItem),
+                StubItem.class);
+
+        // Then
+        assertTrue(batchWriteResult.getSucceededItems().isEmpty());
+        assertEquals(Arrays.asList(stubItem), batchWriteResult.getFailedItems());
+        assertTrue(batchWriteResult.getFailures().get(0).getCause() instanceof PersistenceResourceFailureException);
+        assertNull(stubItem.getVersion());
+    }
+
+    @Test
+    public void shouldKeepEarlierBatchesWrittenAndThrow_withBatchWriteAndRejectedLaterBatch() throws Exception {
+        // Given
+        final int numberOfItems = 51 + randomInt(24);
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
+        final Collection<ItemConfiguration> itemConfigurations = Arrays.asList(itemConfiguration);
+        when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(itemConfigurations);
+        final DynamoDbTemplate dynamoDbTemplate = new DynamoDbTemplate(mockDatabaseSchemaHolder);
+        dynamoDbTemplate.initialize(mockAmazonDynamoDbClient);
+        final List<StubItem> stubItems = new ArrayList<StubItem>();
+        for (int i = 0; i < numberOfItems; i++) {
+            final StubItem stubItem = new StubItem();
+            stubItem.setId(randomId());
+            stubItems.add(stubItem);
+        }
+        final AmazonServiceException amazonServiceException = new AmazonServiceException(randomString());
+        when(mockAmazonDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenReturn(new BatchWriteItemResult()).thenThrow(amazonServiceException);
+
+        // When
+        PersistenceResourceFailureException thrownException = null;
+        try {
+            dynamoDbTemplate.batchWrite(stubItems, StubItem.class);
+        } catch (final PersistenceResourceFailureException e) {
+            thrownException = e;
+        }
+
+        // Then
+        assertNotNull(thrownException);
+        assertSame(amazonServiceException, thrownException.getCause());
+        verify(mockAmazonDynamoDbClient, times(2)).batchWriteItem(any(BatchWriteItemRequest.class));
+        for (int i = 0; i < numberOfItems; i++) {
+            assertEquals(i < 25 ? Long.valueOf(1) : null, stubItems.get(i).getVersion());
+        }
+    }
+
+    @Test
+    public void shouldBatchDeleteItems_withListOfItems() throws Exception {
+        // Given
+        final int numberOfItems = 1 + randomInt(24);
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
+        final Collection<ItemConfiguration> itemConfigurations = Arrays.asList(itemConfiguration);
+        when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(itemConfigurations);
+        final DynamoDbTemplate dynamoDbTemplate = new DynamoDbTemplate(mockDatabaseSchemaHolder);
+        dynamoDbTemplate.initialize(mockAmazonDynamoDbClient);
+        final List<StubItem> stubItems = new ArrayList<StubItem>();
+        for (int i = 0; i < numberOfItems; i++) {
+            final StubItem stubItem = new StubItem();
+            stubItem.setId(randomId());
+            stubItems.add(stubItem);
+        }
+        when(mockAmazonDynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenReturn(new BatchWriteItemResult());
+
+        // When
+        final BatchWriteResult<StubItem> batchWriteResult = dynamoDbTemplate.batchDelete(stubItems, StubItem.class);
+
+        // Then
+        final ArgumentCaptor<BatchWriteItemRequest> batchWriteItemRequestArgumentCaptor = ArgumentCaptor
+                .forClass(BatchWriteItemRequest.class);
+        verify(mockAmazonDynamoDbClient).batchWriteItem(batchWriteItemRequestArgumentCaptor.capture());
+        final List<WriteRequest> writeRequests = batchWriteItemRequestArgumentCaptor.getValue().getRequestItems()
+                .get(schemaName + "." + tableName);
+        assertEquals(numberOfItems, writeRequests.size());
+        for (int i = 0; i < numberOfItems; i++) {
+            assertEquals(stubItems.get(i).getId(), writeRequests.get(i).getDeleteRequest().getKey().get("id").getS());
+        }
+        assertEquals(stubItems, batchWriteResult.getSucceededItems());
+    }
+
     @Test
     public void shouldFetchEmptyList_withAttributeQueryWithEmptyAttributeList() throws Exception {
         // Given
@@ -22,20 +22,20 @@ import static com.clicktravel.common.random.Randoms.randomString;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.whenNew;
 
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -51,11 +51,18 @@ import com.amazonaws.services.dynamodbv2.document.spec.DeleteItemSpec;
 import com.amazonaws.services.dynamodbv2.document.spec.GetItemSpec;
 import com.amazonaws.services.dynamodbv2.document.spec.PutItemSpec;
 import com.amazonaws.services.dynamodbv2.document.spec.QuerySpec;
+import com.amazonaws.services.dynamodbv2.document.spec.ScanSpec;
+import com.amazonaws.services.dynamodbv2.document.spec.UpdateItemSpec;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.clicktravel.cheddar.infrastructure.persistence.database.FetchResult;
 import com.clicktravel.cheddar.infrastructure.persistence.database.ItemId;
 import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.*;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.NonExistentItemException;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.OptimisticLockException;
+import com.clicktravel.cheddar.infrastructure.persistence.database.options.FetchOptions;
 import com.clicktravel.cheddar.infrastructure.persistence.database.query.AttributeQuery;
 import com.clicktravel.cheddar.infrastructure.persistence.database.query.CompoundAttributeQuery;
 import com.clicktravel.cheddar.infrastructure.persistence.database.query.Condition;
@@ -342,6 +349,133 @@ public class DynamoDocumentStoreTemplateTest {
         assertNotNull(querySpecCaptor.getValue().getRangeKeyCondition());
     }
 
+    @Test
+    public void shouldFetchFirstPageUpToLimit_withAttributeQueryAndFetchOptions() {
+        // Given
+        final ItemId firstItemId = new ItemId(randomId());
+        final ItemId secondItemId = new ItemId(randomId());
+
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
+        final Collection<ItemConfiguration> itemConfigurations = Arrays.asList(itemConfiguration);
+        when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(itemConfigurations);
+
+        final Table mockTable = mock(Table.class);
+        when(mockDynamoDBClient.getTable(any(String.class))).thenReturn(mockTable);
+
+        final DynamoDocumentStoreTemplate dynamoDocumentStoreTemplate = new DynamoDocumentStoreTemplate(
+                mockDatabaseSchemaHolder);
+        dynamoDocumentStoreTemplate.initialize(mockAmazonDynamoDbClient);
+
+        final Map<String, AttributeValue> lastEvaluatedKey = Collections.singletonMap("id",
+                new AttributeValue(secondItemId.value()));
+        final ItemCollection<QueryOutcome> outcome = mock(ItemCollection.class);
+        when(outcome.firstPage()).thenReturn(queryPage(lastEvaluatedKey, firstItemId, secondItemId));
+        when(mockTable.query(any(QuerySpec.class))).thenReturn(outcome);
+
+        // When
+        final FetchResult<StubItem> fetchResult = dynamoDocumentStoreTemplate.fetch(
+                new AttributeQuery("id", new Condition(Operators.EQUALS, firstItemId.value())), StubItem.class,
+                new FetchOptions().withLimit(2));
+        final List<StubItem> returnedItems = fetchResult.getItems();
+
+        // Then
+        final ArgumentCaptor<QuerySpec> querySpecCaptor = ArgumentCaptor.forClass(QuerySpec.class);
+        verify(mockTable).query(querySpecCaptor.capture());
+        assertEquals(Integer.valueOf(2), querySpecCaptor.getValue().getMaxPageSize());
+        assertNull(querySpecCaptor.getValue().getExclusiveStartKey());
+        assertEquals(2, returnedItems.size());
+        assertEquals(firstItemId.value(), returnedItems.get(0).getId());
+        assertEquals(secondItemId.value(), returnedItems.get(1).getId());
+        assertEquals(lastEvaluatedKey, DynamoDbCursor.decode(fetchResult.getCursor()));
+    }
+
+    @Test
+    public void shouldFetchLastPageFromCursor_withAttributeQueryAndFetchOptions() {
+        // Given
+        final ItemId itemId = new ItemId(randomId());
+        final String startItemId = randomId();
+
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
+        final Collection<ItemConfiguration> itemConfigurations = Arrays.asList(itemConfiguration);
+        when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(itemConfigurations);
+
+        final Table mockTable = mock(Table.class);
+        when(mockDynamoDBClient.getTable(any(String.class))).thenReturn(mockTable);
+
+        final DynamoDocumentStoreTemplate dynamoDocumentStoreTemplate = new DynamoDocumentStoreTemplate(
+                mockDatabaseSchemaHolder);
+        dynamoDocumentStoreTemplate.initialize(mockAmazonDynamoDbClient);
+
+        final ItemCollection<QueryOutcome> outcome = mock(ItemCollection.class);
+        when(outcome.firstPage()).thenReturn(queryPage(null, itemId));
+        when(mockTable.query(any(QuerySpec.class))).thenReturn(outcome);
+        final String cursor = DynamoDbCursor
+                .encode(Collections.singletonMap("id", new AttributeValue(startItemId)));
+
+        // When
+        final FetchResult<StubItem> fetchResult = dynamoDocumentStoreTemplate.fetch(
+                new AttributeQuery("id", new Condition(Operators.EQUALS, itemId.value())), StubItem.class,
+                new FetchOptions().withCursor(cursor));
+        final List<StubItem> returnedItems = fetchResult.getItems();
+
+        // Then
+        final ArgumentCaptor<QuerySpec> querySpecCaptor = ArgumentCaptor.forClass(QuerySpec.class);
+        verify(mockTable).query(querySpecCaptor.capture());
+        final Collection<KeyAttribute> exclusiveStartKey = querySpecCaptor.getValue().getExclusiveStartKey();
+        assertEquals(1, exclusiveStartKey.size());
+        final KeyAttribute keyAttribute = exclusiveStartKey.iterator().next();
+        assertEquals("id", keyAttribute.getName());
+        assertEquals(startItemId, keyAttribute.getValue());
+        assertEquals(1, returnedItems.size());
+        assertEquals(itemId.value(), returnedItems.get(0).getId());
+        assertNull(fetchResult.getCursor());
+    }
+
+    @Test
+    public void shouldScanPagesWithPageSize_withAttributeQueryOnNonIndexedProperty() {
+        // Given
+        final ItemId firstItemId = new ItemId(randomId());
+        final ItemId secondItemId = new ItemId(randomId());
+        final int pageSize = 1 + randomInt(10);
+
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
+        final Collection<ItemConfiguration> itemConfigurations = Arrays.asList(itemConfiguration);
+        when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(itemConfigurations);
+
+        final Table mockTable = mock(Table.class);
+        when(mockDynamoDBClient.getTable(any(String.class))).thenReturn(mockTable);
+
+        final DynamoDocumentStoreTemplate dynamoDocumentStoreTemplate = new DynamoDocumentStoreTemplate(
+                mockDatabaseSchemaHolder);
+        dynamoDocumentStoreTemplate.initialize(mockAmazonDynamoDbClient);
+
+        final Map<String, AttributeValue> lastEvaluatedKey = Collections.singletonMap("id",
+                new AttributeValue(firstItemId.value()));
+        final ItemCollection<ScanOutcome> firstOutcome = mock(ItemCollection.class);
+        when(firstOutcome.firstPage()).thenReturn(scanPage(lastEvaluatedKey, firstItemId));
+        final ItemCollection<ScanOutcome> secondOutcome = mock(ItemCollection.class);
+        when(secondOutcome.firstPage()).thenReturn(scanPage(null, secondItemId));
+        when(mockTable.scan(any(ScanSpec.class))).thenReturn(firstOutcome, secondOutcome);
+
+        // When
+        final FetchResult<StubItem> fetchResult = dynamoDocumentStoreTemplate.fetch(
+                new AttributeQuery("stringProperty", new Condition(Operators.EQUALS, randomString(10))),
+                StubItem.class, new FetchOptions().withPageSize(pageSize));
+        final List<StubItem> returnedItems = fetchResult.getItems();
+
+        // Then
+        final ArgumentCaptor<ScanSpec> scanSpecCaptor = ArgumentCaptor.forClass(ScanSpec.class);
+        verify(mockTable, times(2)).scan(scanSpecCaptor.capture());
+        final List<ScanSpec> scanSpecs = scanSpecCaptor.getAllValues();
+        assertEquals(Integer.valueOf(pageSize), scanSpecs.get(0).getMaxPageSize());
+        assertNull(scanSpecs.get(0).getExclusiveStartKey());
+        assertEquals(firstItemId.value(), scanSpecs.get(1).getExclusiveStartKey().iterator().next().getValue());
+        assertEquals(2, returnedItems.size());
+        assertEquals(firstItemId.value(), returnedItems.get(0).getId());
+        assertEquals(secondItemId.value(), returnedItems.get(1).getId());
+        assertNull(fetchResult.getCursor());
+    }
+
     @Test
     public void shouldNotCreate_withItem() {
         // Given
@@ -392,11 +526,9 @@ public class DynamoDocumentStoreTemplateTest {
         final Table mockTable = mock(Table.class);
         when(mockDynamoDBClient.getTable(any(String.class))).thenReturn(mockTable);
 
-        final Item mockTableItem = mock(Item.class);
-        when(mockTable.getItem(any(GetItemSpec.class))).thenReturn(mockTableItem);
-
         final StubItem stubItem = generateRandomStubItem(itemId);
-        when(mockTableItem.toJSON()).thenReturn(dynamoDocumentStoreTemplate.itemToString(stubItem));
+        final Item tableItem = Item.fromJSON(dynamoDocumentStoreTemplate.itemToString(stubItem));
+        when(mockTable.getItem(any(GetItemSpec.class))).thenReturn(tableItem);
 
         // When
         final StubItem returnedItem = dynamoDocumentStoreTemplate.read(itemId, StubItem.class);
@@ -461,10 +593,7 @@ public class DynamoDocumentStoreTemplateTest {
         final Table mockTable = mock(Table.class);
         when(mockDynamoDBClient.getTable(any(String.class))).thenReturn(mockTable);
 
-        final Item mockTableItem = mock(Item.class);
-        when(mockTable.getItem(any(GetItemSpec.class))).thenReturn(mockTableItem);
-
-        when(mockTableItem.toJSON()).thenReturn("");
+        when(mockTable.getItem(any(GetItemSpec.class))).thenReturn(new Item());
 
         NonExistentItemException thrownException = null;
         // When
@@ -483,64 +612,53 @@ public class DynamoDocumentStoreTemplateTest {
         // Given
         final ItemId itemId = new ItemId(randomId());
         final StubItem stubItem = generateRandomStubItem(itemId);
-        final StubItem previousStubItem = generateRandomStubItem(itemId);
+        final Long previousVersion = stubItem.getVersion();
         final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
         final Collection<ItemConfiguration> itemConfigurations = Arrays.asList(itemConfiguration);
         final Table mockTable = mock(Table.class);
-        final Item mockTableItem = mock(Item.class);
-        final PrimaryKey primaryKey = new PrimaryKey();
-        primaryKey.addComponent("id", itemId.value());
-        final Item previousItem = mock(Item.class);
 
         when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(itemConfigurations);
         when(mockDynamoDBClient.getTable(schemaName + "." + tableName)).thenReturn(mockTable);
-        when(mockTable.getItem(any(PrimaryKey.class))).thenReturn(previousItem);
 
         final DynamoDocumentStoreTemplate dynamoDocumentStoreTemplate = new DynamoDocumentStoreTemplate(
                 mockDatabaseSchemaHolder);
-        when(previousItem.toJSON()).thenReturn(dynamoDocumentStoreTemplate.itemToString(previousStubItem));
-        when(mockTableItem.toJSON()).thenReturn(dynamoDocumentStoreTemplate.itemToString(stubItem));
-
         dynamoDocumentStoreTemplate.initialize(mockAmazonDynamoDbClient);
 
         // When
         final StubItem returnedItem = dynamoDocumentStoreTemplate.update(stubItem);
 
         // Then
-        final ArgumentCaptor<PutItemSpec> putItemRequestCaptor = ArgumentCaptor.forClass(PutItemSpec.class);
-        verify(mockTable).putItem(putItemRequestCaptor.capture());
-        final PutItemSpec spec = putItemRequestCaptor.getValue();
-        assertEquals(itemId.value(), spec.getItem().get("id"));
+        verify(mockTable, never()).getItem(any(PrimaryKey.class));
+        final ArgumentCaptor<UpdateItemSpec> updateItemSpecCaptor = ArgumentCaptor.forClass(UpdateItemSpec.class);
+        verify(mockTable).updateItem(updateItemSpecCaptor.capture());
+        final UpdateItemSpec spec = updateItemSpecCaptor.getValue();
+        assertEquals(itemId.value(), spec.getKeyComponents().iterator().next().getValue());
+        assertEquals("#version = :expectedVersion", spec.getConditionExpression());
+        assertEquals(previousVersion, Long.valueOf(spec.getValueMap().get(":expectedVersion").toString()));
+        assertTrue(spec.getUpdateExpression().startsWith("SET "));
+        assertFalse(spec.getNameMap().containsValue("id"));
+        assertTrue(spec.getNameMap().containsValue("stringProperty"));
+        assertTrue(spec.getValueMap().containsValue(stubItem.getStringProperty()));
+        assertEquals(Long.valueOf(previousVersion + 1), returnedItem.getVersion());
         assertEquals(itemId.value(), returnedItem.getId());
         assertEquals(stubItem.getStringProperty(), returnedItem.getStringProperty());
-        assertEquals(stubItem.getStringProperty2(), returnedItem.getStringProperty2());
-        assertEquals(stubItem.getStringSetProperty(), returnedItem.getStringSetProperty());
     }
 
     @Test
-    public void shouldNotUpdate_withPutItemException() {
+    public void shouldNotUpdate_withConditionalCheckFailedException() {
         // Given
         final ItemId itemId = new ItemId(randomId());
         final StubItem stubItem = generateRandomStubItem(itemId);
-        final StubItem previousStubItem = generateRandomStubItem(itemId);
         final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class, tableName);
         final Collection<ItemConfiguration> itemConfigurations = Arrays.asList(itemConfiguration);
         final Table mockTable = mock(Table.class);
-        final Item mockTableItem = mock(Item.class);
-        final PrimaryKey primaryKey = new PrimaryKey();
-        primaryKey.addComponent("id", itemId.value());
-        final Item previousItem = mock(Item.class);
 
         when(mockDatabaseSchemaHolder.itemConfigurations()).thenReturn(itemConfigurations);
         when(mockDynamoDBClient.getTable(schemaName + "." + tableName)).thenReturn(mockTable);
-        when(mockTable.getItem(any(PrimaryKey.class))).thenReturn(previousItem);
+        when(mockTable.updateItem(any(UpdateItemSpec.class))).thenThrow(ConditionalCheckFailedException.class);
 
         final DynamoDocumentStoreTemplate dynamoDocumentStoreTemplate = new DynamoDocumentStoreTemplate(
                 mockDatabaseSchemaHolder);
-        when(previousItem.toJSON()).thenReturn(dynamoDocumentStoreTemplate.itemToString(previousStubItem));
-        when(mockTableItem.toJSON()).thenReturn(dynamoDocumentStoreTemplate.itemToString(stubItem));
-        when(mockTable.putItem(any(PutItemSpec.class))).thenThrow(ConditionalCheckFailedException.class);
-
         dynamoDocumentStoreTemplate.initialize(mockAmazonDynamoDbClient);
 
         // When
@@ -594,4 +712,41 @@ public class DynamoDocumentStoreTemplateTest {
         return item;
     }
 
+    private Page<Item, QueryOutcome> queryPage(final Map<String, AttributeValue> lastEvaluatedKey,
+            final ItemId... itemIds) {
+        final QueryOutcome queryOutcome = new QueryOutcome(new QueryResult().withLastEvaluatedKey(lastEvaluatedKey));
+        return new StubPage<>(documentItems(itemIds), queryOutcome);
+    }
+
+    private Page<Item, ScanOutcome> scanPage(final Map<String, AttributeValue> lastEvaluatedKey,
+            final ItemId... itemIds) {
+        final ScanOutcome scanOutcome = new ScanOutcome(new ScanResult().withLastEvaluatedKey(lastEvaluatedKey));
+        return new StubPage<>(documentItems(itemIds), scanOutcome);
+    }
+
+    private List<Item> documentItems(final ItemId... itemIds) {
+        final List<Item> documentItems = new ArrayList<>();
+        for (final ItemId itemId : itemIds) {
+            documentItems.add(new Item().withString("id", itemId.value()));
+        }
+        return documentItems;
+    }
+
+    private static class StubPage<R> extends Page<Item, R> {
+
+        StubPage(final List<Item> content, final R lowLevelResult) {
+            super(content, lowLevelResult);
+        }
+
+        @Override
+        public boolean hasNextPage() {
+            return false;
+        }
+
+        @Override
+        public Page<Item, R> nextPage() {
+            throw new NoSuchElementException();
+        }
+    }
+
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.dynamodb;
+
+import static com.clicktravel.common.random.Randoms.randomString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongUnaryOperator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceResourceFailureException;
+
+public class SequenceBlockAllocatorTest {
+
+    private final AtomicLong lastReservedKey = new AtomicLong();
+    private final AtomicInteger reservations = new AtomicInteger();
+    private ExecutorService executorService;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    private long reserve(final long keyCount) {
+        reservations.incrementAndGet();
+        return lastReservedKey.addAndGet(keyCount);
+    }
+
+    @Test
+    public void shouldAllocateKeysFromReservedBlocks_withoutRefillExecutor() {
+        // Given
+        final SequenceBlockAllocator sequenceBlockAllocator = new SequenceBlockAllocator(3, 1, this::reserve);
+
+        // When
+        final List<Long> keys1 = sequenceBlockAllocator.allocate(2);
+        final List<Long> keys2 = sequenceBlockAllocator.allocate(2);
+
+        // Then
+        assertEquals(Arrays.asList(1L, 2L), keys1);
+        assertEquals(Arrays.asList(3L, 4L), keys2);
+        assertEquals(2, reservations.get());
+    }
+
+    @Test(timeout = 5000)
+    public void shouldReserveNextBlockInAdvance_withRefillExecutor() throws Exception {
+        // Given
+        final AtomicReference<Thread> refillThread = new AtomicReference<>();
+        final CountDownLatch refilled = new CountDownLatch(2);
+        final SequenceBlockAllocator sequenceBlockAllocator = new SequenceBlockAllocator(4, 2, keyCount -> {
+            refillThread.set(Thread.currentThread());
+            refilled.countDown();
+            return reserve(keyCount);
+        });
+        sequenceBlockAllocator.configureRefillExecutor(executorService);
+        sequenceBlockAllocator.allocate(3);
+        refilled.await();
+
+        // When
+        final List<Long> keys = sequenceBlockAllocator.allocate(2);
+
+        // Then
+        assertEquals(Arrays.asList(4L, 5L), keys);
+        assertEquals(2, reservations.get());
+        assertNotSame(Thread.currentThread(), refillThread.get());
+    }
+
+    @Test(timeout = 5000)
+    public void shouldWaitForRefillWithoutHoldingLock_withBlockExhaustedDuringRefill() throws Exception {
+        // Given
+        final CountDownLatch refillStarted = new CountDownLatch(1);
+        final CountDownLatch releaseRefill = new CountDownLatch(1);
+        final SequenceBlockAllocator sequenceBlockAllocator = new SequenceBlockAllocator(3, 2, keyCount -> {
+            if (reservations.get() > 0) {
+                refillStarted.countDown();
+                awaitUninterruptibly(releaseRefill);
+            }
+            return reserve(keyCount);
+        });
+        sequenceBlockAllocator.configureRefillExecutor(executorService);
+        sequenceBlockAllocator.allocate(2);
+        refillStarted.await();
+        final List<Long> remainingKeys = sequenceBlockAllocator.allocate(1);
+        final AtomicReference<List<Long>> waitingCallerKeys = new AtomicReference<>();
+        final Thread waitingCaller = new Thread(() -> waitingCallerKeys.set(sequenceBlockAllocator.allocate(1)));
+
+        // When
+        waitingCaller.start();
+        while (waitingCaller.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        releaseRefill.countDown();
+        waitingCaller.join();
+
+        // Then
+        assertEquals(Arrays.asList(3L), remainingKeys);
+        assertEquals(Arrays.asList(4L), waitingCallerKeys.get());
+        assertEquals(2, reservations.get());
+    }
+
+    @Test(timeout = 5000)
+    public void shouldShareReservation_withConcurrentCallersAndBlockExhausted() throws Exception {
+        // Given
+        final CountDownLatch reservationStarted = new CountDownLatch(1);
+        final CountDownLatch releaseReservation = new CountDownLatch(1);
+        final SequenceBlockAllocator sequenceBlockAllocator = new SequenceBlockAllocator(2, 0, keyCount -> {
+            reservationStarted.countDown();
+            awaitUninterruptibly(releaseReservation);
+            return reserve(keyCount);
+        });
+        final AtomicReference<List<Long>> reservingCallerKeys = new AtomicReference<>();
+        final AtomicReference<List<Long>> waitingCallerKeys = new AtomicReference<>();
+        final Thread reservingCaller = new Thread(() -> reservingCallerKeys.set(sequenceBlockAllocator.allocate(1)));
+        final Thread waitingCaller = new Thread(() -> waitingCallerKeys.set(sequenceBlockAllocator.allocate(1)));
+        reservingCaller.start();
+        reservationStarted.await();
+
+        // When
+        waitingCaller.start();
+        while (waitingCaller.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        releaseReservation.countDown();
+        reservingCaller.join();
+        waitingCaller.join();
+
+        // Then
+        assertEquals(1, reservations.get());
+        assertEquals(3L, reservingCallerKeys.get().get(0) + waitingCallerKeys.get().get(0));
+    }
+
+    @Test
+    public void shouldThrowAndReserveAgain_withFailedReservation() {
+        // Given
+        final PersistenceResourceFailureException failure = new PersistenceResourceFailureException(randomString(),
+                null);
+        final SequenceBlockAllocator sequenceBlockAllocator = new SequenceBlockAllocator(2, 0, keyCount -> {
+            if (reservations.getAndIncrement() == 0) {
+                throw failure;
+            }
+            return lastReservedKey.addAndGet(keyCount);
+        });
+
+        // When
+        PersistenceResourceFailureException actualException = null;
+        try {
+            sequenceBlockAllocator.allocate(1);
+        } catch (final PersistenceResourceFailureException e) {
+            actualException = e;
+        }
+        final List<Long> keys = sequenceBlockAllocator.allocate(1);
+
+        // Then
+        assertSame(failure, actualException);
+        assertEquals(Arrays.asList(1L), keys);
+    }
+
+    @Test(timeout = 5000)
+    public void shouldThrowOnceBlockExhaustedAndReserveAgain_withFailedRefill() throws Exception {
+        // Given
+        final PersistenceResourceFailureException failure = new PersistenceResourceFailureException(randomString(),
+                null);
+        final CountDownLatch refillFailed = new CountDownLatch(1);
+        final SequenceBlockAllocator sequenceBlockAllocator = new SequenceBlockAllocator(2, 2, keyCount -> {
+            if (reservations.getAndIncrement() == 1) {
+                refillFailed.countDown();
+                throw failure;
+            }
+            return lastReservedKey.addAndGet(keyCount);
+        });
+        sequenceBlockAllocator.configureRefillExecutor(executorService);
+        sequenceBlockAllocator.allocate(1);
+        refillFailed.await();
+        final List<Long> remainingKeys = sequenceBlockAllocator.allocate(1);
+
+        // When
+        PersistenceResourceFailureException actualException = null;
+        try {
+            sequenceBlockAllocator.allocate(1);
+        } catch (final PersistenceResourceFailureException e) {
+            actualException = e;
+        }
+        final List<Long> keys = sequenceBlockAllocator.allocate(1);
+
+        // Then
+        assertEquals(Arrays.asList(2L), remainingKeys);
+        assertSame(failure, actualException);
+        assertEquals(Arrays.asList(3L), keys);
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.elasticache;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.clicktravel.cheddar.infrastructure.persistence.cache.JavaSerializationItemCacheCodec;
+import com.clicktravel.common.random.Randoms;
+
+import net.spy.memcached.CachedData;
+
+public class CodecTranscoderTest {
+
+    private final CodecTranscoder transcoder = new CodecTranscoder(new JavaSerializationItemCacheCodec());
+
+    @Test
+    public void shouldDecodeEncodedItem() {
+        // Given
+        final String item = Randoms.randomString();
+
+        // When
+        final CachedData cachedData = transcoder.encode(item);
+        final Object decodedItem = transcoder.decode(cachedData);
+
+        // Then
+        assertEquals(item, decodedItem);
+        assertFalse(transcoder.asyncDecode(cachedData));
+    }
+
+    @Test
+    public void shouldDecodeEncodedItem_withJacksonCodec() {
+        // Given
+        final CodecTranscoder jacksonTranscoder = new CodecTranscoder(new JacksonItemCacheCodec());
+        final StubCacheItem item = new StubCacheItem();
+        item.setId(Randoms.randomString());
+        item.setVersion((long) Randoms.randomInt(100));
+
+        // When
+        final Object decodedItem = jacksonTranscoder.decode(jacksonTranscoder.encode(item));
+
+        // Then
+        assertEquals(item, decodedItem);
+    }
+
+    @Test
+    public void shouldHaveMemcachedMaxSize() {
+        // When
+        final int maxSize = transcoder.getMaxSize();
+
+        // Then
+        assertEquals(CachedData.MAX_SIZE, maxSize);
+    }
+}
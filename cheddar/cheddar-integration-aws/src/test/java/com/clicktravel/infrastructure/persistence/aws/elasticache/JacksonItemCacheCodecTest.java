@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.elasticache;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.clicktravel.cheddar.infrastructure.persistence.cache.CachedItem;
+import com.clicktravel.common.random.Randoms;
+
+public class JacksonItemCacheCodecTest {
+
+    private static final String STUB_PACKAGE = StubCacheItem.class.getPackage().getName();
+
+    private StubCacheItem randomItem() {
+        final StubCacheItem item = new StubCacheItem();
+        item.setId(Randoms.randomString());
+        final Map<String, Object> map = new HashMap<>();
+        map.put(Randoms.randomString(), (long) Randoms.randomInt(100));
+        item.setValues(Arrays.asList(Randoms.randomString(), (long) Randoms.randomInt(100),
+                new BigDecimal(Randoms.randomInt(100)), TimeUnit.SECONDS, map));
+        item.setVersion((long) Randoms.randomInt(100));
+        return item;
+    }
+
+    @Test
+    public void shouldDecodeEncodedItem() {
+        // Given
+        final JacksonItemCacheCodec codec = new JacksonItemCacheCodec(STUB_PACKAGE);
+        final StubCacheItem item = randomItem();
+        item.setProperty(new StubCacheItemProperty(Randoms.randomString()));
+
+        // When
+        final Object decodedItem = codec.decode(codec.encode(item));
+
+        // Then
+        assertEquals(item, decodedItem);
+    }
+
+    @Test
+    public void shouldDecodeCachedItem() {
+        // Given
+        final JacksonItemCacheCodec codec = new JacksonItemCacheCodec();
+        final String id = Randoms.randomString();
+        final String data = "{\"@class\":\"" + CachedItem.class.getName() + "\",\"item\":{\"@class\":\""
+                + StubCacheItem.class.getName() + "\",\"id\":\"" + id + "\",\"version\":2},\"version\":2}";
+
+        // When
+        final Object decodedItem = codec.decode(data.getBytes(StandardCharsets.UTF_8));
+
+        // Then
+        assertTrue(decodedItem instanceof CachedItem);
+        assertTrue(new String(codec.encode(decodedItem), StandardCharsets.UTF_8).contains("\"id\":\"" + id + "\""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotDecode_withPropertyClassOutsideAllowedPackages() {
+        // Given
+        final JacksonItemCacheCodec codec = new JacksonItemCacheCodec();
+        final StubCacheItem item = randomItem();
+        item.setProperty(new StubCacheItemProperty(Randoms.randomString()));
+        final byte[] data = codec.encode(item);
+
+        // When
+        codec.decode(data);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotDecode_withJdkClassWhichIsNotValueType() {
+        // Given
+        final JacksonItemCacheCodec codec = new JacksonItemCacheCodec(STUB_PACKAGE);
+        final String data = "{\"@class\":\"" + StubCacheItem.class.getName()
+                + "\",\"property\":{\"@class\":\"java.lang.Thread\"}}";
+
+        // When
+        codec.decode(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotDecode_withUnknownClass() {
+        // Given
+        final JacksonItemCacheCodec codec = new JacksonItemCacheCodec();
+        final String data = "{\"@class\":\"" + Randoms.randomString() + "\"}";
+
+        // When
+        codec.decode(data.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -16,13 +16,20 @@
  */
 package com.clicktravel.infrastructure.persistence.aws.elasticache;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotNull;
-import static org.junit.Assert.assertNull;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -30,10 +37,21 @@ import java.util.concurrent.TimeoutException;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.clicktravel.cheddar.infrastructure.persistence.cache.ItemCacheCodec;
 import com.clicktravel.common.random.Randoms;
 
+import net.spy.memcached.CASResponse;
+import net.spy.memcached.CASValue;
 import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.internal.BulkFuture;
+import net.spy.memcached.internal.BulkGetCompletionListener;
+import net.spy.memcached.internal.BulkGetFuture;
+import net.spy.memcached.internal.GetCompletionListener;
 import net.spy.memcached.internal.GetFuture;
+import net.spy.memcached.internal.OperationCompletionListener;
+import net.spy.memcached.internal.OperationFuture;
+import net.spy.memcached.ops.OperationStatus;
+import net.spy.memcached.transcoders.Transcoder;
 
 public class MemcachedItemCacheTest {
 
@@ -80,6 +98,28 @@ public class MemcachedItemCacheTest {
         assertNull(item);
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldGetItems_withBulkGet() throws InterruptedException, ExecutionException {
+        // Given
+        final String key1 = Randoms.randomString();
+        final String key2 = Randoms.randomString();
+        final String item1 = Randoms.randomString();
+        final int timeout = Randoms.randomInt(5) + 1;
+        final Collection<String> keys = Arrays.asList(key1, key2);
+        final Map<String, Object> someItems = new HashMap<>();
+        someItems.put(key1, item1);
+        final BulkFuture<Map<String, Object>> f = mock(BulkFuture.class);
+        when(memcachedClient.asyncGetBulk(keys)).thenReturn(f);
+        when(f.getSome(timeout, TimeUnit.SECONDS)).thenReturn(someItems);
+
+        // When
+        final Map<String, Object> items = memcachedItemCache.getItems(keys, timeout);
+
+        // Then
+        assertEquals(someItems, items);
+    }
+
     @Test
     public void shouldPutItem() {
         // Given
@@ -112,4 +152,278 @@ public class MemcachedItemCacheTest {
         // Then
         assertNotNull(actualException);
     }
+
+    @Test
+    public void shouldDeleteItem() {
+        // Given
+        final String key = Randoms.randomString();
+
+        // When
+        memcachedItemCache.deleteItem(key);
+
+        // Then
+        verify(memcachedClient).delete(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldAddItem_withPutItemIfAndNoCurrentItem() throws Exception {
+        // Given
+        final String key = Randoms.randomString();
+        final String item = Randoms.randomString();
+        final int expire = Randoms.randomInt(5) + 1;
+        final int timeout = Randoms.randomInt(5) + 1;
+        final OperationFuture<CASValue<Object>> getsFuture = mock(OperationFuture.class);
+        when(memcachedClient.asyncGets(key)).thenReturn(getsFuture);
+        when(getsFuture.get(timeout, TimeUnit.SECONDS)).thenReturn(null);
+        final OperationFuture<Boolean> addFuture = mock(OperationFuture.class);
+        when(memcachedClient.add(key, expire, item)).thenReturn(addFuture);
+        when(addFuture.get(timeout, TimeUnit.SECONDS)).thenReturn(true);
+
+        // When
+        final boolean put = memcachedItemCache.putItemIf(key, item, expire, timeout, currentItem -> false);
+
+        // Then
+        assertTrue(put);
+        verify(memcachedClient, never()).asyncCAS(anyString(), anyLong(), anyInt(), any(), any(Transcoder.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldCheckAndSetItem_withPutItemIfAndAcceptedCurrentItem() throws Exception {
+        // Given
+        final String key = Randoms.randomString();
+        final String item = Randoms.randomString();
+        final String currentItem = Randoms.randomString();
+        final long cas = Randoms.randomLong();
+        final int expire = Randoms.randomInt(5) + 1;
+        final int timeout = Randoms.randomInt(5) + 1;
+        final OperationFuture<CASValue<Object>> getsFuture = mock(OperationFuture.class);
+        when(memcachedClient.asyncGets(key)).thenReturn(getsFuture);
+        when(getsFuture.get(timeout, TimeUnit.SECONDS)).thenReturn(new CASValue<Object>(cas, currentItem));
+        final Transcoder<Object> transcoder = mock(Transcoder.class);
+        when(memcachedClient.getTranscoder()).thenReturn(transcoder);
+        final OperationFuture<CASResponse> casFuture = mock(OperationFuture.class);
+        when(memcachedClient.asyncCAS(key, cas, expire, (Object) item, transcoder)).thenReturn(casFuture);
+        when(casFuture.get(timeout, TimeUnit.SECONDS)).thenReturn(CASResponse.OK);
+
+        // When
+        final boolean put = memcachedItemCache.putItemIf(key, item, expire, timeout, currentItem::equals);
+
+        // Then
+        assertTrue(put);
+        verify(memcachedClient, never()).add(anyString(), anyInt(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldNotPutItem_withPutItemIfAndItemRejectedAfterConcurrentWrite() throws Exception {
+        // Given
+        final String key = Randoms.randomString();
+        final String item = Randoms.randomString();
+        final String currentItem = Randoms.randomString();
+        final long cas = Randoms.randomLong();
+        final int expire = Randoms.randomInt(5) + 1;
+        final int timeout = Randoms.randomInt(5) + 1;
+        final OperationFuture<CASValue<Object>> getsFuture = mock(OperationFuture.class);
+        when(memcachedClient.asyncGets(key)).thenReturn(getsFuture);
+        when(getsFuture.get(timeout, TimeUnit.SECONDS)).thenReturn(new CASValue<Object>(cas, currentItem))
+                .thenReturn(new CASValue<Object>(cas + 1, Randoms.randomString()));
+        final Transcoder<Object> transcoder = mock(Transcoder.class);
+        when(memcachedClient.getTranscoder()).thenReturn(transcoder);
+        final OperationFuture<CASResponse> casFuture = mock(OperationFuture.class);
+        when(memcachedClient.asyncCAS(key, cas, expire, (Object) item, transcoder)).thenReturn(casFuture);
+        when(casFuture.get(timeout, TimeUnit.SECONDS)).thenReturn(CASResponse.EXISTS);
+
+        // When
+        final boolean put = memcachedItemCache.putItemIf(key, item, expire, timeout, currentItem::equals);
+
+        // Then
+        assertFalse(put);
+        verify(memcachedClient, times(2)).asyncGets(key);
+        verify(memcachedClient, times(1)).asyncCAS(anyString(), anyLong(), anyInt(), any(), any(Transcoder.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldKeepInterruptStatus_withGetItemInterrupted() throws Exception {
+        // Given
+        final String key = Randoms.randomString();
+        final int timeout = Randoms.randomInt(5) + 1;
+        final GetFuture<Object> f = mock(GetFuture.class);
+        when(memcachedClient.asyncGet(key)).thenReturn(f);
+        when(f.get(timeout, TimeUnit.SECONDS)).thenThrow(InterruptedException.class);
+
+        // When
+        final Object obj = memcachedItemCache.getItem(key, timeout);
+
+        // Then
+        assertNull(obj);
+        assertTrue(Thread.interrupted());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldKeepInterruptStatus_withGetItemsInterrupted() throws Exception {
+        // Given
+        final Collection<String> keys = Arrays.asList(Randoms.randomString(), Randoms.randomString());
+        final int timeout = Randoms.randomInt(5) + 1;
+        final BulkFuture<Map<String, Object>> f = mock(BulkFuture.class);
+        when(memcachedClient.asyncGetBulk(keys)).thenReturn(f);
+        when(f.getSome(timeout, TimeUnit.SECONDS)).thenThrow(InterruptedException.class);
+
+        // When
+        final Map<String, Object> items = memcachedItemCache.getItems(keys, timeout);
+
+        // Then
+        assertTrue(items.isEmpty());
+        assertTrue(Thread.interrupted());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldCompleteWithItem_withGetItemAsync() throws Exception {
+        // Given
+        final String key = Randoms.randomString();
+        final String item = Randoms.randomString();
+        final GetFuture<Object> f = mock(GetFuture.class);
+        when(memcachedClient.asyncGet(key)).thenReturn(f);
+        when(f.get()).thenReturn(item);
+        when(f.addListener(any(GetCompletionListener.class))).thenAnswer(invocation -> {
+            invocation.<GetCompletionListener> getArgument(0).onComplete(f);
+            return f;
+        });
+
+        // When
+        final CompletableFuture<Object> future = memcachedItemCache.getItemAsync(key);
+
+        // Then
+        assertEquals(item, future.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldCompleteExceptionally_withGetItemAsyncAndFailedGet() throws Exception {
+        // Given
+        final String key = Randoms.randomString();
+        final IllegalStateException cause = new IllegalStateException();
+        final GetFuture<Object> f = mock(GetFuture.class);
+        when(memcachedClient.asyncGet(key)).thenReturn(f);
+        when(f.get()).thenThrow(new ExecutionException(cause));
+        when(f.addListener(any(GetCompletionListener.class))).thenAnswer(invocation -> {
+            invocation.<GetCompletionListener> getArgument(0).onComplete(f);
+            return f;
+        });
+
+        // When
+        ExecutionException actualException = null;
+        try {
+            memcachedItemCache.getItemAsync(key).get();
+        } catch (final ExecutionException e) {
+            actualException = e;
+        }
+
+        // Then
+        assertNotNull(actualException);
+        assertSame(cause, actualException.getCause());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldCompleteWithFoundItems_withGetItemsAsync() throws Exception {
+        // Given
+        final String key1 = Randoms.randomString();
+        final String key2 = Randoms.randomString();
+        final String item1 = Randoms.randomString();
+        final Collection<String> keys = Arrays.asList(key1, key2);
+        final Map<String, Object> bulkItems = new HashMap<>();
+        bulkItems.put(key1, item1);
+        bulkItems.put(key2, null);
+        final BulkFuture<Map<String, Object>> f = mock(BulkFuture.class);
+        when(memcachedClient.asyncGetBulk(keys)).thenReturn(f);
+        when(f.get()).thenReturn(bulkItems);
+        when(f.addListener(any(BulkGetCompletionListener.class))).thenAnswer(invocation -> {
+            invocation.<BulkGetCompletionListener> getArgument(0).onComplete((BulkGetFuture<?>) null);
+            return f;
+        });
+
+        // When
+        final Map<String, Object> items = memcachedItemCache.getItemsAsync(keys).get();
+
+        // Then
+        final Map<String, Object> expectedItems = new HashMap<>();
+        expectedItems.put(key1, item1);
+        assertEquals(expectedItems, items);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldCompleteWithItemsFromTranscoder_withGetItemsAsyncAndCodec() throws Exception {
+        // Given
+        final ItemCacheCodec codec = mock(ItemCacheCodec.class);
+        final MemcachedItemCache codecItemCache = new MemcachedItemCache(memcachedClient, codec);
+        final String key = Randoms.randomString();
+        final String item = Randoms.randomString();
+        final Collection<String> keys = Arrays.asList(key);
+        final BulkFuture<Map<String, Object>> f = mock(BulkFuture.class);
+        when(memcachedClient.asyncGetBulk(eq(keys), any(CodecTranscoder.class))).thenReturn(f);
+        when(f.get()).thenReturn(Collections.<String, Object> singletonMap(key, item));
+        when(f.addListener(any(BulkGetCompletionListener.class))).thenAnswer(invocation -> {
+            invocation.<BulkGetCompletionListener> getArgument(0).onComplete((BulkGetFuture<?>) null);
+            return f;
+        });
+
+        // When
+        final Map<String, Object> items = codecItemCache.getItemsAsync(keys).get();
+
+        // Then
+        assertEquals(Collections.singletonMap(key, item), items);
+        verify(memcachedClient, never()).asyncGetBulk(keys);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldComplete_withPutItemAsyncAndSuccessfulSet() throws Exception {
+        // Given
+        final String key = Randoms.randomString();
+        final String item = Randoms.randomString();
+        final int expire = Randoms.randomInt(5) + 1;
+        final OperationFuture<Boolean> f = mock(OperationFuture.class);
+        when(memcachedClient.set(key, expire, (Object) item)).thenReturn(f);
+        when(f.getStatus()).thenReturn(new OperationStatus(true, "OK"));
+        when(f.addListener(any(OperationCompletionListener.class))).thenAnswer(invocation -> {
+            invocation.<OperationCompletionListener> getArgument(0).onComplete(f);
+            return f;
+        });
+
+        // When
+        final CompletableFuture<Void> future = memcachedItemCache.putItemAsync(key, item, expire);
+
+        // Then
+        future.get();
+        assertTrue(future.isDone());
+        assertFalse(future.isCompletedExceptionally());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldCompleteExceptionally_withPutItemAsyncAndFailedSet() throws Exception {
+        // Given
+        final String key = Randoms.randomString();
+        final String item = Randoms.randomString();
+        final int expire = Randoms.randomInt(5) + 1;
+        final OperationFuture<Boolean> f = mock(OperationFuture.class);
+        when(memcachedClient.set(key, expire, (Object) item)).thenReturn(f);
+        when(f.getStatus()).thenReturn(new OperationStatus(false, Randoms.randomString()));
+        when(f.addListener(any(OperationCompletionListener.class))).thenAnswer(invocation -> {
+            invocation.<OperationCompletionListener> getArgument(0).onComplete(f);
+            return f;
+        });
+
+        // When
+        final CompletableFuture<Void> future = memcachedItemCache.putItemAsync(key, item, expire);
+
+        // Then
+        assertTrue(future.isCompletedExceptionally());
+    }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.aws.elasticache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import com.clicktravel.cheddar.infrastructure.persistence.database.Item;
+
+public class StubCacheItem implements Item {
+
+    private String id;
+    private List<Object> values = new ArrayList<>();
+    private Object property;
+    private Long version;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(final String id) {
+        this.id = id;
+    }
+
+    public List<Object> getValues() {
+        return values;
+    }
+
+    public void setValues(final List<Object> values) {
+        this.values = values;
+    }
+
+    public Object getProperty() {
+        return property;
+    }
+
+    public void setProperty(final Object property) {
+        this.property = property;
+    }
+
+    @Override
+    public Long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void setVersion(final Long version) {
+        this.version = version;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, values, property, version);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final StubCacheItem other = (StubCacheItem) obj;
+        return Objects.equals(id, other.id) && Objects.equals(values, other.values)
+                && Objects.equals(property, other.property) && Objects.equals(version, other.version);
+    }
+}
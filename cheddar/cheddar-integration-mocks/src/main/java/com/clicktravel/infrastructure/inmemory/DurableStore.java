@@ -0,0 +1,325 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.inmemory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.clicktravel.cheddar.infrastructure.persistence.cache.ItemCacheCodec;
+import com.clicktravel.infrastructure.persistence.inmemory.XStreamItemCacheCodec;
+
+/**
+ * Keeps the state of an in-memory stand-in on disk so that it survives a restart. The state is a map from string keys
+ * to objects encoded with an {@link ItemCacheCodec}. Changes are appended to a write-ahead log of checksummed records,
+ * which is compacted into a snapshot of the whole state once it grows beyond a threshold. Recovery memory-maps the
+ * latest snapshot and the logs written since, and replays their records; a record with a bad checksum, such as one torn
+ * by a crash, ends the replay of its file.
+ * <p>
+ * Snapshots and logs share a generation number: compaction starts a new log generation before reading the state for
+ * the snapshot of that generation, so a change is either in the snapshot or in a log no older than it.
+ * <p>
+ * Each change is flushed to the operating system before the change returns, so it survives the process ending but
+ * not necessarily a crash of the machine. With sync writes, each change is also forced to the storage device, at a
+ * large cost in write latency. Snapshots are always forced to the storage device before they replace older files.
+ */
+public class DurableStore implements Closeable {
+
+    private static final long DEFAULT_COMPACTION_THRESHOLD_BYTES = 64L * 1024 * 1024;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String LOG_PREFIX = "log-";
+    private static final String FILE_SUFFIX = ".dat";
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int PAYLOAD_HEADER_BYTES = 5;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Path directory;
+    private final ItemCacheCodec codec;
+    private final long compactionThresholdBytes;
+    private final boolean syncWrites;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private FileOutputStream logFile;
+    private DataOutputStream log;
+    private long generation;
+    private volatile long logBytes;
+
+    public DurableStore(final Path directory) {
+        this(directory, new XStreamItemCacheCodec(), DEFAULT_COMPACTION_THRESHOLD_BYTES);
+    }
+
+    public DurableStore(final Path directory, final ItemCacheCodec codec, final long compactionThresholdBytes) {
+        this(directory, codec, compactionThresholdBytes, false);
+    }
+
+    /**
+     * @param syncWrites {@code true} to force each change to the storage device before the change returns
+     */
+    public DurableStore(final Path directory, final ItemCacheCodec codec, final long compactionThresholdBytes,
+            final boolean syncWrites) {
+        this.directory = directory;
+        this.codec = codec;
+        this.compactionThresholdBytes = compactionThresholdBytes;
+        this.syncWrites = syncWrites;
+    }
+
+    /**
+     * Loads the state held on disk and opens a new log for subsequent changes. Must be called once, before any change
+     * is made.
+     *
+     * @return The recovered entries, in the order they were first put since the state was last cleared
+     */
+    public synchronized Map<String, Object> recover() {
+        try {
+            Files.createDirectories(directory);
+            final Map<String, byte[]> entries = new LinkedHashMap<>();
+            final List<Long> snapshotGenerations = generations(SNAPSHOT_PREFIX);
+            final long snapshotGeneration = snapshotGenerations.isEmpty() ? 0
+                    : snapshotGenerations.get(snapshotGenerations.size() - 1);
+            if (!snapshotGenerations.isEmpty()) {
+                replay(file(SNAPSHOT_PREFIX, snapshotGeneration), entries);
+            }
+            long lastGeneration = snapshotGeneration;
+            for (final long logGeneration : generations(LOG_PREFIX)) {
+                if (logGeneration >= snapshotGeneration) {
+                    replay(file(LOG_PREFIX, logGeneration), entries);
+                    lastGeneration = logGeneration;
+                }
+            }
+            openLog(lastGeneration + 1);
+            return decode(entries);
+        } catch (final IOException e) {
+            throw new IllegalStateException("Unable to recover durable store: " + directory, e);
+        }
+    }
+
+    public void put(final String key, final Object value) {
+        final byte[] data = codec.encode(value);
+        append(PUT, key, data);
+    }
+
+    public void remove(final String key) {
+        append(REMOVE, key, new byte[0]);
+    }
+
+    public void clear() {
+        append(CLEAR, "", new byte[0]);
+    }
+
+    /**
+     * @return {@code true} if the log has grown beyond the compaction threshold since the last compaction
+     */
+    public boolean compactionDue() {
+        return logBytes >= compactionThresholdBytes;
+    }
+
+    /**
+     * Writes a snapshot of the current state and deletes the snapshots and logs it supersedes. Changes may continue to
+     * be made while the snapshot is written, on other threads, so this should not be called while holding a lock
+     * needed to make changes. Does nothing if a compaction is already in progress. A failure to compact is logged
+     * rather than thrown, as the changes are already held by the logs, which are kept until a later compaction
+     * succeeds.
+     *
+     * @param state Supplies the current state; it is called after the new log generation has been started
+     */
+    public void compact(final Supplier<? extends Map<String, ?>> state) {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        Path temporaryFile = null;
+        try {
+            final long snapshotGeneration;
+            synchronized (this) {
+                if (log == null) {
+                    return;
+                }
+                snapshotGeneration = generation + 1;
+                openLog(snapshotGeneration);
+            }
+            final Path snapshotFile = file(SNAPSHOT_PREFIX, snapshotGeneration);
+            temporaryFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            try (final FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile.toFile());
+                    final DataOutputStream snapshot = new DataOutputStream(
+                            new BufferedOutputStream(fileOutputStream))) {
+                for (final Entry<String, ?> entry : state.get().entrySet()) {
+                    writeRecord(snapshot, PUT, entry.getKey(), codec.encode(entry.getValue()));
+                }
+                snapshot.flush();
+                fileOutputStream.getFD().sync();
+            }
+            Files.move(temporaryFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE);
+            for (final long oldGeneration : generations(SNAPSHOT_PREFIX)) {
+                if (oldGeneration < snapshotGeneration) {
+                    Files.deleteIfExists(file(SNAPSHOT_PREFIX, oldGeneration));
+                }
+            }
+            for (final long oldGeneration : generations(LOG_PREFIX)) {
+                if (oldGeneration < snapshotGeneration) {
+                    Files.deleteIfExists(file(LOG_PREFIX, oldGeneration));
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+            logger.warn("Unable to compact durable store: " + directory, e);
+            deleteQuietly(temporaryFile);
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+            logFile = null;
+        }
+    }
+
+    private synchronized void append(final byte operation, final String key, final byte[] data) {
+        if (log == null) {
+            throw new IllegalStateException("Durable store is not open: " + directory);
+        }
+        try {
+            logBytes += writeRecord(log, operation, key, data);
+            log.flush();
+            if (syncWrites) {
+                logFile.getChannel().force(false);
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException("Unable to write to durable store: " + directory, e);
+        }
+    }
+
+    private void openLog(final long logGeneration) throws IOException {
+        close();
+        logFile = new FileOutputStream(file(LOG_PREFIX, logGeneration).toFile(), true);
+        log = new DataOutputStream(new BufferedOutputStream(logFile));
+        generation = logGeneration;
+        logBytes = 0;
+    }
+
+    private void deleteQuietly(final Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (final IOException e) {
+                logger.debug("Unable to delete " + file, e);
+            }
+        }
+    }
+
+    private static int writeRecord(final DataOutputStream output, final byte operation, final String key,
+            final byte[] data) throws IOException {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_HEADER_BYTES + keyBytes.length + data.length);
+        payload.put(operation).putInt(keyBytes.length).put(keyBytes).put(data);
+        final CRC32 checksum = new CRC32();
+        checksum.update(payload.array());
+        output.writeInt(payload.capacity());
+        output.writeInt((int) checksum.getValue());
+        output.write(payload.array());
+        return RECORD_HEADER_BYTES + payload.capacity();
+    }
+
+    private void replay(final Path file, final Map<String, byte[]> entries) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalStateException("File too large to map: " + file);
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final CRC32 checksum = new CRC32();
+            while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                final int length = buffer.getInt();
+                final int expectedChecksum = buffer.getInt();
+                if (length < PAYLOAD_HEADER_BYTES || length > buffer.remaining()) {
+                    break;
+                }
+                final byte[] payload = new byte[length];
+                buffer.get(payload);
+                checksum.reset();
+                checksum.update(payload);
+                if ((int) checksum.getValue() != expectedChecksum) {
+                    break;
+                }
+                final int keyLength = ByteBuffer.wrap(payload, 1, 4).getInt();
+                final String key = new String(payload, PAYLOAD_HEADER_BYTES, keyLength, StandardCharsets.UTF_8);
+                switch (payload[0]) {
+                    case PUT:
+                        entries.put(key, Arrays.copyOfRange(payload, PAYLOAD_HEADER_BYTES + keyLength, length));
+                        break;
+                    case REMOVE:
+                        entries.remove(key);
+                        break;
+                    case CLEAR:
+                        entries.clear();
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (buffer.hasRemaining()) {
+                logger.warn("Ignoring incomplete or corrupt records at end of " + file);
+            }
+        }
+    }
+
+    /**
+     * Decodes the entries in parallel, as decoding dominates the time taken to recover a large state
+     */
+    private Map<String, Object> decode(final Map<String, byte[]> entries) {
+        final List<Entry<String, byte[]>> encodedEntries = new ArrayList<>(entries.entrySet());
+        final Object[] values = new Object[encodedEntries.size()];
+        IntStream.range(0, values.length).parallel()
+                .forEach(index -> values[index] = codec.decode(encodedEntries.get(index).getValue()));
+        final Map<String, Object> decodedEntries = new LinkedHashMap<>();
+        for (int index = 0; index < values.length; index++) {
+            decodedEntries.put(encodedEntries.get(index).getKey(), values[index]);
+        }
+        return decodedEntries;
+    }
+
+    private List<Long> generations(final String prefix) throws IOException {
+        final List<Long> generations = new ArrayList<>();
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + FILE_SUFFIX)) {
+            for (final Path file : files) {
+                final String fileName = file.getFileName().toString();
+                generations.add(Long.valueOf(
+                        fileName.substring(prefix.length(), fileName.length() - FILE_SUFFIX.length())));
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    private Path file(final String prefix, final long fileGeneration) {
+        return directory.resolve(String.format("%s%019d%s", prefix, fileGeneration, FILE_SUFFIX));
+    }
+}
@@ -16,10 +16,10 @@
  */
 package com.clicktravel.infrastructure.messaging.inmemory;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Queue;
+import java.util.*;
+import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,10 +27,14 @@ import org.slf4j.LoggerFactory;
 import com.clicktravel.cheddar.infrastructure.messaging.Message;
 import com.clicktravel.cheddar.infrastructure.messaging.MessageQueue;
 import com.clicktravel.common.functional.StringUtils;
+import com.clicktravel.infrastructure.inmemory.DurableStore;
 import com.clicktravel.infrastructure.inmemory.Resettable;
 
 /**
- * Simple in-memory message queue, intended for use in testing.
+ * Simple in-memory message queue, intended for use in testing. Messages can optionally be kept in a
+ * {@link DurableStore}, so that they survive a restart. Message visibility is optionally modelled: once configured
+ * with a visibility timeout, a received message is not received again until the timeout (or any extension of it made
+ * with {@link #changeVisibility(Message, int)}) expires, unless it is deleted first.
  */
 public class InMemoryMessageQueue<T extends Message> implements MessageQueue<T>, Resettable {
 
@@ -38,6 +42,11 @@ public class InMemoryMessageQueue<T extends Message> implements MessageQueue<T>,
     private final Queue<T> queue = new ConcurrentLinkedQueue<>();
     private final String name;
     private final InMemoryMessageQueuePoller inMemoryMessageQueuePoller;
+    private final Map<T, Deque<String>> durableKeys = new HashMap<>();
+    private final Map<T, Long> invisibleUntilMillis = new IdentityHashMap<>();
+    private volatile DurableStore durableStore;
+    private long nextDurableSequence;
+    private long visibilityTimeoutMillis;
 
     @SuppressWarnings("unchecked")
     public InMemoryMessageQueue(final String name, final InMemoryMessageQueuePoller inMemoryMessageQueuePoller,
@@ -54,10 +63,53 @@ public class InMemoryMessageQueue<T extends Message> implements MessageQueue<T>,
                 + StringUtils.join(exchangeNames) + "]");
     }
 
+    /**
+     * Restores the messages held by the given durable store, in the order they were sent, then writes all sent and
+     * deleted messages to it
+     *
+     * @param durableStore A durable store which has not yet been recovered
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void configureDurability(final DurableStore durableStore) {
+        for (final Entry<String, Object> entry : new TreeMap<>(durableStore.recover()).entrySet()) {
+            final T message = (T) entry.getValue();
+            queue.add(message);
+            durableKeys.computeIfAbsent(message, key -> new ArrayDeque<>()).add(entry.getKey());
+            nextDurableSequence = Long.parseLong(entry.getKey()) + 1;
+        }
+        this.durableStore = durableStore;
+    }
+
+    /**
+     * Models message visibility on this queue, so received messages are hidden from further receives until they are
+     * deleted or the visibility timeout expires
+     * @param visibilityTimeoutSeconds Default duration (in seconds) for which received messages are invisible
+     */
+    public synchronized void configureVisibilityTimeout(final int visibilityTimeoutSeconds) {
+        visibilityTimeoutMillis = TimeUnit.SECONDS.toMillis(visibilityTimeoutSeconds);
+    }
+
     @Override
     public void send(final T message) {
-        queue.add(message);
+        sendBatch(Collections.singletonList(message));
+    }
+
+    @Override
+    public List<T> sendBatch(final Collection<T> messages) {
+        synchronized (this) {
+            for (final T message : messages) {
+                queue.add(message);
+                if (durableStore != null) {
+                    final String durableKey = String.format("%019d", nextDurableSequence++);
+                    durableKeys.computeIfAbsent(message, key -> new ArrayDeque<>()).add(durableKey);
+                    durableStore.put(durableKey, message);
+                }
+            }
+            notifyAll();
+        }
+        compactDurableStoreIfDue();
         inMemoryMessageQueuePoller.poll();
+        return Collections.emptyList();
     }
 
     @Override
@@ -72,11 +124,39 @@ public class InMemoryMessageQueue<T extends Message> implements MessageQueue<T>,
 
     @Override
     public List<T> receive(final int waitTimeSeconds, final int maxMessages) {
-        return receive();
+        if (visibilityTimeoutMillis == 0) {
+            return receive();
+        }
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(waitTimeSeconds);
+        synchronized (this) {
+            List<T> messages;
+            while ((messages = receiveVisibleMessages(maxMessages)).isEmpty()) {
+                final long now = System.currentTimeMillis();
+                if (now >= deadline) {
+                    break;
+                }
+                long waitMillis = deadline - now;
+                for (final Long invisibleUntil : invisibleUntilMillis.values()) {
+                    waitMillis = Math.min(waitMillis, Math.max(1, invisibleUntil - now));
+                }
+                try {
+                    wait(waitMillis);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            return messages;
+        }
     }
 
     @Override
     public List<T> receive() {
+        if (visibilityTimeoutMillis != 0) {
+            synchronized (this) {
+                return receiveVisibleMessages(1);
+            }
+        }
         final T message = queue.peek();
         final List<T> messages = new ArrayList<T>(1);
         if (message != null) {
@@ -85,9 +165,71 @@ public class InMemoryMessageQueue<T extends Message> implements MessageQueue<T>,
         return messages;
     }
 
+    private List<T> receiveVisibleMessages(final int maxMessages) {
+        final long now = System.currentTimeMillis();
+        final List<T> messages = new ArrayList<>();
+        for (final T message : queue) {
+            if (messages.size() == maxMessages) {
+                break;
+            }
+            final Long invisibleUntil = invisibleUntilMillis.get(message);
+            if (invisibleUntil == null || invisibleUntil <= now) {
+                invisibleUntilMillis.put(message, now + visibilityTimeoutMillis);
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Extends or shortens the time for which a received message is invisible, where message visibility is modelled
+     */
+    @Override
+    public synchronized void changeVisibility(final T message, final int visibilityTimeoutSeconds) {
+        if (invisibleUntilMillis.containsKey(message)) {
+            invisibleUntilMillis.put(message,
+                    System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(visibilityTimeoutSeconds));
+            notifyAll();
+        }
+    }
+
     @Override
     public void delete(final T message) {
-        queue.remove(message);
+        synchronized (this) {
+            queue.remove(message);
+            invisibleUntilMillis.remove(message);
+            if (durableStore != null) {
+                final Deque<String> messageDurableKeys = durableKeys.get(message);
+                if (messageDurableKeys != null) {
+                    durableStore.remove(messageDurableKeys.poll());
+                    if (messageDurableKeys.isEmpty()) {
+                        durableKeys.remove(message);
+                    }
+                }
+            }
+        }
+        compactDurableStoreIfDue();
+    }
+
+    /**
+     * Compacts outside the lock, so that sends and deletes are not held up by writing the snapshot. The lock is taken
+     * only to copy the durable keys of the queued messages.
+     */
+    private void compactDurableStoreIfDue() {
+        final DurableStore durableStore = this.durableStore;
+        if (durableStore != null && durableStore.compactionDue()) {
+            durableStore.compact(() -> {
+                final Map<String, T> durableMessages = new TreeMap<>();
+                synchronized (this) {
+                    for (final Entry<T, Deque<String>> entry : durableKeys.entrySet()) {
+                        for (final String durableKey : entry.getValue()) {
+                            durableMessages.put(durableKey, entry.getKey());
+                        }
+                    }
+                }
+                return durableMessages;
+            });
+        }
     }
 
     @Override
@@ -96,7 +238,12 @@ public class InMemoryMessageQueue<T extends Message> implements MessageQueue<T>,
     }
 
     @Override
-    public void reset() {
+    public synchronized void reset() {
         queue.clear();
+        invisibleUntilMillis.clear();
+        durableKeys.clear();
+        if (durableStore != null) {
+            durableStore.clear();
+        }
     }
 }
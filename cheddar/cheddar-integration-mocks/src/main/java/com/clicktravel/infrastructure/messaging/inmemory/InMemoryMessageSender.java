@@ -17,6 +17,8 @@
 package com.clicktravel.infrastructure.messaging.inmemory;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -55,6 +57,16 @@ public class InMemoryMessageSender<T extends Message> implements MessageSender<T
         }
     }
 
+    @Override
+    public List<T> sendBatch(final Collection<T> messages) throws MessageSendException {
+        sentMessages.addAll(messages);
+        logger.debug("Messages sent; count:[" + messages.size() + "] queue:[" + messageQueue.getName() + "]");
+        if (forwardMessagesToQueue) {
+            return messageQueue.sendBatch(messages);
+        }
+        return Collections.emptyList();
+    }
+
     @Override
     public void sendDelayedMessage(final T message, final int delaySeconds) throws MessageSendException {
         send(message); // delays are not supported
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.inmemory;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * Makes deep copies of items by copying their fields directly, which is much faster than a serialisation round trip.
+ * Immutable values such as strings, boxed primitives, enums and date-time values are shared rather than copied, and
+ * the standard collection and map classes are rebuilt with copies of their contents. Objects which cannot be copied
+ * field by field, because their class has no no-argument constructor or is an unrecognised library class, are copied
+ * by an XStream round trip instead.
+ */
+public class ItemCloner {
+
+    private static final XStream XSTREAM = new XStream();
+
+    private static final Set<Class<?>> IMMUTABLE_CLASSES = new HashSet<>(Arrays.asList(String.class, Boolean.class,
+            Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class, Character.class,
+            BigDecimal.class, BigInteger.class, UUID.class, Locale.class, Currency.class, URI.class, Class.class));
+
+    private final Map<Class<?>, Optional<ObjectCopier>> objectCopiers = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <T> T deepCopy(final T object) {
+        return (T) copy(object, new IdentityHashMap<>());
+    }
+
+    private Object copy(final Object object, final Map<Object, Object> copies) {
+        if (object == null || isImmutable(object.getClass())) {
+            return object;
+        }
+        final Object existingCopy = copies.get(object);
+        if (existingCopy != null) {
+            return existingCopy;
+        }
+        final Class<?> objectClass = object.getClass();
+        if (objectClass.isArray()) {
+            return copyArray(object, copies);
+        }
+        if (object instanceof Collection) {
+            final Collection<Object> collectionCopy = newCollection(object);
+            if (collectionCopy != null) {
+                copies.put(object, collectionCopy);
+                for (final Object element : (Collection<?>) object) {
+                    collectionCopy.add(copy(element, copies));
+                }
+                return collectionCopy;
+            }
+        } else if (object instanceof Map) {
+            final Map<Object, Object> mapCopy = newMap(object);
+            if (mapCopy != null) {
+                copies.put(object, mapCopy);
+                for (final Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                    mapCopy.put(copy(entry.getKey(), copies), copy(entry.getValue(), copies));
+                }
+                return mapCopy;
+            }
+        } else {
+            final Optional<ObjectCopier> objectCopier = objectCopiers.computeIfAbsent(objectClass,
+                    ObjectCopier::forClass);
+            if (objectCopier.isPresent()) {
+                return objectCopier.get().copy(this, object, copies);
+            }
+        }
+        final Object copy = XSTREAM.fromXML(XSTREAM.toXML(object));
+        copies.put(object, copy);
+        return copy;
+    }
+
+    private static boolean isImmutable(final Class<?> objectClass) {
+        if (IMMUTABLE_CLASSES.contains(objectClass) || Enum.class.isAssignableFrom(objectClass)) {
+            return true;
+        }
+        final String className = objectClass.getName();
+        return className.startsWith("java.time.")
+                || className.startsWith("org.joda.time.") && !objectClass.getSimpleName().startsWith("Mutable");
+    }
+
+    private Object copyArray(final Object array, final Map<Object, Object> copies) {
+        final int length = Array.getLength(array);
+        final Class<?> componentType = array.getClass().getComponentType();
+        final Object arrayCopy = Array.newInstance(componentType, length);
+        copies.put(array, arrayCopy);
+        if (componentType.isPrimitive()) {
+            System.arraycopy(array, 0, arrayCopy, 0, length);
+        } else {
+            for (int index = 0; index < length; index++) {
+                Array.set(arrayCopy, index, copy(Array.get(array, index), copies));
+            }
+        }
+        return arrayCopy;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Collection<Object> newCollection(final Object collection) {
+        final Class<?> collectionClass = collection.getClass();
+        if (collectionClass == ArrayList.class || collectionClass == Arrays.asList().getClass()) {
+            return new ArrayList<>(((Collection<?>) collection).size());
+        } else if (collectionClass == LinkedList.class) {
+            return new LinkedList<>();
+        } else if (collectionClass == HashSet.class) {
+            return new HashSet<>();
+        } else if (collectionClass == LinkedHashSet.class) {
+            return new LinkedHashSet<>();
+        } else if (collectionClass == TreeSet.class) {
+            return new TreeSet<>(((TreeSet) collection).comparator());
+        } else if (collectionClass == ArrayDeque.class) {
+            return new ArrayDeque<>();
+        }
+        return null;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Map<Object, Object> newMap(final Object map) {
+        final Class<?> mapClass = map.getClass();
+        if (mapClass == HashMap.class) {
+            return new HashMap<>();
+        } else if (mapClass == LinkedHashMap.class) {
+            return new LinkedHashMap<>();
+        } else if (mapClass == TreeMap.class) {
+            return new TreeMap<>(((TreeMap) map).comparator());
+        } else if (mapClass == ConcurrentHashMap.class) {
+            return new ConcurrentHashMap<>();
+        }
+        return null;
+    }
+
+    /**
+     * Copies the instance fields of one class, including those it inherits
+     */
+    private static final class ObjectCopier {
+
+        private final Constructor<?> constructor;
+        private final List<Field> fields;
+
+        private ObjectCopier(final Constructor<?> constructor, final List<Field> fields) {
+            this.constructor = constructor;
+            this.fields = fields;
+        }
+
+        static Optional<ObjectCopier> forClass(final Class<?> objectClass) {
+            if (objectClass.getName().startsWith("java.") || objectClass.getName().startsWith("javax.")) {
+                return Optional.empty();
+            }
+            try {
+                final Constructor<?> constructor = objectClass.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                final List<Field> fields = new ArrayList<>();
+                Class<?> declaringClass = objectClass;
+                while (declaringClass != Object.class) {
+                    for (final Field field : declaringClass.getDeclaredFields()) {
+                        if (!Modifier.isStatic(field.getModifiers())) {
+                            field.setAccessible(true);
+                            fields.add(field);
+                        }
+                    }
+                    declaringClass = declaringClass.getSuperclass();
+                }
+                return Optional.of(new ObjectCopier(constructor, fields));
+            } catch (final NoSuchMethodException | RuntimeException e) {
+                return Optional.empty();
+            }
+        }
+
+        Object copy(final ItemCloner cloner, final Object object, final Map<Object, Object> copies) {
+            try {
+                final Object copy = constructor.newInstance();
+                copies.put(object, copy);
+                for (final Field field : fields) {
+                    final Object value = field.get(object);
+                    field.set(copy, field.getType().isPrimitive() ? value : cloner.copy(value, copies));
+                }
+                return copy;
+            } catch (final ReflectiveOperationException e) {
+                throw new IllegalStateException("Unable to copy " + object.getClass(), e);
+            }
+        }
+    }
+}
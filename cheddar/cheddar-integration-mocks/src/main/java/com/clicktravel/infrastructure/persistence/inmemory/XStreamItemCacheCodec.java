@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.inmemory;
+
+import java.nio.charset.StandardCharsets;
+
+import com.clicktravel.cheddar.infrastructure.persistence.cache.ItemCacheCodec;
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * Encodes objects as XStream XML, so, as with {@link SerializedItem}, any object can be encoded without it having to be
+ * {@link java.io.Serializable}
+ */
+public class XStreamItemCacheCodec implements ItemCacheCodec {
+
+    private static final XStream xstream = new XStream();
+
+    @Override
+    public byte[] encode(final Object item) {
+        return xstream.toXML(item).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Object decode(final byte[] data) {
+        return xstream.fromXML(new String(data, StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.inmemory.cache;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+import com.clicktravel.cheddar.infrastructure.persistence.cache.ItemCache;
+import com.clicktravel.cheddar.infrastructure.persistence.cache.ItemCacheCodec;
+import com.clicktravel.cheddar.infrastructure.persistence.cache.JavaSerializationItemCacheCodec;
+import com.clicktravel.infrastructure.inmemory.Resettable;
+
+/**
+ * In-memory stand-in for a distributed item cache. As with a real cache, items are held encoded by an
+ * {@link ItemCacheCodec}, so changes to an item after it is put are not seen by later gets and items the codec cannot
+ * encode are rejected. An expiry of zero or less never expires.
+ */
+public class InMemoryItemCache implements ItemCache, Resettable {
+
+    private final Map<String, CacheEntry> cacheEntries = new ConcurrentHashMap<>();
+    private final ItemCacheCodec codec;
+
+    public InMemoryItemCache() {
+        this(new JavaSerializationItemCacheCodec());
+    }
+
+    public InMemoryItemCache(final ItemCacheCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public Object getItem(final String key, final long timeout) {
+        final CacheEntry cacheEntry = cacheEntries.get(key);
+        if (cacheEntry == null) {
+            return null;
+        }
+        if (cacheEntry.hasExpired()) {
+            cacheEntries.remove(key, cacheEntry);
+            return null;
+        }
+        return codec.decode(cacheEntry.data);
+    }
+
+    @Override
+    public void putItem(final String key, final Object item, final long expire) {
+        final long expiryTimeMillis = expire > 0 ? System.currentTimeMillis() + expire * 1000 : Long.MAX_VALUE;
+        cacheEntries.put(key, new CacheEntry(codec.encode(item), expiryTimeMillis));
+    }
+
+    @Override
+    public boolean putItemIf(final String key, final Object item, final long expire, final long timeout,
+            final Predicate<Object> condition) {
+        final long expiryTimeMillis = expire > 0 ? System.currentTimeMillis() + expire * 1000 : Long.MAX_VALUE;
+        final byte[] data = codec.encode(item);
+        final AtomicBoolean put = new AtomicBoolean();
+        cacheEntries.compute(key, (entryKey, cacheEntry) -> {
+            if (cacheEntry != null && !cacheEntry.hasExpired() && !condition.test(codec.decode(cacheEntry.data))) {
+                return cacheEntry;
+            }
+            put.set(true);
+            return new CacheEntry(data, expiryTimeMillis);
+        });
+        return put.get();
+    }
+
+    @Override
+    public void deleteItem(final String key) {
+        cacheEntries.remove(key);
+    }
+
+    @Override
+    public CompletableFuture<Object> getItemAsync(final String key) {
+        return CompletableFuture.completedFuture(getItem(key, 0));
+    }
+
+    @Override
+    public void reset() {
+        cacheEntries.clear();
+    }
+
+    private static class CacheEntry {
+
+        private final byte[] data;
+        private final long expiryTimeMillis;
+
+        private CacheEntry(final byte[] data, final long expiryTimeMillis) {
+            this.data = data;
+            this.expiryTimeMillis = expiryTimeMillis;
+        }
+
+        private boolean hasExpired() {
+            return System.currentTimeMillis() >= expiryTimeMillis;
+        }
+    }
+}
@@ -18,11 +18,20 @@ package com.clicktravel.infrastructure.persistence.inmemory.database;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import com.clicktravel.cheddar.infrastructure.persistence.database.BatchDatabaseTemplate;
+import com.clicktravel.cheddar.infrastructure.persistence.database.BatchItemFailure;
+import com.clicktravel.cheddar.infrastructure.persistence.database.BatchWriteResult;
 import com.clicktravel.cheddar.infrastructure.persistence.database.Item;
 import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.DatabaseSchemaHolder;
+import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceResourceFailureException;
 
+/**
+ * Applies batch operations with the same semantics as the DynamoDB template: items are written and deleted without
+ * checking their versions, classes with unique constraints are rejected, and {@link #batchWrite(List, Class)} leaves
+ * items written before a failure in place.
+ */
 public class InMemoryBatchDatabaseTemplate extends InMemoryDatabaseTemplate implements BatchDatabaseTemplate {
 
     public InMemoryBatchDatabaseTemplate(final DatabaseSchemaHolder databaseSchemaHolder) {
@@ -31,12 +40,52 @@ public class InMemoryBatchDatabaseTemplate extends InMemoryDatabaseTemplate impl
 
     @Override
     public <T extends Item> List<T> batchWrite(final List<T> items, final Class<T> itemClass) {
-        final List<T> updatedItems = new ArrayList<>();
+        checkBatchable(itemClass, "write");
         for (final T item : items) {
-            final T updatedItem = update(item);
-            updatedItems.add(updatedItem);
+            write(item, this::put);
+        }
+        return new ArrayList<>(items);
+    }
+
+    @Override
+    public <T extends Item> BatchWriteResult<T> batchPut(final List<T> items, final Class<T> itemClass) {
+        checkBatchable(itemClass, "write");
+        return batchWriteResult(items, this::put);
+    }
+
+    @Override
+    public <T extends Item> BatchWriteResult<T> batchDelete(final List<T> items, final Class<T> itemClass) {
+        checkBatchable(itemClass, "delete");
+        return batchWriteResult(items, this::remove);
+    }
+
+    private void checkBatchable(final Class<? extends Item> itemClass, final String operation) {
+        if (hasUniqueConstraints(itemClass)) {
+            throw new IllegalArgumentException("Cannot perform batch " + operation + " for item of type" + itemClass);
+        }
+    }
+
+    private <T extends Item> BatchWriteResult<T> batchWriteResult(final List<T> items,
+            final Consumer<Item> operation) {
+        final List<T> succeededItems = new ArrayList<>();
+        final List<BatchItemFailure<T>> failures = new ArrayList<>();
+        for (final T item : items) {
+            try {
+                write(item, operation);
+                succeededItems.add(item);
+            } catch (final PersistenceResourceFailureException e) {
+                failures.add(new BatchItemFailure<>(item, e));
+            }
+        }
+        return new BatchWriteResult<>(succeededItems, failures);
+    }
+
+    private void write(final Item item, final Consumer<Item> operation) {
+        try {
+            operation.accept(item);
+        } catch (final IllegalStateException e) {
+            throw new PersistenceResourceFailureException("Failed to do in-memory batch write", e);
         }
-        return updatedItems;
     }
 
 }
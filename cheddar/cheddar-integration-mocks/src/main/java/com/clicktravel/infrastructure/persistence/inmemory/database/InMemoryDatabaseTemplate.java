@@ -17,12 +17,13 @@
 package com.clicktravel.infrastructure.persistence.inmemory.database;
 
 import java.beans.PropertyDescriptor;
-import java.lang.reflect.Method;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
+import com.clicktravel.cheddar.infrastructure.persistence.accessor.PropertyAccessor;
+import com.clicktravel.cheddar.infrastructure.persistence.accessor.PropertyAccessors;
 import com.clicktravel.cheddar.infrastructure.persistence.database.*;
 import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.DatabaseSchemaHolder;
 import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.ItemConfiguration;
@@ -30,38 +31,62 @@ import com.clicktravel.cheddar.infrastructure.persistence.database.configuration
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.ItemConstraintViolationException;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.NonExistentItemException;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.handler.PersistenceExceptionHandler;
+import com.clicktravel.cheddar.infrastructure.persistence.database.options.FetchOptions;
 import com.clicktravel.cheddar.infrastructure.persistence.database.query.*;
+import com.clicktravel.infrastructure.inmemory.DurableStore;
 import com.clicktravel.infrastructure.inmemory.Resettable;
-import com.clicktravel.infrastructure.persistence.inmemory.SerializedItem;
+import com.clicktravel.infrastructure.persistence.inmemory.ItemCloner;
 
+/**
+ * Stores deep copies of items, so that changes to an item after it is written, or to an item returned by a read or
+ * query, never affect the stored item. Queries with an equality condition on an indexed property are answered from the
+ * secondary indexes of {@link IndexedItemTable}; other queries examine every stored item of the table. Items can
+ * optionally be kept in a {@link DurableStore}, so that they survive a restart.
+ */
 public class InMemoryDatabaseTemplate extends AbstractDatabaseTemplate implements Resettable {
 
     private static final AtomicLong ATOMIC_COUNTER = new AtomicLong();
-    private final Map<String, Map<ItemId, SerializedItem>> items = new ConcurrentHashMap<>();
+    private final ItemCloner itemCloner = new ItemCloner();
+    private final Map<String, IndexedItemTable> tables = new ConcurrentHashMap<>();
     private final Map<String, Map<String, ItemId>> uniqueConstraints = new ConcurrentHashMap<>();
     private final Map<Class<? extends Item>, ItemConfiguration> itemConfigurations = new ConcurrentHashMap<>();
+    private volatile DurableStore durableStore;
 
     public InMemoryDatabaseTemplate(final DatabaseSchemaHolder databaseSchemaHolder) {
+        final Map<String, Collection<ItemConfiguration>> tableItemConfigurations = new HashMap<>();
         for (final ItemConfiguration itemConfiguration : databaseSchemaHolder.itemConfigurations()) {
             itemConfigurations.put(itemConfiguration.itemClass(), itemConfiguration);
             final String tableName = itemConfiguration.tableName();
-            items.put(tableName, new HashMap<ItemId, SerializedItem>());
+            tableItemConfigurations.computeIfAbsent(tableName, name -> new ArrayList<>()).add(itemConfiguration);
             for (final UniqueConstraint uniqueConstraint : itemConfiguration.uniqueConstraints()) {
                 uniqueConstraints.put(newUniqueConstraintKey(tableName, uniqueConstraint.propertyName()),
                         new HashMap<String, ItemId>());
             }
         }
+        for (final Entry<String, Collection<ItemConfiguration>> entry : tableItemConfigurations.entrySet()) {
+            tables.put(entry.getKey(), new IndexedItemTable(entry.getValue()));
+        }
+    }
+
+    /**
+     * Restores the items held by the given durable store, then writes all item changes to it
+     *
+     * @param durableStore A durable store which has not yet been recovered
+     */
+    public void configureDurability(final DurableStore durableStore) {
+        for (final Object item : durableStore.recover().values()) {
+            final Item restoredItem = (Item) item;
+            createUniqueConstraints(restoredItem);
+            getTable(getItemTableName(restoredItem.getClass())).put(getItemId(restoredItem), restoredItem);
+        }
+        this.durableStore = durableStore;
     }
 
     @Override
     public <T extends Item> T read(final ItemId itemId, final Class<T> itemClass) throws NonExistentItemException {
-        final SerializedItem serializedItem = getItemMap(getItemTableName(itemClass)).get(itemId);
-        if (serializedItem == null) {
-            throw new NonExistentItemException("Item with identifier [" + itemId.value() + "] did not exist");
-        }
-        final T item = serializedItem.getEntity(itemClass);
-        if (itemClass.isAssignableFrom(item.getClass())) {
-            return item;
+        final Item storedItem = getTable(getItemTableName(itemClass)).get(itemId);
+        if (storedItem != null && itemClass.isAssignableFrom(storedItem.getClass())) {
+            return itemClass.cast(itemCloner.deepCopy(storedItem));
         }
         throw new NonExistentItemException("Item with identifier [" + itemId.value() + "] did not exist");
     }
@@ -71,14 +96,13 @@ public class InMemoryDatabaseTemplate extends AbstractDatabaseTemplate implement
             final PersistenceExceptionHandler<?>... persistenceExceptionHandlers) {
         final ItemId itemId = getItemId(item);
         final String tableName = getItemTableName(item.getClass());
-        final SerializedItem oldSerializedItem = getItemMap(tableName).get(itemId);
-        if (oldSerializedItem != null) {
+        if (getTable(tableName).get(itemId) != null) {
             throw new ItemConstraintViolationException(itemId.value(),
                     "Item already exist with identifier in [" + item.getClass() + "] repository");
         }
         createUniqueConstraints(item);
         item.setVersion(1L);
-        getItemMap(tableName).put(itemId, getSerializedItem(itemId.value(), item));
+        store(tableName, itemId, itemCloner.deepCopy(item));
         return item;
     }
 
@@ -89,11 +113,10 @@ public class InMemoryDatabaseTemplate extends AbstractDatabaseTemplate implement
         final ItemId itemId = getItemId(item);
         final Class<? extends Item> itemType = item.getClass();
         final String tableName = getItemTableName(itemType);
-        final SerializedItem oldSerializedItem = getItemMap(tableName).get(itemId);
-        if (oldSerializedItem == null) {
+        final T oldItem = (T) getTable(tableName).get(itemId);
+        if (oldItem == null) {
             return create(item);
         }
-        final T oldItem = (T) oldSerializedItem.getEntity(item.getClass());
         if (!item.getVersion().equals(oldItem.getVersion())) {
             throw new IllegalAccessError(
                     "Expected version [" + item.getVersion() + "] but was [" + oldItem.getVersion() + "]");
@@ -106,18 +129,41 @@ public class InMemoryDatabaseTemplate extends AbstractDatabaseTemplate implement
             throw e;
         }
         item.setVersion(item.getVersion() + 1);
-        getItemMap(tableName).put(itemId, getSerializedItem(itemId.value(), item));
+        store(tableName, itemId, itemCloner.deepCopy(item));
         return item;
     }
 
     @Override
     public void delete(final Item item, final PersistenceExceptionHandler<?>... persistenceExceptionHandlers) {
         if (item != null) {
-            getItemMap(getItemTableName(item.getClass())).remove(getItemId(item));
+            discard(getItemTableName(item.getClass()), getItemId(item));
         }
         deleteUniqueConstraints(item);
     }
 
+    /**
+     * Stores the item without checking its version, as an unconditional DynamoDB put does, and sets its new version
+     * once stored
+     */
+    void put(final Item item) {
+        final Long version = item.getVersion();
+        final Item storedItem = itemCloner.deepCopy(item);
+        storedItem.setVersion(version != null ? version + 1 : 1L);
+        store(getItemTableName(item.getClass()), getItemId(item), storedItem);
+        item.setVersion(storedItem.getVersion());
+    }
+
+    /**
+     * Removes the item without checking its version, as an unconditional DynamoDB delete does
+     */
+    void remove(final Item item) {
+        discard(getItemTableName(item.getClass()), getItemId(item));
+    }
+
+    boolean hasUniqueConstraints(final Class<? extends Item> itemClass) {
+        return !getItemConfiguration(itemClass).uniqueConstraints().isEmpty();
+    }
+
     private String uniqueConstraintPropertyValue(final Object propertyValue) {
         return String.valueOf(propertyValue).toUpperCase();
     }
@@ -132,12 +178,8 @@ public class InMemoryDatabaseTemplate extends AbstractDatabaseTemplate implement
             final String propertyName = propertyDescriptor.getName();
             final String uniqueConstraintKey = newUniqueConstraintKey(tableName, propertyName);
             final Map<String, ItemId> uniqueValues = uniqueConstraints.get(uniqueConstraintKey);
-            Object propertyValue = null;
-            try {
-                propertyValue = propertyDescriptor.getReadMethod().invoke(item);
-            } catch (final Exception e) {
-                throw new IllegalStateException("Could not invoke read method", e);
-            }
+            final Object propertyValue = getItemConfiguration(itemClass).propertyAccessor(propertyDescriptor.getName())
+                    .getValue(item);
             if (propertyValue != null) {
                 final String uniqueConstraintPropertyValue = uniqueConstraintPropertyValue(propertyValue);
                 final ItemId existingItemId = uniqueValues.get(uniqueConstraintPropertyValue);
@@ -161,12 +203,8 @@ public class InMemoryDatabaseTemplate extends AbstractDatabaseTemplate implement
         for (final PropertyDescriptor propertyDescriptor : uniqueConstraintProperties) {
             final String uniqueConstraintKey = newUniqueConstraintKey(tableName, propertyDescriptor.getName());
             final Map<String, ItemId> uniqueValues = uniqueConstraints.get(uniqueConstraintKey);
-            Object propertyValue = null;
-            try {
-                propertyValue = propertyDescriptor.getReadMethod().invoke(item);
-            } catch (final Exception e) {
-                throw new IllegalStateException("Could not invoke read method", e);
-            }
+            final Object propertyValue = getItemConfiguration(itemClass).propertyAccessor(propertyDescriptor.getName())
+                    .getValue(item);
             if (propertyValue != null) {
                 final String uniqueConstraintPropertyValue = uniqueConstraintPropertyValue(propertyValue);
                 final ItemId itemId = uniqueValues.get(uniqueConstraintPropertyValue);
@@ -210,6 +248,20 @@ public class InMemoryDatabaseTemplate extends AbstractDatabaseTemplate implement
         }
     }
 
+    /**
+     * Pages through the matching items in item id order, so that a cursor remains meaningful between fetches
+     */
+    @Override
+    public <T extends Item> FetchResult<T> fetch(final Query query, final Class<T> itemClass,
+            final FetchOptions fetchOptions) {
+        final List<T> items = new ArrayList<>(fetch(query, itemClass));
+        final Comparator<ItemId> itemIdComparator = Comparator.comparing(ItemId::value)
+                .thenComparing(ItemId::supportingValue, Comparator.nullsFirst(Comparator.naturalOrder()));
+        items.sort((item, otherItem) -> itemIdComparator.compare(getItemId(item), getItemId(otherItem)));
+        return new FetchResult<>(new KeyOffsetItemPageLoader<T, T>(items, pageItems -> pageItems, null),
+                fetchOptions);
+    }
+
     @Override
     public GeneratedKeyHolder generateKeys(final SequenceKeyGenerator sequenceKeyGenerator) {
         final Collection<Long> keys = new ArrayList<>();
@@ -255,27 +307,21 @@ public class InMemoryDatabaseTemplate extends AbstractDatabaseTemplate implement
         return contraintPropertyDescriptors;
     }
 
-    private SerializedItem getSerializedItem(final String itemId, final Object repositoryItem) {
-        return new SerializedItem(repositoryItem);
-    }
-
     private <T extends Item> Collection<T> executeQuery(final KeySetQuery query, final Class<T> itemClass) {
-        final Map<ItemId, T> allItems = getAllItems(itemClass);
         final Collection<T> matches = new ArrayList<>();
-        for (final Entry<ItemId, T> entry : allItems.entrySet()) {
-            if (query.itemIds().contains(entry.getKey())) {
-                matches.add(entry.getValue());
+        for (final Item storedItem : getTable(getItemTableName(itemClass)).get(new HashSet<>(query.itemIds()))) {
+            if (itemClass.isAssignableFrom(storedItem.getClass())) {
+                matches.add(itemClass.cast(itemCloner.deepCopy(storedItem)));
             }
         }
         return matches;
     }
 
     private <T extends Item> Collection<T> executeQuery(final AttributeQuery query, final Class<T> itemClass) {
-        final Map<ItemId, T> allItems = getAllItems(itemClass);
         final Collection<T> matches = new ArrayList<>();
-        for (final T item : allItems.values()) {
-            if (itemMatches(query, item)) {
-                matches.add(item);
+        for (final Item storedItem : getTable(getItemTableName(itemClass)).candidates(query)) {
+            if (itemClass.isAssignableFrom(storedItem.getClass()) && itemMatches(query, storedItem)) {
+                matches.add(itemClass.cast(itemCloner.deepCopy(storedItem)));
             }
         }
         return matches;
@@ -297,9 +343,10 @@ public class InMemoryDatabaseTemplate extends AbstractDatabaseTemplate implement
 
     private <T extends Item> boolean propertyMatches(final T item, final String attribute, final Condition condition) {
         try {
-            final Method getter = new PropertyDescriptor(attribute, item.getClass()).getReadMethod();
-            final Object itemPropertyValue = getter.invoke(item);
-            final Class<?> itemPropertyType = getter.getReturnType();
+            final PropertyAccessor propertyAccessor = PropertyAccessors.factory().propertyAccessor(item.getClass(),
+                    attribute);
+            final Object itemPropertyValue = propertyAccessor.getValue(item);
+            final Class<?> itemPropertyType = propertyAccessor.propertyType();
             final Set<String> values = condition.getValues();
             String singleValue = null;
             if (values != null && !values.isEmpty()) {
@@ -351,30 +398,62 @@ public class InMemoryDatabaseTemplate extends AbstractDatabaseTemplate implement
         }
     }
 
-    private <T extends Item> Map<ItemId, T> getAllItems(final Class<T> itemClass) {
-        final Map<ItemId, T> allItems = new HashMap<>();
-        final String tableName = getItemTableName(itemClass);
-        for (final SerializedItem serializedItem : getItemMap(tableName).values()) {
-            final T item = serializedItem.getEntity(itemClass);
-            if (itemClass.isAssignableFrom(item.getClass())) {
-                allItems.put(getItemId(item), item);
+    private void store(final String tableName, final ItemId itemId, final Item storedItem) {
+        final IndexedItemTable table = getTable(tableName);
+        synchronized (table) {
+            table.put(itemId, storedItem);
+            if (durableStore != null) {
+                durableStore.put(durableKey(tableName, itemId), storedItem);
+            }
+        }
+        compactDurableStoreIfDue();
+    }
+
+    private void discard(final String tableName, final ItemId itemId) {
+        final IndexedItemTable table = getTable(tableName);
+        synchronized (table) {
+            table.remove(itemId);
+            if (durableStore != null) {
+                durableStore.remove(durableKey(tableName, itemId));
             }
         }
-        return allItems;
+        compactDurableStoreIfDue();
+    }
+
+    private void compactDurableStoreIfDue() {
+        final DurableStore durableStore = this.durableStore;
+        if (durableStore != null && durableStore.compactionDue()) {
+            durableStore.compact(() -> {
+                final Map<String, Item> durableItems = new LinkedHashMap<>();
+                for (final Entry<String, IndexedItemTable> entry : tables.entrySet()) {
+                    for (final Entry<ItemId, Item> itemEntry : entry.getValue().items().entrySet()) {
+                        durableItems.put(durableKey(entry.getKey(), itemEntry.getKey()), itemEntry.getValue());
+                    }
+                }
+                return durableItems;
+            });
+        }
     }
 
-    private Map<ItemId, SerializedItem> getItemMap(final String tableName) {
-        final Map<ItemId, SerializedItem> itemMap = items.get(tableName);
-        if (itemMap == null) {
+    private static String durableKey(final String tableName, final ItemId itemId) {
+        return tableName + ":" + itemId;
+    }
+
+    private IndexedItemTable getTable(final String tableName) {
+        final IndexedItemTable table = tables.get(tableName);
+        if (table == null) {
             throw new IllegalStateException("Unknown table: " + tableName);
         }
-        return itemMap;
+        return table;
     }
 
     @Override
     public void reset() {
-        for (final Entry<String, Map<ItemId, SerializedItem>> entry : items.entrySet()) {
-            entry.setValue(new HashMap<ItemId, SerializedItem>());
+        for (final IndexedItemTable table : tables.values()) {
+            table.clear();
+        }
+        if (durableStore != null) {
+            durableStore.clear();
         }
         for (final Entry<String, Map<String, ItemId>> entry : uniqueConstraints.entrySet()) {
             entry.setValue(new HashMap<String, ItemId>());
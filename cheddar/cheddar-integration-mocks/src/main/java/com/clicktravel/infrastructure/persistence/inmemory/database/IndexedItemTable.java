@@ -0,0 +1,255 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.inmemory.database;
+
+import java.util.*;
+
+import com.clicktravel.cheddar.infrastructure.persistence.accessor.PropertyAccessor;
+import com.clicktravel.cheddar.infrastructure.persistence.accessor.PropertyAccessors;
+import com.clicktravel.cheddar.infrastructure.persistence.database.Item;
+import com.clicktravel.cheddar.infrastructure.persistence.database.ItemId;
+import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.CompoundKeyDefinition;
+import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.IndexDefinition;
+import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.ItemConfiguration;
+import com.clicktravel.cheddar.infrastructure.persistence.database.query.AttributeQuery;
+import com.clicktravel.cheddar.infrastructure.persistence.database.query.CompoundAttributeQuery;
+import com.clicktravel.cheddar.infrastructure.persistence.database.query.Condition;
+import com.clicktravel.cheddar.infrastructure.persistence.database.query.Operators;
+
+/**
+ * The items stored in one table of an {@link InMemoryDatabaseTemplate}, with a secondary index for the primary key and
+ * for each index definition of the item configurations sharing the table. An index maps the string form of a property
+ * value, which is what queries are matched against, to a sorted map from the string form of the supporting property
+ * value to the identifiers of the items holding those values. Indexes only narrow down the candidates for a query, so
+ * candidates must still be matched against the query in full.
+ */
+class IndexedItemTable {
+
+    private final Map<ItemId, Item> items = new HashMap<>();
+    private final Collection<ItemIndex> indexes = new ArrayList<>();
+
+    IndexedItemTable(final Collection<ItemConfiguration> itemConfigurations) {
+        final Set<List<String>> indexedProperties = new LinkedHashSet<>();
+        for (final ItemConfiguration itemConfiguration : itemConfigurations) {
+            indexedProperties.add(indexedProperties(itemConfiguration.primaryKeyDefinition()));
+            for (final IndexDefinition indexDefinition : itemConfiguration.indexDefinitions()) {
+                indexedProperties.add(indexedProperties(indexDefinition));
+            }
+        }
+        for (final List<String> properties : indexedProperties) {
+            if (isIndexable(properties.get(0), itemConfigurations)) {
+                indexes.add(new ItemIndex(properties.get(0), properties.get(1)));
+            }
+        }
+    }
+
+    private static List<String> indexedProperties(final IndexDefinition indexDefinition) {
+        final String supportingPropertyName = indexDefinition instanceof CompoundKeyDefinition
+                ? ((CompoundKeyDefinition) indexDefinition).supportingPropertyName()
+                : null;
+        return Arrays.asList(indexDefinition.propertyName(), supportingPropertyName);
+    }
+
+    /**
+     * Collection properties are matched against queries as sets rather than as strings, so cannot be indexed
+     */
+    private static boolean isIndexable(final String propertyName,
+            final Collection<ItemConfiguration> itemConfigurations) {
+        for (final ItemConfiguration itemConfiguration : itemConfigurations) {
+            final PropertyAccessor propertyAccessor = PropertyAccessors.factory()
+                    .propertyAccessors(itemConfiguration.itemClass()).get(propertyName);
+            if (propertyAccessor != null && Collection.class.isAssignableFrom(propertyAccessor.propertyType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    synchronized Item get(final ItemId itemId) {
+        return items.get(itemId);
+    }
+
+    synchronized Collection<Item> get(final Collection<ItemId> itemIds) {
+        final Collection<Item> matchingItems = new ArrayList<>();
+        for (final ItemId itemId : itemIds) {
+            final Item item = items.get(itemId);
+            if (item != null) {
+                matchingItems.add(item);
+            }
+        }
+        return matchingItems;
+    }
+
+    synchronized Map<ItemId, Item> items() {
+        return new HashMap<>(items);
+    }
+
+    synchronized void put(final ItemId itemId, final Item item) {
+        remove(itemId);
+        items.put(itemId, item);
+        for (final ItemIndex index : indexes) {
+            index.add(itemId, item);
+        }
+    }
+
+    synchronized void remove(final ItemId itemId) {
+        final Item item = items.remove(itemId);
+        if (item != null) {
+            for (final ItemIndex index : indexes) {
+                index.remove(itemId, item);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        items.clear();
+        for (final ItemIndex index : indexes) {
+            index.clear();
+        }
+    }
+
+    /**
+     * Returns the stored items which could match the given query, using an index on the queried attribute when the
+     * query has an equality condition, or all stored items otherwise
+     */
+    synchronized Collection<Item> candidates(final AttributeQuery query) {
+        final String value = equalityValue(query.getCondition());
+        if (value != null) {
+            ItemIndex attributeIndex = null;
+            for (final ItemIndex index : indexes) {
+                if (index.propertyName.equals(query.getAttributeName())) {
+                    if (query instanceof CompoundAttributeQuery && index.supportingPropertyName != null
+                            && index.supportingPropertyName
+                                    .equals(((CompoundAttributeQuery) query).getSupportingAttributeName())) {
+                        return get(index.lookup(value, ((CompoundAttributeQuery) query).getSupportingCondition()));
+                    }
+                    if (attributeIndex == null) {
+                        attributeIndex = index;
+                    }
+                }
+            }
+            if (attributeIndex != null) {
+                return get(attributeIndex.lookup(value, null));
+            }
+        }
+        return new ArrayList<>(items.values());
+    }
+
+    private static String equalityValue(final Condition condition) {
+        return condition.getComparisonOperator() == Operators.EQUALS ? firstValue(condition) : null;
+    }
+
+    private static String firstValue(final Condition condition) {
+        final Set<String> values = condition.getValues();
+        return values == null || values.isEmpty() ? null : values.iterator().next();
+    }
+
+    private static final class ItemIndex {
+
+        private static final String NO_SUPPORTING_VALUE = "";
+
+        private final String propertyName;
+        private final String supportingPropertyName;
+        private final Map<String, NavigableMap<String, Set<ItemId>>> entries = new HashMap<>();
+
+        private ItemIndex(final String propertyName, final String supportingPropertyName) {
+            this.propertyName = propertyName;
+            this.supportingPropertyName = supportingPropertyName;
+        }
+
+        private void add(final ItemId itemId, final Item item) {
+            final List<String> key = key(item);
+            if (key != null) {
+                entries.computeIfAbsent(key.get(0), value -> new TreeMap<>())
+                        .computeIfAbsent(key.get(1), supportingValue -> new HashSet<>()).add(itemId);
+            }
+        }
+
+        private void remove(final ItemId itemId, final Item item) {
+            final List<String> key = key(item);
+            if (key != null) {
+                final NavigableMap<String, Set<ItemId>> supportingEntries = entries.get(key.get(0));
+                final Set<ItemId> itemIds = supportingEntries.get(key.get(1));
+                itemIds.remove(itemId);
+                if (itemIds.isEmpty()) {
+                    supportingEntries.remove(key.get(1));
+                    if (supportingEntries.isEmpty()) {
+                        entries.remove(key.get(0));
+                    }
+                }
+            }
+        }
+
+        private void clear() {
+            entries.clear();
+        }
+
+        /**
+         * @return The string forms of the indexed property values of the item, or {@code null} if the item does not
+         *         have the indexed properties
+         */
+        private List<String> key(final Item item) {
+            final Map<String, PropertyAccessor> propertyAccessors = PropertyAccessors.factory()
+                    .propertyAccessors(item.getClass());
+            final PropertyAccessor propertyAccessor = propertyAccessors.get(propertyName);
+            if (propertyAccessor == null) {
+                return null;
+            }
+            if (supportingPropertyName == null) {
+                return Arrays.asList(String.valueOf(propertyAccessor.getValue(item)), NO_SUPPORTING_VALUE);
+            }
+            final PropertyAccessor supportingPropertyAccessor = propertyAccessors.get(supportingPropertyName);
+            if (supportingPropertyAccessor == null) {
+                return null;
+            }
+            return Arrays.asList(String.valueOf(propertyAccessor.getValue(item)),
+                    String.valueOf(supportingPropertyAccessor.getValue(item)));
+        }
+
+        private Collection<ItemId> lookup(final String value, final Condition supportingCondition) {
+            final NavigableMap<String, Set<ItemId>> supportingEntries = entries.get(value);
+            if (supportingEntries == null) {
+                return Collections.emptySet();
+            }
+            final Collection<Set<ItemId>> matchingEntries = matchingEntries(supportingEntries, supportingCondition);
+            final Collection<ItemId> itemIds = new ArrayList<>();
+            for (final Set<ItemId> entryItemIds : matchingEntries) {
+                itemIds.addAll(entryItemIds);
+            }
+            return itemIds;
+        }
+
+        private static Collection<Set<ItemId>> matchingEntries(
+                final NavigableMap<String, Set<ItemId>> supportingEntries, final Condition supportingCondition) {
+            final String supportingValue = supportingCondition == null ? null : firstValue(supportingCondition);
+            if (supportingValue != null) {
+                switch (supportingCondition.getComparisonOperator()) {
+                    case EQUALS:
+                        final Set<ItemId> itemIds = supportingEntries.get(supportingValue);
+                        return itemIds == null ? Collections.emptySet() : Collections.singleton(itemIds);
+                    case LESS_THAN_OR_EQUALS:
+                        return supportingEntries.headMap(supportingValue, true).values();
+                    case GREATER_THAN_OR_EQUALS:
+                        return supportingEntries.tailMap(supportingValue, true).values();
+                    default:
+                        break;
+                }
+            }
+            return supportingEntries.values();
+        }
+    }
+}
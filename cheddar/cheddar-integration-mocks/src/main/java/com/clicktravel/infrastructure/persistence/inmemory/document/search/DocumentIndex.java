@@ -0,0 +1,402 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.inmemory.document.search;
+
+import java.util.*;
+
+import org.joda.time.DateTime;
+
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.Document;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.configuration.DocumentConfiguration;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.configuration.IndexDefinition;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.configuration.IndexFieldType;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.query.*;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.sort.SortOrder;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.sort.SortingOption;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.sort.SortingOption.Direction;
+import com.clicktravel.infrastructure.persistence.inmemory.ItemCloner;
+
+/**
+ * Holds copies of the documents of one {@link DocumentConfiguration}, each in a numbered slot, and a sorted index for
+ * each of its index definitions mapping the field values to the slots of the documents holding them. Text fields are
+ * indexed by their lower case words, other fields by their whole values, normalised so that values of any numeric or
+ * date-time type compare consistently. Structured queries are evaluated against the indexes to a set of slots.
+ */
+class DocumentIndex {
+
+    private static final int DEFAULT_SIZE = 10;
+
+    private final DocumentConfiguration documentConfiguration;
+    private final ItemCloner itemCloner;
+    private final List<Document> documents = new ArrayList<>();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final Map<String, FieldIndex> fieldIndexes = new HashMap<>();
+
+    DocumentIndex(final DocumentConfiguration documentConfiguration, final ItemCloner itemCloner) {
+        this.documentConfiguration = documentConfiguration;
+        this.itemCloner = itemCloner;
+        for (final IndexDefinition indexDefinition : documentConfiguration.indexDefinitions()) {
+            fieldIndexes.put(indexDefinition.getName(), new FieldIndex(indexDefinition));
+        }
+    }
+
+    synchronized void update(final Document document) {
+        delete(document);
+        final Document storedDocument = itemCloner.deepCopy(document);
+        final int slot = freeSlots.isEmpty() ? documents.size() : freeSlots.pop();
+        if (slot == documents.size()) {
+            documents.add(storedDocument);
+        } else {
+            documents.set(slot, storedDocument);
+        }
+        slots.put(storedDocument.getId(), slot);
+        for (final Map.Entry<String, FieldIndex> entry : fieldIndexes.entrySet()) {
+            entry.getValue().add(fieldValue(storedDocument, entry.getKey()), slot);
+        }
+    }
+
+    synchronized void delete(final Document document) {
+        final Integer slot = slots.remove(document.getId());
+        if (slot != null) {
+            final Document storedDocument = documents.set(slot, null);
+            for (final Map.Entry<String, FieldIndex> entry : fieldIndexes.entrySet()) {
+                entry.getValue().remove(fieldValue(storedDocument, entry.getKey()), slot);
+            }
+            freeSlots.push(slot);
+        }
+    }
+
+    synchronized void clear() {
+        documents.clear();
+        slots.clear();
+        freeSlots.clear();
+        for (final FieldIndex fieldIndex : fieldIndexes.values()) {
+            fieldIndex.clear();
+        }
+    }
+
+    /**
+     * @return The matching documents and their total count; matching documents are in slot order unless a sort order
+     *         is given
+     */
+    synchronized <T extends Document> Page<T> search(final StructuredQuery query, final Integer start,
+            final Integer size, final SortOrder sortOrder, final Class<T> documentClass) {
+        final QueryEvaluator queryEvaluator = new QueryEvaluator();
+        query.accept(queryEvaluator);
+        final BitSet matchingSlots = queryEvaluator.matchingSlots;
+        final int totalCount = matchingSlots.cardinality();
+        final int fromIndex = Math.min(start == null ? 0 : start, totalCount);
+        final int toIndex = Math.min(fromIndex + (size == null ? DEFAULT_SIZE : size), totalCount);
+        final List<Integer> pageSlots;
+        if (sortOrder != null && !sortOrder.sortingOptions().isEmpty()) {
+            final List<Integer> orderedSlots = new ArrayList<>(totalCount);
+            for (int slot = matchingSlots.nextSetBit(0); slot >= 0; slot = matchingSlots.nextSetBit(slot + 1)) {
+                orderedSlots.add(slot);
+            }
+            orderedSlots.sort(slotComparator(sortOrder));
+            pageSlots = orderedSlots.subList(fromIndex, toIndex);
+        } else {
+            pageSlots = new ArrayList<>(toIndex - fromIndex);
+            int slot = matchingSlots.nextSetBit(0);
+            for (int index = 0; index < toIndex; index++) {
+                if (index >= fromIndex) {
+                    pageSlots.add(slot);
+                }
+                slot = matchingSlots.nextSetBit(slot + 1);
+            }
+        }
+        final List<T> hits = new ArrayList<>(pageSlots.size());
+        for (final Integer slot : pageSlots) {
+            hits.add(documentClass.cast(itemCloner.deepCopy(documents.get(slot))));
+        }
+        return new Page<>(totalCount, hits);
+    }
+
+    private Comparator<Integer> slotComparator(final SortOrder sortOrder) {
+        Comparator<Integer> slotComparator = null;
+        for (final SortingOption sortingOption : sortOrder.sortingOptions()) {
+            final FieldIndex fieldIndex = fieldIndex(sortingOption.key());
+            fieldIndex.checkSortEnabled();
+            Comparator<Integer> fieldComparator = Comparator.comparing(
+                    slot -> fieldIndex.sortValue(fieldValue(documents.get(slot), sortingOption.key())),
+                    Comparator.nullsLast(FieldIndex.VALUE_ORDER));
+            if (sortingOption.direction() == Direction.DESCENDING) {
+                fieldComparator = fieldComparator.reversed();
+            }
+            slotComparator = slotComparator == null ? fieldComparator : slotComparator.thenComparing(fieldComparator);
+        }
+        return slotComparator;
+    }
+
+    private Object fieldValue(final Document document, final String fieldName) {
+        return documentConfiguration.propertyAccessor(fieldName).getValue(document);
+    }
+
+    private FieldIndex fieldIndex(final String fieldName) {
+        final FieldIndex fieldIndex = fieldIndexes.get(fieldName);
+        if (fieldIndex == null) {
+            throw new IllegalStateException("No index found for field: " + fieldName);
+        }
+        return fieldIndex;
+    }
+
+    static final class Page<T extends Document> {
+
+        private final int totalCount;
+        private final List<T> hits;
+
+        private Page(final int totalCount, final List<T> hits) {
+            this.totalCount = totalCount;
+            this.hits = hits;
+        }
+
+        int totalCount() {
+            return totalCount;
+        }
+
+        List<T> hits() {
+            return hits;
+        }
+    }
+
+    /**
+     * Evaluates a structured query to the set of slots of the documents matching it
+     */
+    private final class QueryEvaluator implements QueryVisitor {
+
+        private BitSet matchingSlots;
+
+        @Override
+        public void visit(final TermQuery termQuery) {
+            matchingSlots = fieldIndex(termQuery.getFieldName()).termSlots(termQuery.getValue());
+        }
+
+        @Override
+        public void visit(final RangeQuery rangeQuery) {
+            matchingSlots = fieldIndex(rangeQuery.getFieldName()).rangeSlots(rangeQuery.getLowerBound(),
+                    rangeQuery.isLowerBoundInclusive(), rangeQuery.getUpperBound(),
+                    rangeQuery.isUpperBoundInclusive());
+        }
+
+        @Override
+        public void visit(final AndQuery andQuery) {
+            BitSet andSlots = null;
+            for (final StructuredQuery query : andQuery.getQueries()) {
+                query.accept(this);
+                if (andSlots == null) {
+                    andSlots = matchingSlots;
+                } else {
+                    andSlots.and(matchingSlots);
+                }
+                if (andSlots.isEmpty()) {
+                    break;
+                }
+            }
+            matchingSlots = andSlots == null ? new BitSet() : andSlots;
+        }
+
+        @Override
+        public void visit(final OrQuery orQuery) {
+            final BitSet orSlots = new BitSet();
+            for (final StructuredQuery query : orQuery.getQueries()) {
+                query.accept(this);
+                orSlots.or(matchingSlots);
+            }
+            matchingSlots = orSlots;
+        }
+
+        @Override
+        public void visit(final SimpleQuery simple) {
+            throw new UnsupportedOperationException("Simple queries are not supported in memory");
+        }
+
+        @Override
+        public void visit(final LuceneQuery luceneQuery) {
+            throw new UnsupportedOperationException("Lucene queries are not supported in memory");
+        }
+    }
+
+    private static final class FieldIndex {
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private static final Comparator<Object> VALUE_ORDER = (value, otherValue) -> ((Comparable) value)
+                .compareTo(otherValue);
+
+        private final IndexDefinition indexDefinition;
+        private final IndexFieldType fieldType;
+        private final NavigableMap<Object, Postings> postings = new TreeMap<>(VALUE_ORDER);
+
+        private FieldIndex(final IndexDefinition indexDefinition) {
+            this.indexDefinition = indexDefinition;
+            fieldType = indexDefinition.getFieldType();
+        }
+
+        private void add(final Object fieldValue, final int slot) {
+            for (final Object term : terms(fieldValue)) {
+                postings.computeIfAbsent(term, key -> new Postings()).add(slot);
+            }
+        }
+
+        private void remove(final Object fieldValue, final int slot) {
+            for (final Object term : terms(fieldValue)) {
+                final Postings termPostings = postings.get(term);
+                if (termPostings != null && termPostings.remove(slot) && termPostings.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+
+        private void clear() {
+            postings.clear();
+        }
+
+        /**
+         * For text fields a document matches if it contains every word of the value
+         */
+        private BitSet termSlots(final Object value) {
+            checkSearchEnabled();
+            BitSet termSlots = null;
+            for (final Object term : terms(value)) {
+                final BitSet slots = new BitSet();
+                final Postings termPostings = postings.get(term);
+                if (termPostings != null) {
+                    termPostings.addTo(slots);
+                }
+                if (termSlots == null) {
+                    termSlots = slots;
+                } else {
+                    termSlots.and(slots);
+                }
+            }
+            return termSlots == null ? new BitSet() : termSlots;
+        }
+
+        private BitSet rangeSlots(final Object lowerBound, final boolean lowerBoundInclusive, final Object upperBound,
+                final boolean upperBoundInclusive) {
+            checkSearchEnabled();
+            NavigableMap<Object, Postings> rangePostings = postings;
+            if (lowerBound != null) {
+                rangePostings = rangePostings.tailMap(normalise(lowerBound), lowerBoundInclusive);
+            }
+            if (upperBound != null) {
+                rangePostings = rangePostings.headMap(normalise(upperBound), upperBoundInclusive);
+            }
+            final BitSet rangeSlots = new BitSet();
+            for (final Postings slots : rangePostings.values()) {
+                slots.addTo(rangeSlots);
+            }
+            return rangeSlots;
+        }
+
+        private void checkSearchEnabled() {
+            if (!indexDefinition.isSearchEnabled()) {
+                throw new IllegalStateException("Index field is not searchable: " + indexDefinition.getName());
+            }
+        }
+
+        private void checkSortEnabled() {
+            if (!indexDefinition.isSortEnabled()) {
+                throw new IllegalStateException("Index field is not sortable: " + indexDefinition.getName());
+            }
+        }
+
+        private Object sortValue(final Object fieldValue) {
+            if (fieldValue == null || fieldValue instanceof String && ((String) fieldValue).trim().isEmpty()) {
+                return null;
+            }
+            final Object sortValue = normalise(fieldValue);
+            return fieldType == IndexFieldType.TEXT ? ((String) sortValue).toLowerCase() : sortValue;
+        }
+
+        private Collection<Object> terms(final Object fieldValue) {
+            final Collection<Object> terms = new ArrayList<>();
+            final Collection<?> values = fieldValue instanceof Collection ? (Collection<?>) fieldValue
+                    : Collections.singleton(fieldValue);
+            for (final Object value : values) {
+                if (value == null || value instanceof String && ((String) value).trim().isEmpty()) {
+                    continue;
+                }
+                if (fieldType == IndexFieldType.TEXT || fieldType == IndexFieldType.TEXT_ARRAY) {
+                    for (final String word : value.toString().toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+                        if (!word.isEmpty()) {
+                            terms.add(word);
+                        }
+                    }
+                } else {
+                    terms.add(normalise(value));
+                }
+            }
+            return terms;
+        }
+
+        private Object normalise(final Object value) {
+            switch (fieldType) {
+                case INT:
+                case INT_ARRAY:
+                    return value instanceof Number ? ((Number) value).longValue() : Long.valueOf(value.toString());
+                case DOUBLE:
+                case DOUBLE_ARRAY:
+                    return value instanceof Number ? ((Number) value).doubleValue()
+                            : Double.valueOf(value.toString());
+                case DATETIME:
+                case DATETIME_ARRAY:
+                    return value instanceof Number ? ((Number) value).longValue() : new DateTime(value).getMillis();
+                case TEXT:
+                case TEXT_ARRAY:
+                    return value.toString().toLowerCase();
+                default:
+                    return value.toString();
+            }
+        }
+    }
+    /**
+     * The slots of the documents holding one field value, in no particular order
+     */
+    private static final class Postings {
+
+        private int[] slots = new int[1];
+        private int size;
+
+        private void add(final int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        private boolean remove(final int slot) {
+            for (int index = 0; index < size; index++) {
+                if (slots[index] == slot) {
+                    slots[index] = slots[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private void addTo(final BitSet bitSet) {
+            for (int index = 0; index < size; index++) {
+                bitSet.set(slots[index]);
+            }
+        }
+    }
+}
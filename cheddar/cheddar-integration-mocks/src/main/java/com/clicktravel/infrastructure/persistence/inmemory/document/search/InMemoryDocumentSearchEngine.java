@@ -18,45 +18,96 @@ package com.clicktravel.infrastructure.persistence.inmemory.document.search;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.clicktravel.cheddar.infrastructure.persistence.document.search.Document;
 import com.clicktravel.cheddar.infrastructure.persistence.document.search.DocumentSearchEngine;
 import com.clicktravel.cheddar.infrastructure.persistence.document.search.DocumentSearchResponse;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.configuration.DocumentConfiguration;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.configuration.DocumentConfigurationHolder;
 import com.clicktravel.cheddar.infrastructure.persistence.document.search.options.SearchOptions;
 import com.clicktravel.cheddar.infrastructure.persistence.document.search.query.Query;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.query.StructuredQuery;
+import com.clicktravel.infrastructure.persistence.inmemory.ItemCloner;
 
+/**
+ * Evaluates structured queries locally against indexes of the documents of each configured document class, built from
+ * the index definitions of its {@link DocumentConfiguration}. Documents are only indexed, and can only be searched,
+ * when the engine is constructed with a {@link DocumentConfigurationHolder} configuring their class. Simple and Lucene
+ * queries are not supported.
+ */
 public class InMemoryDocumentSearchEngine implements DocumentSearchEngine {
 
     protected final Collection<Document> allDocuments;
+    private final Map<Class<? extends Document>, DocumentIndex> documentIndexes = new HashMap<>();
 
     public InMemoryDocumentSearchEngine() {
         allDocuments = new ArrayList<>();
     }
 
+    public InMemoryDocumentSearchEngine(final DocumentConfigurationHolder documentConfigurationHolder) {
+        this();
+        final ItemCloner itemCloner = new ItemCloner();
+        for (final DocumentConfiguration documentConfiguration : documentConfigurationHolder
+                .documentConfigurations()) {
+            documentIndexes.put(documentConfiguration.documentClass(),
+                    new DocumentIndex(documentConfiguration, itemCloner));
+        }
+    }
+
     @Override
     public void update(final Document document) {
         allDocuments.add(document);
+        final DocumentIndex documentIndex = documentIndexes.get(document.getClass());
+        if (documentIndex != null) {
+            documentIndex.update(document);
+        }
     }
 
     @Override
     public void update(final Collection<? extends Document> documents) {
-        allDocuments.addAll(documents);
+        for (final Document document : documents) {
+            update(document);
+        }
     }
 
     @Override
     public void delete(final Document document) {
         allDocuments.remove(document);
+        final DocumentIndex documentIndex = documentIndexes.get(document.getClass());
+        if (documentIndex != null) {
+            documentIndex.delete(document);
+        }
     }
 
     @Override
     public void delete(final Collection<? extends Document> documents) {
         allDocuments.removeAll(documents);
+        for (final Document document : documents) {
+            final DocumentIndex documentIndex = documentIndexes.get(document.getClass());
+            if (documentIndex != null) {
+                documentIndex.delete(document);
+            }
+        }
     }
 
     @Override
     public <T extends Document> DocumentSearchResponse<T> search(final Query query, final Integer start,
             final Integer size, final Class<T> documentClass, final SearchOptions searchOptions) {
-        throw new UnsupportedOperationException();
+        if (searchOptions == null) {
+            throw new IllegalArgumentException("SearchOptions cannot be null");
+        }
+        if (!(query instanceof StructuredQuery)) {
+            throw new UnsupportedOperationException("Only structured queries are supported in memory: " + query);
+        }
+        final DocumentIndex documentIndex = documentIndexes.get(documentClass);
+        if (documentIndex == null) {
+            throw new IllegalStateException("No DocumentConfiguration for " + documentClass);
+        }
+        final DocumentIndex.Page<T> page = documentIndex.search((StructuredQuery) query, start, size,
+                searchOptions.getSortOrder(), documentClass);
+        return new DocumentSearchResponse<>(page.totalCount(), null, page.hits());
     }
 
     @Override
@@ -65,4 +116,13 @@ public class InMemoryDocumentSearchEngine implements DocumentSearchEngine {
         return search(query, start, size, documentClass, SearchOptions.DEFAULT);
     }
 
+    /**
+     * Removes all documents from the indexes
+     */
+    protected void clearIndexes() {
+        for (final DocumentIndex documentIndex : documentIndexes.values()) {
+            documentIndex.clear();
+        }
+    }
+
 }
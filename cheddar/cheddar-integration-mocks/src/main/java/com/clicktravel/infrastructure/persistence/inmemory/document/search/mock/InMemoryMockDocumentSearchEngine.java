@@ -79,6 +79,7 @@ public class InMemoryMockDocumentSearchEngine extends InMemoryDocumentSearchEngi
     @Override
     public void reset() {
         allDocuments.clear();
+        clearIndexes();
         searchExpectations.clear();
     }
 
@@ -17,25 +17,44 @@
 package com.clicktravel.infrastructure.persistence.inmemory.filestore;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.NonExistentItemException;
 import com.clicktravel.cheddar.infrastructure.persistence.filestore.FileItem;
 import com.clicktravel.cheddar.infrastructure.persistence.filestore.FilePath;
 import com.clicktravel.cheddar.infrastructure.persistence.filestore.FileStore;
+import com.clicktravel.infrastructure.inmemory.DurableStore;
 import com.clicktravel.infrastructure.inmemory.Resettable;
 import com.clicktravel.infrastructure.persistence.inmemory.SerializedItem;
 
 public class InMemoryFileStore implements FileStore, Resettable {
 
+    private static final String DURABLE_KEY_SEPARATOR = "\u0000";
+
     private final Map<FilePath, SerializedItem> fileItems;
+    private volatile DurableStore durableStore;
 
     public InMemoryFileStore() {
         fileItems = new ConcurrentHashMap<>();
     }
 
+    /**
+     * Restores the file items held by the given durable store, then writes all file item changes to it
+     *
+     * @param durableStore A durable store which has not yet been recovered
+     */
+    public synchronized void configureDurability(final DurableStore durableStore) {
+        for (final Entry<String, Object> entry : durableStore.recover().entrySet()) {
+            final String[] keyParts = entry.getKey().split(DURABLE_KEY_SEPARATOR, 2);
+            fileItems.put(new FilePath(keyParts[0], keyParts[1]), new SerializedItem(entry.getValue()));
+        }
+        this.durableStore = durableStore;
+    }
+
     @Override
     public FileItem read(final FilePath filePath) throws NonExistentItemException {
         final SerializedItem fileItem = fileItems.get(filePath);
@@ -47,12 +66,45 @@ public class InMemoryFileStore implements FileStore, Resettable {
 
     @Override
     public void write(final FilePath filePath, final FileItem fileItem) {
-        fileItems.put(filePath, new SerializedItem(fileItem));
+        synchronized (this) {
+            fileItems.put(filePath, new SerializedItem(fileItem));
+            if (durableStore != null) {
+                durableStore.put(durableKey(filePath), fileItem);
+            }
+        }
+        compactDurableStoreIfDue();
     }
 
     @Override
     public void delete(final FilePath filePath) throws NonExistentItemException {
-        fileItems.remove(filePath);
+        synchronized (this) {
+            fileItems.remove(filePath);
+            if (durableStore != null) {
+                durableStore.remove(durableKey(filePath));
+            }
+        }
+        compactDurableStoreIfDue();
+    }
+
+    /**
+     * Compacts outside the lock, reading the file items concurrently with further changes, which are also held by the
+     * log started for the compaction
+     */
+    private void compactDurableStoreIfDue() {
+        final DurableStore durableStore = this.durableStore;
+        if (durableStore != null && durableStore.compactionDue()) {
+            durableStore.compact(() -> {
+                final Map<String, FileItem> durableFileItems = new HashMap<>();
+                for (final Entry<FilePath, SerializedItem> entry : fileItems.entrySet()) {
+                    durableFileItems.put(durableKey(entry.getKey()), entry.getValue().getEntity(FileItem.class));
+                }
+                return durableFileItems;
+            });
+        }
+    }
+
+    private static String durableKey(final FilePath filePath) {
+        return filePath.directory() + DURABLE_KEY_SEPARATOR + filePath.filename();
     }
 
     @Override
@@ -67,7 +119,10 @@ public class InMemoryFileStore implements FileStore, Resettable {
     }
 
     @Override
-    public void reset() {
+    public synchronized void reset() {
         fileItems.clear();
+        if (durableStore != null) {
+            durableStore.clear();
+        }
     }
 }
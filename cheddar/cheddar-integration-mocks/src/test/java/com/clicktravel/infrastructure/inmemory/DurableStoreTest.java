@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.inmemory;
+
+import static com.clicktravel.common.random.Randoms.randomString;
+import static org.junit.Assert.assertEquals;
+
+import java.io.FileOutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.clicktravel.cheddar.infrastructure.persistence.cache.JavaSerializationItemCacheCodec;
+
+public class DurableStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private DurableStore durableStore(final Path directory, final long compactionThresholdBytes) {
+        return new DurableStore(directory, new JavaSerializationItemCacheCodec(), compactionThresholdBytes);
+    }
+
+    @Test
+    public void shouldRecoverEntries_withChangesLoggedBeforeRestart() throws Exception {
+        // Given
+        final Path directory = temporaryFolder.newFolder().toPath();
+        final DurableStore durableStore = durableStore(directory, Long.MAX_VALUE);
+        durableStore.recover();
+        final String key1 = randomString(10);
+        final String key2 = randomString(10);
+        final String value1 = randomString(10);
+        durableStore.put(key1, value1);
+        durableStore.put(key2, randomString(10));
+        durableStore.remove(key2);
+        durableStore.close();
+
+        // When
+        final Map<String, Object> recoveredEntries = durableStore(directory, Long.MAX_VALUE).recover();
+
+        // Then
+        final Map<String, Object> expectedEntries = new HashMap<>();
+        expectedEntries.put(key1, value1);
+        assertEquals(expectedEntries, recoveredEntries);
+    }
+
+    @Test
+    public void shouldRecoverEntries_withCompactionBeforeRestart() throws Exception {
+        // Given
+        final Path directory = temporaryFolder.newFolder().toPath();
+        final DurableStore durableStore = durableStore(directory, 1);
+        durableStore.recover();
+        final Map<String, Object> state = new LinkedHashMap<>();
+        for (int n = 0; n < 10; n++) {
+            final String key = randomString(10);
+            final String value = randomString(10);
+            state.put(key, value);
+            durableStore.put(key, value);
+        }
+        durableStore.compact(() -> state);
+        final String key = randomString(10);
+        final String value = randomString(10);
+        state.put(key, value);
+        durableStore.put(key, value);
+        durableStore.close();
+
+        // When
+        final Map<String, Object> recoveredEntries = durableStore(directory, 1).recover();
+
+        // Then
+        assertEquals(state, recoveredEntries);
+    }
+
+    @Test
+    public void shouldRecoverEntries_withTornRecordAtEndOfLog() throws Exception {
+        // Given
+        final Path directory = temporaryFolder.newFolder().toPath();
+        final DurableStore durableStore = durableStore(directory, Long.MAX_VALUE);
+        durableStore.recover();
+        final String key = randomString(10);
+        final String value = randomString(10);
+        durableStore.put(key, value);
+        durableStore.close();
+        try (final DirectoryStream<Path> logFiles = Files.newDirectoryStream(directory, "log-*");
+                final FileOutputStream logFile = new FileOutputStream(logFiles.iterator().next().toFile(), true)) {
+            logFile.write(new byte[] { 0, 0, 0, 100, 1, 2, 3, 4, 5 });
+        }
+
+        // When
+        final Map<String, Object> recoveredEntries = durableStore(directory, Long.MAX_VALUE).recover();
+
+        // Then
+        final Map<String, Object> expectedEntries = new HashMap<>();
+        expectedEntries.put(key, value);
+        assertEquals(expectedEntries, recoveredEntries);
+    }
+
+    @Test
+    public void shouldRecoverEntries_withFailedCompactionBeforeRestart() throws Exception {
+        // Given
+        final Path directory = temporaryFolder.newFolder().toPath();
+        final DurableStore durableStore = durableStore(directory, 1);
+        durableStore.recover();
+        final String key1 = randomString(10);
+        final String key2 = randomString(10);
+        final String value1 = randomString(10);
+        final String value2 = randomString(10);
+        durableStore.put(key1, value1);
+        durableStore.compact(() -> {
+            throw new IllegalStateException();
+        });
+        durableStore.put(key2, value2);
+        durableStore.close();
+
+        // When
+        final Map<String, Object> recoveredEntries = durableStore(directory, 1).recover();
+
+        // Then
+        final Map<String, Object> expectedEntries = new HashMap<>();
+        expectedEntries.put(key1, value1);
+        expectedEntries.put(key2, value2);
+        assertEquals(expectedEntries, recoveredEntries);
+    }
+
+    @Test
+    public void shouldRecoverEntries_withSyncWritesBeforeRestart() throws Exception {
+        // Given
+        final Path directory = temporaryFolder.newFolder().toPath();
+        final DurableStore durableStore = new DurableStore(directory, new JavaSerializationItemCacheCodec(),
+                Long.MAX_VALUE, true);
+        durableStore.recover();
+        final String key = randomString(10);
+        final String value = randomString(10);
+        durableStore.put(key, value);
+        durableStore.close();
+
+        // When
+        final Map<String, Object> recoveredEntries = durableStore(directory, Long.MAX_VALUE).recover();
+
+        // Then
+        final Map<String, Object> expectedEntries = new HashMap<>();
+        expectedEntries.put(key, value);
+        assertEquals(expectedEntries, recoveredEntries);
+    }
+}
@@ -23,18 +23,27 @@ import static org.junit.Assert.assertNotNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import com.clicktravel.cheddar.infrastructure.messaging.SimpleMessage;
 import com.clicktravel.cheddar.infrastructure.messaging.TypedMessage;
+import com.clicktravel.infrastructure.inmemory.DurableStore;
+import com.clicktravel.infrastructure.persistence.inmemory.XStreamItemCacheCodec;
 
 @SuppressWarnings("unchecked")
 public class InMemoryMessageQueueTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private InMemoryMessageQueuePoller mockInMemoryMessageQueuePoller;
 
     @Before
@@ -85,6 +94,69 @@ public class InMemoryMessageQueueTest {
         assertEquals(messages, allReceivedMessages);
     }
 
+    @Test
+    public void shouldReturnMessagesAfterSendBatch_onReceive() {
+        // Given
+        final InMemoryMessageQueue<TypedMessage> inMemoryMessageQueue = new InMemoryMessageQueue<TypedMessage>(
+                randomString(), mockInMemoryMessageQueuePoller);
+        final List<TypedMessage> messages = new ArrayList<>();
+        final int messageCount = 2 + randomInt(3);
+        for (int n = 0; n < messageCount; n++) {
+            messages.add(mock(TypedMessage.class));
+        }
+
+        // When
+        final List<TypedMessage> failedMessages = inMemoryMessageQueue.sendBatch(messages);
+
+        // Then
+        assertEquals(Collections.emptyList(), failedMessages);
+        verify(mockInMemoryMessageQueuePoller).poll();
+        for (final TypedMessage message : messages) {
+            assertEquals(Collections.singletonList(message), inMemoryMessageQueue.receive());
+            inMemoryMessageQueue.delete(message);
+        }
+    }
+
+    @Test
+    public void shouldNotReturnReceivedMessage_onReceiveWithVisibilityTimeout() {
+        // Given
+        final InMemoryMessageQueue<TypedMessage> inMemoryMessageQueue = new InMemoryMessageQueue<TypedMessage>(
+                randomString(), mockInMemoryMessageQueuePoller);
+        inMemoryMessageQueue.configureVisibilityTimeout(30);
+        final TypedMessage message1 = mock(TypedMessage.class);
+        final TypedMessage message2 = mock(TypedMessage.class);
+        inMemoryMessageQueue.send(message1);
+        inMemoryMessageQueue.send(message2);
+
+        // When
+        final List<TypedMessage> firstReceivedMessages = inMemoryMessageQueue.receive();
+        final List<TypedMessage> secondReceivedMessages = inMemoryMessageQueue.receive();
+        final List<TypedMessage> thirdReceivedMessages = inMemoryMessageQueue.receive(0, 10);
+
+        // Then
+        assertEquals(Collections.singletonList(message1), firstReceivedMessages);
+        assertEquals(Collections.singletonList(message2), secondReceivedMessages);
+        assertEquals(Collections.emptyList(), thirdReceivedMessages);
+    }
+
+    @Test
+    public void shouldReturnReceivedMessage_onReceiveAfterVisibilityTimeoutExpires() throws Exception {
+        // Given
+        final InMemoryMessageQueue<TypedMessage> inMemoryMessageQueue = new InMemoryMessageQueue<TypedMessage>(
+                randomString(), mockInMemoryMessageQueuePoller);
+        inMemoryMessageQueue.configureVisibilityTimeout(30);
+        final TypedMessage message = mock(TypedMessage.class);
+        inMemoryMessageQueue.send(message);
+        inMemoryMessageQueue.receive();
+        inMemoryMessageQueue.changeVisibility(message, 1);
+
+        // When
+        final List<TypedMessage> receivedMessages = inMemoryMessageQueue.receive(5, 10);
+
+        // Then
+        assertEquals(Collections.singletonList(message), receivedMessages);
+    }
+
     @Test
     public void shouldReturnMessageAfterSendDelayedMessage_onReceive() {
         // Given
@@ -114,4 +186,43 @@ public class InMemoryMessageQueueTest {
         // Then
         assertEquals(name, returnedName);
     }
+
+    @Test
+    public void shouldRestoreUndeletedMessagesInOrder_withCompactingDurableStoreAfterRestart() throws Exception {
+        // Given
+        final Path directory = temporaryFolder.newFolder().toPath();
+        // A threshold of one byte compacts the store after every change
+        final DurableStore durableStore = new DurableStore(directory, new XStreamItemCacheCodec(), 1);
+        final InMemoryMessageQueue<TypedMessage> inMemoryMessageQueue = new InMemoryMessageQueue<TypedMessage>(
+                randomString(), mockInMemoryMessageQueuePoller);
+        inMemoryMessageQueue.configureDurability(durableStore);
+        final List<TypedMessage> messages = new ArrayList<>();
+        final int messageCount = 2 + randomInt(3);
+        for (int n = 0; n < messageCount; n++) {
+            final TypedMessage message = new SimpleMessage(randomString(), randomString());
+            messages.add(message);
+            inMemoryMessageQueue.send(message);
+        }
+        inMemoryMessageQueue.delete(messages.remove(0));
+        durableStore.close();
+
+        // When
+        final InMemoryMessageQueue<TypedMessage> restartedMessageQueue = new InMemoryMessageQueue<TypedMessage>(
+                randomString(), mockInMemoryMessageQueuePoller);
+        restartedMessageQueue.configureDurability(
+                new DurableStore(directory, new XStreamItemCacheCodec(), Long.MAX_VALUE));
+
+        // Then
+        final List<String> receivedPayloads = new ArrayList<>();
+        List<TypedMessage> receivedMessages;
+        while (!(receivedMessages = restartedMessageQueue.receive()).isEmpty()) {
+            receivedPayloads.add(receivedMessages.get(0).getPayload());
+            restartedMessageQueue.delete(receivedMessages.get(0));
+        }
+        final List<String> expectedPayloads = new ArrayList<>();
+        for (final TypedMessage message : messages) {
+            expectedPayloads.add(message.getPayload());
+        }
+        assertEquals(expectedPayloads, receivedPayloads);
+    }
 }
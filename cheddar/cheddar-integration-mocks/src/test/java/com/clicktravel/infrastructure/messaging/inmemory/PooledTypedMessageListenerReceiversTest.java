@@ -0,0 +1,157 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.messaging.inmemory;
+
+import static com.clicktravel.common.random.Randoms.randomString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.clicktravel.cheddar.infrastructure.messaging.SimpleMessage;
+import com.clicktravel.cheddar.infrastructure.messaging.TypedMessage;
+import com.clicktravel.cheddar.infrastructure.messaging.pooled.listener.PooledTypedMessageListener;
+
+public class PooledTypedMessageListenerReceiversTest {
+
+    private static final int VISIBILITY_TIMEOUT_SECONDS = 30;
+    private static final int NUM_MESSAGES = 200;
+    private static final int NUM_WORKER_THREADS = 10;
+    private static final long HANDLER_DURATION_MILLIS = 10;
+
+    private InMemoryMessageQueue<TypedMessage> inMemoryMessageQueue;
+    private PooledTypedMessageListener pooledTypedMessageListener;
+    private String messageType;
+    private Set<String> handledPayloads;
+    private AtomicInteger handledCount;
+    private AtomicInteger peakReceiverCount;
+    private CountDownLatch handledLatch;
+    private CountDownLatch handlerGate;
+    private CountDownLatch multipleReceiversLatch;
+
+    @Before
+    public void setUp() {
+        multipleReceiversLatch = new CountDownLatch(1);
+        inMemoryMessageQueue = new InMemoryMessageQueue<TypedMessage>(randomString(),
+                mock(InMemoryMessageQueuePoller.class)) {
+            @Override
+            public List<TypedMessage> receive(final int waitTimeSeconds, final int maxMessages) {
+                if (pooledTypedMessageListener.getActiveReceiverCount() > 1) {
+                    multipleReceiversLatch.countDown();
+                }
+                return super.receive(waitTimeSeconds, maxMessages);
+            }
+        };
+        inMemoryMessageQueue.configureVisibilityTimeout(VISIBILITY_TIMEOUT_SECONDS);
+        pooledTypedMessageListener = new PooledTypedMessageListener(inMemoryMessageQueue, NUM_WORKER_THREADS);
+        pooledTypedMessageListener.prepareForShutdown(); // use short polls, so listener stops promptly after test
+        messageType = randomString(10);
+        handledPayloads = ConcurrentHashMap.newKeySet();
+        handledCount = new AtomicInteger();
+        peakReceiverCount = new AtomicInteger();
+        handledLatch = new CountDownLatch(NUM_MESSAGES);
+        handlerGate = new CountDownLatch(0);
+        pooledTypedMessageListener.registerMessageHandler(messageType, message -> {
+            try {
+                handlerGate.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handledCount.incrementAndGet();
+            handledPayloads.add(message.getPayload());
+            peakReceiverCount.accumulateAndGet(pooledTypedMessageListener.getActiveReceiverCount(), Math::max);
+            try {
+                Thread.sleep(HANDLER_DURATION_MILLIS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handledLatch.countDown();
+        });
+        for (int n = 0; n < NUM_MESSAGES; n++) {
+            inMemoryMessageQueue.send(new SimpleMessage(messageType, randomString(20)));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        handlerGate.countDown();
+        pooledTypedMessageListener.shutdownListener();
+        pooledTypedMessageListener.awaitShutdownComplete(5000);
+    }
+
+    @Test
+    public void shouldHandleBacklogOnceWithAdditionalReceivers_withMultipleReceiversConfigured() throws Exception {
+        // Given
+        pooledTypedMessageListener.configureReceivers(4);
+        handlerGate = new CountDownLatch(1); // hold handlers so the backlog stays and permits stay claimed
+
+        // When
+        pooledTypedMessageListener.start();
+        final boolean receivedWithMultipleReceivers = multipleReceiversLatch.await(10, TimeUnit.SECONDS);
+        final int activeReceiverCount = pooledTypedMessageListener.getActiveReceiverCount();
+        handlerGate.countDown();
+        final boolean allHandled = handledLatch.await(10, TimeUnit.SECONDS);
+
+        // Then
+        assertTrue(receivedWithMultipleReceivers);
+        assertTrue(activeReceiverCount > 1);
+        assertTrue(allHandled);
+        assertEquals(NUM_MESSAGES, handledCount.get());
+        assertEquals(NUM_MESSAGES, handledPayloads.size());
+        assertTrue(peakReceiverCount.get() <= 4);
+        assertTrue(awaitReceiverCount(1, 5000));
+    }
+
+    @Test
+    public void shouldHandleBacklogWithSingleReceiver_withDefaultReceivers() throws Exception {
+        // When
+        pooledTypedMessageListener.start();
+        final boolean allHandled = handledLatch.await(10, TimeUnit.SECONDS);
+
+        // Then
+        assertTrue(allHandled);
+        assertEquals(NUM_MESSAGES, handledPayloads.size());
+        assertEquals(1, peakReceiverCount.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotConfigureReceivers_withZeroReceivers() {
+        // When
+        pooledTypedMessageListener.configureReceivers(0);
+    }
+
+    private boolean awaitReceiverCount(final int receiverCount, final long timeoutMillis) throws Exception {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (pooledTypedMessageListener.getActiveReceiverCount() != receiverCount) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(50);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.messaging.inmemory;
+
+import static com.clicktravel.common.random.Randoms.randomString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.clicktravel.cheddar.infrastructure.messaging.SimpleMessage;
+import com.clicktravel.cheddar.infrastructure.messaging.TypedMessage;
+import com.clicktravel.cheddar.infrastructure.messaging.pooled.listener.PooledTypedMessageListener;
+
+public class PooledTypedMessageListenerVisibilityTest {
+
+    private static final int VISIBILITY_TIMEOUT_SECONDS = 1;
+    private static final long HANDLER_DURATION_MILLIS = 1500;
+
+    private InMemoryMessageQueue<TypedMessage> inMemoryMessageQueue;
+    private PooledTypedMessageListener pooledTypedMessageListener;
+    private String messageType;
+    private AtomicInteger handledCount;
+    private CountDownLatch handledLatch;
+
+    @Before
+    public void setUp() {
+        inMemoryMessageQueue = new InMemoryMessageQueue<>(randomString(), mock(InMemoryMessageQueuePoller.class));
+        inMemoryMessageQueue.configureVisibilityTimeout(VISIBILITY_TIMEOUT_SECONDS);
+        pooledTypedMessageListener = new PooledTypedMessageListener(inMemoryMessageQueue, 2);
+        pooledTypedMessageListener.prepareForShutdown(); // use short polls, so listener stops promptly after test
+        messageType = randomString(10);
+        handledCount = new AtomicInteger();
+        handledLatch = new CountDownLatch(1);
+        pooledTypedMessageListener.registerMessageHandler(messageType, message -> {
+            handledCount.incrementAndGet();
+            try {
+                Thread.sleep(HANDLER_DURATION_MILLIS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handledLatch.countDown();
+        });
+    }
+
+    @After
+    public void tearDown() {
+        pooledTypedMessageListener.shutdownListener();
+        pooledTypedMessageListener.awaitShutdownComplete(5000);
+    }
+
+    @Test
+    public void shouldHandleMessageOnce_withVisibilityHeartbeatAndHandlerExceedingVisibilityTimeout()
+            throws Exception {
+        // Given
+        pooledTypedMessageListener.configureVisibilityHeartbeat(VISIBILITY_TIMEOUT_SECONDS, 0.25);
+        inMemoryMessageQueue.send(new SimpleMessage(messageType, randomString()));
+
+        // When
+        pooledTypedMessageListener.start();
+        handledLatch.await(5, TimeUnit.SECONDS);
+        Thread.sleep(200);
+
+        // Then
+        assertEquals(1, handledCount.get());
+        assertTrue(pooledTypedMessageListener.getVisibilityExtensionCount() >= 3);
+        assertTrue(inMemoryMessageQueue.receive().isEmpty());
+    }
+
+    @Test
+    public void shouldStopVisibilityHeartbeat_onShutdownTimeoutWithHandlerRunning() throws Exception {
+        // Given
+        pooledTypedMessageListener.configureVisibilityHeartbeat(VISIBILITY_TIMEOUT_SECONDS, 0.25);
+        inMemoryMessageQueue.send(new SimpleMessage(messageType, randomString()));
+        pooledTypedMessageListener.start();
+        final long handlerStartDeadline = System.currentTimeMillis() + 5000;
+        while (handledCount.get() == 0 && System.currentTimeMillis() < handlerStartDeadline) {
+            Thread.sleep(10);
+        }
+        pooledTypedMessageListener.shutdownListener();
+
+        // When
+        final boolean terminated = pooledTypedMessageListener.awaitShutdownComplete(100);
+
+        // Then
+        assertFalse(terminated);
+        final long extensionCount = pooledTypedMessageListener.getVisibilityExtensionCount();
+        Thread.sleep(VISIBILITY_TIMEOUT_SECONDS * 1000 / 2);
+        assertEquals(extensionCount, pooledTypedMessageListener.getVisibilityExtensionCount());
+    }
+
+    @Test
+    public void shouldRedeliverMessage_withoutVisibilityHeartbeatAndHandlerExceedingVisibilityTimeout()
+            throws Exception {
+        // Given
+        inMemoryMessageQueue.send(new SimpleMessage(messageType, randomString()));
+
+        // When
+        pooledTypedMessageListener.start();
+        handledLatch.await(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(2, handledCount.get());
+        assertEquals(0, pooledTypedMessageListener.getVisibilityExtensionCount());
+    }
+}
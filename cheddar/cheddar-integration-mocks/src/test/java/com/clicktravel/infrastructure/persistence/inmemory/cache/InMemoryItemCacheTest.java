@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.inmemory.cache;
+
+import static com.clicktravel.common.random.Randoms.randomInt;
+import static com.clicktravel.common.random.Randoms.randomString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class InMemoryItemCacheTest {
+
+    @Test
+    public void shouldGetCopyOfItem_withPutItem() {
+        // Given
+        final InMemoryItemCache itemCache = new InMemoryItemCache();
+        final String key = randomString();
+        final List<String> item = new ArrayList<>(Arrays.asList(randomString(), randomString()));
+        itemCache.putItem(key, item, 1 + randomInt(100));
+
+        // When
+        final Object cachedItem = itemCache.getItem(key, 1);
+
+        // Then
+        assertEquals(item, cachedItem);
+        assertNotSame(item, cachedItem);
+    }
+
+    @Test
+    public void shouldNotGetItem_withReset() {
+        // Given
+        final InMemoryItemCache itemCache = new InMemoryItemCache();
+        final String key = randomString();
+        itemCache.putItem(key, randomString(), 1 + randomInt(100));
+
+        // When
+        itemCache.reset();
+
+        // Then
+        assertNull(itemCache.getItem(key, 1));
+    }
+
+    @Test
+    public void shouldNotGetItem_withDeletedItem() {
+        // Given
+        final InMemoryItemCache itemCache = new InMemoryItemCache();
+        final String key = randomString();
+        itemCache.putItem(key, randomString(), 1 + randomInt(100));
+
+        // When
+        itemCache.deleteItem(key);
+
+        // Then
+        assertNull(itemCache.getItem(key, 1));
+    }
+
+    @Test
+    public void shouldGetOnlyCachedItems_withGetItems() {
+        // Given
+        final InMemoryItemCache itemCache = new InMemoryItemCache();
+        final String key = randomString();
+        final String item = randomString();
+        itemCache.putItems(Collections.singletonMap(key, item), 1 + randomInt(100));
+
+        // When
+        final Map<String, Object> cachedItems = itemCache.getItemsAsync(Arrays.asList(key, randomString())).join();
+
+        // Then
+        assertEquals(Collections.singletonMap(key, item), cachedItems);
+    }
+
+    @Test
+    public void shouldOnlyPutItem_withPutItemIfAndConditionAcceptingCurrentItem() {
+        // Given
+        final InMemoryItemCache itemCache = new InMemoryItemCache();
+        final String key = randomString();
+        final String currentItem = randomString();
+        itemCache.putItem(key, currentItem, 1 + randomInt(100));
+        final String acceptedItem = randomString();
+
+        // When
+        final boolean rejectedPut = itemCache.putItemIf(key, randomString(), 1 + randomInt(100), 1,
+                item -> !currentItem.equals(item));
+        final boolean acceptedPut = itemCache.putItemIf(key, acceptedItem, 1 + randomInt(100), 1,
+                currentItem::equals);
+
+        // Then
+        assertFalse(rejectedPut);
+        assertTrue(acceptedPut);
+        assertEquals(acceptedItem, itemCache.getItem(key, 1));
+    }
+}
@@ -18,21 +18,29 @@ package com.clicktravel.infrastructure.persistence.inmemory.database;
 
 import static com.clicktravel.common.random.Randoms.randomBoolean;
 import static com.clicktravel.common.random.Randoms.randomString;
-import static org.junit.Assert.assertEquals;
+import static com.clicktravel.common.random.Randoms.randomId;
+import static org.junit.Assert.*;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.internal.util.collections.Sets;
 
+import com.clicktravel.cheddar.infrastructure.persistence.database.BatchWriteResult;
+import com.clicktravel.cheddar.infrastructure.persistence.database.ItemId;
 import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.*;
+import com.clicktravel.cheddar.infrastructure.persistence.database.exception.NonExistentItemException;
+import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceResourceFailureException;
+import com.clicktravel.infrastructure.inmemory.DurableStore;
 
 public class InMemoryBatchDatabaseTemplateTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private DatabaseSchemaHolder databaseSchemaHolder;
 
     private final static InMemoryDbDataGenerator dataGenerator = new InMemoryDbDataGenerator();
@@ -151,4 +159,129 @@ public class InMemoryBatchDatabaseTemplateTest {
 
     }
 
+    @Test
+    public void shouldDelete_viaBatchDelete_withItems() {
+        // Given
+        final InMemoryBatchDatabaseTemplate databaseTemplate = new InMemoryBatchDatabaseTemplate(databaseSchemaHolder);
+        final StubItem createdItem = dataGenerator.randomStubItem();
+        databaseTemplate.create(createdItem);
+        final List<StubItem> stubItems = new ArrayList<StubItem>();
+        stubItems.add(createdItem);
+
+        // When
+        final BatchWriteResult<StubItem> batchWriteResult = databaseTemplate.batchDelete(stubItems, StubItem.class);
+
+        // Then
+        assertEquals(stubItems, batchWriteResult.getSucceededItems());
+        assertFalse(batchWriteResult.hasFailures());
+        NonExistentItemException actualException = null;
+        try {
+            databaseTemplate.read(new ItemId(createdItem.getId()), StubItem.class);
+        } catch (final NonExistentItemException e) {
+            actualException = e;
+        }
+        assertNotNull(actualException);
+    }
+
+    @Test
+    public void shouldPutWithoutVersionCheck_viaBatchPut_withStaleItem() {
+        // Given
+        final InMemoryBatchDatabaseTemplate databaseTemplate = new InMemoryBatchDatabaseTemplate(databaseSchemaHolder);
+        final StubItem createdItem = dataGenerator.randomStubItem();
+        databaseTemplate.create(createdItem);
+        databaseTemplate.update(databaseTemplate.read(new ItemId(createdItem.getId()), StubItem.class));
+        final String stringProperty = randomString(10);
+        createdItem.setStringProperty(stringProperty);
+
+        // When
+        final BatchWriteResult<StubItem> batchWriteResult = databaseTemplate.batchPut(Arrays.asList(createdItem),
+                StubItem.class);
+
+        // Then
+        assertEquals(Arrays.asList(createdItem), batchWriteResult.getSucceededItems());
+        assertFalse(batchWriteResult.hasFailures());
+        assertEquals(Long.valueOf(2), createdItem.getVersion());
+        final StubItem storedItem = databaseTemplate.read(new ItemId(createdItem.getId()), StubItem.class);
+        assertEquals(stringProperty, storedItem.getStringProperty());
+        assertEquals(Long.valueOf(2), storedItem.getVersion());
+    }
+
+    @Test
+    public void shouldReportSucceededItems_viaBatchDelete_withItemNotStored() {
+        // Given
+        final InMemoryBatchDatabaseTemplate databaseTemplate = new InMemoryBatchDatabaseTemplate(databaseSchemaHolder);
+        final StubItem stubItem = dataGenerator.randomStubItem();
+
+        // When
+        final BatchWriteResult<StubItem> batchWriteResult = databaseTemplate.batchDelete(Arrays.asList(stubItem),
+                StubItem.class);
+
+        // Then
+        assertEquals(Arrays.asList(stubItem), batchWriteResult.getSucceededItems());
+        assertFalse(batchWriteResult.hasFailures());
+    }
+
+    @Test
+    public void shouldReportFailedItems_viaBatchPutAndBatchDelete_withUnwritableDurableStore() throws Exception {
+        // Given
+        final InMemoryBatchDatabaseTemplate databaseTemplate = new InMemoryBatchDatabaseTemplate(databaseSchemaHolder);
+        final DurableStore durableStore = new DurableStore(temporaryFolder.newFolder().toPath());
+        databaseTemplate.configureDurability(durableStore);
+        final StubItem deletedItem = dataGenerator.randomStubItem();
+        final StubItem newItem = dataGenerator.randomStubItem();
+        newItem.setVersion(null);
+        durableStore.close();
+
+        // When
+        final BatchWriteResult<StubItem> putResult = databaseTemplate.batchPut(Arrays.asList(newItem),
+                StubItem.class);
+        final BatchWriteResult<StubItem> deleteResult = databaseTemplate.batchDelete(Arrays.asList(deletedItem),
+                StubItem.class);
+
+        // Then
+        assertTrue(putResult.getSucceededItems().isEmpty());
+        assertEquals(Arrays.asList(newItem), putResult.getFailedItems());
+        assertTrue(putResult.getFailures().get(0).getCause() instanceof PersistenceResourceFailureException);
+        assertNull(newItem.getVersion());
+        assertTrue(deleteResult.getSucceededItems().isEmpty());
+        assertEquals(Arrays.asList(deletedItem), deleteResult.getFailedItems());
+        assertTrue(deleteResult.getFailures().get(0).getCause() instanceof PersistenceResourceFailureException);
+    }
+
+    @Test
+    public void shouldNotBatchWriteOrDelete_withItemWithUniqueConstraints() {
+        // Given
+        final ItemConfiguration itemConfiguration = new ItemConfiguration(StubItem.class,
+                InMemoryDbDataGenerator.STUB_ITEM_TABLE_NAME);
+        itemConfiguration.registerUniqueConstraints(Arrays.asList(new UniqueConstraint("stringProperty")));
+        final InMemoryBatchDatabaseTemplate databaseTemplate = new InMemoryBatchDatabaseTemplate(
+                new DatabaseSchemaHolder(InMemoryDbDataGenerator.UNIT_TEST_SCHEMA_NAME,
+                        Arrays.asList(itemConfiguration)));
+        final StubItem stubItem = new StubItem();
+        stubItem.setId(randomId());
+        final List<StubItem> stubItems = Arrays.asList(stubItem);
+
+        // When
+        final List<Class<? extends Exception>> thrownExceptions = new ArrayList<>();
+        try {
+            databaseTemplate.batchWrite(stubItems, StubItem.class);
+        } catch (final IllegalArgumentException e) {
+            thrownExceptions.add(e.getClass());
+        }
+        try {
+            databaseTemplate.batchPut(stubItems, StubItem.class);
+        } catch (final IllegalArgumentException e) {
+            thrownExceptions.add(e.getClass());
+        }
+        try {
+            databaseTemplate.batchDelete(stubItems, StubItem.class);
+        } catch (final IllegalArgumentException e) {
+            thrownExceptions.add(e.getClass());
+        }
+
+        // Then
+        assertEquals(3, thrownExceptions.size());
+        assertNull(stubItem.getVersion());
+    }
+
 }
@@ -22,16 +22,21 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
+import java.nio.file.Path;
 import java.util.*;
 
 import org.hamcrest.core.Is;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.internal.util.collections.Sets;
 
+import com.clicktravel.cheddar.infrastructure.persistence.database.FetchResult;
 import com.clicktravel.cheddar.infrastructure.persistence.database.GeneratedKeyHolder;
 import com.clicktravel.cheddar.infrastructure.persistence.database.ItemId;
 import com.clicktravel.cheddar.infrastructure.persistence.database.SequenceKeyGenerator;
@@ -39,11 +44,16 @@ import com.clicktravel.cheddar.infrastructure.persistence.database.configuration
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.ItemConstraintViolationException;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.NonExistentItemException;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.NonUniqueResultException;
+import com.clicktravel.cheddar.infrastructure.persistence.database.options.FetchOptions;
 import com.clicktravel.cheddar.infrastructure.persistence.database.query.*;
 import com.clicktravel.common.random.Randoms;
+import com.clicktravel.infrastructure.inmemory.DurableStore;
 
 public class InMemoryDatabaseTemplateTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private DatabaseSchemaHolder databaseSchemaHolder;
     private final static InMemoryDbDataGenerator dataGenerator = new InMemoryDbDataGenerator();
 
@@ -89,6 +99,35 @@ public class InMemoryDatabaseTemplateTest {
         assertNotNull(databaseTemplate);
     }
 
+    @Test
+    public void shouldRestoreItems_withDurableStoreAfterRestart() throws Exception {
+        // Given
+        final Path directory = temporaryFolder.newFolder().toPath();
+        final DurableStore durableStore = new DurableStore(directory);
+        final InMemoryDatabaseTemplate databaseTemplate = new InMemoryDatabaseTemplate(databaseSchemaHolder);
+        databaseTemplate.configureDurability(durableStore);
+        final StubItem updatedItem = databaseTemplate.create(dataGenerator.randomStubItem());
+        final StubItem deletedItem = databaseTemplate.create(dataGenerator.randomStubItem());
+        updatedItem.setStringProperty(randomString(10));
+        databaseTemplate.update(updatedItem);
+        databaseTemplate.delete(deletedItem);
+        durableStore.close();
+
+        // When
+        final InMemoryDatabaseTemplate restartedDatabaseTemplate = new InMemoryDatabaseTemplate(databaseSchemaHolder);
+        restartedDatabaseTemplate.configureDurability(new DurableStore(directory));
+
+        // Then
+        assertEquals(updatedItem, restartedDatabaseTemplate.read(new ItemId(updatedItem.getId()), StubItem.class));
+        NonExistentItemException actualException = null;
+        try {
+            restartedDatabaseTemplate.read(new ItemId(deletedItem.getId()), StubItem.class);
+        } catch (final NonExistentItemException e) {
+            actualException = e;
+        }
+        assertNotNull(actualException);
+    }
+
     @Test
     public void shouldFetch_withKeySetQuery() {
         // Given
@@ -329,6 +368,58 @@ public class InMemoryDatabaseTemplateTest {
         assertTrue(itemResults.containsAll(expectedMatchingItems));
     }
 
+    @Test
+    public void shouldFetch_withCompoundAttributeQueryAndRangeCondition() throws Exception {
+        // Given
+        final InMemoryDatabaseTemplate databaseTemplate = new InMemoryDatabaseTemplate(databaseSchemaHolder);
+
+        final List<StubWithGlobalSecondaryIndexItem> expectedMatchingItems = new ArrayList<>();
+        final String gsiFetchCriteriaValue = Randoms.randomString(10);
+        final Integer gsiSupportingFetchCriteriaValue = Randoms.randomInt(10);
+        final Query query = new CompoundAttributeQuery("gsiHashProperty",
+                new Condition(Operators.EQUALS, gsiFetchCriteriaValue), "gsiRangeProperty",
+                new Condition(Operators.GREATER_THAN_OR_EQUALS, gsiSupportingFetchCriteriaValue.toString()));
+
+        for (int i = 0; i < 20; i++) {
+            final StubWithGlobalSecondaryIndexItem item = dataGenerator.randomStubWithGlobalSecondaryIndexItem();
+            item.setGsiRangeProperty(Randoms.randomInt(10));
+            if (Randoms.randomBoolean()) {
+                item.setGsiHashProperty(gsiFetchCriteriaValue);
+                if (item.getGsiRangeProperty() >= gsiSupportingFetchCriteriaValue) {
+                    expectedMatchingItems.add(item);
+                }
+            }
+            databaseTemplate.create(item);
+        }
+
+        // When
+        final Collection<StubWithGlobalSecondaryIndexItem> itemResults = databaseTemplate.fetch(query,
+                StubWithGlobalSecondaryIndexItem.class);
+
+        // Then
+        assertEquals(expectedMatchingItems.size(), itemResults.size());
+        assertTrue(itemResults.containsAll(expectedMatchingItems));
+    }
+
+    @Test
+    public void shouldNotChangeStoredItem_withReturnedItemModified() throws Exception {
+        // Given
+        final InMemoryDatabaseTemplate databaseTemplate = new InMemoryDatabaseTemplate(databaseSchemaHolder);
+        final StubItem createdItem = databaseTemplate.create(dataGenerator.randomStubItem());
+        final String stringProperty = createdItem.getStringProperty();
+        final Query query = new AttributeQuery(STRING_PROPERTY, new Condition(Operators.EQUALS, stringProperty));
+        final StubItem readItem = databaseTemplate.read(new ItemId(createdItem.getId()), StubItem.class);
+        readItem.setStringProperty(randomString(10));
+        createdItem.setStringProperty(randomString(10));
+
+        // When
+        final Collection<StubItem> itemResults = databaseTemplate.fetch(query, StubItem.class);
+
+        // Then
+        assertEquals(1, itemResults.size());
+        assertEquals(stringProperty, itemResults.iterator().next().getStringProperty());
+    }
+
     @Test
     public void shouldGetEmptySet_withNullAttributeQuery() {
         // Given
@@ -380,6 +471,40 @@ public class InMemoryDatabaseTemplateTest {
         assertThat(itemResults, hasItems(createdItem1, createdItem2));
     }
 
+    @Test
+    public void shouldFetchPages_withAttributeQueryAndFetchOptions() throws Exception {
+        // Given
+        final String stringProperty = randomString(10);
+        final AttributeQuery query = new AttributeQuery(STRING_PROPERTY,
+                new Condition(Operators.EQUALS, stringProperty));
+        final InMemoryDatabaseTemplate databaseTemplate = new InMemoryDatabaseTemplate(databaseSchemaHolder);
+        final int itemCount = 3 + randomInt(5);
+        final Set<StubItem> createdItems = new HashSet<>();
+        for (int n = 0; n < itemCount; n++) {
+            final StubItem createdItem = dataGenerator.stubItemWithStringProperty(stringProperty);
+            databaseTemplate.create(createdItem);
+            createdItems.add(createdItem);
+        }
+        final int limit = 1 + randomInt(itemCount - 1);
+
+        // When
+        final FetchResult<StubItem> firstResult = databaseTemplate.fetch(query, StubItem.class,
+                new FetchOptions().withLimit(limit));
+        final List<StubItem> firstItems = firstResult.getItems();
+        final FetchResult<StubItem> secondResult = databaseTemplate.fetch(query, StubItem.class,
+                new FetchOptions().withCursor(firstResult.getCursor()));
+        final List<StubItem> secondItems = secondResult.getItems();
+
+        // Then
+        assertEquals(limit, firstItems.size());
+        assertNotNull(firstResult.getCursor());
+        assertEquals(itemCount - limit, secondItems.size());
+        assertNull(secondResult.getCursor());
+        final Set<StubItem> fetchedItems = new HashSet<>(firstItems);
+        fetchedItems.addAll(secondItems);
+        assertEquals(createdItems, fetchedItems);
+    }
+
     @Test
     public void shouldFetchUnique_withAttributeQuery() throws Exception {
         // Given
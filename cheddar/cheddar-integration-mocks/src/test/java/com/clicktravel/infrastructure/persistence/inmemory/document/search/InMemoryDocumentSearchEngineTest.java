@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.inmemory.document.search;
+
+import static com.clicktravel.common.random.Randoms.randomId;
+import static com.clicktravel.common.random.Randoms.randomString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.DocumentSearchResponse;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.configuration.DocumentConfiguration;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.configuration.DocumentConfigurationHolder;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.configuration.IndexDefinition;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.configuration.IndexFieldType;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.options.SearchOptions;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.query.*;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.sort.SortOrder;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.sort.SortingOption;
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.sort.SortingOption.Direction;
+
+public class InMemoryDocumentSearchEngineTest {
+
+    private InMemoryDocumentSearchEngine documentSearchEngine;
+
+    @Before
+    public void setUp() {
+        final DocumentConfiguration documentConfiguration = new DocumentConfiguration(StubIndexedDocument.class,
+                randomString(10));
+        documentConfiguration.registerIndexes(Arrays.asList(
+                new IndexDefinition("textProperty", IndexFieldType.TEXT),
+                new IndexDefinition("literalProperty", IndexFieldType.LITERAL),
+                new IndexDefinition("intProperty", IndexFieldType.INT)));
+        documentSearchEngine = new InMemoryDocumentSearchEngine(
+                new DocumentConfigurationHolder(randomString(10), Arrays.asList(documentConfiguration)));
+    }
+
+    private StubIndexedDocument stubIndexedDocument(final String textProperty, final String literalProperty,
+            final Integer intProperty) {
+        final StubIndexedDocument document = new StubIndexedDocument();
+        document.setId(randomId());
+        document.setTextProperty(textProperty);
+        document.setLiteralProperty(literalProperty);
+        document.setIntProperty(intProperty);
+        documentSearchEngine.update(document);
+        return document;
+    }
+
+    @Test
+    public void shouldSearch_withTermQueryOnTextField() throws Exception {
+        // Given
+        final String word = randomString(10).toLowerCase();
+        final StubIndexedDocument matchingDocument = stubIndexedDocument(randomString(5) + " " + word.toUpperCase(),
+                randomString(10), 1);
+        stubIndexedDocument(randomString(10), randomString(10), 1);
+        final Query query = new TermQuery("textProperty", word);
+
+        // When
+        final DocumentSearchResponse<StubIndexedDocument> response = documentSearchEngine.search(query, 0, 10,
+                StubIndexedDocument.class);
+
+        // Then
+        assertEquals(1, response.getTotalCount());
+        assertEquals(Arrays.asList(matchingDocument), response.getHits());
+    }
+
+    @Test
+    public void shouldSearch_withAndOrAndRangeQueries() throws Exception {
+        // Given
+        final String literal = randomString(10);
+        final String otherLiteral = randomString(10);
+        final List<StubIndexedDocument> expectedDocuments = new ArrayList<>();
+        for (int intProperty = 0; intProperty < 10; intProperty++) {
+            final StubIndexedDocument document = stubIndexedDocument(randomString(10), literal, intProperty);
+            if (intProperty >= 3 && intProperty < 6) {
+                expectedDocuments.add(document);
+            }
+            stubIndexedDocument(randomString(10), randomString(10), intProperty);
+        }
+        expectedDocuments.add(stubIndexedDocument(randomString(10), otherLiteral, 100));
+        final Query query = new OrQuery(Arrays.asList(
+                new AndQuery(Arrays.asList(new TermQuery("literalProperty", literal),
+                        new RangeQuery("intProperty", 3, 6, true, false))),
+                new TermQuery("literalProperty", otherLiteral)));
+
+        // When
+        final DocumentSearchResponse<StubIndexedDocument> response = documentSearchEngine.search(query, 0, 10,
+                StubIndexedDocument.class);
+
+        // Then
+        assertEquals(expectedDocuments.size(), response.getTotalCount());
+        assertTrue(response.getHits().containsAll(expectedDocuments));
+    }
+
+    @Test
+    public void shouldSortAndPage_withSearchOptions() throws Exception {
+        // Given
+        final String literal = randomString(10);
+        final List<StubIndexedDocument> documents = new ArrayList<>();
+        for (int intProperty = 0; intProperty < 10; intProperty++) {
+            documents.add(stubIndexedDocument(randomString(10), literal, intProperty));
+        }
+        final SortOrder sortOrder = new SortOrder();
+        sortOrder.addSortingOption(new SortingOption("intProperty", Direction.DESCENDING));
+        final SearchOptions searchOptions = new SearchOptions().withSortOrder(sortOrder);
+
+        // When
+        final DocumentSearchResponse<StubIndexedDocument> response = documentSearchEngine.search(
+                new TermQuery("literalProperty", literal), 2, 3, StubIndexedDocument.class, searchOptions);
+
+        // Then
+        assertEquals(10, response.getTotalCount());
+        assertEquals(Arrays.asList(documents.get(7), documents.get(6), documents.get(5)), response.getHits());
+    }
+
+    @Test
+    public void shouldNotFindReplacedOrDeletedDocuments_withUpdateAndDelete() throws Exception {
+        // Given
+        final String literal = randomString(10);
+        final StubIndexedDocument updatedDocument = stubIndexedDocument(randomString(10), literal, 1);
+        final StubIndexedDocument deletedDocument = stubIndexedDocument(randomString(10), literal, 2);
+        updatedDocument.setIntProperty(3);
+
+        // When
+        documentSearchEngine.update(updatedDocument);
+        documentSearchEngine.delete(deletedDocument);
+
+        // Then
+        final DocumentSearchResponse<StubIndexedDocument> response = documentSearchEngine
+                .search(new TermQuery("literalProperty", literal), 0, 10, StubIndexedDocument.class);
+        assertEquals(Arrays.asList(updatedDocument), response.getHits());
+    }
+
+}
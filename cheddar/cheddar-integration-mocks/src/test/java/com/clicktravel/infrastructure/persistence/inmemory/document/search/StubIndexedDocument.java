@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.infrastructure.persistence.inmemory.document.search;
+
+import com.clicktravel.cheddar.infrastructure.persistence.document.search.Document;
+
+public class StubIndexedDocument implements Document {
+
+    private String id;
+    private String textProperty;
+    private String literalProperty;
+    private Integer intProperty;
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(final String id) {
+        this.id = id;
+    }
+
+    public String getTextProperty() {
+        return textProperty;
+    }
+
+    public void setTextProperty(final String textProperty) {
+        this.textProperty = textProperty;
+    }
+
+    public String getLiteralProperty() {
+        return literalProperty;
+    }
+
+    public void setLiteralProperty(final String literalProperty) {
+        this.literalProperty = literalProperty;
+    }
+
+    public Integer getIntProperty() {
+        return intProperty;
+    }
+
+    public void setIntProperty(final Integer intProperty) {
+        this.intProperty = intProperty;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((id == null) ? 0 : id.hashCode());
+        result = prime * result + ((textProperty == null) ? 0 : textProperty.hashCode());
+        result = prime * result + ((literalProperty == null) ? 0 : literalProperty.hashCode());
+        result = prime * result + ((intProperty == null) ? 0 : intProperty.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final StubIndexedDocument other = (StubIndexedDocument) obj;
+        if (id == null) {
+            if (other.id != null) {
+                return false;
+            }
+        } else if (!id.equals(other.id)) {
+            return false;
+        }
+        if (textProperty == null) {
+            if (other.textProperty != null) {
+                return false;
+            }
+        } else if (!textProperty.equals(other.textProperty)) {
+            return false;
+        }
+        if (literalProperty == null) {
+            if (other.literalProperty != null) {
+                return false;
+            }
+        } else if (!literalProperty.equals(other.literalProperty)) {
+            return false;
+        }
+        if (intProperty == null) {
+            if (other.intProperty != null) {
+                return false;
+            }
+        } else if (!intProperty.equals(other.intProperty)) {
+            return false;
+        }
+        return true;
+    }
+
+}
@@ -25,17 +25,24 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.NonExistentItemException;
 import com.clicktravel.cheddar.infrastructure.persistence.filestore.FileItem;
 import com.clicktravel.cheddar.infrastructure.persistence.filestore.FilePath;
+import com.clicktravel.infrastructure.inmemory.DurableStore;
 
 public class InMemoryFileStoreTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void shouldReadAndWrite_toAndfromFilePath() throws Exception {
         // Given
@@ -170,4 +177,34 @@ public class InMemoryFileStoreTest {
         assertThat(filePaths.size(), is(0));
     }
 
+    @Test
+    public void shouldRestoreFileItems_withDurableStoreAfterRestart() throws Exception {
+        // Given
+        final Path directory = temporaryFolder.newFolder().toPath();
+        final DurableStore durableStore = new DurableStore(directory);
+        final InMemoryFileStore fileStore = new InMemoryFileStore();
+        fileStore.configureDurability(durableStore);
+        final FilePath filePath = randomFilePath();
+        final FilePath deletedFilePath = randomFilePath();
+        final FileItem fileItem = randomFileItem();
+        fileStore.write(filePath, randomFileItem());
+        fileStore.write(deletedFilePath, randomFileItem());
+        fileStore.write(filePath, fileItem);
+        fileStore.delete(deletedFilePath);
+        durableStore.close();
+
+        // When
+        final InMemoryFileStore restartedFileStore = new InMemoryFileStore();
+        restartedFileStore.configureDurability(new DurableStore(directory));
+
+        // Then
+        assertEquals(fileItem, restartedFileStore.read(filePath));
+        NonExistentItemException actualException = null;
+        try {
+            restartedFileStore.read(deletedFilePath);
+        } catch (final NonExistentItemException e) {
+            actualException = e;
+        }
+        assertNotNull(actualException);
+    }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.messaging;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageSendException;
+
+/**
+ * Default batch send shared by {@link MessageSender} and {@link MessageQueue}, for implementations without a native
+ * batch operation
+ */
+final class MessageBatches {
+
+    private MessageBatches() {
+    }
+
+    /**
+     * Sends each message in turn
+     * @param messages Messages to send
+     * @param sender Sends a single message
+     * @return List of messages which could not be sent
+     */
+    static <T extends Message> List<T> sendEach(final Collection<T> messages, final Consumer<T> sender) {
+        final List<T> failedMessages = new ArrayList<>();
+        for (final T message : messages) {
+            try {
+                sender.accept(message);
+            } catch (final MessageSendException e) {
+                failedMessages.add(message);
+            }
+        }
+        return failedMessages;
+    }
+
+}
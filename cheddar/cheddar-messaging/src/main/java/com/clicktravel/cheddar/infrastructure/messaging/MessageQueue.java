@@ -16,11 +16,14 @@
  */
 package com.clicktravel.cheddar.infrastructure.messaging;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageDeleteException;
 import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageReceiveException;
 import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageSendException;
+import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageVisibilityException;
 
 /**
  * A named queue of {@link Message} elements.
@@ -48,6 +51,17 @@ public interface MessageQueue<T extends Message> {
      */
     void sendDelayedMessage(T message, int delaySeconds) throws MessageSendException;
 
+    /**
+     * Send a number of messages to this message queue. Messages which could not be sent are returned so the caller
+     * may retry them; an exception indicates none of the remaining messages were sent.
+     * @param messages Messages to send
+     * @return List of messages which could not be sent
+     * @throws MessageSendException
+     */
+    default List<T> sendBatch(final Collection<T> messages) throws MessageSendException {
+        return MessageBatches.sendEach(messages, this::send);
+    }
+
     /**
      * Receives any number of messages on this queue, but does not delete them. No order or priority of messages is
      * guaranteed.
@@ -69,6 +83,18 @@ public interface MessageQueue<T extends Message> {
      */
     List<T> receive(int waitTimeSeconds, int maxMessages) throws MessageReceiveException;
 
+    /**
+     * Changes the time for which a message previously received from this queue is invisible to other receivers,
+     * starting from now. Queues which do not model message visibility ignore this.
+     * @param message {@code Message} previously received
+     * @param visibilityTimeoutSeconds Duration (in seconds) from now for which the message is invisible to receivers
+     * @throws MessageVisibilityException
+     */
+    default void changeVisibility(final T message, final int visibilityTimeoutSeconds)
+            throws MessageVisibilityException {
+        // Message visibility not modelled
+    }
+
     /**
      * Deletes a message previously received from this queue.
      * @param typedMessage {@code Message} to delete
@@ -76,4 +102,24 @@ public interface MessageQueue<T extends Message> {
      */
     void delete(T message) throws MessageDeleteException;
 
+    /**
+     * Deletes a number of messages previously received from this queue. Messages which could not be deleted, or were
+     * not attempted because deletion failed part way through, are returned so the caller may retry them; an exception
+     * indicates none of the messages were deleted.
+     * @param messages {@code Message}s to delete
+     * @return List of {@code Message}s which could not be deleted
+     * @throws MessageDeleteException
+     */
+    default List<T> deleteBatch(final List<T> messages) throws MessageDeleteException {
+        final List<T> failedMessages = new ArrayList<>();
+        for (final T message : messages) {
+            try {
+                delete(message);
+            } catch (final MessageDeleteException e) {
+                failedMessages.add(message);
+            }
+        }
+        return failedMessages;
+    }
+
 }
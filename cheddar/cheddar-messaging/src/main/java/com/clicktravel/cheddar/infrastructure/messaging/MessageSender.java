@@ -16,6 +16,9 @@
  */
 package com.clicktravel.cheddar.infrastructure.messaging;
 
+import java.util.Collection;
+import java.util.List;
+
 import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageSendException;
 
 /**
@@ -38,4 +41,14 @@ public interface MessageSender<T extends Message> {
      * @throws MessageSendException
      */
     void sendDelayedMessage(T message, int delaySeconds) throws MessageSendException;
+
+    /**
+     * Send a number of messages. Messages which could not be sent are returned so the caller may retry them.
+     * @param messages Messages to send
+     * @return List of messages which could not be sent
+     * @throws MessageSendException
+     */
+    default List<T> sendBatch(final Collection<T> messages) throws MessageSendException {
+        return MessageBatches.sendEach(messages, this::send);
+    }
 }
@@ -16,6 +16,9 @@
  */
 package com.clicktravel.cheddar.infrastructure.messaging;
 
+import java.util.Collection;
+import java.util.List;
+
 import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageSendException;
 
 /**
@@ -40,4 +43,9 @@ public class MessageSenderImpl<T extends Message> implements MessageSender<T> {
         messageQueue.sendDelayedMessage(message, delaySeconds);
     }
 
+    @Override
+    public List<T> sendBatch(final Collection<T> messages) throws MessageSendException {
+        return messageQueue.sendBatch(messages);
+    }
+
 }
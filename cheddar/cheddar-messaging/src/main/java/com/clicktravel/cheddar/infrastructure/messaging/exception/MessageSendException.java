@@ -16,12 +16,48 @@
  */
 package com.clicktravel.cheddar.infrastructure.messaging.exception;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.clicktravel.cheddar.infrastructure.messaging.Message;
+
 public class MessageSendException extends MessagingException {
 
     private static final long serialVersionUID = -3516363322130750820L;
 
+    private final List<Message> failedMessages;
+
     public MessageSendException(final String message, final Throwable cause) {
         super(message, cause);
+        failedMessages = Collections.emptyList();
+    }
+
+    /**
+     * @param message Detail message
+     * @param failedMessages Messages which could not be sent
+     */
+    public MessageSendException(final String message, final List<? extends Message> failedMessages) {
+        super(message);
+        this.failedMessages = Collections.unmodifiableList(new ArrayList<>(failedMessages));
+    }
+
+    /**
+     * @param message Detail message
+     * @param cause Cause of the failure
+     * @param failedMessages Messages which could not be sent
+     */
+    public MessageSendException(final String message, final Throwable cause,
+            final List<? extends Message> failedMessages) {
+        super(message, cause);
+        this.failedMessages = Collections.unmodifiableList(new ArrayList<>(failedMessages));
+    }
+
+    /**
+     * @return Messages which could not be sent, if known; otherwise an empty list
+     */
+    public List<Message> getFailedMessages() {
+        return failedMessages;
     }
 
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.messaging.pooled.listener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.clicktravel.cheddar.infrastructure.messaging.Message;
+import com.clicktravel.cheddar.infrastructure.messaging.MessageQueue;
+import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageDeleteException;
+
+/**
+ * Accumulates messages whose processing is complete and deletes them from their queue in batches, so callers do not
+ * wait on the queue. A batch is deleted once it is full or once the first message in it has waited for the linger
+ * time. Messages which could not be deleted are retried after a pause, up to a maximum number of attempts.
+ * @param <T> message type accepted by the queue
+ */
+class MessageDeleteBatcher<T extends Message> {
+
+    /**
+     * Maximum number of messages deleted with a single batch delete request
+     */
+    static final int MAX_BATCH_SIZE = 10;
+
+    /**
+     * Maximum time (in milliseconds) a message waits for its batch to fill before the batch is deleted
+     */
+    private static final long BATCH_LINGER_MILLIS = 50;
+
+    /**
+     * Number of threads making delete requests
+     */
+    private static final int NUM_DELETER_THREADS = 2;
+
+    /**
+     * Maximum number of attempts to delete message from queue
+     */
+    private static final int MAX_DELETE_MESSAGE_ATTEMPTS = 5;
+
+    /**
+     * Time (in milliseconds) to pause when delete message request returns an error
+     */
+    private static final long DELETE_MESSAGE_ERROR_PAUSE_MILLIS = 1500;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final MessageQueue<T> messageQueue;
+    private final ScheduledThreadPoolExecutor deleteExecutor;
+    private List<T> pendingMessages = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    MessageDeleteBatcher(final MessageQueue<T> messageQueue) {
+        this.messageQueue = messageQueue;
+        final AtomicInteger threadSequenceNumber = new AtomicInteger();
+        deleteExecutor = new ScheduledThreadPoolExecutor(NUM_DELETER_THREADS, r -> {
+            final Thread thread = new Thread(r,
+                    "MessageDeleter:" + messageQueue.getName() + ":" + threadSequenceNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Adds a message to the current batch of messages to delete. Does not block on the queue.
+     * @param message {@link Message} to delete
+     */
+    public void delete(final T message) {
+        List<T> fullBatch = null;
+        synchronized (this) {
+            pendingMessages.add(message);
+            if (pendingMessages.size() >= MAX_BATCH_SIZE) {
+                fullBatch = takePendingMessages();
+            } else if (scheduledFlush == null) {
+                try {
+                    scheduledFlush = deleteExecutor.schedule(this::flush, BATCH_LINGER_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (final RejectedExecutionException e) {
+                    fullBatch = takePendingMessages(); // shut down; delete on calling thread
+                }
+            }
+        }
+        if (fullBatch != null) {
+            submit(fullBatch);
+        }
+    }
+
+    /**
+     * Starts deleting any messages in the current batch, without waiting for the batch to fill.
+     */
+    public void flush() {
+        final List<T> batch;
+        synchronized (this) {
+            if (pendingMessages.isEmpty()) {
+                return;
+            }
+            batch = takePendingMessages();
+        }
+        submit(batch);
+    }
+
+    /**
+     * Deletes any outstanding messages and stops accepting retries, waiting up to the given time for outstanding
+     * deletes to complete.
+     * @param timeoutMillis Maximum time to wait, in milliseconds
+     * @return {@code true} if all outstanding deletes completed
+     */
+    public boolean shutdown(final long timeoutMillis) throws InterruptedException {
+        flush();
+        deleteExecutor.shutdown();
+        return deleteExecutor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private List<T> takePendingMessages() {
+        final List<T> batch = pendingMessages;
+        pendingMessages = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void submit(final List<T> batch) {
+        try {
+            deleteExecutor.execute(() -> deleteBatch(batch, 1));
+        } catch (final RejectedExecutionException e) {
+            deleteBatch(batch, MAX_DELETE_MESSAGE_ATTEMPTS);
+        }
+    }
+
+    private void deleteBatch(final List<T> batch, final int attempt) {
+        List<T> failedMessages;
+        try {
+            failedMessages = messageQueue.deleteBatch(batch);
+        } catch (final MessageDeleteException e) {
+            logger.warn(String.format("Failed attempt to delete %d messages from queue [%s]", batch.size(),
+                    messageQueue.getName()), e);
+            failedMessages = batch;
+        } catch (final RuntimeException e) {
+            logger.error(e.getMessage(), e);
+            failedMessages = batch;
+        }
+        if (failedMessages.isEmpty()) {
+            return;
+        }
+        if (attempt < MAX_DELETE_MESSAGE_ATTEMPTS) {
+            final List<T> retryBatch = failedMessages;
+            try {
+                deleteExecutor.schedule(() -> deleteBatch(retryBatch, attempt + 1), DELETE_MESSAGE_ERROR_PAUSE_MILLIS,
+                        TimeUnit.MILLISECONDS);
+                return;
+            } catch (final RejectedExecutionException e) {
+                // Shut down; no further retries
+            }
+        }
+        for (final T message : failedMessages) {
+            logger.error(String.format("Failed all attempts to delete message with id [%s] from queue [%s]",
+                    message.getMessageId(), messageQueue.getName()));
+        }
+    }
+}
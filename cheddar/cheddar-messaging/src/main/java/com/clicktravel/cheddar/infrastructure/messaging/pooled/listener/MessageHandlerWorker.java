@@ -43,11 +43,7 @@ public class MessageHandlerWorker<T extends Message> implements Runnable {
         } catch (final Exception e) {
             logger.error("Error handling message: " + message, e);
         } finally {
-            try {
-                pooledMessageListener.completeMessageProcessing(message);
-            } catch (final InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+            pooledMessageListener.completeMessageProcessing(message);
         }
     }
 
@@ -18,9 +18,11 @@ package com.clicktravel.cheddar.infrastructure.messaging.pooled.listener;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Phaser;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,7 +31,6 @@ import com.clicktravel.cheddar.infrastructure.messaging.Message;
 import com.clicktravel.cheddar.infrastructure.messaging.MessageHandler;
 import com.clicktravel.cheddar.infrastructure.messaging.MessageListener;
 import com.clicktravel.cheddar.infrastructure.messaging.MessageQueue;
-import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageDeleteException;
 import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageReceiveException;
 import com.clicktravel.common.concurrent.RateLimiter;
 
@@ -70,22 +71,17 @@ public abstract class PooledMessageListener<T extends Message> implements Messag
      */
     private static final long RECEIVE_MESSAGE_ERROR_PAUSE_MILLIS = 500;
 
-    /**
-     * Maximum number of attempts to delete message from queue
-     */
-    private static final int MAX_DELETE_MESSAGE_ATTEMPTS = 5;
-
-    /**
-     * Time (in milliseconds) to pause when delete message request returns an error
-     */
-    private static final long DELETE_MESSAGE_ERROR_PAUSE_MILLIS = 1500;
-
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final MessageQueue<T> messageQueue;
     private final ThreadPoolExecutor threadPoolExecutor;
     private final RateLimiter rateLimiter;
     private final Semaphore semaphore;
+    private final MessageDeleteBatcher<T> messageDeleteBatcher;
+    private VisibilityHeartbeat<T> visibilityHeartbeat;
     private final int maxReceivedMessages;
+    private final AtomicInteger activeReceivers = new AtomicInteger(1);
+    private final Phaser receiverPhaser = new Phaser(1); // Primary receiver is registered from construction
+    private volatile int maxReceivers = 1;
     private volatile boolean started;
     private volatile boolean shutdownRequested;
     private volatile boolean shutdownRequestImminent;
@@ -97,6 +93,48 @@ public abstract class PooledMessageListener<T extends Message> implements Messag
         this.threadPoolExecutor = threadPoolExecutor;
         this.semaphore = semaphore;
         this.maxReceivedMessages = maxReceivedMessages;
+        messageDeleteBatcher = new MessageDeleteBatcher<>(messageQueue);
+    }
+
+    /**
+     * Keeps messages invisible to other receivers while they are being processed, by extending their visibility
+     * timeout before it expires. Without this, a message handled for longer than the visibility timeout of the queue
+     * is redelivered while still in progress. Must be called before the listener is started.
+     * @param visibilityTimeoutSeconds Visibility timeout (in seconds) of the queue, and of each extension
+     * @param extensionFraction Fraction of the visibility timeout after which visibility is extended, greater than 0
+     *            and less than 1
+     */
+    public void configureVisibilityHeartbeat(final int visibilityTimeoutSeconds, final double extensionFraction) {
+        visibilityHeartbeat = new VisibilityHeartbeat<>(messageQueue, visibilityTimeoutSeconds, extensionFraction);
+    }
+
+    /**
+     * @return Number of times the visibility of an in-flight message on this listener's queue has been extended
+     */
+    public long getVisibilityExtensionCount() {
+        return visibilityHeartbeat != null ? visibilityHeartbeat.getExtensionCount() : 0;
+    }
+
+    /**
+     * Allows more than one receive loop to run concurrently for this listener's queue, so intake of messages is not
+     * limited to one receive round trip at a time. All receivers share the same worker threads and permits. An
+     * additional receiver is started while receives return full batches (indicating a backlog on the queue) and there
+     * are enough permits for another batch (indicating the workers are not saturated). An additional receiver stops as
+     * soon as a receive returns fewer messages than a full batch. Must be called before the listener is started.
+     * @param maxReceivers Maximum number of concurrent receivers, at least 1
+     */
+    public void configureReceivers(final int maxReceivers) {
+        if (maxReceivers < 1) {
+            throw new IllegalArgumentException("Maximum number of receivers must be at least 1");
+        }
+        this.maxReceivers = maxReceivers;
+    }
+
+    /**
+     * @return Number of receivers currently receiving messages from this listener's queue
+     */
+    public int getActiveReceiverCount() {
+        return activeReceivers.get();
     }
 
     protected abstract MessageHandler<T> getHandlerForMessage(T message);
@@ -115,15 +153,18 @@ public abstract class PooledMessageListener<T extends Message> implements Messag
             listenerStarted();
             final String limiterSummary = rateLimiter != null ? ("using " + rateLimiter.toString())
                     : "not rate limited";
-            logger.debug(String.format("Listener for queue [%s] has pool of %d threads and is %s", queueName(),
-                    threadPoolExecutor.getMaximumPoolSize(), limiterSummary));
-            processMessagesUntilShutdownRequested();
+            logger.debug(String.format("Listener for queue [%s] has pool of %d threads, up to %d receivers and is %s",
+                    queueName(), threadPoolExecutor.getMaximumPoolSize(), maxReceivers, limiterSummary));
+            processMessagesUntilShutdownRequested(true);
         } catch (final InterruptedException e) {
             Thread.currentThread().interrupt();
         } catch (final Throwable e) {
             logger.error(e.getMessage(), e);
             throw e;
         } finally {
+            // Additional receivers must stop submitting tasks before the executor is shut down
+            shutdownRequested = true;
+            awaitAdditionalReceivers();
             logger.debug(String.format(
                     "Message listener for queue [%s] has stopped receiving messages. Initiating shutdown of task executor",
                     queueName()));
@@ -131,7 +172,45 @@ public abstract class PooledMessageListener<T extends Message> implements Messag
         }
     }
 
-    private void processMessagesUntilShutdownRequested() throws InterruptedException {
+    private void startAdditionalReceiver() {
+        int receivers;
+        while ((receivers = activeReceivers.get()) < maxReceivers) {
+            if (activeReceivers.compareAndSet(receivers, receivers + 1)) {
+                final Thread receiver = new Thread(this::runAdditionalReceiver,
+                        "MessageReceiver:" + queueName() + ":" + receivers);
+                receiverPhaser.register();
+                receiver.start();
+                logger.debug(String.format("Started receiver %d for queue [%s]", receivers + 1, queueName()));
+                return;
+            }
+        }
+    }
+
+    private void runAdditionalReceiver() {
+        try {
+            processMessagesUntilShutdownRequested(false);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final Throwable e) {
+            logger.error(e.getMessage(), e);
+        } finally {
+            logger.debug(String.format("Stopped receiver %d for queue [%s]", activeReceivers.getAndDecrement(),
+                    queueName()));
+            receiverPhaser.arriveAndDeregister();
+        }
+    }
+
+    private void awaitAdditionalReceivers() {
+        // An additional receiver registers any receiver it starts before deregistering itself, so the phase only
+        // advances once every additional receiver has stopped
+        try {
+            receiverPhaser.awaitAdvanceInterruptibly(receiverPhaser.arrive());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void processMessagesUntilShutdownRequested(final boolean primaryReceiver) throws InterruptedException {
         while (!shutdownRequested) {
             // Block until there is capacity to handle up to maxReceivedMessages
             semaphore.acquire(maxReceivedMessages);
@@ -154,6 +233,14 @@ public abstract class PooledMessageListener<T extends Message> implements Messag
             for (final T message : messages) {
                 processMessage(message); // Must complete processing each message to release permit
             }
+            if (messages.size() == maxReceivedMessages) {
+                // Backlog on queue; add a receiver if the workers have capacity for another batch
+                if (!shutdownRequested && semaphore.availablePermits() >= maxReceivedMessages) {
+                    startAdditionalReceiver();
+                }
+            } else if (!primaryReceiver) {
+                return; // No backlog, so this additional receiver is not needed
+            }
         }
     }
 
@@ -163,7 +250,10 @@ public abstract class PooledMessageListener<T extends Message> implements Messag
      * is deleted from the queue and the associated permit is released.
      * @param message {@link Message} to process
      */
-    private void processMessage(final T message) throws InterruptedException {
+    private void processMessage(final T message) {
+        if (visibilityHeartbeat != null) {
+            visibilityHeartbeat.start(message);
+        }
         boolean workerAssigned = false;
         try {
             final MessageHandler<T> messageHandler = getHandlerForMessage(message);
@@ -182,27 +272,16 @@ public abstract class PooledMessageListener<T extends Message> implements Messag
     }
 
     /**
-     * Completes message processing by deleting it from the queue and releasing the associated permit.
+     * Completes message processing by scheduling it for deletion from the queue and releasing the associated permit.
+     * Messages are deleted in batches by a {@link MessageDeleteBatcher}, so this does not wait for the deletion.
      * @param message {@link Message} to complete processing
      */
-    public void completeMessageProcessing(final T message) throws InterruptedException {
-        deleteMessage(message);
-        semaphore.release();
-    }
-
-    private void deleteMessage(final T message) throws InterruptedException {
-        for (int attempts = 0; attempts < MAX_DELETE_MESSAGE_ATTEMPTS; attempts++) {
-            try {
-                messageQueue.delete(message);
-                return;
-            } catch (final MessageDeleteException e) {
-                logger.warn(String.format("Failed attempt to delete message with id [%s] from queue [%s]",
-                        message.getMessageId(), queueName()), e);
-                Thread.sleep(DELETE_MESSAGE_ERROR_PAUSE_MILLIS);
-            }
+    public void completeMessageProcessing(final T message) {
+        if (visibilityHeartbeat != null) {
+            visibilityHeartbeat.stop(message);
         }
-        logger.error(String.format("Failed all attempts to delete message with id [%s] from queue [%s]",
-                message.getMessageId(), queueName()));
+        messageDeleteBatcher.delete(message);
+        semaphore.release();
     }
 
     private void applyRateLimiter() {
@@ -238,18 +317,32 @@ public abstract class PooledMessageListener<T extends Message> implements Messag
 
     @Override
     public boolean awaitShutdownComplete(final long timeoutMillis) {
-        boolean terminated = false;
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        boolean workersTerminated = false;
+        boolean deletesCompleted = false;
         try {
-            terminated = threadPoolExecutor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
-            if (terminated) {
-                logger.debug(String.format("Message listener for queue [%s] shutdown has completed", queueName()));
-            } else {
-                logger.warn(String.format(
-                        "Message listener for queue [%s] has not shutdown as message handler worker threads have not completed",
-                        queueName()));
-            }
+            workersTerminated = threadPoolExecutor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
         } catch (final InterruptedException e) {
             Thread.currentThread().interrupt();
+        } finally {
+            // Shut down even if workers are still running, so no threads are left extending visibility or deleting
+            try {
+                deletesCompleted = messageDeleteBatcher.shutdown(Math.max(0, deadline - System.currentTimeMillis()));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (visibilityHeartbeat != null) {
+                    visibilityHeartbeat.shutdown();
+                }
+            }
+        }
+        final boolean terminated = workersTerminated && deletesCompleted;
+        if (terminated) {
+            logger.debug(String.format("Message listener for queue [%s] shutdown has completed", queueName()));
+        } else {
+            logger.warn(String.format(
+                    "Message listener for queue [%s] has not shutdown as worker threads or message deletes have not completed",
+                    queueName()));
         }
         return terminated;
     }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.messaging.pooled.listener;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.clicktravel.cheddar.infrastructure.messaging.Message;
+import com.clicktravel.cheddar.infrastructure.messaging.MessageQueue;
+
+/**
+ * Keeps in-flight messages invisible to other receivers of their queue for as long as they are being processed. While
+ * a message is in flight, its visibility timeout is periodically extended, at a fixed fraction of the timeout, so it
+ * does not expire and the message is not redelivered.
+ * @param <T> message type accepted by the queue
+ */
+class VisibilityHeartbeat<T extends Message> {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final MessageQueue<T> messageQueue;
+    private final int visibilityTimeoutSeconds;
+    private final long heartbeatIntervalMillis;
+    private final ScheduledThreadPoolExecutor heartbeatExecutor;
+    private final Map<T, ScheduledFuture<?>> heartbeats = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final AtomicLong extensionCount = new AtomicLong();
+
+    /**
+     * @param messageQueue Queue which messages are received from
+     * @param visibilityTimeoutSeconds Visibility timeout (in seconds) of the queue, and of each extension
+     * @param extensionFraction Fraction of the visibility timeout after which visibility is extended, greater than 0
+     *            and less than 1
+     */
+    VisibilityHeartbeat(final MessageQueue<T> messageQueue, final int visibilityTimeoutSeconds,
+            final double extensionFraction) {
+        if (visibilityTimeoutSeconds < 1) {
+            throw new IllegalArgumentException("Visibility timeout must be at least 1 second");
+        }
+        if (extensionFraction <= 0 || extensionFraction >= 1) {
+            throw new IllegalArgumentException("Extension fraction must be greater than 0 and less than 1");
+        }
+        this.messageQueue = messageQueue;
+        this.visibilityTimeoutSeconds = visibilityTimeoutSeconds;
+        heartbeatIntervalMillis = Math
+                .max(1, (long) (TimeUnit.SECONDS.toMillis(visibilityTimeoutSeconds) * extensionFraction));
+        heartbeatExecutor = new ScheduledThreadPoolExecutor(1, r -> {
+            final Thread thread = new Thread(r, "VisibilityHeartbeat:" + messageQueue.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatExecutor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Starts extending the visibility of a message, which should have just been received
+     * @param message {@link Message} now in flight
+     */
+    public void start(final T message) {
+        heartbeats.put(message, heartbeatExecutor.scheduleAtFixedRate(() -> extendVisibility(message),
+                heartbeatIntervalMillis, heartbeatIntervalMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Stops extending the visibility of a message, once it is no longer in flight
+     * @param message {@link Message} previously started
+     */
+    public void stop(final T message) {
+        final ScheduledFuture<?> heartbeat = heartbeats.remove(message);
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+        }
+    }
+
+    private void extendVisibility(final T message) {
+        try {
+            messageQueue.changeVisibility(message, visibilityTimeoutSeconds);
+            extensionCount.incrementAndGet();
+        } catch (final RuntimeException e) {
+            logger.warn(String.format("Failed to extend visibility of message with id [%s] on queue [%s]",
+                    message.getMessageId(), messageQueue.getName()), e);
+        }
+    }
+
+    /**
+     * @return Number of times the visibility of a message has been extended
+     */
+    public long getExtensionCount() {
+        return extensionCount.get();
+    }
+
+    public void shutdown() {
+        heartbeatExecutor.shutdownNow();
+    }
+}
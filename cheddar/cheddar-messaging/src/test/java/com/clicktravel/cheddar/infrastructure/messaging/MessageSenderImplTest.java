@@ -23,6 +23,11 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -101,4 +106,18 @@ public class MessageSenderImplTest {
         assertSame(messageSendException, thrownException);
     }
 
+    @Test
+    public void shouldSendBatch_withMessages() {
+        // Given
+        final List<Message> messages = Arrays.asList(mockMessage, mock(Message.class));
+        final List<Message> failedMessages = Collections.singletonList(mockMessage);
+        when(mockMessageQueue.sendBatch(messages)).thenReturn(failedMessages);
+
+        // When
+        final List<Message> returnedMessages = messageSenderImpl.sendBatch(messages);
+
+        // Then
+        verify(mockMessageQueue).sendBatch(messages);
+        assertSame(failedMessages, returnedMessages);
+    }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.messaging.pooled.listener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.clicktravel.cheddar.infrastructure.messaging.MessageQueue;
+import com.clicktravel.cheddar.infrastructure.messaging.TypedMessage;
+import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageDeleteException;
+
+@SuppressWarnings("unchecked")
+public class MessageDeleteBatcherTest {
+
+    private MessageQueue<TypedMessage> messageQueue;
+    private MessageDeleteBatcher<TypedMessage> messageDeleteBatcher;
+
+    @Before
+    public void setUp() {
+        messageQueue = mock(MessageQueue.class);
+        when(messageQueue.deleteBatch(anyList())).thenReturn(Collections.emptyList());
+        messageDeleteBatcher = new MessageDeleteBatcher<>(messageQueue);
+    }
+
+    @Test
+    public void shouldDeleteBatch_onFullBatch() throws Exception {
+        // Given
+        final List<TypedMessage> messages = new ArrayList<>();
+        for (int i = 0; i < MessageDeleteBatcher.MAX_BATCH_SIZE; i++) {
+            messages.add(mock(TypedMessage.class));
+        }
+
+        // When
+        for (final TypedMessage message : messages) {
+            messageDeleteBatcher.delete(message);
+        }
+
+        // Then
+        verify(messageQueue, timeout(1000)).deleteBatch(messages);
+    }
+
+    @Test
+    public void shouldDeletePartialBatch_afterLingerTime() throws Exception {
+        // Given
+        final TypedMessage message = mock(TypedMessage.class);
+
+        // When
+        messageDeleteBatcher.delete(message);
+
+        // Then
+        verify(messageQueue, timeout(1000)).deleteBatch(Collections.singletonList(message));
+    }
+
+    @Test
+    public void shouldDeleteOutstandingMessages_onShutdown() throws Exception {
+        // Given
+        final TypedMessage message1 = mock(TypedMessage.class);
+        final TypedMessage message2 = mock(TypedMessage.class);
+        messageDeleteBatcher.delete(message1);
+        messageDeleteBatcher.delete(message2);
+
+        // When
+        final boolean completed = messageDeleteBatcher.shutdown(1000);
+
+        // Then
+        assertTrue(completed);
+        verify(messageQueue).deleteBatch(Arrays.asList(message1, message2));
+    }
+
+    @Test
+    public void shouldRetryFailedMessages_onPartialFailure() throws Exception {
+        // Given
+        final TypedMessage message1 = mock(TypedMessage.class);
+        final TypedMessage message2 = mock(TypedMessage.class);
+        when(messageQueue.deleteBatch(anyList())).thenReturn(Collections.singletonList(message2))
+                .thenReturn(Collections.emptyList());
+
+        // When
+        messageDeleteBatcher.delete(message1);
+        messageDeleteBatcher.delete(message2);
+
+        // Then
+        final ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(messageQueue, timeout(5000).times(2)).deleteBatch(captor.capture());
+        assertEquals(Arrays.asList(message1, message2), captor.getAllValues().get(0));
+        assertEquals(Collections.singletonList(message2), captor.getAllValues().get(1));
+    }
+
+    @Test
+    public void shouldRetryAllMessages_onMessageDeleteException() throws Exception {
+        // Given
+        final TypedMessage message = mock(TypedMessage.class);
+        when(messageQueue.deleteBatch(anyList())).thenThrow(MessageDeleteException.class)
+                .thenReturn(Collections.emptyList());
+
+        // When
+        messageDeleteBatcher.delete(message);
+
+        // Then
+        verify(messageQueue, timeout(5000).times(2)).deleteBatch(Collections.singletonList(message));
+    }
+}
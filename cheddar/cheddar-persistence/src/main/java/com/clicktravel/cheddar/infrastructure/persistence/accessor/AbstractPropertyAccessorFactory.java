@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.accessor;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Introspects each bean class once and caches the resulting {@link PropertyAccessor}s. Subclasses decide how an
+ * accessor invokes the read and write methods of a property.
+ */
+public abstract class AbstractPropertyAccessorFactory implements PropertyAccessorFactory {
+
+    private final Map<Class<?>, Map<String, PropertyAccessor>> propertyAccessorsByClass = new ConcurrentHashMap<>();
+
+    @Override
+    public Map<String, PropertyAccessor> propertyAccessors(final Class<?> beanClass) {
+        final Map<String, PropertyAccessor> propertyAccessors = propertyAccessorsByClass.get(beanClass);
+        if (propertyAccessors != null) {
+            return propertyAccessors;
+        }
+        return propertyAccessorsByClass.computeIfAbsent(beanClass, this::introspect);
+    }
+
+    @Override
+    public PropertyAccessor propertyAccessor(final Class<?> beanClass, final String propertyName) {
+        final PropertyAccessor propertyAccessor = propertyAccessors(beanClass).get(propertyName);
+        if (propertyAccessor == null) {
+            throw new IllegalStateException("No property found '" + propertyName + "' for class :" + beanClass);
+        }
+        return propertyAccessor;
+    }
+
+    private Map<String, PropertyAccessor> introspect(final Class<?> beanClass) {
+        final Map<String, PropertyAccessor> propertyAccessors = new HashMap<>();
+        try {
+            final BeanInfo beanInfo = Introspector.getBeanInfo(beanClass);
+            for (final PropertyDescriptor propertyDescriptor : beanInfo.getPropertyDescriptors()) {
+                propertyAccessors.put(propertyDescriptor.getName(), createPropertyAccessor(propertyDescriptor));
+            }
+        } catch (final IntrospectionException e) {
+            throw new IllegalStateException(e);
+        }
+        return Collections.unmodifiableMap(propertyAccessors);
+    }
+
+    protected abstract PropertyAccessor createPropertyAccessor(PropertyDescriptor propertyDescriptor);
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.accessor;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * {@link PropertyAccessor} which delegates to a getter {@link Function} and a setter {@link BiConsumer}. Either may be
+ * {@code null} for read-only or write-only properties.
+ */
+public class FunctionalPropertyAccessor implements PropertyAccessor {
+
+    private final String propertyName;
+    private final Class<?> propertyType;
+    private final Function<Object, Object> getter;
+    private final BiConsumer<Object, Object> setter;
+
+    public FunctionalPropertyAccessor(final String propertyName, final Class<?> propertyType,
+            final Function<Object, Object> getter, final BiConsumer<Object, Object> setter) {
+        this.propertyName = propertyName;
+        this.propertyType = propertyType;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    @Override
+    public String propertyName() {
+        return propertyName;
+    }
+
+    @Override
+    public Class<?> propertyType() {
+        return propertyType;
+    }
+
+    @Override
+    public boolean isReadable() {
+        return getter != null;
+    }
+
+    @Override
+    public boolean isWritable() {
+        return setter != null;
+    }
+
+    @Override
+    public Object getValue(final Object bean) {
+        if (getter == null) {
+            throw new IllegalStateException("No read method for property: " + propertyName);
+        }
+        return getter.apply(bean);
+    }
+
+    @Override
+    public void setValue(final Object bean, final Object value) {
+        if (setter == null) {
+            throw new IllegalStateException("No write method for property: " + propertyName);
+        }
+        setter.accept(bean, value);
+    }
+
+}
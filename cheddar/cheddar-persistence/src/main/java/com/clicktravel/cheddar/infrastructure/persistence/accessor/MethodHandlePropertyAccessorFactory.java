@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.accessor;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.*;
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * {@link PropertyAccessorFactory} which binds read and write methods with {@link LambdaMetafactory}, so that property
+ * access compiles to a direct method call with no boxing of arguments into arrays and no per-call access checks.
+ * <p>
+ * Where a lambda cannot be spun for a method (e.g. the declaring class is not visible from this class loader), a
+ * {@link MethodHandle} is used instead, and failing that the accessor falls back to {@link Method#invoke}.
+ */
+public class MethodHandlePropertyAccessorFactory extends AbstractPropertyAccessorFactory {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    @Override
+    protected PropertyAccessor createPropertyAccessor(final PropertyDescriptor propertyDescriptor) {
+        final Method readMethod = propertyDescriptor.getReadMethod();
+        final Method writeMethod = propertyDescriptor.getWriteMethod();
+        return new FunctionalPropertyAccessor(propertyDescriptor.getName(), propertyDescriptor.getPropertyType(),
+                readMethod == null ? null : getter(readMethod), writeMethod == null ? null : setter(writeMethod));
+    }
+
+    private Function<Object, Object> getter(final Method readMethod) {
+        if (isVisible(readMethod.getDeclaringClass()) && isVisible(readMethod.getReturnType())) {
+            try {
+                return lambdaGetter(readMethod);
+            } catch (final Throwable e) {
+                // Fall through to method handle
+            }
+        }
+        try {
+            return methodHandleGetter(readMethod);
+        } catch (final IllegalAccessException | RuntimeException e) {
+            return ReflectionPropertyAccessorFactory.getter(readMethod);
+        }
+    }
+
+    private BiConsumer<Object, Object> setter(final Method writeMethod) {
+        if (isVisible(writeMethod.getDeclaringClass()) && isVisible(writeMethod.getParameterTypes()[0])) {
+            try {
+                return lambdaSetter(writeMethod);
+            } catch (final Throwable e) {
+                // Fall through to method handle
+            }
+        }
+        try {
+            return methodHandleSetter(writeMethod);
+        } catch (final IllegalAccessException | RuntimeException e) {
+            return ReflectionPropertyAccessorFactory.setter(writeMethod);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> lambdaGetter(final Method readMethod) throws Throwable {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final MethodHandle readMethodHandle = lookup.unreflect(readMethod);
+        final CallSite callSite = LambdaMetafactory.metafactory(lookup, "apply",
+                MethodType.methodType(Function.class), GETTER_TYPE, readMethodHandle,
+                MethodType.methodType(boxed(readMethod.getReturnType()), readMethod.getDeclaringClass()));
+        return (Function<Object, Object>) callSite.getTarget().invoke();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> lambdaSetter(final Method writeMethod) throws Throwable {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final MethodHandle writeMethodHandle = lookup.unreflect(writeMethod);
+        final CallSite callSite = LambdaMetafactory.metafactory(lookup, "accept",
+                MethodType.methodType(BiConsumer.class), SETTER_TYPE, writeMethodHandle, MethodType.methodType(
+                        void.class, writeMethod.getDeclaringClass(), boxed(writeMethod.getParameterTypes()[0])));
+        return (BiConsumer<Object, Object>) callSite.getTarget().invoke();
+    }
+
+    private static Function<Object, Object> methodHandleGetter(final Method readMethod)
+            throws IllegalAccessException {
+        readMethod.setAccessible(true);
+        final MethodHandle readMethodHandle = MethodHandles.lookup().unreflect(readMethod).asType(GETTER_TYPE);
+        return bean -> {
+            try {
+                return readMethodHandle.invokeExact(bean);
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private static BiConsumer<Object, Object> methodHandleSetter(final Method writeMethod)
+            throws IllegalAccessException {
+        writeMethod.setAccessible(true);
+        final MethodHandle writeMethodHandle = MethodHandles.lookup().unreflect(writeMethod).asType(SETTER_TYPE);
+        return (bean, value) -> {
+            try {
+                writeMethodHandle.invokeExact(bean, value);
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private static Class<?> boxed(final Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    /**
+     * Lambdas are defined in the class loader of this factory, so may only reference classes visible from it
+     */
+    private static boolean isVisible(final Class<?> type) {
+        if (type.isPrimitive()) {
+            return true;
+        }
+        try {
+            return Class.forName(type.getName(), false, MethodHandlePropertyAccessorFactory.class.getClassLoader())
+                    .equals(type);
+        } catch (final ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+}
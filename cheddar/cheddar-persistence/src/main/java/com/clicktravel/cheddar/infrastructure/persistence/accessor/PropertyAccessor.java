@@ -0,0 +1,47 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.accessor;
+
+/**
+ * Reads and writes a single bean property without going through {@link java.lang.reflect.Method#invoke}.
+ * Implementations are immutable and safe to share between threads.
+ */
+public interface PropertyAccessor {
+
+    String propertyName();
+
+    Class<?> propertyType();
+
+    boolean isReadable();
+
+    boolean isWritable();
+
+    /**
+     * @param bean Bean to read the property from
+     * @return Current value of the property
+     * @throws IllegalStateException if the property has no read method
+     */
+    Object getValue(Object bean);
+
+    /**
+     * @param bean Bean to write the property to
+     * @param value New value of the property
+     * @throws IllegalStateException if the property has no write method
+     */
+    void setValue(Object bean, Object value);
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.accessor;
+
+import java.util.Map;
+
+/**
+ * Creates {@link PropertyAccessor}s for the bean properties of a class. Implementations cache accessors per class and
+ * property, so callers may look them up on every use.
+ */
+public interface PropertyAccessorFactory {
+
+    /**
+     * @param beanClass Class to introspect
+     * @return Accessors for all bean properties of the class, keyed by property name
+     */
+    Map<String, PropertyAccessor> propertyAccessors(Class<?> beanClass);
+
+    /**
+     * @param beanClass Class to introspect
+     * @param propertyName Name of the bean property
+     * @return Accessor for the bean property
+     * @throws IllegalStateException if the class has no such property
+     */
+    PropertyAccessor propertyAccessor(Class<?> beanClass, String propertyName);
+
+}
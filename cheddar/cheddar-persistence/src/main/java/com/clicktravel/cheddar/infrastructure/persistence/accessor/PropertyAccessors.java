@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.accessor;
+
+/**
+ * Holds the {@link PropertyAccessorFactory} used by persistence components to read and write item and document
+ * properties. Defaults to {@link MethodHandlePropertyAccessorFactory}; an alternative factory may be installed at
+ * application start-up, before any item or document configuration is created.
+ */
+public final class PropertyAccessors {
+
+    private static volatile PropertyAccessorFactory propertyAccessorFactory = new MethodHandlePropertyAccessorFactory();
+
+    private PropertyAccessors() {
+    }
+
+    public static PropertyAccessorFactory factory() {
+        return propertyAccessorFactory;
+    }
+
+    public static void setFactory(final PropertyAccessorFactory propertyAccessorFactory) {
+        if (propertyAccessorFactory == null) {
+            throw new IllegalArgumentException("Property accessor factory must not be null");
+        }
+        PropertyAccessors.propertyAccessorFactory = propertyAccessorFactory;
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.accessor;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * {@link PropertyAccessorFactory} which invokes read and write methods using {@link Method#invoke}. This is the
+ * slowest strategy, but works for any accessible property regardless of class loader.
+ */
+public class ReflectionPropertyAccessorFactory extends AbstractPropertyAccessorFactory {
+
+    @Override
+    protected PropertyAccessor createPropertyAccessor(final PropertyDescriptor propertyDescriptor) {
+        final Method readMethod = propertyDescriptor.getReadMethod();
+        final Method writeMethod = propertyDescriptor.getWriteMethod();
+        return new FunctionalPropertyAccessor(propertyDescriptor.getName(), propertyDescriptor.getPropertyType(),
+                readMethod == null ? null : getter(readMethod), writeMethod == null ? null : setter(writeMethod));
+    }
+
+    static Function<Object, Object> getter(final Method readMethod) {
+        return bean -> {
+            try {
+                return readMethod.invoke(bean);
+            } catch (final InvocationTargetException | IllegalAccessException | IllegalArgumentException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    static BiConsumer<Object, Object> setter(final Method writeMethod) {
+        return (bean, value) -> {
+            try {
+                writeMethod.invoke(bean, value);
+            } catch (final InvocationTargetException | IllegalAccessException | IllegalArgumentException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.cache;
+
+import java.io.Serializable;
+
+import com.clicktravel.cheddar.infrastructure.persistence.database.Item;
+
+/**
+ * Entry held in an {@link ItemCache} by {@link CachingDatabaseTemplate}. An entry without an item marks an item as
+ * deleted or of unknown state, so that reads go to the underlying store. The version is used to reject populating the
+ * cache with an item older than the one the entry records. The class is public only so that codecs can recognise it.
+ */
+public final class CachedItem implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Item item;
+    private Long version;
+
+    private CachedItem() {
+        // for codecs which construct and then populate entries
+    }
+
+    private CachedItem(final Item item, final Long version) {
+        this.item = item;
+        this.version = version;
+    }
+
+    static CachedItem present(final Item item) {
+        return new CachedItem(item, item.getVersion());
+    }
+
+    static CachedItem deleted(final Item item) {
+        return new CachedItem(null, item.getVersion());
+    }
+
+    static CachedItem unknown() {
+        return new CachedItem(null, null);
+    }
+
+    Item item() {
+        return item;
+    }
+
+    /**
+     * @return {@code true} if an item read with the given version is newer than this entry and may replace it
+     */
+    boolean isSupersededBy(final Long itemVersion) {
+        return version == null || itemVersion != null && itemVersion > version;
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.cache;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.clicktravel.cheddar.infrastructure.persistence.database.*;
+import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.CompoundPrimaryKeyDefinition;
+import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.DatabaseSchemaHolder;
+import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.ItemConfiguration;
+import com.clicktravel.cheddar.infrastructure.persistence.database.exception.NonExistentItemException;
+import com.clicktravel.cheddar.infrastructure.persistence.database.exception.handler.PersistenceExceptionHandler;
+import com.clicktravel.cheddar.infrastructure.persistence.database.options.FetchOptions;
+import com.clicktravel.cheddar.infrastructure.persistence.database.query.KeySetQuery;
+import com.clicktravel.cheddar.infrastructure.persistence.database.query.Query;
+
+/**
+ * Decorates a {@link DatabaseTemplate} with a read-through {@link ItemCache}. Reads and key set queries for item
+ * classes configured with {@link #configureCaching(Class, long)} are served from the cache where possible, and items
+ * read from the underlying template are added to it. Items written through this template replace their cache entries,
+ * and deleted items are marked as such.
+ * <p>
+ * An item read from the underlying template is only added to the cache if it is newer than the version recorded in the
+ * cache, so that a slow read does not overwrite the result of a concurrent write. The version check and the write are
+ * made as one step by {@link ItemCache#putItemIf}, where the cache supports it. Failures of the cache itself are logged
+ * and otherwise ignored, falling back to the underlying template.
+ */
+public class CachingDatabaseTemplate extends AbstractDatabaseTemplate {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final DatabaseTemplate databaseTemplate;
+    private final ItemCache itemCache;
+    private final String schemaName;
+    private final long cacheReadTimeoutSeconds;
+    private final Map<Class<? extends Item>, ItemConfiguration> itemConfigurations = new HashMap<>();
+    private final Map<Class<? extends Item>, Long> cacheExpirySeconds = new ConcurrentHashMap<>();
+
+    /**
+     * @param databaseTemplate - the template whose items are cached
+     * @param itemCache - cache holding the items
+     * @param databaseSchemaHolder - schema of the items stored by the template
+     * @param cacheReadTimeoutSeconds - time after which a read from the cache is abandoned and treated as a miss
+     */
+    public CachingDatabaseTemplate(final DatabaseTemplate databaseTemplate, final ItemCache itemCache,
+            final DatabaseSchemaHolder databaseSchemaHolder, final long cacheReadTimeoutSeconds) {
+        this.databaseTemplate = databaseTemplate;
+        this.itemCache = itemCache;
+        schemaName = databaseSchemaHolder.schemaName();
+        this.cacheReadTimeoutSeconds = cacheReadTimeoutSeconds;
+        for (final ItemConfiguration itemConfiguration : databaseSchemaHolder.itemConfigurations()) {
+            itemConfigurations.put(itemConfiguration.itemClass(), itemConfiguration);
+        }
+    }
+
+    /**
+     * Enables caching of an item class and its subclasses
+     * @param itemClass - class of the items to cache
+     * @param expireSeconds - time for which cache entries are kept after they are written
+     */
+    public void configureCaching(final Class<? extends Item> itemClass, final long expireSeconds) {
+        if (!itemConfigurations.containsKey(itemClass)) {
+            throw new IllegalArgumentException("No ItemConfiguration for " + itemClass);
+        }
+        if (expireSeconds < 1) {
+            throw new IllegalArgumentException("Cache expiry must be positive");
+        }
+        cacheExpirySeconds.put(itemClass, expireSeconds);
+    }
+
+    @Override
+    public <T extends Item> T read(final ItemId itemId, final Class<T> itemClass) throws NonExistentItemException {
+        final Long expireSeconds = cacheExpirySeconds(itemClass);
+        if (expireSeconds == null) {
+            return databaseTemplate.read(itemId, itemClass);
+        }
+        final String cacheKey = cacheKey(itemClass, itemId);
+        final T cachedItem = cachedItem(cacheKey, itemClass);
+        if (cachedItem != null) {
+            return cachedItem;
+        }
+        final T item = databaseTemplate.read(itemId, itemClass);
+        populateCache(cacheKey, item, expireSeconds);
+        return item;
+    }
+
+    @Override
+    public <T extends Item> T create(final T item,
+            final PersistenceExceptionHandler<?>... persistenceExceptionHandlers) {
+        final T createdItem = databaseTemplate.create(item, persistenceExceptionHandlers);
+        writeCacheEntry(createdItem, CachedItem.present(createdItem));
+        return createdItem;
+    }
+
+    @Override
+    public <T extends Item> T update(final T item,
+            final PersistenceExceptionHandler<?>... persistenceExceptionHandlers) {
+        final T updatedItem;
+        try {
+            updatedItem = databaseTemplate.update(item, persistenceExceptionHandlers);
+        } catch (final RuntimeException e) {
+            writeCacheEntry(item, CachedItem.unknown());
+            throw e;
+        }
+        writeCacheEntry(updatedItem, CachedItem.present(updatedItem));
+        return updatedItem;
+    }
+
+    @Override
+    public void delete(final Item item, final PersistenceExceptionHandler<?>... persistenceExceptionHandlers) {
+        try {
+            databaseTemplate.delete(item, persistenceExceptionHandlers);
+        } catch (final RuntimeException e) {
+            writeCacheEntry(item, CachedItem.unknown());
+            throw e;
+        }
+        writeCacheEntry(item, CachedItem.deleted(item));
+    }
+
+    @Override
+    public <T extends Item> Collection<T> fetch(final Query query, final Class<T> itemClass) {
+        final Long expireSeconds = cacheExpirySeconds(itemClass);
+        if (expireSeconds == null || !(query instanceof KeySetQuery)) {
+            return databaseTemplate.fetch(query, itemClass);
+        }
+        return fetchKeySet(((KeySetQuery) query).itemIds(), itemClass, expireSeconds);
+    }
+
+    @Override
+    public <T extends Item> FetchResult<T> fetch(final Query query, final Class<T> itemClass,
+            final FetchOptions fetchOptions) {
+        final Long expireSeconds = cacheExpirySeconds(itemClass);
+        if (expireSeconds == null || !(query instanceof KeySetQuery)) {
+            return databaseTemplate.fetch(query, itemClass, fetchOptions);
+        }
+        final List<ItemId> itemIds = new ArrayList<>(((KeySetQuery) query).itemIds());
+        return new FetchResult<>(new KeyOffsetItemPageLoader<ItemId, T>(itemIds,
+                pageItemIds -> fetchKeySet(pageItemIds, itemClass, expireSeconds), null), fetchOptions);
+    }
+
+    @Override
+    public GeneratedKeyHolder generateKeys(final SequenceKeyGenerator sequenceKeyGenerator) {
+        return databaseTemplate.generateKeys(sequenceKeyGenerator);
+    }
+
+    /**
+     * Serves the cached items of a key set, fetching only the missing items from the underlying template. The cache is
+     * read in bulk, and items are returned in key set order.
+     */
+    private <T extends Item> List<T> fetchKeySet(final Collection<ItemId> itemIds, final Class<T> itemClass,
+            final long expireSeconds) {
+        final Map<ItemId, String> cacheKeys = new LinkedHashMap<>();
+        for (final ItemId itemId : itemIds) {
+            cacheKeys.put(itemId, cacheKey(itemClass, itemId));
+        }
+        final Map<String, CachedItem> cacheEntries = getCacheEntries(cacheKeys.values());
+        final Map<ItemId, T> items = new HashMap<>();
+        final Set<ItemId> missedItemIds = new LinkedHashSet<>();
+        for (final Map.Entry<ItemId, String> cacheKey : cacheKeys.entrySet()) {
+            final T cachedItem = cachedItem(cacheEntries.get(cacheKey.getValue()), itemClass);
+            if (cachedItem != null) {
+                items.put(cacheKey.getKey(), cachedItem);
+            } else {
+                missedItemIds.add(cacheKey.getKey());
+            }
+        }
+        if (!missedItemIds.isEmpty()) {
+            final Map<String, Item> fetchedItems = new HashMap<>();
+            for (final T item : databaseTemplate.fetch(new KeySetQuery(missedItemIds), itemClass)) {
+                final ItemId itemId = itemConfiguration(item.getClass()).getItemId(item);
+                items.put(itemId, item);
+                fetchedItems.put(cacheKey(itemClass, itemId), item);
+            }
+            populateCache(fetchedItems, expireSeconds);
+        }
+        final List<T> orderedItems = new ArrayList<>();
+        for (final ItemId itemId : cacheKeys.keySet()) {
+            final T item = items.get(itemId);
+            if (item != null) {
+                orderedItems.add(item);
+            }
+        }
+        return orderedItems;
+    }
+
+    private <T extends Item> T cachedItem(final String cacheKey, final Class<T> itemClass) {
+        return cachedItem(getCacheEntry(cacheKey), itemClass);
+    }
+
+    private <T extends Item> T cachedItem(final CachedItem cachedItem, final Class<T> itemClass) {
+        if (cachedItem != null && itemClass.isInstance(cachedItem.item())) {
+            return itemClass.cast(cachedItem.item());
+        }
+        return null;
+    }
+
+    private void populateCache(final String cacheKey, final Item item, final long expireSeconds) {
+        try {
+            itemCache.putItemIf(cacheKey, CachedItem.present(item), expireSeconds, cacheReadTimeoutSeconds,
+                    currentCacheEntry -> !(currentCacheEntry instanceof CachedItem)
+                            || ((CachedItem) currentCacheEntry).isSupersededBy(item.getVersion()));
+        } catch (final RuntimeException e) {
+            logger.warn("Unable to put cache item: " + cacheKey, e);
+        }
+    }
+
+    private void populateCache(final Map<String, Item> items, final long expireSeconds) {
+        for (final Map.Entry<String, Item> item : items.entrySet()) {
+            populateCache(item.getKey(), item.getValue(), expireSeconds);
+        }
+    }
+
+    private void writeCacheEntry(final Item item, final CachedItem cachedItem) {
+        final Long expireSeconds = cacheExpirySeconds(item.getClass());
+        if (expireSeconds != null) {
+            final ItemId itemId = itemConfiguration(item.getClass()).getItemId(item);
+            putCacheEntry(cacheKey(item.getClass(), itemId), cachedItem, expireSeconds);
+        }
+    }
+
+    private CachedItem getCacheEntry(final String cacheKey) {
+        try {
+            final Object cacheEntry = itemCache.getItem(cacheKey, cacheReadTimeoutSeconds);
+            return cacheEntry instanceof CachedItem ? (CachedItem) cacheEntry : null;
+        } catch (final RuntimeException e) {
+            logger.debug("Unable to get cache item: " + cacheKey, e);
+            return null;
+        }
+    }
+
+    private Map<String, CachedItem> getCacheEntries(final Collection<String> cacheKeys) {
+        final Map<String, CachedItem> cacheEntries = new HashMap<>();
+        try {
+            for (final Map.Entry<String, Object> cacheEntry : itemCache
+                    .getItems(cacheKeys, cacheReadTimeoutSeconds).entrySet()) {
+                if (cacheEntry.getValue() instanceof CachedItem) {
+                    cacheEntries.put(cacheEntry.getKey(), (CachedItem) cacheEntry.getValue());
+                }
+            }
+        } catch (final RuntimeException e) {
+            logger.debug("Unable to get cache items: " + cacheKeys, e);
+        }
+        return cacheEntries;
+    }
+
+    private void putCacheEntry(final String cacheKey, final CachedItem cachedItem, final long expireSeconds) {
+        try {
+            itemCache.putItem(cacheKey, cachedItem, expireSeconds);
+        } catch (final RuntimeException e) {
+            logger.warn("Unable to put cache item: " + cacheKey, e);
+        }
+    }
+
+    /**
+     * @return Expiry of cache entries for the item class, or {@code null} if the item class is not cached
+     */
+    private Long cacheExpirySeconds(final Class<?> itemClass) {
+        for (Class<?> cachedClass = itemClass; cachedClass != null; cachedClass = cachedClass.getSuperclass()) {
+            final Long expireSeconds = cacheExpirySeconds.get(cachedClass);
+            if (expireSeconds != null) {
+                return expireSeconds;
+            }
+        }
+        return null;
+    }
+
+    private ItemConfiguration itemConfiguration(final Class<?> itemClass) {
+        for (Class<?> configuredClass = itemClass; configuredClass != null; configuredClass = configuredClass
+                .getSuperclass()) {
+            final ItemConfiguration itemConfiguration = itemConfigurations.get(configuredClass);
+            if (itemConfiguration != null) {
+                return itemConfiguration;
+            }
+        }
+        throw new IllegalStateException("No ItemConfiguration for " + itemClass);
+    }
+
+    /**
+     * Items are keyed by table rather than class, so that variant items share entries with their parent item class
+     */
+    private String cacheKey(final Class<?> itemClass, final ItemId itemId) {
+        final ItemConfiguration itemConfiguration = itemConfiguration(itemClass);
+        final StringBuilder cacheKey = new StringBuilder(schemaName).append('.')
+                .append(itemConfiguration.tableName()).append(':').append(itemId.value());
+        if (itemConfiguration.primaryKeyDefinition() instanceof CompoundPrimaryKeyDefinition) {
+            cacheKey.append(':').append(itemId.supportingValue());
+        }
+        return cacheKey.toString();
+    }
+}
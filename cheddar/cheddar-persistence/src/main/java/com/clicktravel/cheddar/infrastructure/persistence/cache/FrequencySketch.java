@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.cache;
+
+/**
+ * Approximate count of recent accesses per key, held as a count-min sketch of small saturating counters. Once the
+ * number of recorded accesses reaches a sample size proportional to the capacity, all counters are halved so that the
+ * sketch favours recent popularity. Not thread safe.
+ */
+final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = { 0x97cb3127, 0xd8163841, 0x5bd1e995, 0x85ebca6b };
+
+    private final int[] counters;
+    private final int widthMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(final int capacity) {
+        final int width = Integer.highestOneBit(Math.max(16, capacity * 2 - 1));
+        counters = new int[DEPTH * width];
+        widthMask = width - 1;
+        sampleSize = Math.max(16, capacity * 10);
+    }
+
+    void increment(final Object key) {
+        final int hash = spread(key.hashCode());
+        boolean incremented = false;
+        for (int row = 0; row < DEPTH; row++) {
+            final int index = index(hash, row);
+            if (counters[index] < MAX_COUNT) {
+                counters[index]++;
+                incremented = true;
+            }
+        }
+        if (incremented && ++additions >= sampleSize) {
+            halve();
+        }
+    }
+
+    int frequency(final Object key) {
+        final int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, counters[index(hash, row)]);
+        }
+        return frequency;
+    }
+
+    private void halve() {
+        for (int index = 0; index < counters.length; index++) {
+            counters[index] >>>= 1;
+        }
+        additions /= 2;
+    }
+
+    private int index(final int hash, final int row) {
+        int rowHash = hash * SEEDS[row];
+        rowHash ^= rowHash >>> 17;
+        return row * (widthMask + 1) + (rowHash & widthMask);
+    }
+
+    private static int spread(final int hashCode) {
+        final int hash = hashCode * 0x9e3779b9;
+        return hash ^ hash >>> 16;
+    }
+}
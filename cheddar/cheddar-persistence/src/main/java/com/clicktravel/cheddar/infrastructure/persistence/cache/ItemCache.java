@@ -16,6 +16,14 @@
  */
 package com.clicktravel.cheddar.infrastructure.persistence.cache;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
 public interface ItemCache {
 
     /**
@@ -35,4 +43,109 @@ public interface ItemCache {
      */
     void putItem(String key, Object item, long expire);
 
+    /**
+     * Gets several items from the cache in as few requests as the cache allows, giving up after your given timeout in
+     * seconds
+     * @param keys of the items to get
+     * @param timeout
+     * @return the items found in the cache within the timeout, by key; keys without an item are absent
+     */
+    default Map<String, Object> getItems(final Collection<String> keys, final long timeout) {
+        final Map<String, Object> items = new HashMap<>();
+        for (final String key : keys) {
+            final Object item = getItem(key, timeout);
+            if (item != null) {
+                items.put(key, item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Saves several items to the cache, each expiring in a given number of seconds
+     * @param items to store, by key
+     * @param expire time in seconds
+     */
+    default void putItems(final Map<String, ?> items, final long expire) {
+        for (final Entry<String, ?> entry : items.entrySet()) {
+            putItem(entry.getKey(), entry.getValue(), expire);
+        }
+    }
+
+    /**
+     * Saves an item to the cache if the cache holds no item for the key, or the given condition accepts the item it
+     * holds. Implementations which can apply the check and the write as one step with respect to other writers of the
+     * key should do so, so that a concurrent write is never overwritten by an item the condition would have rejected;
+     * this default reads then writes the item, and is not atomic.
+     * @param key to store against the item
+     * @param item to store in the cache
+     * @param expire time in seconds
+     * @param timeout time in seconds after which reading the current item is abandoned, and the item is not saved
+     * @param condition accepts the current item if it may be replaced
+     * @return {@code true} if the item was saved
+     */
+    default boolean putItemIf(final String key, final Object item, final long expire, final long timeout,
+            final Predicate<Object> condition) {
+        final Object currentItem = getItem(key, timeout);
+        if (currentItem != null && !condition.test(currentItem)) {
+            return false;
+        }
+        putItem(key, item, expire);
+        return true;
+    }
+
+    /**
+     * Removes an item from the cache
+     * @param key of the item to remove
+     */
+    void deleteItem(String key);
+
+    /**
+     * Gets an item from the cache without waiting for the response
+     * @param key of the item to get
+     * @return future completed with the item, or {@code null} if it is not in the cache
+     */
+    CompletableFuture<Object> getItemAsync(String key);
+
+    /**
+     * Gets several items from the cache without waiting for the response
+     * @param keys of the items to get
+     * @return future completed with the items found in the cache, by key
+     */
+    default CompletableFuture<Map<String, Object>> getItemsAsync(final Collection<String> keys) {
+        final Map<String, CompletableFuture<Object>> itemFutures = new LinkedHashMap<>();
+        for (final String key : keys) {
+            itemFutures.put(key, getItemAsync(key));
+        }
+        return CompletableFuture.allOf(itemFutures.values().toArray(new CompletableFuture<?>[itemFutures.size()]))
+                .thenApply(ignored -> {
+                    final Map<String, Object> items = new HashMap<>();
+                    for (final Entry<String, CompletableFuture<Object>> itemFuture : itemFutures.entrySet()) {
+                        final Object item = itemFuture.getValue().join();
+                        if (item != null) {
+                            items.put(itemFuture.getKey(), item);
+                        }
+                    }
+                    return items;
+                });
+    }
+
+    /**
+     * Saves an item to the cache without waiting for the response
+     * @param key to store against the item
+     * @param item to store in the cache
+     * @param expire time in seconds
+     * @return future completed once the item has been stored
+     */
+    default CompletableFuture<Void> putItemAsync(final String key, final Object item, final long expire) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            putItem(key, item, expire);
+            future.complete(null);
+        } catch (final RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.cache;
+
+/**
+ * Tells other application instances that a cache entry has been written, so that they drop their near cache copy
+ */
+public interface ItemCacheInvalidationPublisher {
+
+    /**
+     * @param cacheId - identifier of the {@link TieredItemCache} which wrote the entry, so that it can ignore its own
+     *            invalidation
+     * @param key - key of the written entry
+     */
+    void publishInvalidation(String cacheId, String key);
+
+}
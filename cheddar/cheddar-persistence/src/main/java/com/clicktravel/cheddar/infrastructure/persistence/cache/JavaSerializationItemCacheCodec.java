@@ -0,0 +1,46 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.cache;
+
+import java.io.*;
+
+/**
+ * Encodes items with Java serialisation, so items must be {@link Serializable}
+ */
+public class JavaSerializationItemCacheCodec implements ItemCacheCodec {
+
+    @Override
+    public byte[] encode(final Object item) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream objectOutputStream = new ObjectOutputStream(bytes)) {
+            objectOutputStream.writeObject(item);
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Unable to serialise cache item", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object decode(final byte[] data) {
+        try (final ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return objectInputStream.readObject();
+        } catch (final IOException | ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unable to deserialise cache item", e);
+        }
+    }
+
+}
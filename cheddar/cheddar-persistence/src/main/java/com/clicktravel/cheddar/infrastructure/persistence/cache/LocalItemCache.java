@@ -0,0 +1,330 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.cache;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Size-bounded in-process {@link ItemCache}, suitable as a near cache in front of a remote cache. Entries expire the
+ * given number of seconds after they are written; an expiry of zero or less never expires.
+ * <p>
+ * Eviction follows the W-TinyLFU policy. New entries enter a small LRU window. Entries leaving the window compete for
+ * a place in the main segmented LRU, which is admitted only if the entry has been accessed more often than the entry it
+ * would evict, as estimated by a {@link FrequencySketch}. Entries accessed again in the main probation segment are
+ * promoted to its protected segment. This keeps frequently read items cached in the face of scans of items read only
+ * once.
+ * <p>
+ * Keys are spread over independently locked segments to limit contention. Items are held encoded by an
+ * {@link ItemCacheCodec}, and each get decodes a new copy, so changes to an item after it is put, or to an item
+ * returned by a get, never affect the cached entry. Items are encoded with Java serialisation unless another codec is
+ * given; a near cache should use the codec of the remote cache behind it.
+ */
+public class LocalItemCache implements ItemCache {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final ItemCacheCodec codec;
+
+    /**
+     * @param maximumSize - maximum number of entries held
+     */
+    public LocalItemCache(final int maximumSize) {
+        this(maximumSize, new JavaSerializationItemCacheCodec());
+    }
+
+    /**
+     * @param maximumSize - maximum number of entries held
+     * @param codec - codec by which items are copied into and out of the cache
+     */
+    public LocalItemCache(final int maximumSize, final ItemCacheCodec codec) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        final int segmentCount = Math.min(MAX_SEGMENTS, Integer.highestOneBit(maximumSize));
+        segments = new Segment[segmentCount];
+        for (int segment = 0; segment < segmentCount; segment++) {
+            final int remainder = segment < maximumSize % segmentCount ? 1 : 0;
+            segments[segment] = new Segment(maximumSize / segmentCount + remainder);
+        }
+        segmentMask = segmentCount - 1;
+        this.codec = codec;
+    }
+
+    @Override
+    public Object getItem(final String key, final long timeout) {
+        final byte[] data = segmentFor(key).get(key, System.nanoTime());
+        return data == null ? null : codec.decode(data);
+    }
+
+    @Override
+    public void putItem(final String key, final Object item, final long expire) {
+        putEncodedItem(key, encode(item), expire);
+    }
+
+    @Override
+    public boolean putItemIf(final String key, final Object item, final long expire, final long timeout,
+            final Predicate<Object> condition) {
+        final long now = System.nanoTime();
+        return segmentFor(key).putIf(key, encode(item), now, expireNanos(expire),
+                data -> condition.test(codec.decode(data)));
+    }
+
+    @Override
+    public void deleteItem(final String key) {
+        invalidate(key);
+    }
+
+    @Override
+    public CompletableFuture<Object> getItemAsync(final String key) {
+        return CompletableFuture.completedFuture(getItem(key, 0));
+    }
+
+    public void invalidate(final String key) {
+        segmentFor(key).remove(key);
+    }
+
+    public void invalidateAll() {
+        for (final Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * @return Number of entries held, including any which have expired but not yet been removed
+     */
+    public int size() {
+        int size = 0;
+        for (final Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return The item as held by this cache, or {@code null} for a {@code null} item
+     */
+    byte[] encode(final Object item) {
+        return item == null ? null : codec.encode(item);
+    }
+
+    /**
+     * Puts an item already encoded by {@link #encode(Object)}, so that an item can be copied before it is put
+     */
+    void putEncodedItem(final String key, final byte[] data, final long expire) {
+        if (data == null) {
+            invalidate(key);
+            return;
+        }
+        segmentFor(key).put(key, data, System.nanoTime(), expireNanos(expire));
+    }
+
+    private static long expireNanos(final long expire) {
+        return expire > 0 ? TimeUnit.SECONDS.toNanos(expire) : 0;
+    }
+
+    private Segment segmentFor(final String key) {
+        final int hash = key.hashCode();
+        return segments[(hash ^ hash >>> 16) & segmentMask];
+    }
+
+    private enum Region {
+        WINDOW,
+        PROBATION,
+        PROTECTED
+    }
+
+    private static final class Entry {
+
+        private final String key;
+        private byte[] data;
+        private long writeTimeNanos;
+        private long expireNanos;
+        private Region region;
+
+        private Entry(final String key) {
+            this.key = key;
+        }
+
+        private boolean hasExpired(final long now) {
+            return expireNanos > 0 && now - writeTimeNanos >= expireNanos;
+        }
+    }
+
+    private static final class Segment {
+
+        private final Map<String, Entry> entries = new HashMap<>();
+        private final LinkedHashMap<String, Entry> window = new LinkedHashMap<>();
+        private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>();
+        private final LinkedHashMap<String, Entry> protectedEntries = new LinkedHashMap<>();
+        private final FrequencySketch frequencySketch;
+        private final int windowCapacity;
+        private final int mainCapacity;
+        private final int protectedCapacity;
+
+        private Segment(final int capacity) {
+            windowCapacity = Math.max(1, capacity / 100);
+            mainCapacity = capacity - windowCapacity;
+            protectedCapacity = mainCapacity * 8 / 10;
+            frequencySketch = new FrequencySketch(capacity);
+        }
+
+        private synchronized byte[] get(final String key, final long now) {
+            frequencySketch.increment(key);
+            final Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.hasExpired(now)) {
+                remove(entry);
+                return null;
+            }
+            onAccess(entry);
+            return entry.data;
+        }
+
+        private synchronized void put(final String key, final byte[] data, final long now, final long expireNanos) {
+            frequencySketch.increment(key);
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                onAccess(entry);
+            } else {
+                entry = new Entry(key);
+                entry.region = Region.WINDOW;
+                entries.put(key, entry);
+                window.put(key, entry);
+            }
+            entry.data = data;
+            entry.writeTimeNanos = now;
+            entry.expireNanos = expireNanos;
+            if (window.size() > windowCapacity) {
+                admitToMain(first(window));
+            }
+        }
+
+        private synchronized boolean putIf(final String key, final byte[] data, final long now,
+                final long expireNanos, final Predicate<byte[]> condition) {
+            final Entry entry = entries.get(key);
+            if (entry != null && !entry.hasExpired(now) && !condition.test(entry.data)) {
+                return false;
+            }
+            if (data == null) {
+                remove(key);
+            } else {
+                put(key, data, now, expireNanos);
+            }
+            return true;
+        }
+
+        private synchronized void remove(final String key) {
+            final Entry entry = entries.get(key);
+            if (entry != null) {
+                remove(entry);
+            }
+        }
+
+        private synchronized void clear() {
+            entries.clear();
+            window.clear();
+            probation.clear();
+            protectedEntries.clear();
+        }
+
+        private synchronized int size() {
+            return entries.size();
+        }
+
+        private void onAccess(final Entry entry) {
+            switch (entry.region) {
+                case WINDOW:
+                    moveToTail(window, entry);
+                    break;
+                case PROBATION:
+                    probation.remove(entry.key);
+                    entry.region = Region.PROTECTED;
+                    protectedEntries.put(entry.key, entry);
+                    if (protectedEntries.size() > protectedCapacity) {
+                        final Entry demoted = first(protectedEntries);
+                        protectedEntries.remove(demoted.key);
+                        demoted.region = Region.PROBATION;
+                        probation.put(demoted.key, demoted);
+                    }
+                    break;
+                case PROTECTED:
+                    moveToTail(protectedEntries, entry);
+                    break;
+            }
+        }
+
+        /**
+         * Moves the candidate from the window to probation, then if the main segments are over capacity evicts
+         * whichever of the candidate and the main victim is accessed less often
+         */
+        private void admitToMain(final Entry candidate) {
+            window.remove(candidate.key);
+            if (mainCapacity == 0) {
+                entries.remove(candidate.key);
+                return;
+            }
+            candidate.region = Region.PROBATION;
+            probation.put(candidate.key, candidate);
+            if (probation.size() + protectedEntries.size() <= mainCapacity) {
+                return;
+            }
+            Entry victim = first(probation);
+            if (victim == candidate) {
+                victim = first(protectedEntries);
+            }
+            if (frequencySketch.frequency(candidate.key) > frequencySketch.frequency(victim.key)) {
+                remove(victim);
+            } else {
+                remove(candidate);
+            }
+        }
+
+        private void remove(final Entry entry) {
+            entries.remove(entry.key);
+            regionEntries(entry.region).remove(entry.key);
+        }
+
+        private LinkedHashMap<String, Entry> regionEntries(final Region region) {
+            switch (region) {
+                case WINDOW:
+                    return window;
+                case PROBATION:
+                    return probation;
+                default:
+                    return protectedEntries;
+            }
+        }
+
+        private static void moveToTail(final LinkedHashMap<String, Entry> regionEntries, final Entry entry) {
+            regionEntries.remove(entry.key);
+            regionEntries.put(entry.key, entry);
+        }
+
+        private static Entry first(final LinkedHashMap<String, Entry> regionEntries) {
+            return regionEntries.values().iterator().next();
+        }
+    }
+}
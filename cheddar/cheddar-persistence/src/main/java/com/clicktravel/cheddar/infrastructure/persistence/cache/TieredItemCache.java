@@ -0,0 +1,208 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.cache;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Two level {@link ItemCache}, with a {@link LocalItemCache} on this instance in front of a shared remote cache. Items
+ * found only in the remote cache are copied to the local cache, and writes go to both.
+ * <p>
+ * Local entries are kept for at most the local expiry, which bounds how long this instance can see an item after
+ * another instance has replaced it. If an {@link ItemCacheInvalidationPublisher} is configured, each write is also
+ * published so that other instances drop their local copy straight away, via
+ * {@link #invalidateLocal(String, String)}.
+ */
+public class TieredItemCache implements ItemCache {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final String cacheId = UUID.randomUUID().toString();
+    private final LocalItemCache localItemCache;
+    private final ItemCache remoteItemCache;
+    private final long localExpireSeconds;
+    private volatile ItemCacheInvalidationPublisher invalidationPublisher;
+
+    /**
+     * @param localItemCache - near cache on this instance
+     * @param remoteItemCache - cache shared between instances
+     * @param localExpireSeconds - maximum time for which an entry is kept in the near cache
+     */
+    public TieredItemCache(final LocalItemCache localItemCache, final ItemCache remoteItemCache,
+            final long localExpireSeconds) {
+        if (localExpireSeconds < 1) {
+            throw new IllegalArgumentException("Local expiry must be positive");
+        }
+        this.localItemCache = localItemCache;
+        this.remoteItemCache = remoteItemCache;
+        this.localExpireSeconds = localExpireSeconds;
+    }
+
+    public void configureInvalidationPublisher(final ItemCacheInvalidationPublisher invalidationPublisher) {
+        this.invalidationPublisher = invalidationPublisher;
+    }
+
+    public String cacheId() {
+        return cacheId;
+    }
+
+    @Override
+    public Object getItem(final String key, final long timeout) {
+        final Object localItem = localItemCache.getItem(key, timeout);
+        if (localItem != null) {
+            return localItem;
+        }
+        final Object remoteItem = remoteItemCache.getItem(key, timeout);
+        if (remoteItem != null) {
+            localItemCache.putItem(key, remoteItem, localExpireSeconds);
+        }
+        return remoteItem;
+    }
+
+    @Override
+    public Map<String, Object> getItems(final Collection<String> keys, final long timeout) {
+        final Map<String, Object> items = new HashMap<>();
+        final List<String> missedKeys = localItems(keys, items);
+        if (!missedKeys.isEmpty()) {
+            items.putAll(copyToLocal(remoteItemCache.getItems(missedKeys, timeout)));
+        }
+        return items;
+    }
+
+    @Override
+    public void putItem(final String key, final Object item, final long expire) {
+        localItemCache.invalidate(key);
+        remoteItemCache.putItem(key, item, expire);
+        localItemCache.putItem(key, item, localExpireSeconds(expire));
+        publishInvalidation(key);
+    }
+
+    /**
+     * Applies the condition to the remote cache, which holds the entry shared between instances, and replaces the
+     * local copy only if the item is saved
+     */
+    @Override
+    public boolean putItemIf(final String key, final Object item, final long expire, final long timeout,
+            final Predicate<Object> condition) {
+        localItemCache.invalidate(key);
+        if (!remoteItemCache.putItemIf(key, item, expire, timeout, condition)) {
+            return false;
+        }
+        localItemCache.putItem(key, item, localExpireSeconds(expire));
+        publishInvalidation(key);
+        return true;
+    }
+
+    @Override
+    public void deleteItem(final String key) {
+        localItemCache.invalidate(key);
+        remoteItemCache.deleteItem(key);
+        publishInvalidation(key);
+    }
+
+    @Override
+    public CompletableFuture<Object> getItemAsync(final String key) {
+        final Object localItem = localItemCache.getItem(key, 0);
+        if (localItem != null) {
+            return CompletableFuture.completedFuture(localItem);
+        }
+        return remoteItemCache.getItemAsync(key).thenApply(remoteItem -> {
+            if (remoteItem != null) {
+                localItemCache.putItem(key, remoteItem, localExpireSeconds);
+            }
+            return remoteItem;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> getItemsAsync(final Collection<String> keys) {
+        final Map<String, Object> items = new HashMap<>();
+        final List<String> missedKeys = localItems(keys, items);
+        if (missedKeys.isEmpty()) {
+            return CompletableFuture.completedFuture(items);
+        }
+        return remoteItemCache.getItemsAsync(missedKeys).thenApply(remoteItems -> {
+            items.putAll(copyToLocal(remoteItems));
+            return items;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> putItemAsync(final String key, final Object item, final long expire) {
+        localItemCache.invalidate(key);
+        // Encoded now, so that changes to the item before the remote put completes are not cached locally
+        final byte[] localData = localItemCache.encode(item);
+        return remoteItemCache.putItemAsync(key, item, expire).thenRun(() -> {
+            localItemCache.putEncodedItem(key, localData, localExpireSeconds(expire));
+            publishInvalidation(key);
+        });
+    }
+
+    /**
+     * Drops the local copy of an entry written by another instance
+     * @param sourceCacheId - identifier of the cache which wrote the entry
+     * @param key - key of the written entry
+     */
+    public void invalidateLocal(final String sourceCacheId, final String key) {
+        if (!cacheId.equals(sourceCacheId)) {
+            localItemCache.invalidate(key);
+        }
+    }
+
+    /**
+     * Adds the local items for the given keys to the given map
+     * @return Keys without a local item
+     */
+    private List<String> localItems(final Collection<String> keys, final Map<String, Object> items) {
+        final List<String> missedKeys = new ArrayList<>();
+        for (final String key : keys) {
+            final Object localItem = localItemCache.getItem(key, 0);
+            if (localItem != null) {
+                items.put(key, localItem);
+            } else {
+                missedKeys.add(key);
+            }
+        }
+        return missedKeys;
+    }
+
+    private Map<String, Object> copyToLocal(final Map<String, Object> remoteItems) {
+        for (final Map.Entry<String, Object> remoteItem : remoteItems.entrySet()) {
+            localItemCache.putItem(remoteItem.getKey(), remoteItem.getValue(), localExpireSeconds);
+        }
+        return remoteItems;
+    }
+
+    private long localExpireSeconds(final long expire) {
+        return expire > 0 ? Math.min(expire, localExpireSeconds) : localExpireSeconds;
+    }
+
+    private void publishInvalidation(final String key) {
+        final ItemCacheInvalidationPublisher invalidationPublisher = this.invalidationPublisher;
+        if (invalidationPublisher != null) {
+            try {
+                invalidationPublisher.publishInvalidation(cacheId, key);
+            } catch (final RuntimeException e) {
+                logger.warn("Unable to publish cache invalidation: " + key, e);
+            }
+        }
+    }
+}
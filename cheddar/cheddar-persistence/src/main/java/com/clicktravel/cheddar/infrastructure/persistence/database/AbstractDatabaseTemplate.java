@@ -16,9 +16,12 @@
  */
 package com.clicktravel.cheddar.infrastructure.persistence.database;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.NonUniqueResultException;
+import com.clicktravel.cheddar.infrastructure.persistence.database.options.FetchOptions;
 import com.clicktravel.cheddar.infrastructure.persistence.database.query.Query;
 
 public abstract class AbstractDatabaseTemplate implements DatabaseTemplate {
@@ -32,4 +35,15 @@ public abstract class AbstractDatabaseTemplate implements DatabaseTemplate {
         return items.iterator().next();
     }
 
+    /**
+     * Pages through the fully materialised result of {@link #fetch(Query, Class)}. Templates which can fetch a page at
+     * a time from their store should override this.
+     */
+    @Override
+    public <T extends Item> FetchResult<T> fetch(final Query query, final Class<T> itemClass,
+            final FetchOptions fetchOptions) {
+        final List<T> items = new ArrayList<>(fetch(query, itemClass));
+        return new FetchResult<>(new KeyOffsetItemPageLoader<T, T>(items, pageItems -> pageItems, null), fetchOptions);
+    }
+
 }
@@ -20,9 +20,9 @@ import java.util.List;
 
 public interface BatchDatabaseTemplate extends DatabaseTemplate {
     /**
-     * Batch write a list of items (max 25) to the store. This operation is non-transactional, does not support unique
-     * constraints and does not support optimistic locking. These must be taken into consideration when implementing
-     * this operation.
+     * Batch write a list of items to the store. Lists of any size are accepted, and are split into as many store
+     * requests as required. This operation is non-transactional, does not support unique constraints and does not
+     * support optimistic locking. These must be taken into consideration when implementing this operation.
      * @param items - a list of items to be batch written
      * @param itemClass - the class of the item being batch written. This allows us to reject any batch writes for a
      *            class that has unique constraints.
@@ -31,4 +31,22 @@ public interface BatchDatabaseTemplate extends DatabaseTemplate {
      */
     <T extends Item> List<T> batchWrite(final List<T> items, final Class<T> itemClass);
 
+    /**
+     * Batch write a list of items to the store, as {@link #batchWrite(List, Class)}, reporting the reason for each
+     * item which could not be written rather than failing the whole operation.
+     * @param items - a list of items to be batch written
+     * @param itemClass - the class of the item being batch written
+     * @return the written items, each with its new version set, and the items which could not be written
+     */
+    <T extends Item> BatchWriteResult<T> batchPut(final List<T> items, final Class<T> itemClass);
+
+    /**
+     * Batch delete a list of items from the store. Lists of any size are accepted. This operation is
+     * non-transactional, does not support unique constraints and does not support optimistic locking.
+     * @param items - a list of items to be batch deleted
+     * @param itemClass - the class of the item being batch deleted
+     * @return the deleted items, and the items which could not be deleted
+     */
+    <T extends Item> BatchWriteResult<T> batchDelete(final List<T> items, final Class<T> itemClass);
+
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.database;
+
+import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceException;
+
+/**
+ * An item which a batch operation did not apply, with the reason it failed
+ */
+public class BatchItemFailure<T extends Item> {
+
+    private final T item;
+    private final PersistenceException cause;
+
+    public BatchItemFailure(final T item, final PersistenceException cause) {
+        this.item = item;
+        this.cause = cause;
+    }
+
+    public T getItem() {
+        return item;
+    }
+
+    public PersistenceException getCause() {
+        return cause;
+    }
+}
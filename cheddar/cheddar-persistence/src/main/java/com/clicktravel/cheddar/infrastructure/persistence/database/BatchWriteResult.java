@@ -0,0 +1,55 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The outcome of a batch operation. Every item passed to the operation appears either as a succeeded item or as a
+ * failure.
+ */
+public class BatchWriteResult<T extends Item> {
+
+    private final List<T> succeededItems;
+    private final List<BatchItemFailure<T>> failures;
+
+    public BatchWriteResult(final List<T> succeededItems, final List<BatchItemFailure<T>> failures) {
+        this.succeededItems = succeededItems;
+        this.failures = failures;
+    }
+
+    public List<T> getSucceededItems() {
+        return succeededItems;
+    }
+
+    public List<BatchItemFailure<T>> getFailures() {
+        return failures;
+    }
+
+    public List<T> getFailedItems() {
+        final List<T> failedItems = new ArrayList<>();
+        for (final BatchItemFailure<T> failure : failures) {
+            failedItems.add(failure.getItem());
+        }
+        return failedItems;
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+}
@@ -21,6 +21,7 @@ import java.util.Collection;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.NonExistentItemException;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.NonUniqueResultException;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.handler.PersistenceExceptionHandler;
+import com.clicktravel.cheddar.infrastructure.persistence.database.options.FetchOptions;
 import com.clicktravel.cheddar.infrastructure.persistence.database.query.Query;
 
 public interface DatabaseTemplate {
@@ -42,6 +43,15 @@ public interface DatabaseTemplate {
 
     <T extends Item> Collection<T> fetch(final Query query, Class<T> itemClass);
 
+    /**
+     * Fetch the items matching a query a page at a time, loading each page only when it is consumed
+     * @param query - the query to execute
+     * @param itemClass - the class of the items to fetch
+     * @param fetchOptions - limit, page size and resume cursor for the fetch
+     * @return Lazily paged result of the query
+     */
+    <T extends Item> FetchResult<T> fetch(final Query query, Class<T> itemClass, FetchOptions fetchOptions);
+
     <T extends Item> T fetchUnique(final Query query, Class<T> itemClass) throws NonUniqueResultException;
 
     GeneratedKeyHolder generateKeys(SequenceKeyGenerator sequenceKeyGenerator);
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.database;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.clicktravel.cheddar.infrastructure.persistence.database.options.FetchOptions;
+
+/**
+ * The result of a paged fetch. Items are loaded from the store one page at a time, only as they are consumed, so
+ * callers which stop early pay only for the pages they have read. A result may be traversed only once.
+ * <p>
+ * After traversal, {@link #getCursor()} gives the cursor from which a later fetch of the same query resumes. If
+ * traversal stops part way through a page, the cursor resumes from the start of that page, so some items may be
+ * returned again.
+ */
+public class FetchResult<T extends Item> implements Iterable<T> {
+
+    private final ItemPageLoader<T> itemPageLoader;
+    private final Integer limit;
+    private final Integer pageSize;
+    private String pageCursor;
+    private String nextCursor;
+    private List<T> page = Collections.emptyList();
+    private int pagePosition;
+    private int itemCount;
+    private boolean lastPageLoaded;
+    private boolean traversed;
+
+    public FetchResult(final ItemPageLoader<T> itemPageLoader, final FetchOptions fetchOptions) {
+        this.itemPageLoader = itemPageLoader;
+        limit = fetchOptions.getLimit();
+        pageSize = fetchOptions.getPageSize();
+        pageCursor = fetchOptions.getCursor();
+        nextCursor = fetchOptions.getCursor();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (traversed) {
+            throw new IllegalStateException("Fetch result has already been traversed");
+        }
+        traversed = true;
+        return new Iterator<T>() {
+
+            @Override
+            public boolean hasNext() {
+                return hasNextItem();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNextItem()) {
+                    throw new NoSuchElementException();
+                }
+                itemCount++;
+                return page.get(pagePosition++);
+            }
+        };
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return All remaining items of this result, loading further pages as required
+     */
+    public List<T> getItems() {
+        final List<T> items = new ArrayList<>();
+        for (final T item : this) {
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * @return Cursor from which a later fetch resumes, or {@code null} if the store has reported no further items
+     */
+    public String getCursor() {
+        if (pagePosition < page.size()) {
+            return pageCursor;
+        }
+        return nextCursor;
+    }
+
+    private boolean hasNextItem() {
+        if (limit != null && itemCount >= limit) {
+            return false;
+        }
+        while (pagePosition >= page.size()) {
+            if (lastPageLoaded) {
+                return false;
+            }
+            loadNextPage();
+        }
+        return true;
+    }
+
+    private void loadNextPage() {
+        final ItemPage<T> itemPage = itemPageLoader.loadPage(nextCursor, maxItemsForNextPage());
+        pageCursor = nextCursor;
+        page = itemPage.getItems();
+        pagePosition = 0;
+        nextCursor = itemPage.getCursor();
+        lastPageLoaded = nextCursor == null;
+    }
+
+    private Integer maxItemsForNextPage() {
+        if (limit == null) {
+            return pageSize;
+        }
+        final int remainingItems = limit - itemCount;
+        return pageSize == null ? remainingItems : Math.min(pageSize, remainingItems);
+    }
+}
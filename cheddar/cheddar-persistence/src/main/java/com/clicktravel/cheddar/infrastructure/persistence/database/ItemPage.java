@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.database;
+
+import java.util.List;
+
+/**
+ * A single page of items loaded from the store, together with the cursor from which the following page starts. A
+ * {@code null} cursor indicates there are no further pages.
+ */
+public class ItemPage<T> {
+
+    private final List<T> items;
+    private final String cursor;
+
+    public ItemPage(final List<T> items, final String cursor) {
+        this.items = items;
+        this.cursor = cursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.database;
+
+public interface ItemPageLoader<T> {
+
+    /**
+     * Load a single page of items from the store
+     * @param cursor - cursor returned with the previous page, or {@code null} for the first page
+     * @param maxItems - maximum number of items to return in the page, or {@code null} to let the store decide
+     * @return The loaded page, which may be empty even when further pages exist
+     */
+    ItemPage<T> loadPage(String cursor, Integer maxItems);
+
+}
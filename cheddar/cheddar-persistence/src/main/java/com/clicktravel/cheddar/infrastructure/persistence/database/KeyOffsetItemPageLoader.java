@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.database;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Pages through a known list of keys, loading the items for one slice of keys at a time. The cursor is the offset of
+ * the next key to load.
+ */
+public class KeyOffsetItemPageLoader<K, T> implements ItemPageLoader<T> {
+
+    private final List<K> keys;
+    private final Function<List<K>, Collection<T>> itemLoader;
+    private final Integer defaultPageSize;
+
+    /**
+     * @param keys - keys identifying the items, in the order they are to be paged through
+     * @param itemLoader - loads the items for a slice of keys
+     * @param defaultPageSize - number of keys loaded per page when no maximum is requested, or {@code null} to load
+     *            all remaining keys
+     */
+    public KeyOffsetItemPageLoader(final List<K> keys, final Function<List<K>, Collection<T>> itemLoader,
+            final Integer defaultPageSize) {
+        this.keys = keys;
+        this.itemLoader = itemLoader;
+        this.defaultPageSize = defaultPageSize;
+    }
+
+    @Override
+    public ItemPage<T> loadPage(final String cursor, final Integer maxItems) {
+        final int offset = offset(cursor);
+        int pageSize = keys.size() - offset;
+        if (defaultPageSize != null) {
+            pageSize = Math.min(pageSize, defaultPageSize);
+        }
+        if (maxItems != null) {
+            pageSize = Math.min(pageSize, maxItems);
+        }
+        final List<K> pageKeys = keys.subList(offset, offset + pageSize);
+        final List<T> items = pageKeys.isEmpty() ? new ArrayList<T>() : new ArrayList<>(itemLoader.apply(pageKeys));
+        final int nextOffset = offset + pageSize;
+        return new ItemPage<>(items, nextOffset < keys.size() ? String.valueOf(nextOffset) : null);
+    }
+
+    private int offset(final String cursor) {
+        if (cursor == null) {
+            return 0;
+        }
+        final int offset;
+        try {
+            offset = Integer.parseInt(cursor);
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+        if (offset < 0 || offset > keys.size()) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return offset;
+    }
+}
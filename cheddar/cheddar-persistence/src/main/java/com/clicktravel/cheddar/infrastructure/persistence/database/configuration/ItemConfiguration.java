@@ -20,13 +20,13 @@ import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.clicktravel.cheddar.infrastructure.persistence.accessor.PropertyAccessor;
+import com.clicktravel.cheddar.infrastructure.persistence.accessor.PropertyAccessors;
 import com.clicktravel.cheddar.infrastructure.persistence.database.Item;
 import com.clicktravel.cheddar.infrastructure.persistence.database.ItemId;
 import com.clicktravel.cheddar.infrastructure.persistence.database.query.AttributeQuery;
@@ -38,6 +38,7 @@ public class ItemConfiguration {
     private final String tableName;
     private final PrimaryKeyDefinition primaryKeyDefinition;
     private final Map<String, PropertyDescriptor> properties = new HashMap<>();
+    private final Map<String, PropertyAccessor> propertyAccessors;
     private final Map<String, IndexDefinition> indexDefinitions;
     private final Map<String, String> compoundIndexHashKeyToIndexNameMap;
     private final Map<String, UniqueConstraint> uniqueConstraints;
@@ -63,6 +64,7 @@ public class ItemConfiguration {
         } catch (final IntrospectionException e) {
             throw new IllegalStateException(e);
         }
+        propertyAccessors = PropertyAccessors.factory().propertyAccessors(itemClass);
         registerPrimaryKey(primaryKeyDefinition);
         this.primaryKeyDefinition = primaryKeyDefinition;
     }
@@ -130,23 +132,17 @@ public class ItemConfiguration {
     }
 
     public ItemId getItemId(final Item item) {
-        final Method readMethod = properties.get(primaryKeyDefinition.propertyName()).getReadMethod();
-        try {
-            final Object itemIdValueObj = readMethod.invoke(item);
-            final String itemIdValue = itemIdValueObj == null ? null : String.valueOf(itemIdValueObj);
-            if (CompoundPrimaryKeyDefinition.class.isAssignableFrom(primaryKeyDefinition.getClass())) {
-                final CompoundPrimaryKeyDefinition compoundPrimaryKeyDefinition = (CompoundPrimaryKeyDefinition) primaryKeyDefinition;
-                final Method supportingReadMethod = properties
-                        .get(compoundPrimaryKeyDefinition.supportingPropertyName()).getReadMethod();
-                final Object itemIdSupportingValueObj = supportingReadMethod.invoke(item);
-                final String itemIdSupportingValue = itemIdSupportingValueObj == null ? null
-                        : String.valueOf(itemIdSupportingValueObj);
-                return new ItemId(itemIdValue, itemIdSupportingValue);
-            }
-            return new ItemId(itemIdValue);
-        } catch (final InvocationTargetException | IllegalAccessException | IllegalArgumentException e) {
-            throw new IllegalStateException(e);
+        final Object itemIdValueObj = propertyAccessor(primaryKeyDefinition.propertyName()).getValue(item);
+        final String itemIdValue = itemIdValueObj == null ? null : String.valueOf(itemIdValueObj);
+        if (CompoundPrimaryKeyDefinition.class.isAssignableFrom(primaryKeyDefinition.getClass())) {
+            final CompoundPrimaryKeyDefinition compoundPrimaryKeyDefinition = (CompoundPrimaryKeyDefinition) primaryKeyDefinition;
+            final Object itemIdSupportingValueObj = propertyAccessor(
+                    compoundPrimaryKeyDefinition.supportingPropertyName()).getValue(item);
+            final String itemIdSupportingValue = itemIdSupportingValueObj == null ? null
+                    : String.valueOf(itemIdSupportingValueObj);
+            return new ItemId(itemIdValue, itemIdSupportingValue);
         }
+        return new ItemId(itemIdValue);
     }
 
     public Class<? extends Item> itemClass() {
@@ -196,6 +192,14 @@ public class ItemConfiguration {
         return propertyDescriptor;
     }
 
+    public PropertyAccessor propertyAccessor(final String propertyName) {
+        final PropertyAccessor propertyAccessor = propertyAccessors.get(propertyName);
+        if (propertyAccessor == null) {
+            throw new IllegalStateException("No property found '" + propertyName + "' for item :" + itemClass);
+        }
+        return propertyAccessor;
+    }
+
     public String indexNameForQuery(final AttributeQuery attributeQuery) {
         final StringBuffer stringBuffer = new StringBuffer();
 
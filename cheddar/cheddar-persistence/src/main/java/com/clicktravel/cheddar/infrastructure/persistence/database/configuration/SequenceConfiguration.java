@@ -21,6 +21,11 @@ package com.clicktravel.cheddar.infrastructure.persistence.database.configuratio
  *
  * Underlying database mechanisms may use this configuration to create sequences and seed them with a starting value.
  * The sequence name is typically unique within the context of the database schema.
+ *
+ * A block size greater than one allows each user of the database to reserve keys in blocks, handing them out locally
+ * and reserving the next block once fewer than the refill watermark remain. This reduces writes to the sequence at
+ * the cost of keys no longer being issued in strictly increasing order across users, and of unused keys in reserved
+ * blocks being skipped.
  */
 public class SequenceConfiguration {
 
@@ -28,16 +33,33 @@ public class SequenceConfiguration {
 
     private final long startingValue;
 
+    private final int blockSize;
+
+    private final int refillWatermark;
+
     public SequenceConfiguration(final String sequenceName) {
         this(sequenceName, 1);
     }
 
     public SequenceConfiguration(final String sequenceName, final long startingValue) {
+        this(sequenceName, startingValue, 1, 0);
+    }
+
+    public SequenceConfiguration(final String sequenceName, final long startingValue, final int blockSize,
+            final int refillWatermark) {
         if (sequenceName == null || sequenceName.isEmpty()) {
             throw new IllegalArgumentException("Sequence name must not be empty");
         }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be more than zero");
+        }
+        if (refillWatermark < 0 || refillWatermark >= blockSize) {
+            throw new IllegalArgumentException("Refill watermark must be at least zero and less than the block size");
+        }
         this.sequenceName = sequenceName;
         this.startingValue = startingValue;
+        this.blockSize = blockSize;
+        this.refillWatermark = refillWatermark;
     }
 
     public String sequenceName() {
@@ -48,4 +70,12 @@ public class SequenceConfiguration {
         return startingValue;
     }
 
+    public int blockSize() {
+        return blockSize;
+    }
+
+    public int refillWatermark() {
+        return refillWatermark;
+    }
+
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.database.options;
+
+/**
+ * FetchOptions control how much of a query result is fetched and where fetching starts
+ */
+public class FetchOptions {
+
+    /**
+     * Maximum number of items returned by the fetch, or {@code null} for all matching items
+     */
+    private Integer limit;
+
+    /**
+     * Maximum number of items requested from the store in a single round trip, or {@code null} to let the store decide
+     */
+    private Integer pageSize;
+
+    /**
+     * Opaque cursor returned by a previous fetch for the same query, or {@code null} to start from the beginning
+     */
+    private String cursor;
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(final Integer limit) {
+        if (limit != null && limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        this.limit = limit;
+    }
+
+    public Integer getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(final Integer pageSize) {
+        if (pageSize != null && pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        this.pageSize = pageSize;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(final String cursor) {
+        this.cursor = cursor;
+    }
+
+    public FetchOptions withLimit(final Integer limit) {
+        setLimit(limit);
+        return this;
+    }
+
+    public FetchOptions withPageSize(final Integer pageSize) {
+        setPageSize(pageSize);
+        return this;
+    }
+
+    public FetchOptions withCursor(final String cursor) {
+        setCursor(cursor);
+        return this;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + (cursor == null ? 0 : cursor.hashCode());
+        result = prime * result + (limit == null ? 0 : limit.hashCode());
+        result = prime * result + (pageSize == null ? 0 : pageSize.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final FetchOptions other = (FetchOptions) obj;
+        if (cursor == null) {
+            if (other.cursor != null) {
+                return false;
+            }
+        } else if (!cursor.equals(other.cursor)) {
+            return false;
+        }
+        if (limit == null) {
+            if (other.limit != null) {
+                return false;
+            }
+        } else if (!limit.equals(other.limit)) {
+            return false;
+        }
+        if (pageSize == null) {
+            if (other.pageSize != null) {
+                return false;
+            }
+        } else if (!pageSize.equals(other.pageSize)) {
+            return false;
+        }
+        return true;
+    }
+}
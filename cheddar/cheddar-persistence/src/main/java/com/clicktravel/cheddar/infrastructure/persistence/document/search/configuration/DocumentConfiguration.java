@@ -22,6 +22,8 @@ import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.util.*;
 
+import com.clicktravel.cheddar.infrastructure.persistence.accessor.PropertyAccessor;
+import com.clicktravel.cheddar.infrastructure.persistence.accessor.PropertyAccessors;
 import com.clicktravel.cheddar.infrastructure.persistence.document.search.Document;
 
 public class DocumentConfiguration {
@@ -31,6 +33,7 @@ public class DocumentConfiguration {
     private final String namespace;
     private final Collection<IndexDefinition> indexDefinitions;
     private final Map<String, PropertyDescriptor> properties; // just used for access
+    private final Map<String, PropertyAccessor> propertyAccessors;
 
     public DocumentConfiguration(final Class<? extends Document> documentClass, final String namespace) {
         if (documentClass == null) {
@@ -54,6 +57,7 @@ public class DocumentConfiguration {
         } catch (final IntrospectionException e) {
             throw new IllegalStateException(e);
         }
+        propertyAccessors = PropertyAccessors.factory().propertyAccessors(documentClass);
     }
 
     public void registerIndexes(final Collection<IndexDefinition> indexDefinitions) {
@@ -78,6 +82,15 @@ public class DocumentConfiguration {
         return Collections.unmodifiableMap(properties);
     }
 
+    public PropertyAccessor propertyAccessor(final String propertyName) {
+        final PropertyAccessor propertyAccessor = properties.containsKey(propertyName)
+                ? propertyAccessors.get(propertyName) : null;
+        if (propertyAccessor == null) {
+            throw new IllegalStateException("No property found for index: " + propertyName);
+        }
+        return propertyAccessor;
+    }
+
     public Collection<IndexDefinition> indexDefinitions() {
         return Collections.unmodifiableCollection(indexDefinitions);
     }
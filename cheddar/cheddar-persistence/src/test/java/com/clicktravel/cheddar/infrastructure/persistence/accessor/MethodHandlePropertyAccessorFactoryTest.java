@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.accessor;
+
+import static com.clicktravel.common.random.Randoms.randomInt;
+import static com.clicktravel.common.random.Randoms.randomString;
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.clicktravel.cheddar.infrastructure.persistence.database.StubItem;
+
+public class MethodHandlePropertyAccessorFactoryTest {
+
+    @Test
+    public void shouldReturnSameAccessors_onRepeatedCallsForSameClass() {
+        // Given
+        final PropertyAccessorFactory propertyAccessorFactory = new MethodHandlePropertyAccessorFactory();
+
+        // When
+        final Map<String, PropertyAccessor> firstPropertyAccessors = propertyAccessorFactory
+                .propertyAccessors(StubItem.class);
+        final Map<String, PropertyAccessor> secondPropertyAccessors = propertyAccessorFactory
+                .propertyAccessors(StubItem.class);
+
+        // Then
+        assertSame(firstPropertyAccessors, secondPropertyAccessors);
+        assertTrue(firstPropertyAccessors.containsKey("stringProperty"));
+        assertTrue(firstPropertyAccessors.containsKey("integerProperty"));
+    }
+
+    @Test
+    public void shouldGetAndSetPropertyValues_withPropertyAccessor() {
+        // Given
+        final PropertyAccessorFactory propertyAccessorFactory = new MethodHandlePropertyAccessorFactory();
+        final PropertyAccessor stringPropertyAccessor = propertyAccessorFactory.propertyAccessor(StubItem.class,
+                "stringProperty");
+        final PropertyAccessor integerPropertyAccessor = propertyAccessorFactory.propertyAccessor(StubItem.class,
+                "integerProperty");
+        final StubItem stubItem = new StubItem();
+        final String stringProperty = randomString();
+        final Integer integerProperty = randomInt(100);
+
+        // When
+        stringPropertyAccessor.setValue(stubItem, stringProperty);
+        integerPropertyAccessor.setValue(stubItem, integerProperty);
+
+        // Then
+        assertEquals(stringProperty, stubItem.getStringProperty());
+        assertEquals(integerProperty, stubItem.getIntegerProperty());
+        assertEquals(stringProperty, stringPropertyAccessor.getValue(stubItem));
+        assertEquals(integerProperty, integerPropertyAccessor.getValue(stubItem));
+        assertEquals(String.class, stringPropertyAccessor.propertyType());
+    }
+
+    @Test
+    public void shouldNotBeWritable_withReadOnlyProperty() {
+        // Given
+        final PropertyAccessorFactory propertyAccessorFactory = new MethodHandlePropertyAccessorFactory();
+
+        // When
+        final PropertyAccessor classPropertyAccessor = propertyAccessorFactory.propertyAccessor(StubItem.class,
+                "class");
+
+        // Then
+        assertTrue(classPropertyAccessor.isReadable());
+        assertFalse(classPropertyAccessor.isWritable());
+        assertEquals(StubItem.class, classPropertyAccessor.getValue(new StubItem()));
+    }
+
+    @Test
+    public void shouldNotReturnPropertyAccessor_withUnknownPropertyName() {
+        // Given
+        final PropertyAccessorFactory propertyAccessorFactory = new MethodHandlePropertyAccessorFactory();
+        final String propertyName = randomString(10);
+
+        // When
+        IllegalStateException actualException = null;
+        try {
+            propertyAccessorFactory.propertyAccessor(StubItem.class, propertyName);
+        } catch (final IllegalStateException e) {
+            actualException = e;
+        }
+
+        // Then
+        assertNotNull(actualException);
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.cache;
+
+import static com.clicktravel.common.random.Randoms.randomId;
+import static com.clicktravel.common.random.Randoms.randomInt;
+import static com.clicktravel.common.random.Randoms.randomString;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.clicktravel.cheddar.infrastructure.persistence.database.DatabaseTemplate;
+import com.clicktravel.cheddar.infrastructure.persistence.database.ItemId;
+import com.clicktravel.cheddar.infrastructure.persistence.database.StubItem;
+import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.DatabaseSchemaHolder;
+import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.ItemConfiguration;
+import com.clicktravel.cheddar.infrastructure.persistence.database.exception.OptimisticLockException;
+import com.clicktravel.cheddar.infrastructure.persistence.database.query.KeySetQuery;
+
+public class CachingDatabaseTemplateTest {
+
+    private DatabaseTemplate mockDatabaseTemplate;
+    private ItemCache mockItemCache;
+    private String schemaName;
+    private String tableName;
+    private long expireSeconds;
+    private CachingDatabaseTemplate cachingDatabaseTemplate;
+
+    @Before
+    public void setUp() {
+        mockDatabaseTemplate = mock(DatabaseTemplate.class);
+        mockItemCache = mock(ItemCache.class);
+        schemaName = randomString(10);
+        tableName = randomString(10);
+        expireSeconds = 1 + randomInt(100);
+        final DatabaseSchemaHolder databaseSchemaHolder = new DatabaseSchemaHolder(schemaName,
+                Arrays.asList(new ItemConfiguration(StubItem.class, tableName)));
+        cachingDatabaseTemplate = new CachingDatabaseTemplate(mockDatabaseTemplate, mockItemCache,
+                databaseSchemaHolder, 1);
+        cachingDatabaseTemplate.configureCaching(StubItem.class, expireSeconds);
+    }
+
+    private StubItem randomStubItem(final long version) {
+        final StubItem stubItem = new StubItem();
+        stubItem.setId(randomId());
+        stubItem.setStringProperty(randomString());
+        stubItem.setVersion(version);
+        return stubItem;
+    }
+
+    private String cacheKey(final StubItem stubItem) {
+        return schemaName + "." + tableName + ":" + stubItem.getId();
+    }
+
+    @Test
+    public void shouldReadFromCache_withCachedItem() {
+        // Given
+        final StubItem stubItem = randomStubItem(1 + randomInt(10));
+        when(mockItemCache.getItem(eq(cacheKey(stubItem)), anyLong())).thenReturn(CachedItem.present(stubItem));
+
+        // When
+        final StubItem returnedItem = cachingDatabaseTemplate.read(new ItemId(stubItem.getId()), StubItem.class);
+
+        // Then
+        assertSame(stubItem, returnedItem);
+        verifyZeroInteractions(mockDatabaseTemplate);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldReadFromTemplateAndPopulateCache_withCacheMiss() {
+        // Given
+        final StubItem stubItem = randomStubItem(1 + randomInt(10));
+        final ItemId itemId = new ItemId(stubItem.getId());
+        when(mockDatabaseTemplate.read(itemId, StubItem.class)).thenReturn(stubItem);
+
+        // When
+        final StubItem returnedItem = cachingDatabaseTemplate.read(itemId, StubItem.class);
+
+        // Then
+        assertSame(stubItem, returnedItem);
+        final ArgumentCaptor<CachedItem> cachedItemCaptor = ArgumentCaptor.forClass(CachedItem.class);
+        final ArgumentCaptor<Predicate<Object>> conditionCaptor = ArgumentCaptor.forClass(Predicate.class);
+        verify(mockItemCache).putItemIf(eq(cacheKey(stubItem)), cachedItemCaptor.capture(), eq(expireSeconds),
+                eq(1L), conditionCaptor.capture());
+        assertSame(stubItem, cachedItemCaptor.getValue().item());
+        final Long version = stubItem.getVersion();
+        assertTrue(conditionCaptor.getValue().test(CachedItem.present(randomStubItem(version - 1))));
+        assertTrue(conditionCaptor.getValue().test(CachedItem.unknown()));
+        assertFalse(conditionCaptor.getValue().test(CachedItem.present(randomStubItem(version))));
+        assertFalse(conditionCaptor.getValue().test(CachedItem.deleted(randomStubItem(version + 1))));
+    }
+
+    @Test
+    public void shouldNotPopulateCache_withNewerVersionWrittenDuringRead() {
+        // Given
+        final LocalItemCache localItemCache = new LocalItemCache(1 + randomInt(100));
+        final CachingDatabaseTemplate localCachingDatabaseTemplate = new CachingDatabaseTemplate(mockDatabaseTemplate,
+                localItemCache, new DatabaseSchemaHolder(schemaName,
+                        Arrays.asList(new ItemConfiguration(StubItem.class, tableName))), 1);
+        localCachingDatabaseTemplate.configureCaching(StubItem.class, expireSeconds);
+        final long version = 1 + randomInt(10);
+        final StubItem stubItem = randomStubItem(version);
+        final ItemId itemId = new ItemId(stubItem.getId());
+        final StubItem newerStubItem = randomStubItem(version + 1);
+        when(mockDatabaseTemplate.read(itemId, StubItem.class)).thenAnswer(invocation -> {
+            localItemCache.putItem(cacheKey(stubItem), CachedItem.present(newerStubItem), expireSeconds);
+            return stubItem;
+        });
+
+        // When
+        final StubItem returnedItem = localCachingDatabaseTemplate.read(itemId, StubItem.class);
+
+        // Then
+        assertSame(stubItem, returnedItem);
+        assertEquals(newerStubItem, ((CachedItem) localItemCache.getItem(cacheKey(stubItem), 1)).item());
+    }
+
+    @Test
+    public void shouldNotChangeCachedItem_withChangesToReadAndUpdatedItems() {
+        // Given
+        final LocalItemCache localItemCache = new LocalItemCache(1 + randomInt(100));
+        final CachingDatabaseTemplate localCachingDatabaseTemplate = new CachingDatabaseTemplate(mockDatabaseTemplate,
+                localItemCache, new DatabaseSchemaHolder(schemaName,
+                        Arrays.asList(new ItemConfiguration(StubItem.class, tableName))), 1);
+        localCachingDatabaseTemplate.configureCaching(StubItem.class, expireSeconds);
+        final StubItem stubItem = randomStubItem(1 + randomInt(10));
+        final ItemId itemId = new ItemId(stubItem.getId());
+        final String stringProperty = stubItem.getStringProperty();
+        when(mockDatabaseTemplate.update(stubItem)).thenReturn(stubItem);
+        localCachingDatabaseTemplate.update(stubItem);
+        final Long version = stubItem.getVersion();
+
+        // When
+        stubItem.setVersion(version + 1);
+        localCachingDatabaseTemplate.read(itemId, StubItem.class).setStringProperty(randomString());
+
+        // Then
+        final StubItem cachedItem = localCachingDatabaseTemplate.read(itemId, StubItem.class);
+        assertEquals(version, cachedItem.getVersion());
+        assertEquals(stringProperty, cachedItem.getStringProperty());
+        verify(mockDatabaseTemplate, never()).read(any(ItemId.class), any());
+    }
+
+    @Test
+    public void shouldReadFromTemplate_withDeletedCachedItem() {
+        // Given
+        final StubItem stubItem = randomStubItem(1 + randomInt(10));
+        final ItemId itemId = new ItemId(stubItem.getId());
+        when(mockItemCache.getItem(eq(cacheKey(stubItem)), anyLong())).thenReturn(CachedItem.deleted(stubItem));
+        when(mockDatabaseTemplate.read(itemId, StubItem.class)).thenReturn(stubItem);
+
+        // When
+        cachingDatabaseTemplate.read(itemId, StubItem.class);
+
+        // Then
+        verify(mockDatabaseTemplate).read(itemId, StubItem.class);
+        verify(mockItemCache, never()).putItem(anyString(), any(), anyLong());
+    }
+
+    @Test
+    public void shouldWriteCacheEntry_withUpdate() {
+        // Given
+        final StubItem stubItem = randomStubItem(1 + randomInt(10));
+        when(mockDatabaseTemplate.update(stubItem)).thenReturn(stubItem);
+
+        // When
+        cachingDatabaseTemplate.update(stubItem);
+
+        // Then
+        final ArgumentCaptor<CachedItem> cachedItemCaptor = ArgumentCaptor.forClass(CachedItem.class);
+        verify(mockItemCache).putItem(eq(cacheKey(stubItem)), cachedItemCaptor.capture(), eq(expireSeconds));
+        assertSame(stubItem, cachedItemCaptor.getValue().item());
+    }
+
+    @Test
+    public void shouldInvalidateCacheEntry_withFailedUpdate() {
+        // Given
+        final StubItem stubItem = randomStubItem(1 + randomInt(10));
+        when(mockDatabaseTemplate.update(stubItem)).thenThrow(new OptimisticLockException(randomString()));
+
+        // When
+        OptimisticLockException actualException = null;
+        try {
+            cachingDatabaseTemplate.update(stubItem);
+        } catch (final OptimisticLockException e) {
+            actualException = e;
+        }
+
+        // Then
+        assertNotNull(actualException);
+        final ArgumentCaptor<CachedItem> cachedItemCaptor = ArgumentCaptor.forClass(CachedItem.class);
+        verify(mockItemCache).putItem(eq(cacheKey(stubItem)), cachedItemCaptor.capture(), eq(expireSeconds));
+        assertNull(cachedItemCaptor.getValue().item());
+        assertTrue(cachedItemCaptor.getValue().isSupersededBy(null));
+    }
+
+    @Test
+    public void shouldMarkCacheEntryDeleted_withDelete() {
+        // Given
+        final long version = 1 + randomInt(10);
+        final StubItem stubItem = randomStubItem(version);
+
+        // When
+        cachingDatabaseTemplate.delete(stubItem);
+
+        // Then
+        verify(mockDatabaseTemplate).delete(stubItem);
+        final ArgumentCaptor<CachedItem> cachedItemCaptor = ArgumentCaptor.forClass(CachedItem.class);
+        verify(mockItemCache).putItem(eq(cacheKey(stubItem)), cachedItemCaptor.capture(), eq(expireSeconds));
+        assertNull(cachedItemCaptor.getValue().item());
+        assertFalse(cachedItemCaptor.getValue().isSupersededBy(version));
+        assertTrue(cachedItemCaptor.getValue().isSupersededBy(version + 1));
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void shouldFetchOnlyMissedItems_withKeySetQuery() {
+        // Given
+        final StubItem cachedStubItem = randomStubItem(1 + randomInt(10));
+        final StubItem missedStubItem = randomStubItem(1 + randomInt(10));
+        when(mockItemCache.getItems(anyCollection(), anyLong())).thenAnswer(invocation -> {
+            final Collection<String> keys = invocation.getArgument(0);
+            final Map<String, Object> cachedItems = new HashMap<>();
+            if (keys.contains(cacheKey(cachedStubItem))) {
+                cachedItems.put(cacheKey(cachedStubItem), CachedItem.present(cachedStubItem));
+            }
+            return cachedItems;
+        });
+        final ItemId missedItemId = new ItemId(missedStubItem.getId());
+        when(mockDatabaseTemplate.fetch(new KeySetQuery(new LinkedHashSet<>(Arrays.asList(missedItemId))),
+                StubItem.class)).thenReturn(Arrays.asList(missedStubItem));
+        final KeySetQuery query = new KeySetQuery(
+                Arrays.asList(missedItemId, new ItemId(cachedStubItem.getId())));
+
+        // When
+        final Collection<StubItem> returnedItems = cachingDatabaseTemplate.fetch(query, StubItem.class);
+
+        // Then
+        assertEquals(Arrays.asList(missedStubItem, cachedStubItem), new ArrayList<>(returnedItems));
+        final ArgumentCaptor<CachedItem> cachedItemCaptor = ArgumentCaptor.forClass(CachedItem.class);
+        verify(mockItemCache).putItemIf(eq(cacheKey(missedStubItem)), cachedItemCaptor.capture(), eq(expireSeconds),
+                eq(1L), any(Predicate.class));
+        assertSame(missedStubItem, cachedItemCaptor.getValue().item());
+        verify(mockItemCache, never()).putItemIf(eq(cacheKey(cachedStubItem)), any(), anyLong(), anyLong(), any());
+        verify(mockItemCache, never()).putItems(anyMap(), anyLong());
+        verify(mockItemCache, never()).getItem(anyString(), anyLong());
+    }
+
+    @Test
+    public void shouldNotUseCache_withItemClassNotCached() {
+        // Given
+        final DatabaseSchemaHolder databaseSchemaHolder = new DatabaseSchemaHolder(schemaName,
+                Arrays.asList(new ItemConfiguration(StubItem.class, tableName)));
+        final CachingDatabaseTemplate uncachedDatabaseTemplate = new CachingDatabaseTemplate(mockDatabaseTemplate,
+                mockItemCache, databaseSchemaHolder, 1);
+        final StubItem stubItem = randomStubItem(1 + randomInt(10));
+        final ItemId itemId = new ItemId(stubItem.getId());
+        when(mockDatabaseTemplate.read(itemId, StubItem.class)).thenReturn(stubItem);
+
+        // When
+        final StubItem returnedItem = uncachedDatabaseTemplate.read(itemId, StubItem.class);
+
+        // Then
+        assertSame(stubItem, returnedItem);
+        verifyZeroInteractions(mockItemCache);
+    }
+}
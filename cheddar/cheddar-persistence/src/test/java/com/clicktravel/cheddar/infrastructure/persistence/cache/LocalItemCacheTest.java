@@ -0,0 +1,191 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.cache;
+
+import static com.clicktravel.common.random.Randoms.randomInt;
+import static com.clicktravel.common.random.Randoms.randomString;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LocalItemCacheTest {
+
+    @Test
+    public void shouldGetItem_withPutItem() {
+        // Given
+        final LocalItemCache localItemCache = new LocalItemCache(1 + randomInt(100));
+        final String key = randomString();
+        final String item = randomString();
+        localItemCache.putItem(key, item, 1 + randomInt(100));
+
+        // When
+        final Object cachedItem = localItemCache.getItem(key, 1);
+
+        // Then
+        assertEquals(item, cachedItem);
+    }
+
+    @Test
+    public void shouldNotChangeCachedItem_withChangesToPutAndReturnedItems() {
+        // Given
+        final LocalItemCache localItemCache = new LocalItemCache(1 + randomInt(100));
+        final String key = randomString();
+        final List<String> item = new ArrayList<>(Arrays.asList(randomString(), randomString()));
+        final List<String> originalItem = new ArrayList<>(item);
+        localItemCache.putItem(key, item, 0);
+        item.add(randomString());
+
+        // When
+        @SuppressWarnings("unchecked")
+        final List<String> returnedItem = (List<String>) localItemCache.getItem(key, 1);
+        returnedItem.add(randomString());
+
+        // Then
+        assertEquals(originalItem, localItemCache.getItem(key, 1));
+    }
+
+    @Test
+    public void shouldNotGetItem_withExpiredItem() throws Exception {
+        // Given
+        final LocalItemCache localItemCache = new LocalItemCache(1 + randomInt(100));
+        final String key = randomString();
+        localItemCache.putItem(key, randomString(), 1);
+        Thread.sleep(1100);
+
+        // When
+        final Object cachedItem = localItemCache.getItem(key, 1);
+
+        // Then
+        assertNull(cachedItem);
+    }
+
+    @Test
+    public void shouldNotGetItem_withInvalidatedItem() {
+        // Given
+        final LocalItemCache localItemCache = new LocalItemCache(1 + randomInt(100));
+        final String key = randomString();
+        localItemCache.putItem(key, randomString(), 0);
+
+        // When
+        localItemCache.invalidate(key);
+
+        // Then
+        assertNull(localItemCache.getItem(key, 1));
+    }
+
+    @Test
+    public void shouldBoundSize_withMoreItemsThanMaximumSize() {
+        // Given
+        final int maximumSize = 1 + randomInt(100);
+        final LocalItemCache localItemCache = new LocalItemCache(maximumSize);
+
+        // When
+        for (int n = 0; n < maximumSize * 3; n++) {
+            localItemCache.putItem(randomString(), randomString(), 0);
+        }
+
+        // Then
+        assertTrue(localItemCache.size() <= maximumSize);
+    }
+
+    @Test
+    public void shouldKeepFrequentlyReadItem_withScanOfItemsReadOnce() {
+        // Given
+        final LocalItemCache localItemCache = new LocalItemCache(200);
+        final String hotKey = randomString();
+        final String hotItem = randomString();
+        localItemCache.putItem(hotKey, hotItem, 0);
+        for (int n = 0; n < 5; n++) {
+            localItemCache.getItem(hotKey, 1);
+        }
+
+        // When
+        for (int n = 0; n < 1000; n++) {
+            localItemCache.putItem(randomString(), randomString(), 0);
+            if (n % 50 == 0) {
+                localItemCache.getItem(hotKey, 1);
+            }
+        }
+
+        // Then
+        assertEquals(hotItem, localItemCache.getItem(hotKey, 1));
+    }
+
+    @Test
+    public void shouldPutItem_withPutItemIfAndNoCurrentItem() {
+        // Given
+        final LocalItemCache localItemCache = new LocalItemCache(1 + randomInt(100));
+        final String key = randomString();
+        final String item = randomString();
+
+        // When
+        final boolean put = localItemCache.putItemIf(key, item, 0, 1, currentItem -> false);
+
+        // Then
+        assertTrue(put);
+        assertEquals(item, localItemCache.getItem(key, 1));
+    }
+
+    @Test
+    public void shouldOnlyPutItem_withPutItemIfAndConditionAcceptingCurrentItem() {
+        // Given
+        final LocalItemCache localItemCache = new LocalItemCache(1 + randomInt(100));
+        final String key = randomString();
+        final String currentItem = randomString();
+        localItemCache.putItem(key, currentItem, 0);
+        final String acceptedItem = randomString();
+
+        // When
+        final boolean rejectedPut = localItemCache.putItemIf(key, randomString(), 0, 1,
+                item -> !currentItem.equals(item));
+        final boolean acceptedPut = localItemCache.putItemIf(key, acceptedItem, 0, 1, currentItem::equals);
+
+        // Then
+        assertFalse(rejectedPut);
+        assertTrue(acceptedPut);
+        assertEquals(acceptedItem, localItemCache.getItem(key, 1));
+    }
+
+    @Test
+    public void shouldNotOverwriteConcurrentPut_withPutItemIf() throws Exception {
+        // Given
+        final LocalItemCache localItemCache = new LocalItemCache(1 + randomInt(100));
+        final String key = randomString();
+        localItemCache.putItem(key, randomString(), 0);
+        final String concurrentItem = randomString();
+        final Thread concurrentWriter = new Thread(() -> localItemCache.putItem(key, concurrentItem, 0));
+
+        // When
+        localItemCache.putItemIf(key, randomString(), 0, 1, currentItem -> {
+            concurrentWriter.start();
+            try {
+                concurrentWriter.join(200);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+        concurrentWriter.join();
+
+        // Then
+        assertEquals(concurrentItem, localItemCache.getItem(key, 1));
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.cache;
+
+import static com.clicktravel.common.random.Randoms.randomInt;
+import static com.clicktravel.common.random.Randoms.randomString;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TieredItemCacheTest {
+
+    private LocalItemCache localItemCache;
+    private ItemCache mockRemoteItemCache;
+    private TieredItemCache tieredItemCache;
+
+    @Before
+    public void setUp() {
+        localItemCache = new LocalItemCache(100);
+        mockRemoteItemCache = mock(ItemCache.class);
+        tieredItemCache = new TieredItemCache(localItemCache, mockRemoteItemCache, 1 + randomInt(100));
+    }
+
+    @Test
+    public void shouldGetItemFromRemoteCacheOnce_withRepeatedGets() {
+        // Given
+        final String key = randomString();
+        final String item = randomString();
+        when(mockRemoteItemCache.getItem(eq(key), anyLong())).thenReturn(item);
+
+        // When
+        tieredItemCache.getItem(key, 1);
+        final Object cachedItem = tieredItemCache.getItem(key, 1);
+
+        // Then
+        assertEquals(item, cachedItem);
+        verify(mockRemoteItemCache, times(1)).getItem(eq(key), anyLong());
+    }
+
+    @Test
+    public void shouldPutItemInBothCachesAndPublishInvalidation_withPutItem() {
+        // Given
+        final ItemCacheInvalidationPublisher mockInvalidationPublisher = mock(ItemCacheInvalidationPublisher.class);
+        tieredItemCache.configureInvalidationPublisher(mockInvalidationPublisher);
+        final String key = randomString();
+        final String item = randomString();
+        final long expire = 1 + randomInt(100);
+
+        // When
+        tieredItemCache.putItem(key, item, expire);
+
+        // Then
+        verify(mockRemoteItemCache).putItem(key, item, expire);
+        assertEquals(item, localItemCache.getItem(key, 1));
+        verify(mockInvalidationPublisher).publishInvalidation(tieredItemCache.cacheId(), key);
+    }
+
+    @Test
+    public void shouldInvalidateLocalItem_withInvalidationFromOtherCache() {
+        // Given
+        final String key = randomString();
+        tieredItemCache.putItem(key, randomString(), 0);
+
+        // When
+        tieredItemCache.invalidateLocal(randomString(), key);
+
+        // Then
+        assertNull(localItemCache.getItem(key, 1));
+    }
+
+    @Test
+    public void shouldKeepLocalItem_withOwnInvalidation() {
+        // Given
+        final String key = randomString();
+        final String item = randomString();
+        tieredItemCache.putItem(key, item, 0);
+
+        // When
+        tieredItemCache.invalidateLocal(tieredItemCache.cacheId(), key);
+
+        // Then
+        assertEquals(item, localItemCache.getItem(key, 1));
+    }
+
+    @Test
+    public void shouldNotPutLocalItem_withPutItemIfRejectedByRemoteCache() {
+        // Given
+        final String key = randomString();
+        localItemCache.putItem(key, randomString(), 0);
+        final Predicate<Object> condition = currentItem -> false;
+        final long expire = 1 + randomInt(100);
+        when(mockRemoteItemCache.putItemIf(eq(key), any(), eq(expire), eq(1L), eq(condition))).thenReturn(false);
+
+        // When
+        final boolean put = tieredItemCache.putItemIf(key, randomString(), expire, 1, condition);
+
+        // Then
+        assertFalse(put);
+        assertNull(localItemCache.getItem(key, 1));
+    }
+
+    @Test
+    public void shouldPutLocalItem_withPutItemIfAcceptedByRemoteCache() {
+        // Given
+        final String key = randomString();
+        final String item = randomString();
+        final Predicate<Object> condition = currentItem -> true;
+        final long expire = 1 + randomInt(100);
+        when(mockRemoteItemCache.putItemIf(key, item, expire, 1, condition)).thenReturn(true);
+
+        // When
+        final boolean put = tieredItemCache.putItemIf(key, item, expire, 1, condition);
+
+        // Then
+        assertTrue(put);
+        assertEquals(item, localItemCache.getItem(key, 1));
+    }
+
+    @Test
+    public void shouldPutItemAsEncodedWhenCalled_withPutItemAsync() {
+        // Given
+        final String key = randomString();
+        final List<String> item = new ArrayList<>(Arrays.asList(randomString(), randomString()));
+        final List<String> originalItem = new ArrayList<>(item);
+        final long expire = 1 + randomInt(100);
+        final CompletableFuture<Void> remotePut = new CompletableFuture<>();
+        when(mockRemoteItemCache.putItemAsync(key, item, expire)).thenReturn(remotePut);
+
+        // When
+        final CompletableFuture<Void> put = tieredItemCache.putItemAsync(key, item, expire);
+        item.add(randomString());
+        remotePut.complete(null);
+
+        // Then
+        assertTrue(put.isDone());
+        assertEquals(originalItem, localItemCache.getItem(key, 1));
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.database;
+
+import static com.clicktravel.common.random.Randoms.randomInt;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.clicktravel.cheddar.infrastructure.persistence.database.options.FetchOptions;
+
+public class FetchResultTest {
+
+    private List<StubItem> randomStubItems(final int itemCount) {
+        final List<StubItem> stubItems = new ArrayList<>();
+        for (int n = 0; n < itemCount; n++) {
+            stubItems.add(new StubItem());
+        }
+        return stubItems;
+    }
+
+    @Test
+    public void shouldReturnAllItems_withNoLimit() {
+        // Given
+        final List<StubItem> stubItems = randomStubItems(10 + randomInt(10));
+        final int pageSize = 1 + randomInt(5);
+        final ItemPageLoader<StubItem> itemPageLoader = new KeyOffsetItemPageLoader<StubItem, StubItem>(stubItems,
+                pageItems -> pageItems, null);
+
+        // When
+        final FetchResult<StubItem> fetchResult = new FetchResult<>(itemPageLoader,
+                new FetchOptions().withPageSize(pageSize));
+        final List<StubItem> fetchedItems = fetchResult.getItems();
+
+        // Then
+        assertEquals(stubItems, fetchedItems);
+        assertNull(fetchResult.getCursor());
+    }
+
+    @Test
+    public void shouldLoadOnlyRequiredPages_withLimit() {
+        // Given
+        final List<StubItem> stubItems = randomStubItems(20 + randomInt(10));
+        final int pageSize = 5;
+        final int limit = 1 + randomInt(10);
+        final AtomicInteger loadedItemCount = new AtomicInteger();
+        final ItemPageLoader<StubItem> itemPageLoader = new KeyOffsetItemPageLoader<StubItem, StubItem>(stubItems,
+                pageItems -> {
+                    loadedItemCount.addAndGet(pageItems.size());
+                    return pageItems;
+                }, null);
+
+        // When
+        final FetchResult<StubItem> fetchResult = new FetchResult<>(itemPageLoader,
+                new FetchOptions().withLimit(limit).withPageSize(pageSize));
+        final List<StubItem> fetchedItems = fetchResult.getItems();
+
+        // Then
+        assertEquals(stubItems.subList(0, limit), fetchedItems);
+        assertEquals(limit, loadedItemCount.get());
+        assertEquals(String.valueOf(limit), fetchResult.getCursor());
+    }
+
+    @Test
+    public void shouldResumeFromCursor_withCursorFromPreviousResult() {
+        // Given
+        final List<StubItem> stubItems = randomStubItems(10 + randomInt(10));
+        final int limit = 1 + randomInt(9);
+        final ItemPageLoader<StubItem> itemPageLoader = new KeyOffsetItemPageLoader<StubItem, StubItem>(stubItems,
+                pageItems -> pageItems, null);
+        final FetchResult<StubItem> firstFetchResult = new FetchResult<>(itemPageLoader,
+                new FetchOptions().withLimit(limit));
+        firstFetchResult.getItems();
+
+        // When
+        final FetchResult<StubItem> secondFetchResult = new FetchResult<>(itemPageLoader,
+                new FetchOptions().withCursor(firstFetchResult.getCursor()));
+        final List<StubItem> fetchedItems = secondFetchResult.getItems();
+
+        // Then
+        assertEquals(stubItems.subList(limit, stubItems.size()), fetchedItems);
+    }
+
+    @Test
+    public void shouldReturnCursorForStartOfPage_withPartlyConsumedPage() {
+        // Given
+        final List<StubItem> stubItems = randomStubItems(10);
+        final ItemPageLoader<StubItem> itemPageLoader = new KeyOffsetItemPageLoader<StubItem, StubItem>(stubItems,
+                pageItems -> pageItems, null);
+        final FetchResult<StubItem> fetchResult = new FetchResult<>(itemPageLoader,
+                new FetchOptions().withPageSize(4));
+        final Iterator<StubItem> iterator = fetchResult.iterator();
+
+        // When
+        for (int n = 0; n < 6; n++) {
+            iterator.next();
+        }
+
+        // Then
+        assertEquals("4", fetchResult.getCursor());
+    }
+
+    @Test
+    public void shouldNotTraverseTwice_withFetchResult() {
+        // Given
+        final ItemPageLoader<StubItem> itemPageLoader = new KeyOffsetItemPageLoader<StubItem, StubItem>(
+                randomStubItems(1), pageItems -> pageItems, null);
+        final FetchResult<StubItem> fetchResult = new FetchResult<>(itemPageLoader, new FetchOptions());
+        fetchResult.getItems();
+
+        // When
+        IllegalStateException actualException = null;
+        try {
+            fetchResult.iterator();
+        } catch (final IllegalStateException e) {
+            actualException = e;
+        }
+
+        // Then
+        assertNotNull(actualException);
+    }
+}
@@ -16,13 +16,22 @@
  */
 package com.clicktravel.cheddar.infrastructure.messaging.tx;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import com.clicktravel.cheddar.infrastructure.messaging.MessagePublisher;
 import com.clicktravel.cheddar.infrastructure.messaging.MessageSender;
 import com.clicktravel.cheddar.infrastructure.messaging.TypedMessage;
+import com.clicktravel.cheddar.infrastructure.messaging.exception.MessagePublishException;
+import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageSendException;
 import com.clicktravel.cheddar.infrastructure.tx.Transaction;
 
 public class MessagingTransaction implements Transaction {
@@ -48,10 +57,93 @@ public class MessagingTransaction implements Transaction {
         }
     }
 
+    /**
+     * Publishes the messages of this transaction concurrently. Messages of the same type are published in order by a
+     * single task; tasks for different message types run on the given executor, except the first which runs on the
+     * calling thread. Returns once every message has been published.
+     * @param messagePublisher {@link MessagePublisher} to publish messages with
+     * @param executor {@link Executor} to run publication tasks
+     * @throws MessagePublishException if any message could not be published
+     */
+    public void applyActions(final MessagePublisher<TypedMessage> messagePublisher, final Executor executor) {
+        final Map<String, List<TypedMessage>> messagesByType = new LinkedHashMap<>();
+        while (!messageActions.isEmpty()) {
+            final TypedMessage typedMessage = messageActions.remove().message();
+            messagesByType.computeIfAbsent(typedMessage.getType(), type -> new ArrayList<>()).add(typedMessage);
+        }
+        final List<CompletableFuture<Void>> publications = new ArrayList<>();
+        List<TypedMessage> callerMessages = null;
+        for (final List<TypedMessage> typedMessages : messagesByType.values()) {
+            if (callerMessages == null) {
+                callerMessages = typedMessages;
+            } else {
+                publications.add(CompletableFuture.runAsync(() -> publishAll(messagePublisher, typedMessages),
+                        executor));
+            }
+        }
+        RuntimeException failure = null;
+        if (callerMessages != null) {
+            try {
+                publishAll(messagePublisher, callerMessages);
+            } catch (final RuntimeException e) {
+                failure = e;
+            }
+        }
+        for (final CompletableFuture<Void> publication : publications) {
+            try {
+                publication.join();
+            } catch (final CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void publishAll(final MessagePublisher<TypedMessage> messagePublisher,
+            final List<TypedMessage> typedMessages) {
+        for (final TypedMessage typedMessage : typedMessages) {
+            messagePublisher.publish(typedMessage);
+        }
+    }
+
+    /**
+     * Sends the messages of this transaction in order. Consecutive messages without a delay are sent together as a
+     * batch.
+     * @param messageSender {@link MessageSender} to send messages with
+     * @throws MessageSendException if any message could not be sent; for a batch, the exception holds the messages
+     *             which could not be sent
+     */
     public void applyActions(final MessageSender<TypedMessage> messageSender) {
+        final List<TypedMessage> batch = new ArrayList<>();
         while (!messageActions.isEmpty()) {
             final MessageAction messageAction = messageActions.remove();
-            messageAction.apply(messageSender);
+            if (messageAction.delay() > 0) {
+                sendBatch(messageSender, batch);
+                messageAction.apply(messageSender);
+            } else {
+                batch.add(messageAction.message());
+            }
+        }
+        sendBatch(messageSender, batch);
+    }
+
+    private void sendBatch(final MessageSender<TypedMessage> messageSender, final List<TypedMessage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (batch.size() == 1) {
+            messageSender.send(batch.remove(0));
+            return;
+        }
+        final List<TypedMessage> failedMessages = messageSender.sendBatch(new ArrayList<>(batch));
+        batch.clear();
+        if (failedMessages != null && !failedMessages.isEmpty()) {
+            throw new MessageSendException("Unable to send " + failedMessages.size() + " messages in transaction: "
+                    + transactionId, failedMessages);
         }
     }
 
@@ -16,6 +16,12 @@
  */
 package com.clicktravel.cheddar.infrastructure.messaging.tx;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,13 +35,44 @@ import com.clicktravel.cheddar.infrastructure.tx.TransactionalResource;
 
 public class TransactionalMessagePublisher implements MessagePublisher<TypedMessage>, TransactionalResource {
 
+    /**
+     * Default maximum number of threads publishing messages for committing transactions
+     */
+    private static final int DEFAULT_MAX_CONCURRENT_PUBLISHES = 8;
+
+    /**
+     * Time (in seconds) an idle publisher thread is kept before it is stopped
+     */
+    private static final long PUBLISHER_THREAD_KEEP_ALIVE_SECONDS = 60;
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final MessagePublisher<TypedMessage> messagePublisher;
+    private final Executor publishExecutor;
     private final ThreadLocal<MessagingTransaction> currentTransaction = new ThreadLocal<MessagingTransaction>();
 
     public TransactionalMessagePublisher(final MessagePublisher<TypedMessage> messagePublisher) {
+        this(messagePublisher, DEFAULT_MAX_CONCURRENT_PUBLISHES);
+    }
+
+    /**
+     * @param messagePublisher {@link MessagePublisher} used to publish messages when a transaction is committed
+     * @param maxConcurrentPublishes Maximum number of threads publishing messages for committing transactions, in
+     *            addition to the committing threads themselves
+     */
+    public TransactionalMessagePublisher(final MessagePublisher<TypedMessage> messagePublisher,
+            final int maxConcurrentPublishes) {
         this.messagePublisher = messagePublisher;
+        final AtomicInteger threadSequenceNumber = new AtomicInteger();
+        final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(maxConcurrentPublishes,
+                maxConcurrentPublishes, PUBLISHER_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), r -> {
+                    final Thread thread = new Thread(r, "MessagePublisher:" + threadSequenceNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        publishExecutor = threadPoolExecutor;
     }
 
     private MessagingTransaction getCurrentTransaction() {
@@ -58,7 +95,7 @@ public class TransactionalMessagePublisher implements MessagePublisher<TypedMess
     public void commit() throws TransactionException {
         final MessagingTransaction transaction = getCurrentTransaction();
         logger.trace("Committing transaction: " + transaction.transactionId());
-        transaction.applyActions(messagePublisher);
+        transaction.applyActions(messagePublisher, publishExecutor);
         currentTransaction.remove();
         logger.trace("Transaction successfully committed: " + transaction.transactionId());
     }
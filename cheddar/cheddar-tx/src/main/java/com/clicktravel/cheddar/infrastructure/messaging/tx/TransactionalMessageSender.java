@@ -16,6 +16,10 @@
  */
 package com.clicktravel.cheddar.infrastructure.messaging.tx;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -69,6 +73,15 @@ public class TransactionalMessageSender implements MessageSender<TypedMessage>,
         transaction.addMessage(typedMessage);
     }
 
+    @Override
+    public List<TypedMessage> sendBatch(final Collection<TypedMessage> typedMessages) throws MessageSendException {
+        final MessagingTransaction transaction = getCurrentTransaction();
+        for (final TypedMessage typedMessage : typedMessages) {
+            transaction.addMessage(typedMessage);
+        }
+        return Collections.emptyList();
+    }
+
     @Override
     public void sendDelayedMessage(final TypedMessage typedMessage, final int delay) throws MessageSendException {
         final MessagingTransaction transaction = getCurrentTransaction();
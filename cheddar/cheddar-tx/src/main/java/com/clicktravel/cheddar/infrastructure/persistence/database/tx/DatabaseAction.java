@@ -29,6 +29,7 @@ public abstract class DatabaseAction<T> {
 
     private final T item;
     private final List<PersistenceExceptionHandler<?>> persistenceExceptionHandlers;
+    private ItemIdentityMap.ItemKey itemKey;
 
     public DatabaseAction(final T item, final List<PersistenceExceptionHandler<?>> persistenceExceptionHandlers) {
         this.item = item;
@@ -81,6 +82,21 @@ public abstract class DatabaseAction<T> {
         return item;
     }
 
+    List<PersistenceExceptionHandler<?>> persistenceExceptionHandlers() {
+        return persistenceExceptionHandlers;
+    }
+
+    /**
+     * @return the key of the item when the action was made, or {@code null} if it could not be determined
+     */
+    ItemIdentityMap.ItemKey itemKey() {
+        return itemKey;
+    }
+
+    void setItemKey(final ItemIdentityMap.ItemKey itemKey) {
+        this.itemKey = itemKey;
+    }
+
     @Override
     public String toString() {
         return "DatabaseAction (" + getClass().getSimpleName() + ") [item=" + item + "]";
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.database.tx;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+import com.clicktravel.cheddar.infrastructure.persistence.database.BatchDatabaseTemplate;
+import com.clicktravel.cheddar.infrastructure.persistence.database.BatchItemFailure;
+import com.clicktravel.cheddar.infrastructure.persistence.database.BatchWriteResult;
+import com.clicktravel.cheddar.infrastructure.persistence.database.DatabaseTemplate;
+import com.clicktravel.cheddar.infrastructure.persistence.database.Item;
+import com.clicktravel.cheddar.infrastructure.persistence.database.exception.handler.PersistenceExceptionHandler;
+import com.clicktravel.cheddar.infrastructure.persistence.database.tx.ItemIdentityMap.ItemKey;
+import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceException;
+
+/**
+ * Plans how the actions buffered by a transaction are applied at commit. The actions for each item are grouped,
+ * coalesced and applied in the order each item was first acted on. Actions for the same item instance are coalesced:
+ * <ul>
+ * <li>repeated updates become a single update of the latest state</li>
+ * <li>updates following a create are folded into the create</li>
+ * <li>a create followed by a delete cancels out, so neither reaches the database</li>
+ * <li>updates followed by a delete become just the delete</li>
+ * </ul>
+ * The persistence exception handlers of coalesced actions are combined. Items are identified by the table and key
+ * recorded with each action where known, otherwise by instance, so that a delete and a re-create of the same key with
+ * different instances stay in order.
+ * <p>
+ * Optionally, creates of items whose class allows batch writes, and which have no persistence exception handlers, are
+ * grouped into {@link BatchDatabaseTemplate#batchPut(List, Class)} requests; and the actions for different items are
+ * applied concurrently, so only the order of the actions for each item is kept. A batch of creates is written at the
+ * position of its first item. The first failure is rethrown once all started work has finished, with any further
+ * failures added to it as suppressed exceptions, and work not yet started is skipped.
+ */
+class DatabaseCommitPlanner {
+
+    private final ExecutorService executorService;
+    private final int maxConcurrentItems;
+    private final Predicate<Class<? extends Item>> batchCreatable;
+
+    /**
+     * Applies the actions sequentially, without batching
+     */
+    DatabaseCommitPlanner() {
+        this(null, 1, null);
+    }
+
+    /**
+     * @param executorService - executor on which the actions for different items are applied, or {@code null} to
+     *            apply them on the committing thread
+     * @param maxConcurrentItems - maximum number of items whose actions are applied at once
+     * @param batchCreatable - which item classes may be created with batch writes, or {@code null} for none
+     */
+    DatabaseCommitPlanner(final ExecutorService executorService, final int maxConcurrentItems,
+            final Predicate<Class<? extends Item>> batchCreatable) {
+        if (maxConcurrentItems < 1) {
+            throw new IllegalArgumentException("Maximum concurrent items must be positive");
+        }
+        this.executorService = executorService;
+        this.maxConcurrentItems = maxConcurrentItems;
+        this.batchCreatable = batchCreatable;
+    }
+
+    void apply(final Collection<DatabaseAction<?>> databaseActions, final DatabaseTemplate databaseTemplate)
+            throws Throwable {
+        final Map<Class<? extends Item>, List<Item>> batchCreates = new HashMap<>();
+        final List<CommitTask> tasks = new ArrayList<>();
+        for (final List<DatabaseAction<?>> itemActions : groupByItem(databaseActions)) {
+            final List<DatabaseAction<?>> coalescedActions = coalesce(itemActions);
+            if (coalescedActions.isEmpty()) {
+                continue;
+            }
+            final DatabaseAction<?> firstAction = coalescedActions.get(0);
+            final Item item = (Item) firstAction.item();
+            if (coalescedActions.size() == 1 && firstAction instanceof CreateAction
+                    && firstAction.persistenceExceptionHandlers().isEmpty()
+                    && isBatchCreatable(databaseTemplate, item)) {
+                List<Item> batchItems = batchCreates.get(item.getClass());
+                if (batchItems == null) {
+                    final Class<? extends Item> itemClass = item.getClass();
+                    final List<Item> newBatchItems = new ArrayList<>();
+                    batchCreates.put(itemClass, newBatchItems);
+                    tasks.add(() -> batchCreate((BatchDatabaseTemplate) databaseTemplate, itemClass, newBatchItems));
+                    batchItems = newBatchItems;
+                }
+                batchItems.add(item);
+            } else {
+                tasks.add(() -> {
+                    for (final DatabaseAction<?> databaseAction : coalescedActions) {
+                        databaseAction.apply(databaseTemplate);
+                    }
+                });
+            }
+        }
+        run(tasks);
+    }
+
+    private boolean isBatchCreatable(final DatabaseTemplate databaseTemplate, final Item item) {
+        return batchCreatable != null && databaseTemplate instanceof BatchDatabaseTemplate
+                && batchCreatable.test(item.getClass());
+    }
+
+    private static Collection<List<DatabaseAction<?>>> groupByItem(
+            final Collection<DatabaseAction<?>> databaseActions) {
+        final Map<ItemKey, List<DatabaseAction<?>>> actionsByKey = new HashMap<>();
+        final Map<Object, List<DatabaseAction<?>>> actionsByItem = new IdentityHashMap<>();
+        final List<List<DatabaseAction<?>>> itemActionLists = new ArrayList<>();
+        for (final DatabaseAction<?> databaseAction : databaseActions) {
+            final ItemKey itemKey = databaseAction.itemKey();
+            List<DatabaseAction<?>> itemActions = itemKey == null ? null : actionsByKey.get(itemKey);
+            if (itemActions == null) {
+                itemActions = actionsByItem.get(databaseAction.item());
+            }
+            if (itemActions == null) {
+                itemActions = new ArrayList<>();
+                itemActionLists.add(itemActions);
+            }
+            if (itemKey != null) {
+                actionsByKey.put(itemKey, itemActions);
+            }
+            actionsByItem.put(databaseAction.item(), itemActions);
+            itemActions.add(databaseAction);
+        }
+        return itemActionLists;
+    }
+
+    /**
+     * @param itemActions - actions for a single item, in the order they were added
+     * @return the fewest actions which leave the item in the same state
+     */
+    private static List<DatabaseAction<?>> coalesce(final List<DatabaseAction<?>> itemActions) {
+        final LinkedList<DatabaseAction<?>> coalescedActions = new LinkedList<>();
+        for (final DatabaseAction<?> databaseAction : itemActions) {
+            final DatabaseAction<?> lastAction = coalescedActions.peekLast();
+            final Item item = (Item) databaseAction.item();
+            if (lastAction == null || lastAction.item() != item) {
+                coalescedActions.add(databaseAction);
+            } else if (databaseAction instanceof UpdateAction && lastAction instanceof CreateAction) {
+                coalescedActions.removeLast();
+                coalescedActions.add(new CreateAction<>(item, handlers(lastAction, databaseAction)));
+            } else if (databaseAction instanceof UpdateAction && lastAction instanceof UpdateAction) {
+                coalescedActions.removeLast();
+                coalescedActions.add(new UpdateAction<>(item, handlers(lastAction, databaseAction),
+                        ((UpdateAction<?>) lastAction).versionIncrements()
+                                + ((UpdateAction<?>) databaseAction).versionIncrements()));
+            } else if (databaseAction instanceof DeleteAction && lastAction instanceof CreateAction) {
+                coalescedActions.removeLast();
+            } else if (databaseAction instanceof DeleteAction && lastAction instanceof UpdateAction) {
+                coalescedActions.removeLast();
+                coalescedActions.add(new DeleteAction<>(item, handlers(lastAction, databaseAction),
+                        ((UpdateAction<?>) lastAction).versionIncrements()));
+            } else {
+                coalescedActions.add(databaseAction);
+            }
+        }
+        return coalescedActions;
+    }
+
+    private static List<PersistenceExceptionHandler<?>> handlers(final DatabaseAction<?> firstAction,
+            final DatabaseAction<?> secondAction) {
+        final List<PersistenceExceptionHandler<?>> handlers = new ArrayList<>(
+                firstAction.persistenceExceptionHandlers());
+        handlers.addAll(secondAction.persistenceExceptionHandlers());
+        return handlers;
+    }
+
+    private <T extends Item> void batchCreate(final BatchDatabaseTemplate databaseTemplate, final Class<T> itemClass,
+            final List<Item> items) {
+        final List<T> typedItems = new ArrayList<>();
+        for (final Item item : items) {
+            item.setVersion(null);
+            typedItems.add(itemClass.cast(item));
+        }
+        final BatchWriteResult<T> batchWriteResult = databaseTemplate.batchPut(typedItems, itemClass);
+        if (batchWriteResult.hasFailures()) {
+            final List<PersistenceException> causes = new ArrayList<>();
+            for (final BatchItemFailure<T> batchItemFailure : batchWriteResult.getFailures()) {
+                causes.add(batchItemFailure.getCause());
+            }
+            throw withSuppressed(causes);
+        }
+    }
+
+    private void run(final List<CommitTask> tasks) throws Throwable {
+        if (executorService == null || tasks.size() < 2) {
+            for (final CommitTask task : tasks) {
+                task.run();
+            }
+            return;
+        }
+        final AtomicBoolean failed = new AtomicBoolean();
+        final Semaphore permits = new Semaphore(maxConcurrentItems);
+        final List<Future<Throwable>> futures = new ArrayList<>();
+        try {
+            for (final CommitTask task : tasks) {
+                permits.acquire();
+                if (failed.get()) {
+                    permits.release();
+                    break;
+                }
+                try {
+                    futures.add(executorService.submit(() -> {
+                        try {
+                            task.run();
+                            return null;
+                        } catch (final Throwable e) {
+                            failed.set(true);
+                            return e;
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                } catch (final RejectedExecutionException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+            final List<Throwable> failures = new ArrayList<>();
+            for (final Future<Throwable> future : futures) {
+                final Throwable taskFailure = future.get();
+                if (taskFailure != null) {
+                    failures.add(taskFailure);
+                }
+            }
+            if (!failures.isEmpty()) {
+                throw withSuppressed(failures);
+            }
+        } catch (final InterruptedException e) {
+            failed.set(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the first failure, with the other failures added to it as suppressed exceptions
+     */
+    private static <E extends Throwable> E withSuppressed(final List<E> failures) {
+        final E failure = failures.get(0);
+        for (final Throwable otherFailure : failures.subList(1, failures.size())) {
+            if (otherFailure != failure) {
+                failure.addSuppressed(otherFailure);
+            }
+        }
+        return failure;
+    }
+
+    private interface CommitTask {
+
+        void run() throws Throwable;
+    }
+}
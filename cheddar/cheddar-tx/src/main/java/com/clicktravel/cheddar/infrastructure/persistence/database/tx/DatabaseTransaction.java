@@ -16,6 +16,7 @@
  */
 package com.clicktravel.cheddar.infrastructure.persistence.database.tx;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
@@ -24,16 +25,19 @@ import java.util.UUID;
 import com.clicktravel.cheddar.infrastructure.persistence.database.DatabaseTemplate;
 import com.clicktravel.cheddar.infrastructure.persistence.database.Item;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.handler.PersistenceExceptionHandler;
+import com.clicktravel.cheddar.infrastructure.persistence.database.tx.ItemIdentityMap.ItemKey;
 import com.clicktravel.cheddar.infrastructure.tx.Transaction;
 
 public class DatabaseTransaction implements Transaction {
 
     private final Queue<DatabaseAction<?>> databaseActions;
     private final String transactionId;
+    private final ItemIdentityMap identityMap;
 
     public DatabaseTransaction() {
         databaseActions = new LinkedList<>();
         transactionId = UUID.randomUUID().toString();
+        identityMap = new ItemIdentityMap();
     }
 
     @Override
@@ -43,28 +47,56 @@ public class DatabaseTransaction implements Transaction {
 
     public <T extends Item> T addCreateAction(final T item,
             final List<PersistenceExceptionHandler<?>> persistenceExceptionHandlers) {
-        databaseActions.add(new CreateAction<T>(item, persistenceExceptionHandlers));
+        return addCreateAction(item, persistenceExceptionHandlers, null);
+    }
+
+    <T extends Item> T addCreateAction(final T item,
+            final List<PersistenceExceptionHandler<?>> persistenceExceptionHandlers, final ItemKey itemKey) {
+        addAction(new CreateAction<T>(item, persistenceExceptionHandlers), itemKey);
         item.setVersion(1l);
         return item;
     }
 
     public <T extends Item> T addUpdateAction(final T item,
             final List<PersistenceExceptionHandler<?>> persistenceExceptionHandlers) {
-        databaseActions.add(new UpdateAction<T>(item, persistenceExceptionHandlers));
+        return addUpdateAction(item, persistenceExceptionHandlers, null);
+    }
+
+    <T extends Item> T addUpdateAction(final T item,
+            final List<PersistenceExceptionHandler<?>> persistenceExceptionHandlers, final ItemKey itemKey) {
+        addAction(new UpdateAction<T>(item, persistenceExceptionHandlers), itemKey);
         item.setVersion(item.getVersion() + 1);
         return item;
     }
 
     public <T extends Item> void addDeleteAction(final T item,
             final List<PersistenceExceptionHandler<?>> persistenceExceptionHandlers) {
-        databaseActions.add(new DeleteAction<T>(item, persistenceExceptionHandlers));
+        addDeleteAction(item, persistenceExceptionHandlers, null);
+    }
+
+    <T extends Item> void addDeleteAction(final T item,
+            final List<PersistenceExceptionHandler<?>> persistenceExceptionHandlers, final ItemKey itemKey) {
+        addAction(new DeleteAction<T>(item, persistenceExceptionHandlers), itemKey);
+    }
+
+    private void addAction(final DatabaseAction<?> databaseAction, final ItemKey itemKey) {
+        databaseAction.setItemKey(itemKey);
+        databaseActions.add(databaseAction);
+    }
+
+    ItemIdentityMap identityMap() {
+        return identityMap;
     }
 
     public void applyActions(final DatabaseTemplate databaseTemplate) throws Throwable {
-        while (!databaseActions.isEmpty()) {
-            final DatabaseAction<?> databaseAction = databaseActions.remove();
-            databaseAction.apply(databaseTemplate);
-        }
+        applyActions(databaseTemplate, new DatabaseCommitPlanner());
+    }
+
+    void applyActions(final DatabaseTemplate databaseTemplate, final DatabaseCommitPlanner commitPlanner)
+            throws Throwable {
+        final List<DatabaseAction<?>> actions = new ArrayList<>(databaseActions);
+        databaseActions.clear();
+        commitPlanner.apply(actions, databaseTemplate);
     }
 
 }
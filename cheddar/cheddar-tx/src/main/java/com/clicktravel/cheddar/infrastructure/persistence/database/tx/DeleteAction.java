@@ -25,12 +25,27 @@ import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceE
 
 public class DeleteAction<T extends Item> extends DatabaseAction<T> {
 
+    private final int versionIncrements;
+
     public DeleteAction(final T item, final List<PersistenceExceptionHandler<?>> persistenceExceptionHandlers) {
+        this(item, persistenceExceptionHandlers, 0);
+    }
+
+    /**
+     * @param versionIncrements - number of times the item version was incremented by updates which this delete
+     *            supersedes, so the stored version can be restored before deleting
+     */
+    DeleteAction(final T item, final List<PersistenceExceptionHandler<?>> persistenceExceptionHandlers,
+            final int versionIncrements) {
         super(item, persistenceExceptionHandlers);
+        this.versionIncrements = versionIncrements;
     }
 
     @Override
     public void apply(final DatabaseTemplate databaseTemplate) throws Throwable {
+        if (versionIncrements != 0) {
+            item().setVersion(item().getVersion() - versionIncrements);
+        }
         try {
             databaseTemplate.delete(item());
         } catch (final PersistenceException e) {
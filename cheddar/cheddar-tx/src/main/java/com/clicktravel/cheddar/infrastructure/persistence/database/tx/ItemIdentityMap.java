@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.database.tx;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.clicktravel.cheddar.infrastructure.persistence.database.Item;
+import com.clicktravel.cheddar.infrastructure.persistence.database.ItemId;
+
+/**
+ * The items seen by a transaction, by key. An item is recorded when it is read, created or updated, and its key is
+ * recorded as absent when it is found not to exist or is deleted, so that repeat reads within the transaction are
+ * served from memory and see the transaction's own pending writes.
+ */
+class ItemIdentityMap {
+
+    private final Map<ItemKey, Item> items = new HashMap<>();
+    private final Map<Item, ItemKey> itemKeys = new IdentityHashMap<>();
+
+    boolean contains(final ItemKey itemKey) {
+        return items.containsKey(itemKey);
+    }
+
+    /**
+     * @return the item recorded for the key, or {@code null} if the key is recorded as absent or is not recorded
+     */
+    Item get(final ItemKey itemKey) {
+        return items.get(itemKey);
+    }
+
+    void put(final ItemKey itemKey, final Item item) {
+        final Item previousItem = items.put(itemKey, item);
+        if (previousItem != null && previousItem != item) {
+            itemKeys.remove(previousItem);
+        }
+        itemKeys.put(item, itemKey);
+    }
+
+    void putAbsent(final ItemKey itemKey) {
+        final Item previousItem = items.put(itemKey, null);
+        if (previousItem != null) {
+            itemKeys.remove(previousItem);
+        }
+    }
+
+    /**
+     * @return the key this exact item instance was recorded against, or {@code null} if it has not been recorded
+     */
+    ItemKey keyOf(final Item item) {
+        return itemKeys.get(item);
+    }
+
+    /**
+     * Identifies an item within the table (or, without a schema, the item class) it belongs to
+     */
+    static final class ItemKey {
+
+        private final String namespace;
+        private final ItemId itemId;
+
+        ItemKey(final String namespace, final ItemId itemId) {
+            this.namespace = namespace;
+            this.itemId = itemId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * namespace.hashCode() + itemId.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final ItemKey other = (ItemKey) obj;
+            return namespace.equals(other.namespace) && itemId.equals(other.itemId);
+        }
+    }
+}
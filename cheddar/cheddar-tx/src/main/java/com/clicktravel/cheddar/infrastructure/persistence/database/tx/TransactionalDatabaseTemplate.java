@@ -16,31 +16,94 @@
  */
 package com.clicktravel.cheddar.infrastructure.persistence.database.tx;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.clicktravel.cheddar.infrastructure.persistence.database.*;
+import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.DatabaseSchemaHolder;
+import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.ItemConfiguration;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.NonExistentItemException;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.NonUniqueResultException;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.handler.PersistenceExceptionHandler;
+import com.clicktravel.cheddar.infrastructure.persistence.database.options.FetchOptions;
+import com.clicktravel.cheddar.infrastructure.persistence.database.query.KeySetQuery;
 import com.clicktravel.cheddar.infrastructure.persistence.database.query.Query;
+import com.clicktravel.cheddar.infrastructure.persistence.database.tx.ItemIdentityMap.ItemKey;
 import com.clicktravel.cheddar.infrastructure.tx.*;
 
+/**
+ * Defers writes to the underlying {@link DatabaseTemplate} until the current transaction commits. Within a
+ * transaction, items read, created, updated or deleted are recorded in an identity map, so repeat reads of an item
+ * are served from memory and reads and {@link KeySetQuery} fetches see the transaction's own pending writes. Other
+ * queries are always passed to the underlying template.
+ * <p>
+ * Given a {@link DatabaseSchemaHolder}, items are identified by their table and primary key. Without one, only items
+ * this template has returned from reads can be identified, so other created items are not visible until committed.
+ * <p>
+ * At commit, the buffered actions for each item are coalesced by a {@link DatabaseCommitPlanner} and applied in the
+ * order each item was first acted on. They can optionally be applied concurrently and with batched creates, which keeps
+ * only the order of the actions for each item.
+ */
 public class TransactionalDatabaseTemplate implements DatabaseTemplate, TransactionalResource {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final DatabaseTemplate databaseTemplate;
 
+    private final Map<Class<?>, ItemConfiguration> itemConfigurations;
+
     private final ThreadLocal<DatabaseTransaction> currentTransaction = new ThreadLocal<DatabaseTransaction>();
 
+    private volatile ExecutorService commitExecutor;
+    private volatile int maxConcurrentCommitItems = 1;
+    private volatile boolean batchCreates;
+
     public TransactionalDatabaseTemplate(final DatabaseTemplate databaseTemplate) {
         this.databaseTemplate = databaseTemplate;
+        itemConfigurations = null;
+    }
+
+    public TransactionalDatabaseTemplate(final DatabaseTemplate databaseTemplate,
+            final DatabaseSchemaHolder databaseSchemaHolder) {
+        this.databaseTemplate = databaseTemplate;
+        itemConfigurations = new HashMap<>();
+        for (final ItemConfiguration itemConfiguration : databaseSchemaHolder.itemConfigurations()) {
+            itemConfigurations.put(itemConfiguration.itemClass(), itemConfiguration);
+        }
+    }
+
+    /**
+     * Applies the actions for different items concurrently at commit. Actions for the same item are still applied in
+     * the order they were made, but not the actions for different items.
+     * @param commitExecutor - executor on which actions are applied
+     * @param maxConcurrentItems - maximum number of items whose actions are applied at once, per commit
+     */
+    public void configureParallelCommit(final ExecutorService commitExecutor, final int maxConcurrentItems) {
+        if (commitExecutor == null) {
+            throw new IllegalArgumentException("Executor must not be null");
+        }
+        if (maxConcurrentItems < 1) {
+            throw new IllegalArgumentException("Maximum concurrent items must be positive");
+        }
+        maxConcurrentCommitItems = maxConcurrentItems;
+        this.commitExecutor = commitExecutor;
+    }
+
+    /**
+     * Writes items created in a transaction with batch writes at commit, where their class has no unique constraints
+     * and no persistence exception handlers were given. Batch writes are not conditional, so such a create replaces
+     * any existing item with the same key rather than failing. The creates of each class are written together at the
+     * position of the first of them, so actions for different items are no longer applied in the order they were made.
+     * Requires a {@link BatchDatabaseTemplate} and a {@link DatabaseSchemaHolder}.
+     */
+    public void configureBatchCreates() {
+        if (!(databaseTemplate instanceof BatchDatabaseTemplate) || itemConfigurations == null) {
+            throw new IllegalStateException("Batch creates require a BatchDatabaseTemplate and DatabaseSchemaHolder");
+        }
+        batchCreates = true;
     }
 
     private DatabaseTransaction getCurrentTransaction() {
@@ -64,7 +127,8 @@ public class TransactionalDatabaseTemplate implements DatabaseTemplate, Transact
         final DatabaseTransaction transaction = getCurrentTransaction();
         logger.trace("Committing transaction: " + transaction.transactionId());
         try {
-            transaction.applyActions(databaseTemplate);
+            transaction.applyActions(databaseTemplate, new DatabaseCommitPlanner(commitExecutor,
+                    maxConcurrentCommitItems, batchCreates ? this::hasNoUniqueConstraints : null));
             currentTransaction.remove();
             logger.trace("Transaction successfully committed: " + transaction.transactionId());
         } catch (final Throwable e) {
@@ -78,7 +142,11 @@ public class TransactionalDatabaseTemplate implements DatabaseTemplate, Transact
         final DatabaseTransaction transaction = getCurrentTransaction();
         final List<PersistenceExceptionHandler<?>> persistenceExceptionHandlerList = new ArrayList<PersistenceExceptionHandler<?>>();
         Collections.addAll(persistenceExceptionHandlerList, persistenceExceptionHandlers);
-        final T createdItem = transaction.addCreateAction(item, persistenceExceptionHandlerList);
+        final ItemKey itemKey = itemKey(transaction, item);
+        final T createdItem = transaction.addCreateAction(item, persistenceExceptionHandlerList, itemKey);
+        if (itemKey != null) {
+            transaction.identityMap().put(itemKey, createdItem);
+        }
         return createdItem;
     }
 
@@ -87,8 +155,12 @@ public class TransactionalDatabaseTemplate implements DatabaseTemplate, Transact
         final DatabaseTransaction transaction = getCurrentTransaction();
         final List<PersistenceExceptionHandler<?>> persistenceExceptionHandlerList = new ArrayList<PersistenceExceptionHandler<?>>();
         Collections.addAll(persistenceExceptionHandlerList, persistenceExceptionHandlers);
-        final T createdItem = transaction.addUpdateAction(item, persistenceExceptionHandlerList);
-        return createdItem;
+        final ItemKey itemKey = itemKey(transaction, item);
+        final T updatedItem = transaction.addUpdateAction(item, persistenceExceptionHandlerList, itemKey);
+        if (itemKey != null) {
+            transaction.identityMap().put(itemKey, updatedItem);
+        }
+        return updatedItem;
     }
 
     @Override
@@ -96,22 +168,167 @@ public class TransactionalDatabaseTemplate implements DatabaseTemplate, Transact
         final DatabaseTransaction transaction = getCurrentTransaction();
         final List<PersistenceExceptionHandler<?>> persistenceExceptionHandlerList = new ArrayList<PersistenceExceptionHandler<?>>();
         Collections.addAll(persistenceExceptionHandlerList, persistenceExceptionHandlers);
-        transaction.addDeleteAction(item, persistenceExceptionHandlerList);
+        final ItemKey itemKey = itemKey(transaction, item);
+        transaction.addDeleteAction(item, persistenceExceptionHandlerList, itemKey);
+        if (itemKey != null) {
+            transaction.identityMap().putAbsent(itemKey);
+        }
     }
 
     @Override
     public <T extends Item> T read(final ItemId itemId, final Class<T> itemClass) throws NonExistentItemException {
-        return databaseTemplate.read(itemId, itemClass);
+        final DatabaseTransaction transaction = currentTransaction.get();
+        if (transaction == null) {
+            return databaseTemplate.read(itemId, itemClass);
+        }
+        final ItemIdentityMap identityMap = transaction.identityMap();
+        final ItemKey itemKey = itemKey(itemClass, itemId);
+        if (identityMap.contains(itemKey)) {
+            final Item item = identityMap.get(itemKey);
+            if (item == null) {
+                throw new NonExistentItemException(String.format("The item of type [%s] with id [%s] does not exist",
+                        itemClass.getName(), itemId));
+            }
+            if (itemClass.isInstance(item)) {
+                return itemClass.cast(item);
+            }
+        }
+        try {
+            final T item = databaseTemplate.read(itemId, itemClass);
+            identityMap.put(itemKey, item);
+            return item;
+        } catch (final NonExistentItemException e) {
+            identityMap.putAbsent(itemKey);
+            throw e;
+        }
     }
 
     @Override
     public <T extends Item> Collection<T> fetch(final Query query, final Class<T> itemClass) {
-        return databaseTemplate.fetch(query, itemClass);
+        final DatabaseTransaction transaction = currentTransaction.get();
+        if (transaction == null || !(query instanceof KeySetQuery)) {
+            return databaseTemplate.fetch(query, itemClass);
+        }
+        return fetchKeySet(transaction, ((KeySetQuery) query).itemIds(), itemClass);
+    }
+
+    @Override
+    public <T extends Item> FetchResult<T> fetch(final Query query, final Class<T> itemClass,
+            final FetchOptions fetchOptions) {
+        final DatabaseTransaction transaction = currentTransaction.get();
+        if (transaction == null || !(query instanceof KeySetQuery)) {
+            return databaseTemplate.fetch(query, itemClass, fetchOptions);
+        }
+        final List<ItemId> itemIds = new ArrayList<>(((KeySetQuery) query).itemIds());
+        return new FetchResult<>(new KeyOffsetItemPageLoader<ItemId, T>(itemIds,
+                pageItemIds -> fetchKeySet(transaction, pageItemIds, itemClass), null), fetchOptions);
     }
 
     @Override
     public <T extends Item> T fetchUnique(final Query query, final Class<T> itemClass) throws NonUniqueResultException {
-        return databaseTemplate.fetchUnique(query, itemClass);
+        final DatabaseTransaction transaction = currentTransaction.get();
+        if (transaction == null || !(query instanceof KeySetQuery)) {
+            return databaseTemplate.fetchUnique(query, itemClass);
+        }
+        final Collection<T> items = fetchKeySet(transaction, ((KeySetQuery) query).itemIds(), itemClass);
+        if (items.size() != 1) {
+            throw new NonUniqueResultException(itemClass, items);
+        }
+        return items.iterator().next();
+    }
+
+    /**
+     * Serves the items already known to the transaction from its identity map, and fetches only the rest in a single
+     * key set query. Items are returned in the order of the given item ids.
+     */
+    private <T extends Item> List<T> fetchKeySet(final DatabaseTransaction transaction,
+            final Collection<ItemId> itemIds, final Class<T> itemClass) {
+        final ItemIdentityMap identityMap = transaction.identityMap();
+        final Map<ItemKey, ItemId> missedItemIds = new LinkedHashMap<>();
+        for (final ItemId itemId : itemIds) {
+            final ItemKey itemKey = itemKey(itemClass, itemId);
+            if (!identityMap.contains(itemKey)) {
+                missedItemIds.put(itemKey, itemId);
+            }
+        }
+        final Map<ItemKey, T> fetchedItems = new HashMap<>();
+        // Items whose key cannot be determined are kept in the order the underlying template returned them
+        final Deque<T> unkeyedItems = new ArrayDeque<>();
+        if (!missedItemIds.isEmpty()) {
+            for (final T item : databaseTemplate.fetch(new KeySetQuery(new ArrayList<>(missedItemIds.values())),
+                    itemClass)) {
+                final ItemKey itemKey = itemKey(transaction, item);
+                if (itemKey != null) {
+                    identityMap.put(itemKey, item);
+                    fetchedItems.put(itemKey, item);
+                } else {
+                    unkeyedItems.add(item);
+                }
+            }
+            if (itemConfigurations != null) {
+                for (final ItemKey itemKey : missedItemIds.keySet()) {
+                    if (!fetchedItems.containsKey(itemKey)) {
+                        identityMap.putAbsent(itemKey);
+                    }
+                }
+            }
+        }
+        final List<T> items = new ArrayList<>();
+        final Set<ItemKey> fetchedItemKeys = new HashSet<>();
+        for (final ItemId itemId : itemIds) {
+            final ItemKey itemKey = itemKey(itemClass, itemId);
+            if (!missedItemIds.containsKey(itemKey)) {
+                final Item item = identityMap.get(itemKey);
+                if (itemClass.isInstance(item)) {
+                    items.add(itemClass.cast(item));
+                }
+            } else if (fetchedItemKeys.add(itemKey)) {
+                final T item = fetchedItems.containsKey(itemKey) ? fetchedItems.get(itemKey) : unkeyedItems.poll();
+                if (item != null) {
+                    items.add(item);
+                }
+            }
+        }
+        items.addAll(unkeyedItems);
+        return items;
+    }
+
+    private ItemKey itemKey(final Class<?> itemClass, final ItemId itemId) {
+        if (itemConfigurations == null) {
+            return new ItemKey(itemClass.getName(), itemId);
+        }
+        return new ItemKey(itemConfiguration(itemClass).tableName(), itemId);
+    }
+
+    /**
+     * @return the key of the item, or {@code null} if it cannot be determined
+     */
+    private ItemKey itemKey(final DatabaseTransaction transaction, final Item item) {
+        final ItemKey recordedItemKey = transaction.identityMap().keyOf(item);
+        if (recordedItemKey != null || itemConfigurations == null) {
+            return recordedItemKey;
+        }
+        final ItemConfiguration itemConfiguration = itemConfiguration(item.getClass());
+        final String primaryKeyPropertyName = itemConfiguration.primaryKeyDefinition().propertyName();
+        if (itemConfiguration.propertyAccessor(primaryKeyPropertyName).getValue(item) == null) {
+            return null;
+        }
+        return new ItemKey(itemConfiguration.tableName(), itemConfiguration.getItemId(item));
+    }
+
+    private boolean hasNoUniqueConstraints(final Class<? extends Item> itemClass) {
+        return itemConfiguration(itemClass).uniqueConstraints().isEmpty();
+    }
+
+    private ItemConfiguration itemConfiguration(final Class<?> itemClass) {
+        for (Class<?> configuredClass = itemClass; configuredClass != null; configuredClass = configuredClass
+                .getSuperclass()) {
+            final ItemConfiguration itemConfiguration = itemConfigurations.get(configuredClass);
+            if (itemConfiguration != null) {
+                return itemConfiguration;
+            }
+        }
+        throw new IllegalStateException("No ItemConfiguration for " + itemClass);
     }
 
     @Override
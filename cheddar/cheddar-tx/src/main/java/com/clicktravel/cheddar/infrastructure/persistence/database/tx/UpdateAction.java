@@ -25,14 +25,30 @@ import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceE
 
 public class UpdateAction<T extends Item> extends DatabaseAction<T> {
 
+    private final int versionIncrements;
+
     public UpdateAction(final T item, final List<PersistenceExceptionHandler<?>> persistenceExceptionHandlers) {
+        this(item, persistenceExceptionHandlers, 1);
+    }
+
+    /**
+     * @param versionIncrements - number of times the item version was incremented for the updates this action
+     *            applies, so the stored version can be restored before updating
+     */
+    UpdateAction(final T item, final List<PersistenceExceptionHandler<?>> persistenceExceptionHandlers,
+            final int versionIncrements) {
         super(item, persistenceExceptionHandlers);
+        this.versionIncrements = versionIncrements;
+    }
+
+    int versionIncrements() {
+        return versionIncrements;
     }
 
     @Override
     public void apply(final DatabaseTemplate databaseTemplate) throws Throwable {
         final T item = item();
-        item.setVersion(item.getVersion() - 1);
+        item.setVersion(item.getVersion() - versionIncrements);
         try {
             databaseTemplate.update(item);
         } catch (final PersistenceException e) {
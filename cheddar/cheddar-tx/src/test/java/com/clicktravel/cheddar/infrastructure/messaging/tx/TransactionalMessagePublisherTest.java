@@ -16,16 +16,25 @@
  */
 package com.clicktravel.cheddar.infrastructure.messaging.tx;
 
+import static com.clicktravel.common.random.Randoms.randomString;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
+import org.mockito.InOrder;
 
 import com.clicktravel.cheddar.infrastructure.messaging.MessagePublisher;
 import com.clicktravel.cheddar.infrastructure.messaging.TypedMessage;
+import com.clicktravel.cheddar.infrastructure.messaging.exception.MessagePublishException;
 import com.clicktravel.cheddar.infrastructure.tx.NestedTransactionException;
 import com.clicktravel.cheddar.infrastructure.tx.NonExistentTransactionException;
 
@@ -162,4 +171,56 @@ public class TransactionalMessagePublisherTest {
         verify(mockMessagePublisher).publish(typedMessage);
     }
 
+    @Test
+    public void shouldCommitPublishMessagesInOrderPerType_withMessagesOfSeveralTypes() throws Exception {
+        // Given
+        final TransactionalMessagePublisher transactionalMessagePublisher = new TransactionalMessagePublisher(
+                mockMessagePublisher);
+        transactionalMessagePublisher.begin();
+        final List<TypedMessage> typedMessages = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            final TypedMessage typedMessage = mock(TypedMessage.class);
+            when(typedMessage.getType()).thenReturn("type" + (i % 3));
+            typedMessages.add(typedMessage);
+            transactionalMessagePublisher.publish(typedMessage);
+        }
+
+        // When
+        transactionalMessagePublisher.commit();
+
+        // Then
+        for (int type = 0; type < 3; type++) {
+            final InOrder inOrder = inOrder(mockMessagePublisher);
+            for (int i = type; i < typedMessages.size(); i += 3) {
+                inOrder.verify(mockMessagePublisher).publish(typedMessages.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void shouldThrowException_onCommitWithFailedPublish() throws Exception {
+        // Given
+        final TransactionalMessagePublisher transactionalMessagePublisher = new TransactionalMessagePublisher(
+                mockMessagePublisher);
+        transactionalMessagePublisher.begin();
+        final TypedMessage typedMessage = mock(TypedMessage.class);
+        when(typedMessage.getType()).thenReturn(randomString());
+        final TypedMessage failingTypedMessage = mock(TypedMessage.class);
+        when(failingTypedMessage.getType()).thenReturn(randomString());
+        doThrow(MessagePublishException.class).when(mockMessagePublisher).publish(failingTypedMessage);
+        transactionalMessagePublisher.publish(typedMessage);
+        transactionalMessagePublisher.publish(failingTypedMessage);
+
+        // When
+        MessagePublishException actualException = null;
+        try {
+            transactionalMessagePublisher.commit();
+        } catch (final MessagePublishException e) {
+            actualException = e;
+        }
+
+        // Then
+        assertNotNull(actualException);
+        verify(mockMessagePublisher).publish(typedMessage);
+    }
 }
@@ -17,16 +17,23 @@
 package com.clicktravel.cheddar.infrastructure.messaging.tx;
 
 import static com.clicktravel.common.random.Randoms.randomInt;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
 
 import org.junit.Test;
 
 import com.clicktravel.cheddar.infrastructure.messaging.MessageSender;
 import com.clicktravel.cheddar.infrastructure.messaging.TypedMessage;
+import com.clicktravel.cheddar.infrastructure.messaging.exception.MessageSendException;
 import com.clicktravel.cheddar.infrastructure.tx.NestedTransactionException;
 import com.clicktravel.cheddar.infrastructure.tx.NonExistentTransactionException;
 
@@ -156,6 +163,47 @@ public class TransactionalMessageSenderTest {
         verify(mockMessageSender).send(typedMessage);
     }
 
+    @Test
+    public void shouldCommitSendMessagesAsBatch_withExistingTransaction() throws Exception {
+        // Given
+        final TransactionalMessageSender transactionalMessageSender = new TransactionalMessageSender(mockMessageSender);
+        transactionalMessageSender.begin();
+        final TypedMessage typedMessage1 = mock(TypedMessage.class);
+        final TypedMessage typedMessage2 = mock(TypedMessage.class);
+        final TypedMessage typedMessage3 = mock(TypedMessage.class);
+        transactionalMessageSender.send(typedMessage1);
+        transactionalMessageSender.sendBatch(Arrays.asList(typedMessage2, typedMessage3));
+
+        // When
+        transactionalMessageSender.commit();
+
+        // Then
+        verify(mockMessageSender).sendBatch(Arrays.asList(typedMessage1, typedMessage2, typedMessage3));
+    }
+
+    @Test
+    public void shouldThrowMessageSendExceptionWithFailedMessages_onCommitWithBatchFailure() throws Exception {
+        // Given
+        final TransactionalMessageSender transactionalMessageSender = new TransactionalMessageSender(mockMessageSender);
+        transactionalMessageSender.begin();
+        final TypedMessage typedMessage1 = mock(TypedMessage.class);
+        final TypedMessage typedMessage2 = mock(TypedMessage.class);
+        transactionalMessageSender.sendBatch(Arrays.asList(typedMessage1, typedMessage2));
+        when(mockMessageSender.sendBatch(anyList())).thenReturn(Collections.singletonList(typedMessage2));
+
+        // When
+        MessageSendException actualException = null;
+        try {
+            transactionalMessageSender.commit();
+        } catch (final MessageSendException e) {
+            actualException = e;
+        }
+
+        // Then
+        assertNotNull(actualException);
+        assertEquals(Collections.singletonList(typedMessage2), actualException.getFailedMessages());
+    }
+
     @Test
     public void shouldSendDelayedMessage_withExistingTransaction() throws Exception {
         // Given
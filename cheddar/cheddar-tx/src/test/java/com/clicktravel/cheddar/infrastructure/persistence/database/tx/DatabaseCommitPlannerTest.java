@@ -0,0 +1,322 @@
+/*
+ * Copyright 2014 Click Travel Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.clicktravel.cheddar.infrastructure.persistence.database.tx;
+
+import static com.clicktravel.common.random.Randoms.randomId;
+import static com.clicktravel.common.random.Randoms.randomLong;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import com.clicktravel.cheddar.infrastructure.persistence.database.BatchDatabaseTemplate;
+import com.clicktravel.cheddar.infrastructure.persistence.database.BatchItemFailure;
+import com.clicktravel.cheddar.infrastructure.persistence.database.BatchWriteResult;
+import com.clicktravel.cheddar.infrastructure.persistence.database.DatabaseTemplate;
+import com.clicktravel.cheddar.infrastructure.persistence.database.ItemId;
+import com.clicktravel.cheddar.infrastructure.persistence.database.exception.handler.PersistenceExceptionHandler;
+import com.clicktravel.cheddar.infrastructure.persistence.database.tx.ItemIdentityMap.ItemKey;
+import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceResourceFailureException;
+
+@SuppressWarnings("unchecked")
+public class DatabaseCommitPlannerTest {
+
+    private final List<PersistenceExceptionHandler<?>> noHandlers = Collections.emptyList();
+    private final ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+    @After
+    public void after() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void shouldApplySingleUpdate_withRepeatedUpdatesOfItem() throws Throwable {
+        // Given
+        final DatabaseTemplate mockDatabaseTemplate = mock(DatabaseTemplate.class);
+        final StubItem item = randomStubItem();
+        final Long storedVersion = item.getVersion();
+        final DatabaseTransaction transaction = new DatabaseTransaction();
+        transaction.addUpdateAction(item, noHandlers);
+        transaction.addUpdateAction(item, noHandlers);
+        transaction.addUpdateAction(item, noHandlers);
+
+        // When
+        transaction.applyActions(mockDatabaseTemplate, new DatabaseCommitPlanner());
+
+        // Then
+        verify(mockDatabaseTemplate).update(item);
+        verifyNoMoreInteractions(mockDatabaseTemplate);
+        assertEquals(storedVersion, item.getVersion());
+    }
+
+    @Test
+    public void shouldNotApplyActions_withItemCreatedThenDeleted() throws Throwable {
+        // Given
+        final DatabaseTemplate mockDatabaseTemplate = mock(DatabaseTemplate.class);
+        final StubItem item = randomStubItem();
+        final DatabaseTransaction transaction = new DatabaseTransaction();
+        transaction.addCreateAction(item, noHandlers);
+        transaction.addUpdateAction(item, noHandlers);
+        transaction.addDeleteAction(item, noHandlers);
+
+        // When
+        transaction.applyActions(mockDatabaseTemplate, new DatabaseCommitPlanner());
+
+        // Then
+        verifyZeroInteractions(mockDatabaseTemplate);
+    }
+
+    @Test
+    public void shouldApplyDeleteOnly_withItemUpdatedThenDeleted() throws Throwable {
+        // Given
+        final DatabaseTemplate mockDatabaseTemplate = mock(DatabaseTemplate.class);
+        final StubItem item = randomStubItem();
+        final Long storedVersion = item.getVersion();
+        final DatabaseTransaction transaction = new DatabaseTransaction();
+        transaction.addUpdateAction(item, noHandlers);
+        transaction.addUpdateAction(item, noHandlers);
+        transaction.addDeleteAction(item, noHandlers);
+
+        // When
+        transaction.applyActions(mockDatabaseTemplate, new DatabaseCommitPlanner());
+
+        // Then
+        verify(mockDatabaseTemplate).delete(item);
+        verifyNoMoreInteractions(mockDatabaseTemplate);
+        assertEquals(storedVersion, item.getVersion());
+    }
+
+    @Test
+    public void shouldBatchCreates_withBatchCreatableItemClass() throws Throwable {
+        // Given
+        final BatchDatabaseTemplate mockDatabaseTemplate = mock(BatchDatabaseTemplate.class);
+        final StubItem item1 = randomStubItem();
+        final StubItem item2 = randomStubItem();
+        when(mockDatabaseTemplate.batchPut(any(List.class), any(Class.class)))
+                .thenReturn(new BatchWriteResult<>(Arrays.asList(item1, item2), new ArrayList<>()));
+        final DatabaseTransaction transaction = new DatabaseTransaction();
+        transaction.addCreateAction(item1, noHandlers);
+        transaction.addCreateAction(item2, noHandlers);
+        transaction.addUpdateAction(item2, noHandlers);
+
+        // When
+        transaction.applyActions(mockDatabaseTemplate, new DatabaseCommitPlanner(null, 1, itemClass -> true));
+
+        // Then
+        verify(mockDatabaseTemplate).batchPut(Arrays.asList(item1, item2), StubItem.class);
+        verifyNoMoreInteractions(mockDatabaseTemplate);
+    }
+
+    @Test
+    public void shouldApplyActionsForEachItem_withExecutor() throws Throwable {
+        // Given
+        final DatabaseTemplate mockDatabaseTemplate = mock(DatabaseTemplate.class);
+        final List<StubItem> items = new ArrayList<>();
+        final DatabaseTransaction transaction = new DatabaseTransaction();
+        for (int n = 0; n < 10; n++) {
+            final StubItem item = randomStubItem();
+            items.add(item);
+            transaction.addUpdateAction(item, noHandlers);
+        }
+
+        // When
+        transaction.applyActions(mockDatabaseTemplate, new DatabaseCommitPlanner(executorService, 3, null));
+
+        // Then
+        for (final StubItem item : items) {
+            verify(mockDatabaseTemplate).update(item);
+        }
+    }
+
+    @Test
+    public void shouldRethrowFailure_withExecutorAndFailingAction() throws Throwable {
+        // Given
+        final DatabaseTemplate mockDatabaseTemplate = mock(DatabaseTemplate.class);
+        final StubItem item1 = randomStubItem();
+        final StubItem item2 = randomStubItem();
+        final PersistenceResourceFailureException failure = new PersistenceResourceFailureException(randomId(),
+                null);
+        when(mockDatabaseTemplate.update(item2)).thenThrow(failure);
+        final DatabaseTransaction transaction = new DatabaseTransaction();
+        transaction.addUpdateAction(item1, noHandlers);
+        transaction.addUpdateAction(item2, noHandlers);
+
+        // When
+        Throwable actualException = null;
+        try {
+            transaction.applyActions(mockDatabaseTemplate, new DatabaseCommitPlanner(executorService, 2, null));
+        } catch (final Throwable e) {
+            actualException = e;
+        }
+
+        // Then
+        assertSame(failure, actualException);
+    }
+
+    @Test
+    public void shouldFoldLaterUpdateIntoCreate_withInterleavedActionsForItems() throws Throwable {
+        // Given
+        final DatabaseTemplate mockDatabaseTemplate = mock(DatabaseTemplate.class);
+        final StubItem item1 = randomStubItem();
+        final StubItem item2 = randomStubItem();
+        final DatabaseTransaction transaction = new DatabaseTransaction();
+        transaction.addCreateAction(item1, noHandlers);
+        transaction.addUpdateAction(item2, noHandlers);
+        transaction.addUpdateAction(item1, noHandlers);
+
+        // When
+        transaction.applyActions(mockDatabaseTemplate, new DatabaseCommitPlanner());
+
+        // Then
+        final InOrder inOrder = inOrder(mockDatabaseTemplate);
+        inOrder.verify(mockDatabaseTemplate).create(item1);
+        inOrder.verify(mockDatabaseTemplate).update(item2);
+        verifyNoMoreInteractions(mockDatabaseTemplate);
+    }
+
+    @Test
+    public void shouldApplyActionsForSameKeyInOrder_withExecutorAndDifferentInstances() throws Throwable {
+        // Given
+        final DatabaseTemplate mockDatabaseTemplate = mock(DatabaseTemplate.class);
+        final StubItem deletedItem = randomStubItem();
+        final StubItem createdItem = randomStubItem();
+        createdItem.setId(deletedItem.getId());
+        final StubItem otherItem = randomStubItem();
+        final ItemKey itemKey = new ItemKey(randomId(), new ItemId(deletedItem.getId()));
+        doAnswer(invocation -> {
+            Thread.sleep(100);
+            return null;
+        }).when(mockDatabaseTemplate).delete(deletedItem);
+        final DatabaseTransaction transaction = new DatabaseTransaction();
+        transaction.addDeleteAction(deletedItem, noHandlers, itemKey);
+        transaction.addUpdateAction(otherItem, noHandlers, null);
+        transaction.addCreateAction(createdItem, noHandlers, itemKey);
+
+        // When
+        transaction.applyActions(mockDatabaseTemplate, new DatabaseCommitPlanner(executorService, 4, null));
+
+        // Then
+        final InOrder inOrder = inOrder(mockDatabaseTemplate);
+        inOrder.verify(mockDatabaseTemplate).delete(deletedItem);
+        inOrder.verify(mockDatabaseTemplate).create(createdItem);
+        verify(mockDatabaseTemplate).update(otherItem);
+        verifyNoMoreInteractions(mockDatabaseTemplate);
+    }
+
+    @Test
+    public void shouldBatchCreatesAtPositionOfFirstCreate_withBatchCreatableItemClass() throws Throwable {
+        // Given
+        final BatchDatabaseTemplate mockDatabaseTemplate = mock(BatchDatabaseTemplate.class);
+        final StubItem updatedItem = randomStubItem();
+        final StubItem item1 = randomStubItem();
+        final StubItem item2 = randomStubItem();
+        when(mockDatabaseTemplate.batchPut(any(List.class), any(Class.class)))
+                .thenReturn(new BatchWriteResult<>(Arrays.asList(item1, item2), new ArrayList<>()));
+        final DatabaseTransaction transaction = new DatabaseTransaction();
+        transaction.addUpdateAction(updatedItem, noHandlers);
+        transaction.addCreateAction(item1, noHandlers);
+        transaction.addCreateAction(item2, noHandlers);
+
+        // When
+        transaction.applyActions(mockDatabaseTemplate,
+                new DatabaseCommitPlanner(null, 1, itemClass -> itemClass == StubItem.class));
+
+        // Then
+        final InOrder inOrder = inOrder(mockDatabaseTemplate);
+        inOrder.verify(mockDatabaseTemplate).update(updatedItem);
+        inOrder.verify(mockDatabaseTemplate).batchPut(Arrays.asList(item1, item2), StubItem.class);
+        verifyNoMoreInteractions(mockDatabaseTemplate);
+    }
+
+    @Test
+    public void shouldRethrowAllFailures_withFailedBatchCreates() throws Throwable {
+        // Given
+        final BatchDatabaseTemplate mockDatabaseTemplate = mock(BatchDatabaseTemplate.class);
+        final StubItem item1 = randomStubItem();
+        final StubItem item2 = randomStubItem();
+        final PersistenceResourceFailureException failure1 = new PersistenceResourceFailureException(randomId(),
+                null);
+        final PersistenceResourceFailureException failure2 = new PersistenceResourceFailureException(randomId(),
+                null);
+        when(mockDatabaseTemplate.batchPut(any(List.class), any(Class.class)))
+                .thenReturn(new BatchWriteResult<>(new ArrayList<>(), Arrays.asList(
+                        new BatchItemFailure<>(item1, failure1), new BatchItemFailure<>(item2, failure2))));
+        final DatabaseTransaction transaction = new DatabaseTransaction();
+        transaction.addCreateAction(item1, noHandlers);
+        transaction.addCreateAction(item2, noHandlers);
+
+        // When
+        Throwable actualException = null;
+        try {
+            transaction.applyActions(mockDatabaseTemplate, new DatabaseCommitPlanner(null, 1, itemClass -> true));
+        } catch (final Throwable e) {
+            actualException = e;
+        }
+
+        // Then
+        assertSame(failure1, actualException);
+        assertArrayEquals(new Throwable[] { failure2 }, actualException.getSuppressed());
+    }
+
+    @Test
+    public void shouldRethrowAllFailures_withExecutorAndFailingActions() throws Throwable {
+        // Given
+        final DatabaseTemplate mockDatabaseTemplate = mock(DatabaseTemplate.class);
+        final StubItem item1 = randomStubItem();
+        final StubItem item2 = randomStubItem();
+        final PersistenceResourceFailureException failure1 = new PersistenceResourceFailureException(randomId(),
+                null);
+        final PersistenceResourceFailureException failure2 = new PersistenceResourceFailureException(randomId(),
+                null);
+        when(mockDatabaseTemplate.update(item1)).thenThrow(failure1);
+        when(mockDatabaseTemplate.update(item2)).thenThrow(failure2);
+        final DatabaseTransaction transaction = new DatabaseTransaction();
+        transaction.addUpdateAction(item1, noHandlers);
+        transaction.addUpdateAction(item2, noHandlers);
+
+        // When
+        Throwable actualException = null;
+        try {
+            transaction.applyActions(mockDatabaseTemplate, new DatabaseCommitPlanner(executorService, 2, null));
+        } catch (final Throwable e) {
+            actualException = e;
+        }
+
+        // Then
+        assertSame(failure1, actualException);
+        assertArrayEquals(new Throwable[] { failure2 }, actualException.getSuppressed());
+    }
+
+    private StubItem randomStubItem() {
+        final StubItem item = new StubItem();
+        item.setId(randomId());
+        item.setVersion(randomLong());
+        return item;
+    }
+}
@@ -19,25 +19,39 @@ package com.clicktravel.cheddar.infrastructure.persistence.database.tx;
 import static com.clicktravel.common.random.Randoms.randomId;
 import static com.clicktravel.common.random.Randoms.randomLong;
 import static com.clicktravel.common.random.Randoms.randomString;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.internal.util.collections.Sets;
 
 import com.clicktravel.cheddar.infrastructure.persistence.database.DatabaseTemplate;
 import com.clicktravel.cheddar.infrastructure.persistence.database.GeneratedKeyHolder;
 import com.clicktravel.cheddar.infrastructure.persistence.database.ItemId;
 import com.clicktravel.cheddar.infrastructure.persistence.database.SequenceKeyGenerator;
+import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.DatabaseSchemaHolder;
+import com.clicktravel.cheddar.infrastructure.persistence.database.configuration.ItemConfiguration;
+import com.clicktravel.cheddar.infrastructure.persistence.database.exception.NonExistentItemException;
 import com.clicktravel.cheddar.infrastructure.persistence.database.exception.handler.PersistenceExceptionHandler;
+import com.clicktravel.cheddar.infrastructure.persistence.database.query.KeySetQuery;
 import com.clicktravel.cheddar.infrastructure.persistence.database.query.Query;
 import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceException;
+import com.clicktravel.cheddar.infrastructure.persistence.exception.PersistenceResourceFailureException;
 import com.clicktravel.cheddar.infrastructure.tx.NestedTransactionException;
 import com.clicktravel.cheddar.infrastructure.tx.NonExistentTransactionException;
 import com.clicktravel.cheddar.infrastructure.tx.TransactionalResourceException;
@@ -243,6 +257,90 @@ public class TransactionalDatabaseTemplateTest {
         verify(mockDatabaseTemplate).create(item);
     }
 
+    @Test
+    public void shouldCommitLaterUpdateFoldedIntoCreate_withInterleavedActionsForItems() throws Exception {
+        // Given
+        final TransactionalDatabaseTemplate transactionalDatabaseTemplate = new TransactionalDatabaseTemplate(
+                mockDatabaseTemplate);
+        transactionalDatabaseTemplate.begin();
+        final StubItem item1 = randomStubItem();
+        final StubItem item2 = randomStubItem();
+        transactionalDatabaseTemplate.create(item1);
+        transactionalDatabaseTemplate.update(item2);
+        transactionalDatabaseTemplate.update(item1);
+
+        // When
+        transactionalDatabaseTemplate.commit();
+
+        // Then
+        final InOrder inOrder = inOrder(mockDatabaseTemplate);
+        inOrder.verify(mockDatabaseTemplate).create(item1);
+        inOrder.verify(mockDatabaseTemplate).update(item2);
+        verifyNoMoreInteractions(mockDatabaseTemplate);
+    }
+
+    @Test
+    public void shouldCommitCoalescedActionsForEachItem_withParallelCommit() throws Exception {
+        // Given
+        final ExecutorService commitExecutor = Executors.newFixedThreadPool(2);
+        final TransactionalDatabaseTemplate transactionalDatabaseTemplate = new TransactionalDatabaseTemplate(
+                mockDatabaseTemplate);
+        transactionalDatabaseTemplate.configureParallelCommit(commitExecutor, 2);
+        transactionalDatabaseTemplate.begin();
+        final StubItem item1 = randomStubItem();
+        final StubItem item2 = randomStubItem();
+        transactionalDatabaseTemplate.create(item1);
+        transactionalDatabaseTemplate.update(item2);
+        transactionalDatabaseTemplate.update(item1);
+
+        // When
+        try {
+            transactionalDatabaseTemplate.commit();
+        } finally {
+            commitExecutor.shutdownNow();
+        }
+
+        // Then
+        verify(mockDatabaseTemplate).create(item1);
+        verify(mockDatabaseTemplate).update(item2);
+        verifyNoMoreInteractions(mockDatabaseTemplate);
+    }
+
+    @Test
+    public void shouldNotCommitAndReportAllFailures_withParallelCommitAndFailingActions() throws Exception {
+        // Given
+        final ExecutorService commitExecutor = Executors.newFixedThreadPool(2);
+        final StubItem item1 = randomStubItem();
+        final StubItem item2 = randomStubItem();
+        final PersistenceResourceFailureException failure1 = new PersistenceResourceFailureException(
+                randomString(10), null);
+        final PersistenceResourceFailureException failure2 = new PersistenceResourceFailureException(
+                randomString(10), null);
+        when(mockDatabaseTemplate.update(item1)).thenThrow(failure1);
+        when(mockDatabaseTemplate.update(item2)).thenThrow(failure2);
+        final TransactionalDatabaseTemplate transactionalDatabaseTemplate = new TransactionalDatabaseTemplate(
+                mockDatabaseTemplate);
+        transactionalDatabaseTemplate.configureParallelCommit(commitExecutor, 2);
+        transactionalDatabaseTemplate.begin();
+        transactionalDatabaseTemplate.update(item1);
+        transactionalDatabaseTemplate.update(item2);
+
+        // When
+        TransactionalResourceException actualException = null;
+        try {
+            transactionalDatabaseTemplate.commit();
+        } catch (final TransactionalResourceException e) {
+            actualException = e;
+        } finally {
+            commitExecutor.shutdownNow();
+        }
+
+        // Then
+        assertNotNull(actualException);
+        assertSame(failure1, actualException.getCause());
+        assertArrayEquals(new Throwable[] { failure2 }, failure1.getSuppressed());
+    }
+
     @Test
     public void shouldCommitCreate_withPersistenceExceptionHandler() throws Exception {
         // Given
@@ -554,6 +652,121 @@ public class TransactionalDatabaseTemplateTest {
         assertEquals(runtimeException, actualException.getCause());
     }
 
+    @Test
+    public void shouldReadItemOnce_withRepeatedReadsInTransaction() throws Exception {
+        // Given
+        final ItemId itemId = new ItemId(randomId());
+        final StubItem item = randomStubItem();
+        when(mockDatabaseTemplate.read(itemId, StubItem.class)).thenReturn(item);
+        final TransactionalDatabaseTemplate transactionalDatabaseTemplate = new TransactionalDatabaseTemplate(
+                mockDatabaseTemplate);
+        transactionalDatabaseTemplate.begin();
+        transactionalDatabaseTemplate.read(itemId, StubItem.class);
+
+        // When
+        final StubItem returnedItem = transactionalDatabaseTemplate.read(itemId, StubItem.class);
+
+        // Then
+        verify(mockDatabaseTemplate).read(itemId, StubItem.class);
+        assertSame(item, returnedItem);
+    }
+
+    @Test
+    public void shouldNotRead_withItemDeletedInTransaction() throws Exception {
+        // Given
+        final ItemId itemId = new ItemId(randomId());
+        final StubItem item = randomStubItem();
+        when(mockDatabaseTemplate.read(itemId, StubItem.class)).thenReturn(item);
+        final TransactionalDatabaseTemplate transactionalDatabaseTemplate = new TransactionalDatabaseTemplate(
+                mockDatabaseTemplate);
+        transactionalDatabaseTemplate.begin();
+        transactionalDatabaseTemplate.delete(transactionalDatabaseTemplate.read(itemId, StubItem.class));
+
+        // When
+        NonExistentItemException actualException = null;
+        try {
+            transactionalDatabaseTemplate.read(itemId, StubItem.class);
+        } catch (final NonExistentItemException e) {
+            actualException = e;
+        }
+
+        // Then
+        assertNotNull(actualException);
+        verify(mockDatabaseTemplate).read(itemId, StubItem.class);
+    }
+
+    @Test
+    public void shouldRead_withItemCreatedInTransactionAndSchema() throws Exception {
+        // Given
+        final StubItem item = randomStubItem();
+        final TransactionalDatabaseTemplate transactionalDatabaseTemplate = new TransactionalDatabaseTemplate(
+                mockDatabaseTemplate, stubItemSchema());
+        transactionalDatabaseTemplate.begin();
+        transactionalDatabaseTemplate.create(item);
+
+        // When
+        final StubItem returnedItem = transactionalDatabaseTemplate.read(new ItemId(item.getId()), StubItem.class);
+
+        // Then
+        assertSame(item, returnedItem);
+        verifyZeroInteractions(mockDatabaseTemplate);
+    }
+
+    @Test
+    public void shouldFetchOnlyUnknownItems_withKeySetQueryInTransaction() throws Exception {
+        // Given
+        final StubItem createdItem = randomStubItem();
+        final StubItem storedItem = randomStubItem();
+        final ItemId storedItemId = new ItemId(storedItem.getId());
+        when(mockDatabaseTemplate.fetch(any(Query.class), any(Class.class)))
+                .thenReturn(Collections.singletonList(storedItem));
+        final TransactionalDatabaseTemplate transactionalDatabaseTemplate = new TransactionalDatabaseTemplate(
+                mockDatabaseTemplate, stubItemSchema());
+        transactionalDatabaseTemplate.begin();
+        transactionalDatabaseTemplate.create(createdItem);
+        final KeySetQuery query = new KeySetQuery(Arrays.asList(new ItemId(createdItem.getId()), storedItemId));
+
+        // When
+        final Collection<StubItem> returnedItems = transactionalDatabaseTemplate.fetch(query, StubItem.class);
+
+        // Then
+        verify(mockDatabaseTemplate).fetch(new KeySetQuery(Arrays.asList(storedItemId)), StubItem.class);
+        assertEquals(2, returnedItems.size());
+        assertTrue(returnedItems.contains(createdItem));
+        assertTrue(returnedItems.contains(storedItem));
+    }
+
+    @Test
+    public void shouldFetchItemsInQueryOrder_withKeySetQueryInTransaction() throws Exception {
+        // Given
+        final StubItem createdItem = randomStubItem();
+        final StubItem storedItem1 = randomStubItem();
+        final StubItem storedItem2 = randomStubItem();
+        final ItemId storedItemId1 = new ItemId(storedItem1.getId());
+        final ItemId storedItemId2 = new ItemId(storedItem2.getId());
+        when(mockDatabaseTemplate.fetch(any(Query.class), any(Class.class)))
+                .thenReturn(Arrays.asList(storedItem2, storedItem1));
+        final TransactionalDatabaseTemplate transactionalDatabaseTemplate = new TransactionalDatabaseTemplate(
+                mockDatabaseTemplate, stubItemSchema());
+        transactionalDatabaseTemplate.begin();
+        transactionalDatabaseTemplate.create(createdItem);
+        final KeySetQuery query = new KeySetQuery(
+                Arrays.asList(storedItemId1, new ItemId(createdItem.getId()), storedItemId2));
+
+        // When
+        final Collection<StubItem> returnedItems = transactionalDatabaseTemplate.fetch(query, StubItem.class);
+
+        // Then
+        verify(mockDatabaseTemplate).fetch(new KeySetQuery(Arrays.asList(storedItemId1, storedItemId2)),
+                StubItem.class);
+        assertEquals(Arrays.asList(storedItem1, createdItem, storedItem2), new ArrayList<>(returnedItems));
+    }
+
+    private DatabaseSchemaHolder stubItemSchema() {
+        return new DatabaseSchemaHolder(randomString(10),
+                Arrays.asList(new ItemConfiguration(StubItem.class, randomString(10))));
+    }
+
     private StubItem randomStubItem() {
         final StubItem item = new StubItem();
         item.setId(randomId());
@@ -16,17 +16,16 @@
  */
 package com.clicktravel.common.concurrent;
 
-import java.util.NoSuchElementException;
-import java.util.concurrent.DelayQueue;
-import java.util.concurrent.Delayed;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
- * A concurrent blocking rate limiter based on the 'token bucket' algorithm. A rate limiter is used to control the rate
- * at which some (possibly shared) resource is accessed, or unit of work is executed. Before the resource is accessed or
- * work unit executed, a token (permit) must first be obtained from the rate limiter; this operation blocks until a
- * token is available. A bucket of tokens is maintained by the rate limiter, and each token taken from the bucket is
- * automatically replaced after a fixed delay. The bucket has a fixed capacity and is initialised to be full of tokens.
+ * A concurrent rate limiter based on the 'token bucket' algorithm. A rate limiter is used to control the rate at which
+ * some (possibly shared) resource is accessed, or unit of work is executed. Before the resource is accessed or work
+ * unit executed, a token (permit) must first be obtained from the rate limiter. A bucket of tokens is maintained by the
+ * rate limiter, and each token taken from the bucket is replaced after a fixed delay. The bucket has a fixed capacity
+ * and is initialised to be full of tokens.
  * <p/>
  * If the rate limiter is configured to have capacity of <code>C</code> tokens and a token delay of <code>D</code>
  * milliseconds, then
@@ -34,6 +33,7 @@ import java.util.concurrent.TimeUnit;
  * <li>The maximum rate R of tokens (measured over a long period of time) that may be obtained is given by
  * <code>R = (1000 * C / D)</code> tokens per second</li>
  * <li>The maximum number of tokens that may be obtained simultaneously ('bursty' behaviour) is <code>C</code> tokens</li>
+ * <li>The maximum number of tokens that may be obtained in any window of D milliseconds is <code>C</code> tokens</li>
  * </ul>
  * <p/>
  * Assuming tokens are obtained as soon as they become available at a steady rate, it takes time D to obtain C tokens.
@@ -45,31 +45,26 @@ import java.util.concurrent.TimeUnit;
  * <li>With fixed D = 1000 ms: For rate R = 10 tokens/second, set C = 10; for rate R = 20 tokens/second, set C = 20</li>
  * </ul>
  * <p/>
+ * The bucket is implemented without locks. Tokens are numbered in the order they are taken, by advancing a count of
+ * tokens taken with compare-and-set, so obtaining a token neither takes a lock nor allocates. Token <code>n</code>
+ * replaces token <code>n - C</code>, so it becomes available D after that token was taken. A thread may briefly yield
+ * while another thread records the replacement time of a token it has just taken.
+ * <p/>
  * The parameters (capacity & token delay) are set on construction of the rate limiter. The parameters may be changed
  * after construction, though there may be a transition period where the effective rate limitation adjusts to the new
  * parameter values.
  */
 public class RateLimiter {
 
-    /**
-     * Bucket of tokens. The bucket is maintained to contain a number of tokens equal to capacity (the bucket is always
-     * full), however each token may or may not be available to be taken. Tokens implement {@link Delayed}, where all
-     * available tokens have expired delay.
-     */
-    private final DelayQueue<Token> bucket = new DelayQueue<>();
-
-    /** Number of tokens to maintain in bucket */
-    private int bucketCapacity;
-
-    /** Delay value for replacement tokens, in milliseconds */
-    private volatile long tokenReplacementDelayMillis;
+    /** Current bucket, replaced as a whole when the parameters change so readers always see a consistent set */
+    private volatile Bucket bucket;
 
     /**
      * Constructs a rate limiter based on the 'token bucket' algorithm. Maximum allowed rate is
      * <code>1000 * bucketCapacity / tokenReplacementDelayMillis</code> tokens per second. Maximum number of tokens that
      * may be obtained simultaneously is <code>bucketCapacity</code>
      * @param bucketCapacity Maximum number of tokens in bucket
-     * @param tokenReplacementDelayMillis Delay before a token is replaced, in milliseconds
+     * @param tokenReplacementDelayMillis Time to refill an empty bucket, in milliseconds
      */
     public RateLimiter(final int bucketCapacity, final long tokenReplacementDelayMillis) {
         setParameters(bucketCapacity, tokenReplacementDelayMillis);
@@ -79,14 +74,18 @@ public class RateLimiter {
      * Sets the rate limiter parameters to new values. Rate limitation to the new parameter values will not be
      * completely effective for a certain period. This transition period will be anything up to the previous value of
      * tokenReplacementDelayMillis in length.
-     * @param bucketCapacity New Maximum number of tokens in bucket. If the bucket currently has less capacity, new
-     *            tokens are added which are immediately available.
-     * @param tokenReplacementDelayMillis New delay before a token is replaced, in milliseconds
+     * @param bucketCapacity New Maximum number of tokens in bucket. If the bucket currently has less capacity, the
+     *            additional tokens are immediately available.
+     * @param tokenReplacementDelayMillis New time to refill an empty bucket, in milliseconds
      */
-    public synchronized void setParameters(final int bucketCapacity, final long tokenReplacementDelayMillis) {
-        setTokenReplacementDelayMillis(tokenReplacementDelayMillis);
-        setBucketCapacity(bucketCapacity);
-        restoreBucket(0L);
+    public void setParameters(final int bucketCapacity, final long tokenReplacementDelayMillis) {
+        if (bucketCapacity < 1) {
+            throw new IllegalArgumentException("Bucket must have capacity of at least 1 token");
+        }
+        if (tokenReplacementDelayMillis < 0) {
+            throw new IllegalArgumentException("Token replacement delay cannot be negative");
+        }
+        bucket = new Bucket(bucketCapacity, tokenReplacementDelayMillis, bucket);
     }
 
     /**
@@ -94,7 +93,7 @@ public class RateLimiter {
      * @throws InterruptedException
      */
     public void takeToken() throws InterruptedException {
-        processObtainedToken(bucket.take()); // block until token is available
+        acquire(1);
     }
 
     /**
@@ -102,7 +101,7 @@ public class RateLimiter {
      * @return <code>true</code> if a token was obtained
      */
     public boolean pollToken() {
-        return processObtainedToken(bucket.poll()); // no blocking
+        return tryAcquire(1);
     }
 
     /**
@@ -113,84 +112,184 @@ public class RateLimiter {
      * @throws InterruptedException
      */
     public boolean pollToken(final long timeout, final TimeUnit unit) throws InterruptedException {
-        return processObtainedToken(bucket.poll(timeout, unit)); // block until token available or timeout
+        return tryAcquire(1, timeout, unit);
+    }
+
+    /**
+     * Obtain a number of rate limited tokens, blocking if necessary until they are available. If the calling thread is
+     * interrupted while waiting, the tokens remain reserved and are not returned to the bucket.
+     * @param permits Number of tokens to obtain
+     * @throws InterruptedException
+     */
+    public void acquire(final int permits) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(reserve(permits));
     }
 
-    private boolean processObtainedToken(final Token token) {
-        if (token == null) {
+    /**
+     * Obtains a number of rate limited tokens, but only if they are all immediately available.
+     * @param permits Number of tokens to obtain
+     * @return <code>true</code> if the tokens were obtained
+     */
+    public boolean tryAcquire(final int permits) {
+        return reserve(permits, 0L) == 0L;
+    }
+
+    /**
+     * Obtain a number of rate limited tokens, blocking if necessary until they are available. If the tokens would not
+     * become available before the timeout expires, none are taken and this method returns immediately.
+     * @param permits Number of tokens to obtain
+     * @param timeout How long to wait for obtaining the tokens, in units of <code>unit</code>
+     * @param unit a <tt>TimeUnit</tt> determining how to interpret the <code>timeout</code> parameter
+     * @return <code>true</code> if the tokens were obtained, <code>false</code> if they would not be available in time
+     * @throws InterruptedException
+     */
+    public boolean tryAcquire(final int permits, final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        final long waitNanos = reserve(permits, Math.max(0L, unit.toNanos(timeout)));
+        if (waitNanos < 0L) {
             return false;
-        } else {
-            restoreBucket(tokenReplacementDelayMillis);
-            return true;
         }
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+        return true;
     }
 
     /**
-     * Restore the total number of tokens (both expired and not expired) in the bucket.
-     * @param delayMillis Availability delay given to any tokens added to the bucket
+     * Reserves a number of rate limited tokens without blocking. The tokens are taken immediately, but may only be used
+     * once the returned delay has elapsed. This allows callers to schedule work rather than block a thread.
+     * @param permits Number of tokens to reserve
+     * @return Delay before the reserved tokens may be used, in nanoseconds; zero if they may be used immediately
      */
-    private synchronized void restoreBucket(final long delayMillis) {
-        int diff;
-        while ((diff = bucket.size() - bucketCapacity) != 0) {
-            if (diff > 0) {
-                try {
-                    bucket.remove();
-                } catch (final NoSuchElementException e) {
-                    // Do nothing
-                    // takeToken() or pollToken() emptied the bucket first
-                }
-            } else {
-                bucket.add(new Token(delayMillis)); // replace token, but delay availability
+    public long reserve(final int permits) {
+        return reserve(permits, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reserves tokens if they will become available within the given wait.
+     * @return Delay before the tokens may be used, in nanoseconds, or <code>-1</code> if no tokens were reserved
+     */
+    private long reserve(final int permits, final long maxWaitNanos) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("At least 1 token must be obtained");
+        }
+        final Bucket bucket = this.bucket;
+        while (true) {
+            final long tokensTaken = bucket.tokensTaken.get();
+            final long lastToken = tokensTaken + permits - 1;
+            if (!bucket.isReplacedTokenRecorded(tokensTaken, lastToken)) {
+                Thread.yield(); // another thread has taken the token replaced, but not yet recorded its replacement
+                continue;
+            }
+            final long now = System.nanoTime();
+            final long availableTime = bucket.availableTime(tokensTaken, lastToken, now);
+            final long waitNanos = availableTime - now;
+            if (waitNanos > maxWaitNanos) {
+                return -1L;
+            }
+            if (bucket.tokensTaken.compareAndSet(tokensTaken, tokensTaken + permits)) {
+                // All the tokens are taken when the last one is available, so are all replaced a delay after that
+                bucket.recordReplacementTimes(tokensTaken, permits,
+                        availableTime + bucket.tokenReplacementDelayNanos);
+                return waitNanos;
             }
         }
     }
 
     public int getBucketCapacity() {
-        return bucketCapacity;
+        return bucket.bucketCapacity;
     }
 
     public long getTokenReplacementDelayMillis() {
-        return tokenReplacementDelayMillis;
-    }
-
-    private void setBucketCapacity(final int bucketCapacity) {
-        if (bucketCapacity < 1) {
-            throw new IllegalArgumentException("Bucket must have capacity of at least 1 token");
-        }
-        this.bucketCapacity = bucketCapacity;
-    }
-
-    private void setTokenReplacementDelayMillis(final long tokenReplacementDelayMillis) {
-        if (tokenReplacementDelayMillis < 0) {
-            throw new IllegalArgumentException("Token replacement delay cannot be negative");
-        }
-        this.tokenReplacementDelayMillis = tokenReplacementDelayMillis;
+        return bucket.tokenReplacementDelayMillis;
     }
 
     @Override
     public String toString() {
-        return "RateLimiter [bucketCapacity=" + bucketCapacity + ", tokenReplacementDelayMillis="
-                + tokenReplacementDelayMillis + "]";
+        final Bucket bucket = this.bucket;
+        return "RateLimiter [bucketCapacity=" + bucket.bucketCapacity + ", tokenReplacementDelayMillis="
+                + bucket.tokenReplacementDelayMillis + "]";
     }
 
-    private class Token implements Delayed {
+    /**
+     * Bucket of tokens for a set of parameters. Token <code>n</code> is taken through slot <code>n % C</code>,
+     * replacing the token previously taken through that slot.
+     */
+    private static class Bucket {
+
+        final int bucketCapacity;
+        final long tokenReplacementDelayMillis;
+        final long tokenReplacementDelayNanos;
+
+        /** Number of tokens taken so far, which is also the number of the next token to be taken */
+        final AtomicLong tokensTaken = new AtomicLong();
+
+        /** For each slot, time in {@link System#nanoTime()} terms at which the token taken through it is replaced */
+        final AtomicLongArray replacementTimes;
+
+        /** For each slot, number of the token whose replacement time is recorded */
+        final AtomicLongArray recordedTokens;
+
+        Bucket(final int bucketCapacity, final long tokenReplacementDelayMillis, final Bucket previous) {
+            this.bucketCapacity = bucketCapacity;
+            this.tokenReplacementDelayMillis = tokenReplacementDelayMillis;
+            tokenReplacementDelayNanos = TimeUnit.MILLISECONDS.toNanos(tokenReplacementDelayMillis);
+            replacementTimes = new AtomicLongArray(bucketCapacity);
+            recordedTokens = new AtomicLongArray(bucketCapacity);
+            final long now = System.nanoTime();
+            final long previousTokensTaken = previous != null ? previous.tokensTaken.get() : 0L;
+            for (int slot = 0; slot < bucketCapacity; slot++) {
+                // Carry over the most recently taken tokens; any additional tokens are immediately available
+                final long previousToken = previousTokensTaken - bucketCapacity + slot;
+                final boolean carriedOver = previous != null && previousToken >= 0
+                        && previousToken >= previousTokensTaken - previous.bucketCapacity;
+                replacementTimes.set(slot, carriedOver ? previous.replacementTimes
+                        .get((int) (previousToken % previous.bucketCapacity)) : now);
+                recordedTokens.set(slot, slot - bucketCapacity);
+            }
+        }
 
-        final long endTime;
+        /**
+         * @return <code>true</code> if the replacement time of the token that <code>token</code> replaces is recorded,
+         *         where <code>token</code> is taken in a request starting at <code>firstToken</code>
+         */
+        boolean isReplacedTokenRecorded(final long firstToken, final long token) {
+            return recordedTokens.get(slot(token)) == replacedToken(firstToken, token);
+        }
 
-        Token(final long totalDelayMillis) {
-            endTime = System.currentTimeMillis() + totalDelayMillis;
+        /**
+         * @return Time at which <code>token</code> is available, where <code>token</code> is taken in a request
+         *         starting at <code>firstToken</code> and the replacement time of the token it replaces is recorded
+         */
+        long availableTime(final long firstToken, final long token, final long now) {
+            final long replacementTime = replacementTimes.get(slot(token));
+            final long wraps = (token - firstToken) / bucketCapacity;
+            return (replacementTime - now > 0 ? replacementTime : now) + wraps * tokenReplacementDelayNanos;
+        }
+
+        /**
+         * Records when the tokens of a request are replaced. The tokens of a request of more than the bucket capacity
+         * are replaced by later tokens of the same request, so only the last <code>bucketCapacity</code> are recorded.
+         */
+        void recordReplacementTimes(final long firstToken, final int permits, final long replacementTime) {
+            final long lastToken = firstToken + permits - 1;
+            for (long token = Math.max(firstToken, lastToken - bucketCapacity + 1); token <= lastToken; token++) {
+                while (!isReplacedTokenRecorded(firstToken, token)) {
+                    Thread.yield(); // another thread has taken the token replaced, but not yet recorded its replacement
+                }
+                replacementTimes.set(slot(token), replacementTime);
+                recordedTokens.set(slot(token), token);
+            }
         }
 
-        @Override
-        public int compareTo(final Delayed o) {
-            final long diffMillis = endTime - ((Token) o).endTime;
-            return diffMillis == 0 ? 0 : (diffMillis < 0 ? -1 : 1);
+        private int slot(final long token) {
+            return (int) (token % bucketCapacity);
         }
 
-        @Override
-        public long getDelay(final TimeUnit unit) {
-            final long remainingDelayMillis = endTime - System.currentTimeMillis(); // <= 0 if delay has expired
-            return unit.convert(remainingDelayMillis, TimeUnit.MILLISECONDS);
+        /**
+         * @return Number of the token taken before the request starting at <code>firstToken</code> through the same
+         *         slot as <code>token</code>
+         */
+        private long replacedToken(final long firstToken, final long token) {
+            return token - ((token - firstToken) / bucketCapacity + 1) * bucketCapacity;
         }
     }
 }
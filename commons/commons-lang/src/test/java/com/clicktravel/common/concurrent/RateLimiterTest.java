@@ -17,10 +17,12 @@
 package com.clicktravel.common.concurrent;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
@@ -59,6 +61,76 @@ public class RateLimiterTest {
         assertTrue(elapsedMillis >= tokenDelayMillis);
     }
 
+    @Test
+    public void shouldNotObtainTokens_onTryAcquireWhenNotAvailable() {
+        // Given
+        final int capacity = 1 + Randoms.randomInt(50);
+        final long tokenDelayMillis = 10000;
+        rateLimiter = new RateLimiter(capacity, tokenDelayMillis);
+
+        // When
+        final boolean obtainedAll = rateLimiter.tryAcquire(capacity);
+        final boolean obtainedMore = rateLimiter.tryAcquire(1);
+
+        // Then
+        assertTrue(obtainedAll);
+        assertFalse(obtainedMore);
+    }
+
+    @Test(timeout = 1000)
+    public void shouldNotTakeTokens_onTryAcquireWithTimeoutTooShort() throws Exception {
+        // Given
+        final int capacity = 2;
+        final long tokenDelayMillis = 10000;
+        rateLimiter = new RateLimiter(capacity, tokenDelayMillis);
+        rateLimiter.tryAcquire(1);
+
+        // When
+        final boolean obtainedTwo = rateLimiter.tryAcquire(2, 10, TimeUnit.MILLISECONDS);
+        final boolean obtainedOne = rateLimiter.pollToken();
+
+        // Then
+        assertFalse(obtainedTwo);
+        assertTrue(obtainedOne);
+    }
+
+    @Test
+    public void shouldReturnDelay_onReserveBeyondCapacity() {
+        // Given
+        final int capacity = 1 + Randoms.randomInt(50);
+        final long tokenDelayMillis = 10000;
+        rateLimiter = new RateLimiter(capacity, tokenDelayMillis);
+        final long tokenDelayNanos = TimeUnit.MILLISECONDS.toNanos(tokenDelayMillis);
+
+        // When
+        final long firstDelayNanos = rateLimiter.reserve(capacity);
+        final long secondDelayNanos = rateLimiter.reserve(1);
+
+        // Then
+        assertEquals(0L, firstDelayNanos);
+        assertTrue(secondDelayNanos > tokenDelayNanos / 2);
+        assertTrue(secondDelayNanos <= tokenDelayNanos);
+    }
+
+    @Test
+    public void shouldReturnDelay_onReserveOfMoreThanCapacity() {
+        // Given
+        final int capacity = 1 + Randoms.randomInt(50);
+        final long tokenDelayMillis = 10000;
+        rateLimiter = new RateLimiter(capacity, tokenDelayMillis);
+        final long tokenDelayNanos = TimeUnit.MILLISECONDS.toNanos(tokenDelayMillis);
+
+        // When
+        final long firstDelayNanos = rateLimiter.reserve(2 * capacity);
+        final long secondDelayNanos = rateLimiter.reserve(1);
+
+        // Then
+        assertTrue(firstDelayNanos > tokenDelayNanos / 2);
+        assertTrue(firstDelayNanos <= tokenDelayNanos);
+        assertTrue(secondDelayNanos > tokenDelayNanos * 3 / 2);
+        assertTrue(secondDelayNanos <= 2 * tokenDelayNanos);
+    }
+
     @Test(timeout = 2000)
     public void shouldLimitRate_onGetTokens() throws Exception {
         // Given